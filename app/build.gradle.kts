@@ -16,6 +16,11 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // RestaurantApi implementation provided by AppModule: "database", "http" or "fake".
+        buildConfigField("String", "RESTAURANT_API", "\"database\"")
+        // Base URL of the backend called by the "http" implementation; a placeholder until the backend is deployed.
+        buildConfigField("String", "RESTAURANT_API_URL", "\"https://api.example.com/tajmahal/\"")
     }
 
     buildTypes {
@@ -34,28 +39,56 @@ android {
 
     buildFeatures {
         viewBinding = true
+        buildConfig = true
+    }
+
+    testOptions {
+        unitTests.all {
+            // Timing benchmarks are skipped unless the tests run with -Pbenchmarks.
+            it.systemProperty("benchmarks", project.hasProperty("benchmarks"))
+        }
     }
 }
 
 dependencies {
-    implementation("androidx.work:work-runtime:2.8.1")
     val hiltVersion = "2.44"
+    val roomVersion = "2.5.2"
+    val okHttpVersion = "4.12.0"
+    val glideVersion = "4.16.0"
 
     //Hilt
     implementation("com.google.dagger:hilt-android:${hiltVersion}")
     annotationProcessor("com.google.dagger:hilt-compiler:${hiltVersion}")
 
+    //Room
+    implementation("androidx.room:room-runtime:${roomVersion}")
+    annotationProcessor("androidx.room:room-compiler:${roomVersion}")
+
+    //WorkManager
+    implementation("androidx.work:work-runtime:2.8.1")
+
+    //Network
+    implementation("com.squareup.okhttp3:okhttp:${okHttpVersion}")
+    implementation("com.google.code.gson:gson:2.10.1")
+
     implementation("androidx.appcompat:appcompat:1.6.1")
     implementation("com.google.android.material:material:1.8.0")
     implementation("androidx.constraintlayout:constraintlayout:2.1.4")
-    implementation("androidx.work:work-runtime:2.8.1")
     implementation("androidx.core:core-splashscreen:1.0.0")
+    implementation("androidx.asynclayoutinflater:asynclayoutinflater:1.0.0")
     implementation("de.hdodenhof:circleimageview:3.1.0")
-    implementation("com.github.bumptech.glide:glide:4.16.0")
+    implementation("com.github.bumptech.glide:glide:${glideVersion}")
+    annotationProcessor("com.github.bumptech.glide:compiler:${glideVersion}")
+    implementation("com.github.bumptech.glide:recyclerview-integration:${glideVersion}") {
+        // Keeps the RecyclerView version of the app.
+        isTransitive = false
+    }
 
     testImplementation("junit:junit:4.13.2")
     testImplementation("org.mockito:mockito-core:5.18.0")
     testImplementation("org.mockito:mockito-inline:5.2.0")
+    testImplementation("com.squareup.okhttp3:mockwebserver:${okHttpVersion}")
+    testImplementation("androidx.arch.core:core-testing:2.2.0")
 
     androidTestImplementation("androidx.test.ext:junit:1.1.5")
     androidTestImplementation("androidx.test.espresso:espresso-core:3.5.1")
@@ -0,0 +1,50 @@
+package com.openclassrooms.tajmahal;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.module.AppGlideModule;
+
+/**
+ * Configures the image caches of Glide for the application.
+ * <p>
+ * Glide keeps a single memory cache and a single disk cache per process, shared by every image.
+ * Their budgets are set here: the memory cache holds the images of the screens Glide sizes it for,
+ * plus the decoded avatars of a few screens of reviews, and the disk cache is bounded on its own.
+ * Avatars are cached decoded at the size of their row (see the review avatar loader), a few
+ * kilobytes each, so that they never crowd the photos out of either cache.
+ * </p>
+ */
+@GlideModule
+public final class TajMahalGlideModule extends AppGlideModule {
+
+    /** Number of decoded avatars the memory cache holds beside the other images. */
+    static final int MEMORY_CACHE_AVATARS = 200;
+    /** Size of the disk cache, in bytes. */
+    static final long DISK_CACHE_BYTES = 64L * 1024 * 1024;
+    /** Directory of the disk cache, in the cache directory of the application. */
+    static final String DISK_CACHE_DIRECTORY = "images";
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        int avatarSize = context.getResources().getDimensionPixelSize(R.dimen.review_avatar_size);
+        // RGB_565: two bytes per pixel.
+        long avatarBytes = (long) MEMORY_CACHE_AVATARS * avatarSize * avatarSize * 2;
+        long imageBytes = new MemorySizeCalculator.Builder(context).build().getMemoryCacheSize();
+        builder.setMemoryCache(new LruResourceCache(imageBytes + avatarBytes));
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_DIRECTORY, DISK_CACHE_BYTES));
+        builder.setLogLevel(Log.ERROR);
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
@@ -0,0 +1,28 @@
+package com.openclassrooms.tajmahal.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * Data access object of the {@code pending_reviews} table, the outbox of the reviews waiting
+ * to be uploaded.
+ */
+@Dao
+public interface PendingReviewDao {
+
+    @Query("SELECT * FROM pending_reviews ORDER BY id LIMIT :limit")
+    List<PendingReviewEntity> getOldest(int limit);
+
+    @Query("SELECT * FROM pending_reviews WHERE restaurant_id = :restaurantId ORDER BY id DESC")
+    List<PendingReviewEntity> getAllNewestFirst(long restaurantId);
+
+    @Insert
+    void insertAll(List<PendingReviewEntity> reviews);
+
+    @Delete
+    void delete(List<PendingReviewEntity> reviews);
+}
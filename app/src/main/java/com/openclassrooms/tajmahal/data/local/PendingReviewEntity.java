@@ -0,0 +1,86 @@
+package com.openclassrooms.tajmahal.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+import com.openclassrooms.tajmahal.data.store.ReviewFactory;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+/**
+ * Database row of a review submitted by the user and not uploaded to the API yet.
+ * <p>
+ * The identifiers increase with submission order, so that the outbox is drained oldest first
+ * and the uploaded reviews keep the order in which they were written.
+ * </p>
+ */
+@Entity(tableName = "pending_reviews")
+public class PendingReviewEntity {
+
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    /** The restaurant the review belongs to. */
+    @ColumnInfo(name = "restaurant_id")
+    public long restaurantId;
+
+    /**
+     * The local identifier of the review, listed until it is uploaded; reviews submitted without
+     * one are listed by their negated row identifier.
+     */
+    @ColumnInfo(name = "local_id")
+    public long localId;
+
+    @NonNull
+    public String username = "";
+
+    public String picture;
+
+    @NonNull
+    public String comment = "";
+
+    public int rate;
+
+    /** Submission time of the review, in milliseconds since the epoch. */
+    @ColumnInfo(name = "created_at")
+    public long createdAt;
+
+    /**
+     * Creates the row of a submitted review.
+     *
+     * @param restaurantId The restaurant the review belongs to.
+     * @param review       The review to upload, with its local identifier if it has one.
+     * @param createdAt    The submission time of the review if it has no creation time, in milliseconds since the epoch.
+     * @return The row to insert.
+     */
+    public static PendingReviewEntity fromReview(long restaurantId, Review review, long createdAt) {
+        PendingReviewEntity entity = new PendingReviewEntity();
+        entity.restaurantId = restaurantId;
+        entity.localId = review.getId() < 0 ? review.getId() : 0L;
+        entity.username = review.getUsername() == null ? "" : review.getUsername();
+        entity.picture = review.getPicture();
+        entity.comment = review.getComment() == null ? "" : review.getComment();
+        entity.rate = review.getRate();
+        entity.createdAt = review.getCreatedAt() != 0 ? review.getCreatedAt() : createdAt;
+        return entity;
+    }
+
+    /**
+     * Returns the review stored in this row, as listed before it is uploaded. The review keeps the
+     * local identifier it was published with, or, if it had none, is identified by the negated row
+     * identifier; neither collides with the positive identifiers assigned by the API.
+     *
+     * @return The {@link Review} stored in this row.
+     */
+    public Review toReview() {
+        return ReviewFactory.newReview(localId != 0 ? localId : -id, username, picture, comment, rate, createdAt);
+    }
+
+    /**
+     * @return The {@link Review} stored in this row, without identifier, as sent to the API, which assigns its own.
+     */
+    public Review toUpload() {
+        return ReviewFactory.newReview(username, picture, comment, rate, createdAt);
+    }
+}
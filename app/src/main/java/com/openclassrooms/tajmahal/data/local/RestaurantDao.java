@@ -0,0 +1,19 @@
+package com.openclassrooms.tajmahal.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+/**
+ * Data access object of the {@code restaurants} table.
+ */
+@Dao
+public interface RestaurantDao {
+
+    @Query("SELECT * FROM restaurants WHERE id = :id")
+    RestaurantEntity getRestaurant(long id);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(RestaurantEntity restaurant);
+}
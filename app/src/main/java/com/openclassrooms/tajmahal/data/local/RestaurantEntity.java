@@ -0,0 +1,64 @@
+package com.openclassrooms.tajmahal.data.local;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+import com.openclassrooms.tajmahal.domain.model.Restaurant;
+
+/**
+ * Database row of a restaurant.
+ */
+@Entity(tableName = "restaurants")
+public class RestaurantEntity {
+
+    @PrimaryKey
+    public long id;
+
+    public String name;
+
+    public String type;
+
+    public String hours;
+
+    public String address;
+
+    public String website;
+
+    @ColumnInfo(name = "phone_number")
+    public String phoneNumber;
+
+    @ColumnInfo(name = "dine_in")
+    public boolean dineIn;
+
+    @ColumnInfo(name = "take_away")
+    public boolean takeAway;
+
+    /**
+     * Creates the row of a restaurant.
+     *
+     * @param id         The identifier of the restaurant.
+     * @param restaurant The restaurant to store.
+     * @return The row to insert.
+     */
+    public static RestaurantEntity fromRestaurant(long id, Restaurant restaurant) {
+        RestaurantEntity entity = new RestaurantEntity();
+        entity.id = id;
+        entity.name = restaurant.getName();
+        entity.type = restaurant.getType();
+        entity.hours = restaurant.getHours();
+        entity.address = restaurant.getAddress();
+        entity.website = restaurant.getWebsite();
+        entity.phoneNumber = restaurant.getPhoneNumber();
+        entity.dineIn = restaurant.isDineIn();
+        entity.takeAway = restaurant.isTakeAway();
+        return entity;
+    }
+
+    /**
+     * @return The {@link Restaurant} stored in this row.
+     */
+    public Restaurant toRestaurant() {
+        return new Restaurant(name, type, hours, address, website, phoneNumber, dineIn, takeAway);
+    }
+}
@@ -0,0 +1,344 @@
+package com.openclassrooms.tajmahal.data.local;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.openclassrooms.tajmahal.data.store.RatingAggregate;
+import com.openclassrooms.tajmahal.data.store.ReviewFactory;
+import com.openclassrooms.tajmahal.domain.model.Restaurant;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Compact binary snapshot of the restaurant and its reviews, used to display the last known data
+ * as soon as the application starts, before the data source answers.
+ * <p>
+ * The file is memory-mapped when read: opening it costs a few system calls whatever its size, and
+ * a review is only decoded, from the pages the kernel loads on demand, when it is first accessed.
+ * Rendering the first screen therefore reads a handful of records rather than the whole file.
+ * </p>
+ * <p>
+ * Layout, big-endian:
+ * </p>
+ * <pre>
+ * header      magic "TJMS", format version, file length, review count, index offset (5 x int32)
+ * restaurant  present (int8), then if present: flags (int8, bit 0 dine-in, bit 1 take-away),
+ *             name, type, hours, address, website, phone number (6 x string)
+ * index       offset of each review record, newest review first (review count x int32)
+ * records     identifier (int64, 0 if none), rate (int8), creation time (int64, milliseconds since the epoch), username, picture,
+ *             comment (3 x string)
+ * string      UTF-8 length (int32, -1 for null), then the UTF-8 bytes
+ * </pre>
+ * <p>
+ * The file is written to a temporary file which then replaces it, so a reader never sees a
+ * partially written snapshot. A file that is missing, truncated or of another format version is
+ * reported as absent; a file whose records are corrupt is detected by
+ * {@link Snapshot#countRatings()}, before any review is decoded.
+ * </p>
+ */
+public class RestaurantSnapshotFile {
+
+    private static final int MAGIC = 0x544A4D53; // "TJMS"
+    private static final int FORMAT_VERSION = 3;
+    private static final int HEADER_SIZE = 5 * 4;
+    private static final int FLAG_DINE_IN = 1;
+    private static final int FLAG_TAKE_AWAY = 2;
+
+    private final File file;
+
+    /**
+     * Constructs a new {@link RestaurantSnapshotFile}.
+     *
+     * @param file The file holding the snapshot.
+     */
+    public RestaurantSnapshotFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Replaces the snapshot with the given data.
+     *
+     * @param restaurant The restaurant, or null if it is not known.
+     * @param reviews    The reviews, newest first.
+     * @throws IOException if the snapshot cannot be written; the previous snapshot is then kept.
+     */
+    @WorkerThread
+    public void write(@Nullable Restaurant restaurant, List<Review> reviews) throws IOException {
+        int count = reviews.size();
+        long restaurantSize = 1;
+        if (restaurant != null) {
+            restaurantSize += 1 + sizeOf(restaurant.getName()) + sizeOf(restaurant.getType())
+                    + sizeOf(restaurant.getHours()) + sizeOf(restaurant.getAddress())
+                    + sizeOf(restaurant.getWebsite()) + sizeOf(restaurant.getPhoneNumber());
+        }
+        long indexOffset = HEADER_SIZE + restaurantSize;
+        long length = indexOffset + 4L * count;
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            Review review = reviews.get(i);
+            offsets[i] = (int) length;
+            length += 8 + 1 + 8 + sizeOf(review.getUsername()) + sizeOf(review.getPicture()) + sizeOf(review.getComment());
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large: " + count + " reviews");
+            }
+        }
+
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporary)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt((int) length);
+            out.writeInt(count);
+            out.writeInt((int) indexOffset);
+            out.writeByte(restaurant == null ? 0 : 1);
+            if (restaurant != null) {
+                out.writeByte((restaurant.isDineIn() ? FLAG_DINE_IN : 0) | (restaurant.isTakeAway() ? FLAG_TAKE_AWAY : 0));
+                writeString(out, restaurant.getName());
+                writeString(out, restaurant.getType());
+                writeString(out, restaurant.getHours());
+                writeString(out, restaurant.getAddress());
+                writeString(out, restaurant.getWebsite());
+                writeString(out, restaurant.getPhoneNumber());
+            }
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            for (int i = 0; i < count; i++) {
+                Review review = reviews.get(i);
+                out.writeLong(review.getId());
+                out.writeByte(review.getRate());
+                out.writeLong(review.getCreatedAt());
+                writeString(out, review.getUsername());
+                writeString(out, review.getPicture());
+                writeString(out, review.getComment());
+            }
+            out.flush();
+            // Durable before it replaces the previous snapshot.
+            stream.getFD().sync();
+        }
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    /**
+     * Maps the snapshot in memory. Only the header and the restaurant are decoded here.
+     *
+     * @return The snapshot, or null if there is none or if it is unreadable.
+     */
+    @WorkerThread
+    @Nullable
+    public Snapshot read() {
+        if (!file.isFile()) {
+            return null;
+        }
+        // Opened through RandomAccessFile: java.nio.file is only available from API 26.
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE + 1 || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            // The mapping stays valid once the channel is closed.
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int count = buffer.getInt(12);
+            int indexOffset = buffer.getInt(16);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION || buffer.getInt(8) != size
+                    || count < 0 || indexOffset < HEADER_SIZE + 1 || indexOffset + 4L * count > size) {
+                return null;
+            }
+            Restaurant restaurant = null;
+            ByteBuffer cursor = buffer.duplicate();
+            cursor.position(HEADER_SIZE);
+            if (cursor.get() != 0) {
+                int flags = cursor.get();
+                restaurant = new Restaurant(readString(cursor), readString(cursor), readString(cursor),
+                        readString(cursor), readString(cursor), readString(cursor),
+                        (flags & FLAG_DINE_IN) != 0, (flags & FLAG_TAKE_AWAY) != 0);
+            }
+            return new Snapshot(restaurant, new MappedReviewList(buffer, indexOffset, count));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the snapshot, for instance when its data source is cleared.
+     */
+    @WorkerThread
+    public void delete() {
+        file.delete();
+    }
+
+    private static long sizeOf(String value) {
+        return 4 + (value == null ? 0 : utf8Length(value));
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // An unpaired surrogate is encoded as '?'.
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The restaurant and the reviews read from a snapshot.
+     */
+    public static final class Snapshot {
+
+        @Nullable
+        private final Restaurant restaurant;
+        private final MappedReviewList reviews;
+
+        Snapshot(@Nullable Restaurant restaurant, MappedReviewList reviews) {
+            this.restaurant = restaurant;
+            this.reviews = reviews;
+        }
+
+        /**
+         * @return The restaurant, or null if it was not known when the snapshot was written.
+         */
+        @Nullable
+        public Restaurant getRestaurant() {
+            return restaurant;
+        }
+
+        /**
+         * @return An immutable list of the reviews, newest first, decoded on first access.
+         */
+        public List<Review> getReviews() {
+            return reviews;
+        }
+
+        /**
+         * Counts the ratings of the reviews from the fixed-size part of their records, without
+         * decoding the reviews, and checks that every record lies within the file, so that the
+         * reviews can then be decoded safely.
+         *
+         * @return The rating totals of the reviews.
+         * @throws IllegalStateException if a record is corrupt; the snapshot should then be deleted.
+         */
+        public RatingAggregate countRatings() {
+            return reviews.countRatings();
+        }
+    }
+
+    /**
+     * Immutable list of the reviews of a mapped snapshot. Each review is decoded from its record
+     * the first time it is accessed, then kept, so that repeated accesses return the same instance.
+     */
+    private static final class MappedReviewList extends AbstractList<Review> implements RandomAccess {
+
+        private final ByteBuffer buffer;
+        private final int indexOffset;
+        private final AtomicReferenceArray<Review> decoded;
+
+        MappedReviewList(ByteBuffer buffer, int indexOffset, int size) {
+            this.buffer = buffer;
+            this.indexOffset = indexOffset;
+            this.decoded = new AtomicReferenceArray<>(size);
+        }
+
+        @Override
+        public Review get(int index) {
+            Review review = decoded.get(index);
+            if (review == null) {
+                // Concurrent first accesses may both decode the record; either result is kept.
+                ByteBuffer record = buffer.duplicate();
+                record.position(buffer.getInt(indexOffset + 4 * index));
+                long id = record.getLong();
+                int rate = record.get();
+                long createdAt = record.getLong();
+                review = ReviewFactory.newReview(id, readString(record), readString(record), readString(record), rate, createdAt);
+                decoded.compareAndSet(index, null, review);
+                review = decoded.get(index);
+            }
+            return review;
+        }
+
+        @Override
+        public int size() {
+            return decoded.length();
+        }
+
+        /**
+         * @see Snapshot#countRatings()
+         */
+        RatingAggregate countRatings() {
+            RatingAggregate ratings = new RatingAggregate();
+            int limit = buffer.limit();
+            for (int index = 0; index < size(); index++) {
+                int offset = buffer.getInt(indexOffset + 4 * index);
+                if (offset < indexOffset + 4 * size() || offset > limit - (8 + 1 + 8 + 3 * 4)) {
+                    throw new IllegalStateException("Review record " + index + " out of the file: " + offset);
+                }
+                int rate = buffer.get(offset + 8);
+                long createdAt = buffer.getLong(offset + 9);
+                int end = offset + 8 + 1 + 8;
+                for (int i = 0; i < 3; i++) {
+                    int length = end + 4 <= limit ? buffer.getInt(end) : -2;
+                    end += 4 + Math.max(0, length);
+                    if (length < -1 || end > limit || end < 0) {
+                        throw new IllegalStateException("Review record " + index + " has a corrupt string");
+                    }
+                }
+                ratings.add(rate, createdAt);
+            }
+            return ratings;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.openclassrooms.tajmahal.data.local;
+
+import java.io.File;
+
+/**
+ * The directory holding the {@link RestaurantSnapshotFile} of each restaurant, so that the last
+ * loaded data of every recently viewed restaurant can be restored on cold start.
+ */
+public class RestaurantSnapshots {
+
+    /** Name of the directory of the snapshots in the application storage. */
+    public static final String DIRECTORY_NAME = "snapshots";
+
+    private final File directory;
+
+    /**
+     * Constructs a new {@link RestaurantSnapshots}. The directory is created on the first write.
+     *
+     * @param directory The directory holding the snapshots.
+     */
+    public RestaurantSnapshots(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the snapshot of a restaurant, which may not exist yet.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @return The {@link RestaurantSnapshotFile} of the restaurant.
+     */
+    public RestaurantSnapshotFile forRestaurant(long restaurantId) {
+        return new RestaurantSnapshotFile(new File(directory, "restaurant-" + restaurantId + ".snapshot"));
+    }
+}
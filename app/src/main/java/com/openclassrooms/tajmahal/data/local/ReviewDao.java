@@ -0,0 +1,60 @@
+package com.openclassrooms.tajmahal.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * Data access object of the {@code reviews} table.
+ * <p>
+ * Pages use keyset pagination on {@code (created_at, id)}: a page starts strictly after the last
+ * row of the previous page, so it is read straight from the index whatever its depth, and
+ * reviews inserted in the meantime never shift it. The pages of a star count, and the pages by
+ * rating, read the index on {@code (restaurant_id, rate, created_at)} the same way, their cursor
+ * also holding the rating of the last row when the rating varies.
+ * </p>
+ */
+@Dao
+public interface ReviewDao {
+
+    @Query("SELECT * FROM reviews WHERE restaurant_id = :restaurantId ORDER BY created_at DESC, id DESC")
+    List<ReviewEntity> getReviews(long restaurantId);
+
+    @Query("SELECT * FROM reviews WHERE restaurant_id = :restaurantId"
+            + " ORDER BY created_at DESC, id DESC LIMIT :limit")
+    List<ReviewEntity> getNewestPage(long restaurantId, int limit);
+
+    @Query("SELECT * FROM reviews WHERE restaurant_id = :restaurantId"
+            + " AND (created_at < :createdAt OR (created_at = :createdAt AND id < :id))"
+            + " ORDER BY created_at DESC, id DESC LIMIT :limit")
+    List<ReviewEntity> getPageBefore(long restaurantId, long createdAt, long id, int limit);
+
+    @Query("SELECT * FROM reviews WHERE restaurant_id = :restaurantId AND rate = :rate"
+            + " ORDER BY created_at DESC, id DESC LIMIT :limit")
+    List<ReviewEntity> getNewestPageWithRate(long restaurantId, int rate, int limit);
+
+    @Query("SELECT * FROM reviews WHERE restaurant_id = :restaurantId AND rate = :rate"
+            + " AND (created_at < :createdAt OR (created_at = :createdAt AND id < :id))"
+            + " ORDER BY created_at DESC, id DESC LIMIT :limit")
+    List<ReviewEntity> getPageWithRateBefore(long restaurantId, int rate, long createdAt, long id, int limit);
+
+    @Query("SELECT * FROM reviews WHERE restaurant_id = :restaurantId"
+            + " ORDER BY rate DESC, created_at DESC, id DESC LIMIT :limit")
+    List<ReviewEntity> getHighestRatedPage(long restaurantId, int limit);
+
+    @Query("SELECT * FROM reviews WHERE restaurant_id = :restaurantId"
+            + " AND (rate < :rate OR (rate = :rate AND (created_at < :createdAt OR (created_at = :createdAt AND id < :id))))"
+            + " ORDER BY rate DESC, created_at DESC, id DESC LIMIT :limit")
+    List<ReviewEntity> getHighestRatedPageAfter(long restaurantId, int rate, long createdAt, long id, int limit);
+
+    @Query("SELECT COUNT(*) FROM reviews WHERE restaurant_id = :restaurantId")
+    int count(long restaurantId);
+
+    @Insert
+    long insert(ReviewEntity review);
+
+    @Insert
+    void insertAll(List<ReviewEntity> reviews);
+}
@@ -0,0 +1,80 @@
+package com.openclassrooms.tajmahal.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.openclassrooms.tajmahal.data.store.ReviewFactory;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+/**
+ * Database row of a review.
+ * <p>
+ * The composite indexes all start with the restaurant, so that every review query of a
+ * restaurant is answered by an index range scan: newest-first pages use
+ * {@code (restaurant_id, created_at)}, and rate filters or rate ordering use
+ * {@code (restaurant_id, rate, created_at)}. No query needs to sort rows in memory.
+ * </p>
+ */
+@Entity(
+        tableName = "reviews",
+        foreignKeys = @ForeignKey(
+                entity = RestaurantEntity.class,
+                parentColumns = "id",
+                childColumns = "restaurant_id",
+                onDelete = ForeignKey.CASCADE),
+        indices = {
+                @Index(value = {"restaurant_id", "created_at"}),
+                @Index(value = {"restaurant_id", "rate", "created_at"})
+        })
+public class ReviewEntity {
+
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    @ColumnInfo(name = "restaurant_id")
+    public long restaurantId;
+
+    @NonNull
+    public String username = "";
+
+    public String picture;
+
+    @NonNull
+    public String comment = "";
+
+    public int rate;
+
+    /** Creation time of the review, in milliseconds since the epoch. */
+    @ColumnInfo(name = "created_at")
+    public long createdAt;
+
+    /**
+     * Creates the row of a review.
+     *
+     * @param restaurantId The restaurant the review belongs to.
+     * @param review       The review to store.
+     * @param createdAt    The creation time of the review if it has no creation time, in milliseconds since the epoch.
+     * @return The row to insert.
+     */
+    public static ReviewEntity fromReview(long restaurantId, Review review, long createdAt) {
+        ReviewEntity entity = new ReviewEntity();
+        entity.restaurantId = restaurantId;
+        entity.username = review.getUsername() == null ? "" : review.getUsername();
+        entity.picture = review.getPicture();
+        entity.comment = review.getComment() == null ? "" : review.getComment();
+        entity.rate = review.getRate();
+        entity.createdAt = review.getCreatedAt() != 0 ? review.getCreatedAt() : createdAt;
+        return entity;
+    }
+
+    /**
+     * @return The {@link Review} stored in this row.
+     */
+    public Review toReview() {
+        return ReviewFactory.newReview(id, username, picture, comment, rate, createdAt);
+    }
+}
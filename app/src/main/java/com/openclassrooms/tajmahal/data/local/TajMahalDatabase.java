@@ -0,0 +1,21 @@
+package com.openclassrooms.tajmahal.data.local;
+
+import androidx.room.Database;
+import androidx.room.RoomDatabase;
+
+/**
+ * Local SQLite database of the application, storing restaurants, their reviews, and the
+ * reviews waiting to be uploaded.
+ */
+@Database(entities = {RestaurantEntity.class, ReviewEntity.class, PendingReviewEntity.class}, version = 1, exportSchema = false)
+public abstract class TajMahalDatabase extends RoomDatabase {
+
+    /** File name of the database in the application storage. */
+    public static final String NAME = "tajmahal.db";
+
+    public abstract RestaurantDao restaurantDao();
+
+    public abstract ReviewDao reviewDao();
+
+    public abstract PendingReviewDao pendingReviewDao();
+}
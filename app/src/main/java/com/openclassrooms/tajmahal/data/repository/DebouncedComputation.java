@@ -0,0 +1,117 @@
+package com.openclassrooms.tajmahal.data.repository;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs a computation on a background executor for a stream of inputs, coalescing the inputs
+ * received within a time window and publishing only the result of the latest one.
+ * <p>
+ * The first input of a burst opens a window of {@code windowMillis}; the inputs submitted until the
+ * window closes replace each other, and the latest one is computed when it closes. A burst of
+ * hundreds of inputs thus costs one computation per window, and a result is published at most one
+ * window after its input, however long the burst lasts.
+ * </p>
+ * <p>
+ * A computation is stale as soon as a newer input is submitted: it is skipped if it has not
+ * started yet, and its result is dropped otherwise, so that an older result never overwrites a
+ * newer one. {@link #cancel()} drops every pending and running computation for good.
+ * </p>
+ *
+ * @param <T> The type of the inputs.
+ * @param <R> The type of the results.
+ */
+public class DebouncedComputation<T, R> {
+
+    private final ScheduledExecutorService executor;
+    private final long windowMillis;
+    private final Function<? super T, ? extends R> computation;
+    private final Consumer<? super R> publisher;
+
+    // Latest input not taken by a computation yet, or null; guarded by this.
+    private T pendingInput;
+    // Number of inputs submitted so far; a computation is stale once it changes. Guarded by this.
+    private long generation;
+    // Computation scheduled at the end of the current window, or null if no window is open; guarded by this.
+    private ScheduledFuture<?> window;
+    private boolean cancelled;
+
+    /**
+     * Constructs a new {@link DebouncedComputation}.
+     *
+     * @param executor     The executor on which the windows are timed and the computations run.
+     * @param windowMillis The duration during which inputs are coalesced; 0 computes each input as soon as possible.
+     * @param computation  Computes the result of an input; called on the executor.
+     * @param publisher    Receives the results that are not stale, in submission order; called on
+     *                     the executor while holding the lock of this object, so it must be quick,
+     *                     such as posting to a LiveData.
+     */
+    public DebouncedComputation(ScheduledExecutorService executor, long windowMillis,
+                                Function<? super T, ? extends R> computation, Consumer<? super R> publisher) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("windowMillis must not be negative");
+        }
+        this.executor = executor;
+        this.windowMillis = windowMillis;
+        this.computation = computation;
+        this.publisher = publisher;
+    }
+
+    /**
+     * Submits a new input, making every earlier input stale. May be called from any thread.
+     *
+     * @param input The input to compute, not null.
+     */
+    public synchronized void submit(T input) {
+        if (cancelled) {
+            return;
+        }
+        pendingInput = input;
+        generation++;
+        if (window == null) {
+            window = executor.schedule(this::compute, windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Drops the pending and running computations; later inputs are ignored.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        pendingInput = null;
+        if (window != null) {
+            window.cancel(false);
+            window = null;
+        }
+    }
+
+    /**
+     * Computes the latest input at the end of a window, and publishes the result unless a newer
+     * input was submitted meanwhile.
+     */
+    private void compute() {
+        T input;
+        long computed;
+        synchronized (this) {
+            // Closes the window, so that an input submitted during the computation opens the next one.
+            window = null;
+            input = pendingInput;
+            pendingInput = null;
+            computed = generation;
+            if (input == null || cancelled) {
+                return;
+            }
+        }
+        // Runs without the lock, so that submissions never wait for a computation.
+        R result = computation.apply(input);
+        synchronized (this) {
+            // Publishing under the lock keeps a late stale result from overwriting a newer one.
+            if (!cancelled && generation == computed) {
+                publisher.accept(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.openclassrooms.tajmahal.data.repository;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Represents the state of an asynchronous operation of the {@link RestaurantRepository}.
+ * A state is either loading, successful, or failed with the error that caused the failure.
+ */
+public final class LoadState {
+
+    /** The possible statuses of an operation. */
+    public enum Status {
+        LOADING,
+        SUCCESS,
+        ERROR
+    }
+
+    private static final LoadState LOADING = new LoadState(Status.LOADING, null);
+    private static final LoadState SUCCESS = new LoadState(Status.SUCCESS, null);
+
+    private final Status status;
+    @Nullable
+    private final Throwable error;
+
+    private LoadState(Status status, @Nullable Throwable error) {
+        this.status = status;
+        this.error = error;
+    }
+
+    /**
+     * @return The state of an operation in progress.
+     */
+    public static LoadState loading() {
+        return LOADING;
+    }
+
+    /**
+     * @return The state of an operation that completed successfully.
+     */
+    public static LoadState success() {
+        return SUCCESS;
+    }
+
+    /**
+     * @param error The error that made the operation fail.
+     * @return The state of an operation that failed.
+     */
+    public static LoadState error(Throwable error) {
+        return new LoadState(Status.ERROR, error);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return The error that made the operation fail, or null if the status is not {@link Status#ERROR}.
+     */
+    @Nullable
+    public Throwable getError() {
+        return error;
+    }
+}
@@ -0,0 +1,572 @@
+package com.openclassrooms.tajmahal.data.repository;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.openclassrooms.tajmahal.data.local.RestaurantSnapshotFile;
+import com.openclassrooms.tajmahal.data.service.RestaurantApi;
+import com.openclassrooms.tajmahal.data.store.RatingAggregate;
+import com.openclassrooms.tajmahal.data.store.RatingStats;
+import com.openclassrooms.tajmahal.data.store.ReviewIndex;
+import com.openclassrooms.tajmahal.data.store.ReviewOrder;
+import com.openclassrooms.tajmahal.data.store.ReviewSearchIndex;
+import com.openclassrooms.tajmahal.data.store.ReviewSnapshot;
+import com.openclassrooms.tajmahal.data.store.ReviewSortIndex;
+import com.openclassrooms.tajmahal.data.store.ReviewStore;
+import com.openclassrooms.tajmahal.data.store.SegmentedReviewList;
+import com.openclassrooms.tajmahal.data.sync.ReviewOutbox;
+import com.openclassrooms.tajmahal.domain.model.Restaurant;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The data of one restaurant cached by the {@link RestaurantRepository}: its details, its
+ * published reviews with their change sets, and its review pager.
+ * <p>
+ * The reviews are only loaded once a screen asks for them, and only as far as it needs them: the
+ * rating statistics alone are counted while the reviews stream by, without keeping them, and the
+ * whole list is only kept once the list itself, a search or a sorted page is requested. A screen
+ * showing the reviews page by page reads them through the {@link ReviewPager}, which holds no more
+ * than its window. While the entry stays cached, the screens of the restaurant are served from memory.
+ * </p>
+ * <p>
+ * The published lists are never copied: a list is a {@link SegmentedReviewList} made of a
+ * {@link ReviewStore} snapshot of the reviews submitted since the last reload, followed by the
+ * chunks of that reload, so that each update shares the reviews of the previous list.
+ * </p>
+ * <p>
+ * The entry has its own outbox lock, only held while the pending reviews of the restaurant are
+ * read or written, never across an API call or a snapshot read or write, so that a slow reload
+ * never delays the other restaurants. Reloads of the restaurant run one at a time: a reload
+ * requested while one is running runs once it completes.
+ * </p>
+ */
+final class RestaurantEntry {
+
+    // Duration during which cached restaurant details are served without being revalidated.
+    private static final long RESTAURANT_TTL_MILLIS = 5 * 60 * 1000L;
+    // Number of reviews published before the rest of a reload is read: about one screen.
+    private static final int REFRESH_FIRST_CHUNK_SIZE = ReviewPager.DEFAULT_PAGE_SIZE;
+
+    private final long restaurantId;
+    private final RestaurantApi restaurantApi;
+    private final ReviewOutbox reviewOutbox;
+    private final RestaurantSnapshotFile snapshotFile;
+    private final Executor ioExecutor;
+    // LiveData holding the state of the last review operation on this restaurant.
+    private final MutableLiveData<LoadState> loadStateLiveData = new MutableLiveData<>();
+    // Serializes the outbox writes of the restaurant with the reads of its pending reviews, so that
+    // a read sees each submitted batch either in the outbox or in unlistedBatches. Shared with the
+    // review pager; held on the I/O executor only, for local reads and writes.
+    private final Object outboxLock = new Object();
+    // Called when the number of cached reviews changed, so that the cache can evict other restaurants.
+    private final Runnable onWeightChanged;
+
+    // Last restaurant fetched or restored, written to the next snapshot.
+    private volatile Restaurant lastRestaurant;
+    // LiveData holding the list of reviews.
+    private final MutableLiveData<List<Review>> reviewsLiveData = new MutableLiveData<>();
+    // LiveData holding each update of the list of reviews, with the changes it applies.
+    private final MutableLiveData<ReviewChangeSet> reviewChangesLiveData = new MutableLiveData<>();
+    // Serializes the updates of the published reviews, so that each change set matches exactly one update.
+    // Only held for in-memory work, so the main thread may take it.
+    private final Object reviewsLock = new Object();
+    // Version of the last published change set; guarded by reviewsLock.
+    private long reviewsVersion = ReviewChangeSet.NO_VERSION;
+    // Last published list of reviews; guarded by reviewsLock.
+    private List<Review> reviews = Collections.emptyList();
+    // Reviews submitted since the last reload, newest first, heading the published list; guarded by reviewsLock.
+    private ReviewStore submittedReviews = new ReviewStore();
+    // Reviews of the last reload, following the submitted ones in the published list; guarded by reviewsLock.
+    private SegmentedReviewList loadedReviews = SegmentedReviewList.empty();
+    // Size of the last published list, readable without the lock.
+    private volatile int reviewCount;
+    // Rating totals of the published reviews, updated by publishReviews(); guarded by reviewsLock.
+    private final RatingAggregate ratings = new RatingAggregate();
+    // LiveData holding the statistics of the ratings of each update of the list of reviews.
+    private final MutableLiveData<RatingStats> ratingStatsLiveData = new MutableLiveData<>();
+    // Indexes of the published list, filled by publishReviews() as the list is loaded once it is
+    // requested, then kept up to date with each change; guarded by reviewsLock.
+    private final ReviewSearchIndex searchIndex = new ReviewSearchIndex();
+    private final ReviewSortIndex sortIndex = new ReviewSortIndex();
+    // Submitted batches the last reload did not read from the outbox, oldest first: those not
+    // written to it yet when it was read, and those submitted since; guarded by reviewsLock.
+    private final List<List<Review>> unlistedBatches = new ArrayList<>();
+    // Batches of unlistedBatches written to the outbox since it was last read; guarded by reviewsLock.
+    private final Set<List<Review>> savedBatches = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Whether a reload is running, and whether another one was requested meanwhile; guarded by reviewsLock.
+    private boolean reloading;
+    private boolean reloadRequested;
+    // Whether the reviews were requested, and whether the whole list was, rather than only their
+    // rating statistics; guarded by reviewsLock. Reloads read the list only once it was requested.
+    private boolean loadRequested;
+    private boolean listRequested;
+    // Whether the list was published since it was requested, so that the first list published
+    // is a reset; guarded by reviewsLock.
+    private boolean listPublished;
+    // Page loader feeding the review list screen.
+    private final ReviewPager reviewPager;
+    // Cached restaurant details, shared by every caller of getRestaurant().
+    private final RevalidatingCache<Restaurant> restaurantCache;
+    // Number of screens displaying the restaurant; the entry is not evicted while it is positive.
+    private final AtomicInteger retainCount = new AtomicInteger();
+
+    RestaurantEntry(long restaurantId, RestaurantApi restaurantApi, ReviewOutbox reviewOutbox,
+                    RestaurantSnapshotFile snapshotFile, Executor ioExecutor, Runnable onWeightChanged) {
+        this.restaurantId = restaurantId;
+        this.restaurantApi = restaurantApi;
+        this.reviewOutbox = reviewOutbox;
+        this.snapshotFile = snapshotFile;
+        this.ioExecutor = ioExecutor;
+        this.onWeightChanged = onWeightChanged;
+        this.reviewPager = new ReviewPager(restaurantApi, reviewOutbox, outboxLock, restaurantId, ioExecutor,
+                ReviewPager.DEFAULT_PAGE_SIZE, ReviewPager.DEFAULT_PREFETCH_DISTANCE);
+        this.restaurantCache = new RevalidatingCache<>(() -> {
+            Restaurant restaurant = restaurantApi.getRestaurant(restaurantId);
+            lastRestaurant = restaurant;
+            return restaurant;
+        }, ioExecutor, RESTAURANT_TTL_MILLIS, error -> Log.w("RestaurantRepository",
+                "Cannot revalidate the details of restaurant " + restaurantId + ", keeping the cached ones", error));
+    }
+
+    LiveData<Restaurant> getRestaurant() {
+        return restaurantCache.get();
+    }
+
+    LiveData<LoadState> getLoadState() {
+        return loadStateLiveData;
+    }
+
+    LiveData<List<Review>> getReviews() {
+        requestReviews(true);
+        return reviewsLiveData;
+    }
+
+    LiveData<ReviewChangeSet> getReviewChanges() {
+        requestReviews(true);
+        return reviewChangesLiveData;
+    }
+
+    LiveData<RatingStats> getRatingStats() {
+        requestReviews(false);
+        return ratingStatsLiveData;
+    }
+
+    ReviewPager getReviewPager() {
+        return reviewPager;
+    }
+
+    /**
+     * Searches the comments of the published reviews, which are loaded on the first search.
+     *
+     * @see RestaurantRepository#searchReviews(long, String)
+     */
+    @WorkerThread
+    List<Review> searchReviews(String query) {
+        requestReviews(true);
+        synchronized (reviewsLock) {
+            return searchIndex.search(query);
+        }
+    }
+
+    /**
+     * Copies a page of the published reviews in the given order and star filter, which are
+     * loaded on the first call.
+     *
+     * @see RestaurantRepository#getReviewPage(long, ReviewOrder, int, int, int)
+     */
+    @WorkerThread
+    List<Review> getReviewPage(ReviewOrder order, int stars, int from, int count) {
+        requestReviews(true);
+        synchronized (reviewsLock) {
+            return sortIndex.page(order, stars, from, count);
+        }
+    }
+
+    void retain() {
+        retainCount.incrementAndGet();
+    }
+
+    void release() {
+        retainCount.decrementAndGet();
+    }
+
+    /**
+     * @return true if no screen displays the restaurant, so that its data may be evicted.
+     */
+    boolean isEvictable() {
+        return retainCount.get() <= 0;
+    }
+
+    /**
+     * @return The number of reviews held in memory, published or paged, plus one for the details.
+     */
+    int weight() {
+        return 1 + reviewCount + reviewPager.size();
+    }
+
+    /**
+     * Starts the first load of the reviews, or, if only their statistics were loaded so far and
+     * the list is now requested, reloads them as a list.
+     *
+     * @param list true if the whole list is needed, false if the rating statistics are enough.
+     */
+    private void requestReviews(boolean list) {
+        synchronized (reviewsLock) {
+            if (list ? listRequested : loadRequested) {
+                return;
+            }
+            loadRequested = true;
+            listRequested |= list;
+        }
+        refreshReviews();
+    }
+
+    /**
+     * Reloads the reviews in the background, publishing them chunk by chunk, or only counting
+     * their ratings if the list was never requested.
+     *
+     * @see RestaurantRepository#refreshReviews(long)
+     */
+    void refreshReviews() {
+        loadStateLiveData.postValue(LoadState.loading());
+        synchronized (reviewsLock) {
+            loadRequested = true;
+            if (reloading) {
+                // The running reload may have read the outbox already: reload again once it completes.
+                reloadRequested = true;
+                return;
+            }
+            reloading = true;
+        }
+        ioExecutor.execute(this::reload);
+    }
+
+    /**
+     * Publishes the snapshot on the first load, then the pending and uploaded reviews, and writes
+     * them to the snapshot; or, while the list was not requested, only publishes the rating totals
+     * of the snapshot, then of the pending and uploaded reviews, leaving the snapshot as it is.
+     * Must be called on the I/O executor, by one reload at a time.
+     */
+    private void reload() {
+        try {
+            boolean list;
+            synchronized (reviewsLock) {
+                list = listRequested;
+            }
+            restoreSnapshot(list);
+            ReviewOutbox.PendingReviews pending;
+            synchronized (outboxLock) {
+                pending = reviewOutbox.readPending(restaurantId);
+                synchronized (reviewsLock) {
+                    // The batches written so far are listed from the outbox, the others from memory.
+                    removeSavedBatches();
+                    for (List<Review> batch : unlistedBatches) {
+                        pending.expectUploads(batch);
+                    }
+                }
+            }
+            if (list) {
+                saveSnapshot(streamReviews(pending));
+            } else {
+                countReviews(pending);
+            }
+            onWeightChanged.run();
+            loadStateLiveData.postValue(LoadState.success());
+        } catch (RuntimeException e) {
+            loadStateLiveData.postValue(LoadState.error(e));
+        }
+        boolean again;
+        synchronized (reviewsLock) {
+            again = reloadRequested;
+            reloadRequested = false;
+            reloading = again;
+        }
+        if (again) {
+            ioExecutor.execute(this::reload);
+        }
+    }
+
+    /**
+     * Publishes the pending and uploaded reviews chunk by chunk, as they are read.
+     * Must be called on the I/O executor.
+     *
+     * @param pending The pending reviews, read from the outbox.
+     * @return The reloaded reviews, to write to the snapshot.
+     */
+    private List<Review> streamReviews(ReviewOutbox.PendingReviews pending) {
+        boolean[] reset = {true};
+        reviewOutbox.streamReviews(pending, REFRESH_FIRST_CHUNK_SIZE, chunk -> {
+            synchronized (reviewsLock) {
+                if (reset[0]) {
+                    reset[0] = false;
+                    publishReloaded(chunk, null);
+                } else {
+                    int position = reviews.size();
+                    loadedReviews = loadedReviews.withLast(chunk);
+                    publishReviews(ReviewChange.inserted(position, chunk.size()));
+                }
+            }
+        });
+        synchronized (reviewsLock) {
+            if (reset[0]) {
+                publishReloaded(Collections.<Review>emptyList(), null);
+            }
+            return loadedReviews;
+        }
+    }
+
+    /**
+     * Counts the ratings of the pending and uploaded reviews as they are read, without keeping
+     * them, and publishes their totals. Must be called on the I/O executor.
+     *
+     * @param pending The pending reviews, read from the outbox.
+     */
+    private void countReviews(ReviewOutbox.PendingReviews pending) {
+        RatingAggregate loadedRatings = new RatingAggregate();
+        reviewOutbox.streamReviews(pending, REFRESH_FIRST_CHUNK_SIZE, loadedRatings::addOldest);
+        synchronized (reviewsLock) {
+            // A list requested meanwhile is reloaded next, and published by that reload.
+            if (!listRequested) {
+                publishReloaded(Collections.<Review>emptyList(), loadedRatings);
+            }
+        }
+    }
+
+    /**
+     * Publishes a batch of reviews optimistically, then writes it to the outbox in the background.
+     *
+     * @param batch The submitted reviews, the last one being the newest.
+     */
+    void submit(List<Review> batch) {
+        synchronized (reviewsLock) {
+            unlistedBatches.add(batch);
+            submittedReviews.prependAll(batch);
+            publishReviews(ReviewChange.inserted(0, batch.size()));
+        }
+        reviewPager.onReviewsAdded(batch);
+        ioExecutor.execute(() -> {
+            RuntimeException failure = null;
+            synchronized (outboxLock) {
+                try {
+                    reviewOutbox.enqueue(restaurantId, batch);
+                    reviewPager.onReviewsSaved(batch);
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+                synchronized (reviewsLock) {
+                    if (failure == null) {
+                        // Listed from memory until a reload reads it from the outbox.
+                        savedBatches.add(batch);
+                    } else {
+                        removeUnlisted(batch);
+                    }
+                }
+            }
+            if (failure == null) {
+                loadStateLiveData.postValue(LoadState.success());
+            } else {
+                // Drops the optimistic reviews that could not be saved.
+                reviewPager.onReviewsRemoved(batch);
+                refreshReviews();
+                loadStateLiveData.postValue(LoadState.error(failure));
+            }
+        });
+    }
+
+    /**
+     * Stops listing pending reviews the API rejected, which the outbox dropped, and reports the
+     * rejection through the load state.
+     *
+     * @param rejected The rejected reviews, as listed while pending.
+     * @param error    The rejection of the API.
+     */
+    void onReviewsRejected(List<Review> rejected, RuntimeException error) {
+        reviewPager.onReviewsRejected(rejected);
+        // The reload no longer reads them from the outbox.
+        refreshReviews();
+        loadStateLiveData.postValue(LoadState.error(error));
+    }
+
+    /**
+     * Publishes the data of the snapshot if nothing was published yet, that is on the first load,
+     * or, when the list is reloaded, if no list was published yet.
+     * Must be called on the I/O executor.
+     *
+     * @param list true to publish the reviews of the snapshot, false to only publish their rating totals.
+     */
+    private void restoreSnapshot(boolean list) {
+        synchronized (reviewsLock) {
+            if (!needsSnapshot(list)) {
+                return;
+            }
+        }
+        RestaurantSnapshotFile.Snapshot snapshot = snapshotFile.read();
+        if (snapshot == null) {
+            return;
+        }
+        RatingAggregate snapshotRatings;
+        try {
+            snapshotRatings = snapshot.countRatings();
+        } catch (RuntimeException e) {
+            // The reviews are loaded from the data source instead, and the next load writes a new snapshot.
+            Log.w("RestaurantRepository", "Deleting the corrupt snapshot of restaurant " + restaurantId, e);
+            snapshotFile.delete();
+            return;
+        }
+        if (snapshot.getRestaurant() != null) {
+            if (lastRestaurant == null) {
+                lastRestaurant = snapshot.getRestaurant();
+            }
+            restaurantCache.seed(snapshot.getRestaurant());
+        }
+        synchronized (reviewsLock) {
+            if (listRequested == list && needsSnapshot(list)) {
+                publishReloaded(list ? snapshot.getReviews() : Collections.<Review>emptyList(), snapshotRatings);
+            }
+        }
+    }
+
+    /**
+     * @return true if the snapshot holds data not published yet: anything on the first load, the
+     * list once it is requested. Must be called while holding {@link #reviewsLock}.
+     */
+    private boolean needsSnapshot(boolean list) {
+        return list ? !listPublished : reviewsVersion == ReviewChangeSet.NO_VERSION;
+    }
+
+    /**
+     * Replaces the snapshot with freshly loaded reviews. A failure only costs the next cold start.
+     * Must be called on the I/O executor.
+     */
+    private void saveSnapshot(List<Review> loaded) {
+        try {
+            snapshotFile.write(lastRestaurant, loaded);
+        } catch (IOException e) {
+            Log.w("RestaurantRepository", "Cannot write the snapshot of restaurant " + restaurantId, e);
+        }
+    }
+
+    /**
+     * Publishes the first reloaded reviews, preceded by the submitted reviews the reload did not
+     * read from the outbox.
+     * Must be called while holding {@link #reviewsLock}.
+     *
+     * @param loaded        The first reloaded reviews, which must not be modified afterwards.
+     * @param loadedRatings The rating totals of the reloaded reviews if they are known, so that
+     *                      the reviews need not be read to count them; null to count them.
+     */
+    private void publishReloaded(List<Review> loaded, @Nullable RatingAggregate loadedRatings) {
+        submittedReviews = new ReviewStore();
+        for (List<Review> batch : unlistedBatches) {
+            submittedReviews.prependAll(batch);
+        }
+        loadedReviews = SegmentedReviewList.empty().withLast(loaded);
+        publishReviews(null, loadedRatings);
+    }
+
+    /**
+     * Removes a batch from {@link #unlistedBatches}, by identity since two batches may be equal.
+     * Must be called while holding {@link #reviewsLock}.
+     */
+    private void removeUnlisted(List<Review> batch) {
+        for (Iterator<List<Review>> it = unlistedBatches.iterator(); it.hasNext(); ) {
+            if (it.next() == batch) {
+                it.remove();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes from {@link #unlistedBatches} the batches written to the outbox, as it is read.
+     * Must be called while holding {@link #outboxLock} and {@link #reviewsLock}.
+     */
+    private void removeSavedBatches() {
+        if (savedBatches.isEmpty()) {
+            return;
+        }
+        for (Iterator<List<Review>> it = unlistedBatches.iterator(); it.hasNext(); ) {
+            if (savedBatches.contains(it.next())) {
+                it.remove();
+            }
+        }
+        savedBatches.clear();
+    }
+
+    /**
+     * Indexes the reviews inserted by a change, or the whole list if it was reloaded.
+     * Must be called while holding {@link #reviewsLock}, after {@link #reviews} is updated.
+     */
+    private void updateIndex(ReviewIndex index, ReviewChange change) {
+        if (change != null && change.getType() == ReviewChange.Type.INSERTED) {
+            List<Review> inserted = reviews.subList(change.getPosition(), change.getPosition() + change.getCount());
+            if (change.getPosition() == 0) {
+                index.addNewest(inserted);
+                return;
+            }
+            if (change.getPosition() + change.getCount() == reviews.size()) {
+                index.addOldest(inserted);
+                return;
+            }
+        }
+        index.clear();
+        index.addOldest(reviews);
+    }
+
+    /**
+     * Publishes the submitted reviews followed by the loaded ones, and the change set leading to
+     * them, once the list was requested, and their rating statistics.
+     * Must be called while holding {@link #reviewsLock}.
+     *
+     * @param change The change applied to the previously published list, or null if the list was reloaded.
+     */
+    private void publishReviews(ReviewChange change) {
+        publishReviews(change, null);
+    }
+
+    /**
+     * Same as {@link #publishReviews(ReviewChange)}, seeding the rating totals of a reload with
+     * those of the loaded reviews when they are known.
+     */
+    private void publishReviews(ReviewChange change, @Nullable RatingAggregate loadedRatings) {
+        ReviewSnapshot submitted = submittedReviews.snapshot();
+        List<Review> reviews = loadedReviews.withFirst(submitted);
+        // The first list published since the list was requested replaces the unpublished ones.
+        boolean reset = change == null || reviewsVersion == ReviewChangeSet.NO_VERSION || !listPublished;
+        ReviewChangeSet changeSet = reset
+                ? ReviewChangeSet.reset(reviews, reviewsVersion + 1)
+                : ReviewChangeSet.of(reviews, Collections.singletonList(change), reviewsVersion);
+        reviewsVersion = changeSet.getVersion();
+        this.reviews = reviews;
+        reviewCount = reviews.size();
+        if (change == null && loadedRatings != null) {
+            ratings.clear();
+            ratings.merge(loadedRatings);
+            ratings.addNewest(submitted);
+        } else {
+            updateIndex(ratings, change);
+        }
+        if (listRequested) {
+            updateIndex(searchIndex, reset ? null : change);
+            updateIndex(sortIndex, reset ? null : change);
+            listPublished = true;
+            reviewsLiveData.postValue(reviews);
+            reviewChangesLiveData.postValue(changeSet);
+        }
+        ratingStatsLiveData.postValue(ratings.snapshot(System.currentTimeMillis()));
+    }
+}
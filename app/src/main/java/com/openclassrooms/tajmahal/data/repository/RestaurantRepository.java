@@ -1,15 +1,29 @@
 package com.openclassrooms.tajmahal.data.repository;
 
+import androidx.annotation.WorkerThread;
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.MutableLiveData;
 
+import com.openclassrooms.tajmahal.data.local.RestaurantSnapshotFile;
+import com.openclassrooms.tajmahal.data.local.RestaurantSnapshots;
 import com.openclassrooms.tajmahal.data.service.RestaurantApi;
+import com.openclassrooms.tajmahal.data.store.RatingStats;
+import com.openclassrooms.tajmahal.data.store.ReviewFactory;
+import com.openclassrooms.tajmahal.data.store.ReviewOrder;
+import com.openclassrooms.tajmahal.data.store.ReviewSortIndex;
+import com.openclassrooms.tajmahal.data.sync.ReviewOutbox;
+import com.openclassrooms.tajmahal.di.AppModule;
 import com.openclassrooms.tajmahal.domain.model.Restaurant;
 import com.openclassrooms.tajmahal.domain.model.Review;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 
@@ -20,6 +34,28 @@ import javax.inject.Singleton;
  * Typically in an Android app built with architecture components, the repository will handle
  * the logic for deciding whether to fetch data from a network source or use data from a local cache.
  *
+ * Every call to the {@link RestaurantApi} runs on the injected I/O executor and its result is
+ * published with {@code postValue}, so the main thread never touches the data source. The
+ * progress of the review operations is exposed per restaurant through {@link #getLoadState(long)}.
+ *
+ * Besides the list itself, every update of the reviews is published as a {@link ReviewChangeSet}
+ * describing which ranges changed, so that observers only process the delta.
+ *
+ * On the first load of a restaurant, the restaurant and its reviews are restored from the
+ * {@link RestaurantSnapshotFile} written by the previous successful load, so that the screens
+ * show the last known data within milliseconds; the fresh data then replaces it.
+ *
+ * Reviews submitted by the user are written to the {@link ReviewOutbox}, which uploads them in
+ * the background, and are published optimistically as soon as they are submitted: the user never
+ * waits on the API to see their review. Reviews the API rejects are removed from the published
+ * lists, and the rejection is reported through {@link #getLoadState(long)}.
+ *
+ * The data of each restaurant is identified by the restaurant ID and kept in a
+ * {@link WeightedLruCache} bounded by the total number of reviews held in memory, so that
+ * switching back to a recently viewed restaurant is served from memory instead of reloaded.
+ * The restaurants displayed by a screen, as declared by {@link #retain(long)}, are never evicted.
+ * An evicted restaurant is also {@link RestaurantApi#evict(long) evicted} from the API, which may
+ * keep its own copy of the last responses.
  *
  * @see Restaurant
  * @see RestaurantApi
@@ -27,53 +63,290 @@ import javax.inject.Singleton;
 @Singleton
 public class RestaurantRepository {
 
+    /** Maximum number of reviews kept in memory across the cached restaurants. */
+    public static final int MAX_CACHED_REVIEWS = 10_000;
+
     // The API interface instance that will be used for network requests related to restaurant data.
     private final RestaurantApi restaurantApi;
-    // LiveData holding the list of reviews.
-    private final MutableLiveData<List<Review>> reviewsLiveData;
+    // Durable queue of the submitted reviews waiting to be uploaded.
+    private final ReviewOutbox reviewOutbox;
+    // Last known data of each restaurant, restored on its first load.
+    private final RestaurantSnapshots snapshots;
+    // Executor running every call to the API.
+    private final Executor ioExecutor;
+    // Data of the recently viewed restaurants, by restaurant ID, weighed by their number of reviews.
+    private final WeightedLruCache<Long, RestaurantEntry> entries;
 
     /**
-     * Constructs a new instance of {@link RestaurantRepository} with the given {@link RestaurantApi}.
+     * Constructs a new instance of {@link RestaurantRepository} with the given {@link RestaurantApi},
+     * caching at most {@link #MAX_CACHED_REVIEWS} reviews.
      *
      * @param restaurantApi The network API interface for fetching restaurant data.
+     * @param reviewOutbox  The outbox through which submitted reviews are uploaded.
+     * @param snapshots     The snapshots of the last loaded data, restored on the first load of a restaurant.
+     * @param ioExecutor    The executor on which the API is called.
      */
     @Inject
-    public RestaurantRepository(RestaurantApi restaurantApi) {
-        this.restaurantApi = restaurantApi;
-        this.reviewsLiveData = new MutableLiveData<>(restaurantApi.getReviews());
+    public RestaurantRepository(RestaurantApi restaurantApi, ReviewOutbox reviewOutbox, RestaurantSnapshots snapshots,
+                                @Named(AppModule.IO_EXECUTOR) ExecutorService ioExecutor) {
+        this(restaurantApi, reviewOutbox, snapshots, ioExecutor, MAX_CACHED_REVIEWS);
     }
 
     /**
-     * Fetches the restaurant details.
+     * Constructs a new instance of {@link RestaurantRepository} with a custom cache size.
      *
-     * This method will make a network call using the provided {@link RestaurantApi} instance
-     * to fetch restaurant data. Note that error handling and any transformations on the data
-     * would need to be managed.
+     * @param maxCachedReviews The number of reviews above which the least recently used restaurants are evicted.
+     */
+    public RestaurantRepository(RestaurantApi restaurantApi, ReviewOutbox reviewOutbox, RestaurantSnapshots snapshots,
+                                Executor ioExecutor, int maxCachedReviews) {
+        this.restaurantApi = restaurantApi;
+        this.reviewOutbox = reviewOutbox;
+        this.snapshots = snapshots;
+        this.ioExecutor = ioExecutor;
+        this.entries = new WeightedLruCache<>(maxCachedReviews, RestaurantEntry::weight, RestaurantEntry::isEvictable,
+                (restaurantId, entry) -> restaurantApi.evict(restaurantId));
+        reviewOutbox.setRejectionListener(this::onReviewsRejected);
+    }
+
+    /**
+     * Fetches the details of a restaurant.
      *
+     * The details are cached: every call returns the same LiveData, which immediately holds the
+     * last fetched details. When they are older than five minutes, they are revalidated on the
+     * I/O executor using the provided {@link RestaurantApi} instance; concurrent calls share a
+     * single fetch. On failure, the cached details are kept and the failure is logged.
      *
-     * @return LiveData holding the restaurant details.
+     * @param restaurantId The identifier of the restaurant.
+     * @return LiveData holding the restaurant details, empty until the first call completes.
      */
-    public LiveData<Restaurant> getRestaurant() {
-        return new MutableLiveData<>(restaurantApi.getRestaurant());
+    public LiveData<Restaurant> getRestaurant(long restaurantId) {
+        return entry(restaurantId).getRestaurant();
     }
 
     /**
-     * Fetches the reviews of the restaurant.
+     * Fetches the reviews of a restaurant.
      *
-     * This method will make a network call using the provided {@link RestaurantApi} instance to fetch reviews.
-     * Note that error handling and any transformations on the data would need to be managed.
+     * This method will make a network call using the provided {@link RestaurantApi} instance to fetch reviews,
+     * unless the reviews of the restaurant are still cached. The whole list is then kept in memory:
+     * screens showing the reviews should read them through {@link #getReviewPager(long)} instead.
      *
+     * @param restaurantId The identifier of the restaurant.
      * @return LiveData holding the list of reviews.
      */
-    public LiveData<List<Review>> getReviews() {
-        return reviewsLiveData;
+    public LiveData<List<Review>> getReviews(long restaurantId) {
+        return entry(restaurantId).getReviews();
+    }
+
+    /**
+     * Fetches the updates of the reviews of a restaurant, each with the changes it applies to
+     * the previous list: inserted, removed or updated ranges.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @return LiveData holding the last {@link ReviewChangeSet}.
+     */
+    public LiveData<ReviewChangeSet> getReviewChanges(long restaurantId) {
+        return entry(restaurantId).getReviewChanges();
+    }
+
+    /**
+     * Returns the rating statistics of a restaurant: its number of reviews, their average rating
+     * and the number of reviews per star count.
+     *
+     * The statistics are running totals updated with each published review, so each update
+     * costs constant time whatever the number of reviews; only a reload counts every review again.
+     * Unless the list of reviews is requested too, the reviews are counted as they are read,
+     * without being kept, or from the snapshot of the previous load.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @return LiveData holding the statistics of the published reviews, updated with them.
+     */
+    public LiveData<RatingStats> getRatingStats(long restaurantId) {
+        return entry(restaurantId).getRatingStats();
+    }
+
+    /**
+     * Returns the state of the last review operation on a restaurant, its reloads and submissions,
+     * so that the UI can show progress or errors.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @return LiveData holding the current {@link LoadState}, only updated by that restaurant, and
+     * empty until its first operation.
+     */
+    public LiveData<LoadState> getLoadState(long restaurantId) {
+        return entry(restaurantId).getLoadState();
+    }
+
+    /**
+     * Returns the page loader of the reviews of a restaurant.
+     *
+     * Unlike {@link #getReviews(long)}, the pager only fetches the pages the UI scrolls to,
+     * plus a small prefetch window.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @return The {@link ReviewPager} of the restaurant reviews.
+     */
+    public ReviewPager getReviewPager(long restaurantId) {
+        return entry(restaurantId).getReviewPager();
+    }
+
+    /**
+     * Searches the comments of the reviews of a restaurant, for instance for a dish.
+     *
+     * The search runs on an inverted index of the words of the comments, insensitive to case and
+     * accents, and matches the words starting with each word of the query. The first search loads
+     * the list of reviews in the background, like {@link #getReviewChanges(long)}: the index is
+     * filled chunk by chunk as the list is published, then updated with each added review instead
+     * of being rebuilt, so a query takes well under a millisecond even with tens of thousands of
+     * reviews. Until the list is loaded, the search only covers the reviews published so far:
+     * search again on each change published by {@link #getReviewChanges(long)}.
+     *
+     * The index is shared with the thread publishing the reviews, so the search must run on a
+     * worker thread.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @param query        The words to look for, such as "curry" or "délicieuse".
+     * @return The published reviews matching every word of the query, newest first.
+     */
+    @WorkerThread
+    public List<Review> searchReviews(long restaurantId, String query) {
+        return entry(restaurantId).searchReviews(query);
+    }
+
+    /**
+     * Reads a page of the reviews of a restaurant sorted and filtered by star count.
+     *
+     * The orders are kept by an index updated with each published review, so switching the order
+     * or the filter only copies the requested page, without sorting the reviews. Like
+     * {@link #searchReviews(long, String)}, the first call loads the list of reviews in the
+     * background and the index is filled as it is published: read the page again on each change
+     * published by {@link #getReviewChanges(long)}. The page must be read on a worker thread.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @param order        The order of the reviews.
+     * @param stars        The star count of the reviews to keep, or {@link ReviewSortIndex#ALL_STARS}.
+     * @param from         The position of the first review of the page.
+     * @param count        The maximum number of reviews of the page.
+     * @return A copy of the page, shorter than {@code count} once the end of the reviews is reached.
+     */
+    @WorkerThread
+    public List<Review> getReviewPage(long restaurantId, ReviewOrder order, int stars, int from, int count) {
+        return entry(restaurantId).getReviewPage(order, stars, from, count);
+    }
+
+    /**
+     * Declares that a screen displays a restaurant: its data stays cached until the screen calls
+     * {@link #release(long)}, so that the screen and the repository keep sharing the same data.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     */
+    public void retain(long restaurantId) {
+        synchronized (entries) {
+            entries.get(restaurantId, this::newEntry).retain();
+        }
+    }
+
+    /**
+     * Declares that a screen no longer displays a restaurant. Its data stays cached, and becomes
+     * evictable once no screen retains it.
+     *
+     * @param restaurantId The identifier of the restaurant, previously passed to {@link #retain(long)}.
+     */
+    public void release(long restaurantId) {
+        synchronized (entries) {
+            entries.get(restaurantId, this::newEntry).release();
+            entries.trim();
+        }
+    }
+
+    /**
+     * Reloads the reviews of a restaurant in the background: the reviews of the API, preceded by
+     * the submitted reviews that are not uploaded yet.
+     *
+     * The reviews are published while they are read: the first chunk replaces the list, and each
+     * following chunk is appended to it, so that the newest reviews show before the whole list is
+     * downloaded. Each chunk is shared by the published lists rather than copied into them. As
+     * long as only the {@link #getRatingStats(long) statistics} were requested, the reviews are
+     * only counted as they are read.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     */
+    public void refreshReviews(long restaurantId) {
+        entry(restaurantId).refreshReviews();
+    }
+
+    /**
+     * Adds a new review to the list of reviews of a restaurant.
+     *
+     * The updated list is published immediately. The review is written to the outbox in the
+     * background and uploaded to the API later; a failure to write it is reported through
+     * {@link #getLoadState(long)}, and the reviews are then reloaded without it.
+     *
+     * A review without identifier is published with a {@link ReviewFactory#newLocalId() local one},
+     * which it keeps until it is uploaded, so that two identical reviews are told apart.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @param review       The review to add.
+     */
+    public void addReview(long restaurantId, Review review) {
+        submit(restaurantId, Collections.singletonList(review));
+    }
+
+    /**
+     * Adds several reviews at once to a restaurant, the last one becoming the newest.
+     *
+     * The updated list is published once, so that observers process N new reviews in one pass
+     * instead of N, and the whole batch is written to the outbox in a single background call.
+     * Reviews without identifier are given local ones, as by {@link #addReview(long, Review)}.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @param reviews      The reviews to add.
+     */
+    public void addReviews(long restaurantId, Collection<Review> reviews) {
+        if (reviews.isEmpty()) {
+            return;
+        }
+        submit(restaurantId, reviews);
+    }
+
+    private void submit(long restaurantId, Collection<Review> reviews) {
+        // Copied so that the caller may reuse its collection while the batch is pending.
+        List<Review> batch = new ArrayList<>(reviews.size());
+        for (Review review : reviews) {
+            batch.add(review.getId() != 0 ? review : ReviewFactory.newReview(ReviewFactory.newLocalId(),
+                    review.getUsername(), review.getPicture(), review.getComment(), review.getRate(),
+                    review.getCreatedAt()));
+        }
+        entry(restaurantId).submit(batch);
+        entries.trim();
+    }
+
+    /**
+     * Removes the reviews the API rejected from a cached restaurant, and reports the rejection.
+     * A restaurant that is not cached no longer reads them from the outbox when it is loaded.
+     */
+    private void onReviewsRejected(long restaurantId, List<Review> reviews, RuntimeException error) {
+        RestaurantEntry entry;
+        synchronized (entries) {
+            if (!entries.contains(restaurantId)) {
+                return;
+            }
+            entry = entry(restaurantId);
+        }
+        entry.onReviewsRejected(reviews, error);
+    }
+
+    /**
+     * Returns the cached data of a restaurant, creating it on a cache miss.
+     */
+    private RestaurantEntry entry(long restaurantId) {
+        return entries.get(restaurantId, this::newEntry);
     }
 
     /**
-     * Adds a new review to the list of reviews.
+     * Creates the data of a restaurant, which starts loading its reviews right away.
      */
-    public void addReview(Review review) {
-        restaurantApi.addReview(review);
-        reviewsLiveData.setValue(restaurantApi.getReviews());
+    private RestaurantEntry newEntry(long restaurantId) {
+        return new RestaurantEntry(restaurantId, restaurantApi, reviewOutbox, snapshots.forRestaurant(restaurantId),
+                ioExecutor, entries::trim);
     }
 }
@@ -0,0 +1,113 @@
+package com.openclassrooms.tajmahal.data.repository;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Caches a single value fetched from a data source, with a stale-while-revalidate policy.
+ * <p>
+ * {@link #get()} always returns the same {@link LiveData}, so observers immediately receive the
+ * cached value, even if it is older than the time-to-live. A stale or missing value triggers a
+ * fetch on the background executor, whose result is posted to the same LiveData. Concurrent
+ * requests are collapsed into a single in-flight fetch.
+ * </p>
+ *
+ * @param <T> The type of the cached value.
+ */
+public class RevalidatingCache<T> {
+
+    private final Callable<T> fetcher;
+    private final Executor executor;
+    private final long ttlNanos;
+    private final Consumer<Throwable> onError;
+
+    private final MutableLiveData<T> liveData = new MutableLiveData<>();
+    // Set while a fetch is running, so that only one fetch is ever in flight.
+    private final AtomicBoolean inFlight = new AtomicBoolean();
+    // System.nanoTime() of the last successful fetch; only meaningful once hasValue is true.
+    private volatile long fetchedAtNanos;
+    private volatile boolean hasValue;
+
+    /**
+     * Constructs a new {@link RevalidatingCache}.
+     *
+     * @param fetcher   Fetches a fresh value; called on the executor.
+     * @param executor  The executor running the fetches.
+     * @param ttlMillis The duration during which a fetched value is considered fresh.
+     * @param onError   Receives the errors thrown by the fetcher; the cached value is then kept.
+     */
+    public RevalidatingCache(Callable<T> fetcher, Executor executor, long ttlMillis, Consumer<Throwable> onError) {
+        this.fetcher = fetcher;
+        this.executor = executor;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.onError = onError;
+    }
+
+    /**
+     * Returns the cached value, and starts revalidating it in the background if it is stale.
+     *
+     * @return LiveData holding the cached value; it is empty until the first fetch completes.
+     */
+    public LiveData<T> get() {
+        if (isStale()) {
+            refresh();
+        }
+        return liveData;
+    }
+
+    /**
+     * Fetches a fresh value in the background, unless a fetch is already in flight.
+     */
+    public void refresh() {
+        if (!inFlight.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                T value = fetcher.call();
+                synchronized (this) {
+                    fetchedAtNanos = System.nanoTime();
+                    hasValue = true;
+                    liveData.postValue(value);
+                }
+            } catch (Exception e) {
+                onError.accept(e);
+            } finally {
+                inFlight.set(false);
+            }
+        });
+    }
+
+    /**
+     * Publishes a value known to be possibly outdated, such as one restored from disk, unless a
+     * fetched value is already cached. The seeded value is stale: the next {@link #get()} still
+     * revalidates it.
+     *
+     * @param value The value to publish until a fresh one is fetched.
+     */
+    public synchronized void seed(T value) {
+        if (!hasValue) {
+            liveData.postValue(value);
+        }
+    }
+
+    /**
+     * Marks the cached value as stale, so that the next {@link #get()} revalidates it.
+     */
+    public void invalidate() {
+        hasValue = false;
+    }
+
+    /**
+     * @return true if there is no cached value yet or if it is older than the time-to-live.
+     */
+    public boolean isStale() {
+        return !hasValue || System.nanoTime() - fetchedAtNanos > ttlNanos;
+    }
+}
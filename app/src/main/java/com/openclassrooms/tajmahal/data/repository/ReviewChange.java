@@ -0,0 +1,65 @@
+package com.openclassrooms.tajmahal.data.repository;
+
+/**
+ * Describes a contiguous range of reviews affected by an update of a review list.
+ * Positions are those of the list after the change for insertions and updates,
+ * and before the change for removals, like the {@code notifyItemRange*} methods of RecyclerView.
+ */
+public final class ReviewChange {
+
+    /** The kinds of change applicable to a range of reviews. */
+    public enum Type {
+        INSERTED,
+        REMOVED,
+        CHANGED
+    }
+
+    private final Type type;
+    private final int position;
+    private final int count;
+
+    private ReviewChange(Type type, int position, int count) {
+        this.type = type;
+        this.position = position;
+        this.count = count;
+    }
+
+    /**
+     * @param position The position of the first inserted review.
+     * @param count    The number of inserted reviews.
+     * @return A change describing inserted reviews.
+     */
+    public static ReviewChange inserted(int position, int count) {
+        return new ReviewChange(Type.INSERTED, position, count);
+    }
+
+    /**
+     * @param position The position of the first removed review.
+     * @param count    The number of removed reviews.
+     * @return A change describing removed reviews.
+     */
+    public static ReviewChange removed(int position, int count) {
+        return new ReviewChange(Type.REMOVED, position, count);
+    }
+
+    /**
+     * @param position The position of the first updated review.
+     * @param count    The number of updated reviews.
+     * @return A change describing updated reviews.
+     */
+    public static ReviewChange changed(int position, int count) {
+        return new ReviewChange(Type.CHANGED, position, count);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
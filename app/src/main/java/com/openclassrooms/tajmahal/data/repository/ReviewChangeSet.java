@@ -0,0 +1,95 @@
+package com.openclassrooms.tajmahal.data.repository;
+
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An update of a review list: the new snapshot of the list, together with the typed changes
+ * that turn the previous snapshot into this one.
+ * <p>
+ * Each update carries the versions it goes from and to. LiveData may drop intermediate values,
+ * and an observer may start observing late, so an observer must only apply the changes if
+ * {@link #followsFrom(long)} the version it last applied; otherwise it has to reload the whole
+ * snapshot, exactly as for a {@link #isReset() reset}.
+ * </p>
+ */
+public final class ReviewChangeSet {
+
+    /** Version an observer holds before it has applied any change set. */
+    public static final long NO_VERSION = -1L;
+
+    private final List<Review> reviews;
+    private final List<ReviewChange> changes;
+    private final long fromVersion;
+    private final long toVersion;
+
+    private ReviewChangeSet(List<Review> reviews, List<ReviewChange> changes, long fromVersion, long toVersion) {
+        this.reviews = reviews;
+        this.changes = changes;
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+    }
+
+    /**
+     * Creates a change set replacing the whole list, for instance after a reload.
+     *
+     * @param reviews The new snapshot of the list.
+     * @param version The version of the new snapshot.
+     * @return A reset change set.
+     */
+    public static ReviewChangeSet reset(List<Review> reviews, long version) {
+        return new ReviewChangeSet(reviews, Collections.<ReviewChange>emptyList(), NO_VERSION, version);
+    }
+
+    /**
+     * Creates a change set describing how the list changed since the previous version.
+     *
+     * @param reviews     The new snapshot of the list.
+     * @param changes     The changes applied to the previous snapshot, in order.
+     * @param fromVersion The version of the previous snapshot.
+     * @return A change set going from {@code fromVersion} to {@code fromVersion + 1}.
+     */
+    public static ReviewChangeSet of(List<Review> reviews, List<ReviewChange> changes, long fromVersion) {
+        return new ReviewChangeSet(reviews, Collections.unmodifiableList(changes), fromVersion, fromVersion + 1);
+    }
+
+    /**
+     * @return The snapshot of the list after the changes, which must not be modified.
+     */
+    public List<Review> getReviews() {
+        return reviews;
+    }
+
+    /**
+     * @return The changes applied to the previous snapshot, in order.
+     */
+    public List<ReviewChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return The version of the snapshot held by this change set.
+     */
+    public long getVersion() {
+        return toVersion;
+    }
+
+    /**
+     * @return true if this change set replaces the whole list instead of describing changes.
+     */
+    public boolean isReset() {
+        return fromVersion == NO_VERSION;
+    }
+
+    /**
+     * Indicates whether the changes of this set can be applied on top of the given version.
+     *
+     * @param version The version the observer last applied.
+     * @return true if the changes apply to that version, false if the observer must reload the whole list.
+     */
+    public boolean followsFrom(long version) {
+        return !isReset() && version == fromVersion;
+    }
+}
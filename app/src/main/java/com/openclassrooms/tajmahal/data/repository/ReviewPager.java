@@ -0,0 +1,587 @@
+package com.openclassrooms.tajmahal.data.repository;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.openclassrooms.tajmahal.data.service.RestaurantApi;
+import com.openclassrooms.tajmahal.data.store.ReviewStore;
+import com.openclassrooms.tajmahal.data.store.SegmentedReviewList;
+import com.openclassrooms.tajmahal.data.sync.ReviewOutbox;
+import com.openclassrooms.tajmahal.domain.model.Review;
+import com.openclassrooms.tajmahal.domain.model.ReviewPage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads the reviews of a restaurant page by page, driven by the scroll position of the UI.
+ * <p>
+ * Only a window of pages is kept in memory: the pages covering the visible reviews, plus
+ * {@code prefetchDistance} reviews on each side. Pages the scroll leaves behind are dropped,
+ * keeping only the cursor they were fetched with, and are fetched again with that cursor when
+ * the scroll comes back to them. The first page is the exception: its cursor stands for the
+ * newest reviews rather than for a fixed range, so it stays in memory once fetched, and is only
+ * removed from the published window.
+ * </p>
+ * <p>
+ * Each time the window changes or a review is added, the reviews of the window are published
+ * through {@link #getReviews()}, with the range they inserted or removed. The published list is a
+ * {@link SegmentedReviewList} sharing the pages instead of copying them; the reviews added since
+ * the pager started are kept in a {@link ReviewStore}, and head the first page.
+ * Positions passed to {@link #loadAround(long, int, int)} are positions in that window.
+ * </p>
+ * <p>
+ * The first page also lists the reviews waiting in the {@link ReviewOutbox}, read under the outbox
+ * lock of the restaurant, which is released before the API is called: a batch written to the
+ * outbox before is listed from the outbox, and a batch written after stays among the added
+ * reviews, so that each review is listed once. A batch that could not be written is removed with
+ * {@link #onReviewsRemoved(List)}, and pending reviews the API rejected with
+ * {@link #onReviewsRejected(List)}.
+ * </p>
+ * <p>
+ * Pages are fetched on the I/O executor, one at a time; a scroll event received while a page is
+ * loading is ignored, since the next scroll event will request the page again. Until the first
+ * page is fetched, there is nothing to scroll: each call to {@link #getReviews()} or
+ * {@link #loadAround(long, int, int)} requests it again if its last fetch failed.
+ * </p>
+ */
+public class ReviewPager {
+
+    /** Number of reviews requested per page. */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    /** Number of reviews beyond the visible ones that are kept loaded on each side. */
+    public static final int DEFAULT_PREFETCH_DISTANCE = 10;
+
+    private final RestaurantApi restaurantApi;
+    private final ReviewOutbox reviewOutbox;
+    // Serializes the reads of the pending reviews with the outbox writes; held on the I/O executor only.
+    private final Object outboxLock;
+    private final long restaurantId;
+    private final Executor ioExecutor;
+    private final int pageSize;
+    private final int prefetchDistance;
+
+    // Pages reached so far, newest first. Dropped pages keep their cursor to be fetched again.
+    private final List<Page> pages = new ArrayList<>();
+    // Batches added since the pager started and not listed by the first page, oldest first.
+    private final List<List<Review>> addedBatches = new ArrayList<>();
+    // Reviews of addedBatches, newest first, heading the first page.
+    private ReviewStore addedReviews = new ReviewStore();
+    // Added batches written to the outbox before the first page was fetched, which lists them.
+    private final Set<List<Review>> savedBatches = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Whether the first page was fetched; reviews added before are merged into it when it arrives.
+    private boolean firstPageLoaded;
+    // Indices of the first and last pages of the published window, which is always contiguous;
+    // the window is empty while firstInWindow > lastInWindow.
+    private int firstInWindow;
+    private int lastInWindow = -1;
+    // Number of reviews in the window.
+    private int windowSize;
+    // LiveData holding an immutable snapshot of the window and the change leading to it.
+    private final MutableLiveData<ReviewChangeSet> reviewsLiveData = new MutableLiveData<>();
+    // Version of the last published change set.
+    private long version = ReviewChangeSet.NO_VERSION;
+
+    private boolean loading;
+
+    /**
+     * Constructs a new {@link ReviewPager}.
+     *
+     * @param restaurantApi    The API serving the review pages.
+     * @param reviewOutbox     The outbox whose pending reviews head the first page.
+     * @param outboxLock       The lock held while writing the reviews of the restaurant to the outbox.
+     * @param restaurantId     The identifier of the restaurant whose reviews are loaded.
+     * @param ioExecutor       The executor on which pages are fetched.
+     * @param pageSize         The number of reviews requested per page.
+     * @param prefetchDistance The number of reviews beyond the visible ones that should stay loaded on each side.
+     */
+    public ReviewPager(RestaurantApi restaurantApi, ReviewOutbox reviewOutbox, Object outboxLock, long restaurantId,
+                       Executor ioExecutor, int pageSize, int prefetchDistance) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.restaurantApi = restaurantApi;
+        this.reviewOutbox = reviewOutbox;
+        this.outboxLock = outboxLock;
+        this.restaurantId = restaurantId;
+        this.ioExecutor = ioExecutor;
+        this.pageSize = pageSize;
+        this.prefetchDistance = Math.max(0, prefetchDistance);
+    }
+
+    /**
+     * Returns the window of loaded reviews. The first page is loaded on the first call, and on the
+     * following calls as long as it could not be fetched.
+     *
+     * @return LiveData holding the reviews of the window, newest first, and the range changed by the last update.
+     */
+    public synchronized LiveData<ReviewChangeSet> getReviews() {
+        fetchFirstPageIfMissing();
+        return reviewsLiveData;
+    }
+
+    /**
+     * Notifies the pager of the reviews visible on screen. The pages more than
+     * {@code prefetchDistance} reviews away from them are dropped, and the next or previous
+     * page is loaded when the visible reviews come within that distance of an end of the window.
+     *
+     * @param displayedVersion     The version of the change set the positions refer to; positions
+     *                             of an outdated window are ignored, and should be reported again
+     *                             once the last change set is displayed.
+     * @param firstVisiblePosition The position of the first visible review.
+     * @param lastVisiblePosition  The position of the last visible review.
+     */
+    public synchronized void loadAround(long displayedVersion, int firstVisiblePosition, int lastVisiblePosition) {
+        if (fetchFirstPageIfMissing()) {
+            return;
+        }
+        if (displayedVersion != version || windowSize == 0) {
+            return;
+        }
+        int removedAbove = dropPagesOutside(firstVisiblePosition - prefetchDistance,
+                lastVisiblePosition + prefetchDistance);
+        int first = firstVisiblePosition - removedAbove;
+        int last = lastVisiblePosition - removedAbove;
+        if (last >= windowSize - prefetchDistance && hasPageAfterWindow()) {
+            fetch(lastInWindow + 1);
+        } else if (first < prefetchDistance && firstInWindow > 0) {
+            fetch(firstInWindow - 1);
+        }
+    }
+
+    /**
+     * Inserts reviews that were just added in one batch at the head of the first page, and
+     * publishes them once if that page is in the window. The last review of the batch is the
+     * newest. API cursors count from the oldest review, so the cursors of the other pages
+     * remain valid. Reviews added before the first page is fetched are merged into it when it
+     * arrives.
+     *
+     * @param reviews The newly added reviews, in insertion order, which must not be modified afterwards.
+     */
+    public synchronized void onReviewsAdded(List<Review> reviews) {
+        if (reviews.isEmpty()) {
+            return;
+        }
+        addedBatches.add(reviews);
+        addedReviews.prependAll(reviews);
+        if (firstPageLoaded && firstInWindow == 0 && lastInWindow >= 0) {
+            windowSize += reviews.size();
+            publish(Collections.singletonList(ReviewChange.inserted(0, reviews.size())));
+        }
+    }
+
+    /**
+     * Notifies the pager that a batch passed to {@link #onReviewsAdded(List)} was written to the
+     * outbox. Must be called while holding the outbox lock.
+     *
+     * @param reviews The batch, as passed to {@link #onReviewsAdded(List)}.
+     */
+    public synchronized void onReviewsSaved(List<Review> reviews) {
+        if (!firstPageLoaded) {
+            // The first page will list the batch from the outbox.
+            savedBatches.add(reviews);
+        }
+    }
+
+    /**
+     * Removes a batch passed to {@link #onReviewsAdded(List)}, when it could not be written to the
+     * outbox, and publishes the removal if the batch is in the window.
+     *
+     * @param reviews The batch, as passed to {@link #onReviewsAdded(List)}.
+     */
+    public synchronized void onReviewsRemoved(List<Review> reviews) {
+        // Position of the batch among the added reviews, which list the newest batches first.
+        int position = 0;
+        for (int i = addedBatches.size() - 1; i >= 0; i--) {
+            if (addedBatches.get(i) == reviews) {
+                addedBatches.remove(i);
+                rebuildAddedReviews();
+                if (firstPageLoaded && firstInWindow == 0 && lastInWindow >= 0) {
+                    windowSize -= reviews.size();
+                    publish(Collections.singletonList(ReviewChange.removed(position, reviews.size())));
+                }
+                return;
+            }
+            position += addedBatches.get(i).size();
+        }
+    }
+
+    /**
+     * Removes pending reviews the API rejected, which the outbox dropped, from the added reviews
+     * and the first page, and publishes their removal if the first page is in the window.
+     *
+     * @param reviews The rejected reviews, as listed while pending.
+     */
+    public synchronized void onReviewsRejected(List<Review> reviews) {
+        Set<Long> ids = new HashSet<>();
+        for (Review review : reviews) {
+            ids.add(review.getId());
+        }
+        // Positions of the rejected reviews in the first page, added reviews included, last first.
+        List<ReviewChange> changes = new ArrayList<>();
+        List<Review> head = SegmentedReviewList.of(Arrays.asList(addedReviews.snapshot(),
+                firstPageLoaded ? pages.get(0).reviews : Collections.<Review>emptyList()));
+        for (int i = head.size() - 1; i >= 0; i--) {
+            if (ids.contains(head.get(i).getId())) {
+                changes.add(ReviewChange.removed(i, 1));
+            }
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < addedBatches.size(); i++) {
+            List<Review> batch = addedBatches.get(i);
+            List<Review> kept = withoutIds(batch, ids);
+            if (kept.size() != batch.size()) {
+                addedBatches.set(i, kept);
+            }
+        }
+        addedBatches.removeIf(List::isEmpty);
+        rebuildAddedReviews();
+        if (firstPageLoaded) {
+            pages.get(0).reviews = withoutIds(pages.get(0).reviews, ids);
+        }
+        if (firstPageLoaded && firstInWindow == 0 && lastInWindow >= 0) {
+            windowSize -= changes.size();
+            publish(changes);
+        }
+    }
+
+    private static List<Review> withoutIds(List<Review> reviews, Set<Long> ids) {
+        List<Review> kept = new ArrayList<>(reviews.size());
+        for (Review review : reviews) {
+            if (!ids.contains(review.getId())) {
+                kept.add(review);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return The number of reviews held in memory, in and out of the window.
+     */
+    public synchronized int size() {
+        int size = addedReviews.size();
+        for (Page page : pages) {
+            size += page.reviews == null ? 0 : page.reviews.size();
+        }
+        return size;
+    }
+
+    /**
+     * Indicates whether every review has been loaded.
+     *
+     * @return true once the last page has been loaded.
+     */
+    public synchronized boolean isEndReached() {
+        return !pages.isEmpty() && pages.get(pages.size() - 1).nextCursor == null;
+    }
+
+    /**
+     * @return true if a page follows the last page of the window, fetched before or not.
+     */
+    private boolean hasPageAfterWindow() {
+        Page last = pages.get(lastInWindow);
+        return lastInWindow + 1 < pages.size() || last.nextCursor != null;
+    }
+
+    /**
+     * Removes from the window the pages lying entirely outside a range of positions, from both
+     * ends, never emptying the window. Must be called while holding the lock of this pager.
+     *
+     * @param from The first position to keep.
+     * @param to   The last position to keep.
+     * @return The number of reviews removed above the range, by which the positions shifted.
+     */
+    private int dropPagesOutside(int from, int to) {
+        List<ReviewChange> changes = new ArrayList<>(2);
+        int removedAbove = 0;
+        while (firstInWindow < lastInWindow && sizeOf(firstInWindow) <= from - removedAbove) {
+            int count = drop(firstInWindow);
+            firstInWindow++;
+            removedAbove += count;
+            changes.add(ReviewChange.removed(0, count));
+        }
+        while (firstInWindow < lastInWindow
+                && windowSize - sizeOf(lastInWindow) > to - removedAbove) {
+            int count = drop(lastInWindow);
+            lastInWindow--;
+            changes.add(ReviewChange.removed(windowSize, count));
+        }
+        if (!changes.isEmpty()) {
+            publish(changes);
+        }
+        return removedAbove;
+    }
+
+    /**
+     * Removes a page from the window and frees its reviews, unless it is the first page.
+     *
+     * @return The number of reviews removed from the window.
+     */
+    private int drop(int index) {
+        Page page = pages.get(index);
+        int count = sizeOf(index);
+        windowSize -= count;
+        if (index > 0) {
+            page.reviews = null;
+        }
+        return count;
+    }
+
+    /**
+     * Requests the first page if it was never fetched, because no fetch was requested yet or
+     * because the last one failed. Must be called while holding the lock of this pager.
+     *
+     * @return true if the first page is not fetched yet, so that there is no window to scroll.
+     */
+    private boolean fetchFirstPageIfMissing() {
+        if (!pages.isEmpty()) {
+            return false;
+        }
+        fetch(0);
+        return true;
+    }
+
+    /**
+     * Adds a page to the window, from memory if it is still there, otherwise fetched in the
+     * background. Must be called while holding the lock of this pager.
+     *
+     * @param index The index of the page, next to the window; {@code pages.size()} for a page never fetched.
+     */
+    private void fetch(int index) {
+        if (index < pages.size() && pages.get(index).reviews != null) {
+            addToWindow(index);
+            return;
+        }
+        if (loading) {
+            return;
+        }
+        String cursor = index < pages.size() ? pages.get(index).cursor
+                : index == 0 ? null : pages.get(index - 1).nextCursor;
+        loading = true;
+        ioExecutor.execute(() -> {
+            if (cursor == null) {
+                loadFirstPage();
+            } else {
+                onPageLoaded(index, cursor, load(cursor), Collections.<List<Review>>emptySet());
+            }
+        });
+    }
+
+    /**
+     * Fetches the first page, preceded by the reviews waiting in the outbox, and adds it to the
+     * window. Must be called on the I/O executor.
+     */
+    private void loadFirstPage() {
+        ReviewPage page = null;
+        Set<List<Review>> listed = Collections.emptySet();
+        try {
+            ReviewOutbox.PendingReviews pending;
+            // Read while no batch is being written, so that each batch is listed once.
+            synchronized (outboxLock) {
+                pending = reviewOutbox.readPending(restaurantId);
+                listed = onPendingRead(pending);
+            }
+            page = reviewOutbox.getFirstPage(pending, pageSize);
+        } catch (RuntimeException e) {
+            Log.w("ReviewPager", "Failed to load the first review page", e);
+        }
+        onPageLoaded(0, null, page, listed);
+    }
+
+    /**
+     * Records which added batches the pending reviews list, having been written to the outbox
+     * before it was read. Must be called while holding the outbox lock.
+     *
+     * @param pending The pending reviews just read.
+     * @return The added batches the pending reviews list.
+     */
+    private synchronized Set<List<Review>> onPendingRead(ReviewOutbox.PendingReviews pending) {
+        Set<List<Review>> listed = Collections.newSetFromMap(new IdentityHashMap<>());
+        listed.addAll(savedBatches);
+        for (List<Review> batch : addedBatches) {
+            if (!listed.contains(batch)) {
+                pending.expectUploads(batch);
+            }
+        }
+        return listed;
+    }
+
+    /**
+     * Fetches a page after the first one. Must be called on the I/O executor.
+     *
+     * @return The page, or null if the fetch failed.
+     */
+    @Nullable
+    private ReviewPage load(String cursor) {
+        try {
+            return restaurantApi.getReviews(restaurantId, cursor, pageSize);
+        } catch (RuntimeException e) {
+            Log.w("ReviewPager", "Failed to load review page at cursor " + cursor, e);
+            return null;
+        }
+    }
+
+    /**
+     * Adds a fetched page to the window.
+     *
+     * @param index  The index of the page.
+     * @param cursor The cursor the page was fetched with.
+     * @param page   The fetched page, or null if the fetch failed; the page will then be requested
+     *               again on the next scroll, or for the first page on the next call to
+     *               {@link #getReviews()} or {@link #loadAround(long, int, int)}.
+     * @param listed The added batches the first page lists from the outbox; empty for the other pages.
+     */
+    private synchronized void onPageLoaded(int index, @Nullable String cursor, @Nullable ReviewPage page,
+                                           Set<List<Review>> listed) {
+        loading = false;
+        if (page == null || (index != lastInWindow + 1 && index != firstInWindow - 1)) {
+            // Failed, or the window moved away while the page was loading.
+            return;
+        }
+        if (index == pages.size()) {
+            pages.add(new Page(cursor));
+        }
+        if (index == 0 && !firstPageLoaded) {
+            firstPageLoaded = true;
+            removeListedBatches(listed);
+        }
+        Page loaded = pages.get(index);
+        if (loaded.reviews == null && index < pages.size() - 1 && !Objects.equals(loaded.nextCursor, page.getNextCursor())) {
+            // Reviews were removed or reordered below the page since it was first fetched: the
+            // pages following it no longer start where it ends, and are fetched again from it.
+            pages.subList(index + 1, pages.size()).clear();
+            if (index < firstInWindow) {
+                publishReset(index, loaded, page);
+                return;
+            }
+        }
+        loaded.reviews = page.getReviews();
+        loaded.nextCursor = page.getNextCursor();
+        addToWindow(index);
+    }
+
+    /**
+     * Removes from the added reviews the batches the first page lists, having read them from the
+     * outbox. The batches written after it was read stay among the added reviews.
+     */
+    private void removeListedBatches(Set<List<Review>> listed) {
+        savedBatches.clear();
+        if (listed.isEmpty()) {
+            return;
+        }
+        for (Iterator<List<Review>> it = addedBatches.iterator(); it.hasNext(); ) {
+            if (listed.contains(it.next())) {
+                it.remove();
+            }
+        }
+        rebuildAddedReviews();
+    }
+
+    /**
+     * Rebuilds {@link #addedReviews} after batches were removed from {@link #addedBatches}.
+     */
+    private void rebuildAddedReviews() {
+        addedReviews = new ReviewStore();
+        for (List<Review> batch : addedBatches) {
+            addedReviews.prependAll(batch);
+        }
+    }
+
+    /**
+     * Adds a page held in memory at one end of the window.
+     */
+    private void addToWindow(int index) {
+        int count = sizeOf(index);
+        int position;
+        if (lastInWindow < firstInWindow) {
+            firstInWindow = index;
+            lastInWindow = index;
+            position = 0;
+        } else if (index == lastInWindow + 1) {
+            lastInWindow = index;
+            position = windowSize;
+        } else {
+            firstInWindow = index;
+            position = 0;
+        }
+        windowSize += count;
+        publish(Collections.singletonList(ReviewChange.inserted(position, count)));
+    }
+
+    /**
+     * @return The number of reviews of a page held in memory, including the added reviews heading the first page.
+     */
+    private int sizeOf(int index) {
+        return pages.get(index).reviews.size() + (index == 0 ? addedReviews.size() : 0);
+    }
+
+    /**
+     * Replaces the window with a single page, when the pages of the window no longer follow it.
+     */
+    private void publishReset(int index, Page loaded, ReviewPage page) {
+        loaded.reviews = page.getReviews();
+        loaded.nextCursor = page.getNextCursor();
+        firstInWindow = index;
+        lastInWindow = index;
+        windowSize = sizeOf(index);
+        version++;
+        reviewsLiveData.postValue(ReviewChangeSet.reset(snapshot(), version));
+    }
+
+    /**
+     * Publishes a snapshot of the window with the changes leading to it.
+     * Must be called while holding the lock of this pager.
+     */
+    private void publish(List<ReviewChange> changes) {
+        ReviewChangeSet changeSet = version == ReviewChangeSet.NO_VERSION
+                ? ReviewChangeSet.reset(snapshot(), 0)
+                : ReviewChangeSet.of(snapshot(), changes, version);
+        version = changeSet.getVersion();
+        reviewsLiveData.postValue(changeSet);
+    }
+
+    /**
+     * @return The reviews of the window, newest first, sharing the pages.
+     */
+    private List<Review> snapshot() {
+        List<List<Review>> segments = new ArrayList<>(lastInWindow - firstInWindow + 2);
+        if (firstInWindow == 0) {
+            segments.add(addedReviews.snapshot());
+        }
+        for (int i = firstInWindow; i <= lastInWindow; i++) {
+            segments.add(pages.get(i).reviews);
+        }
+        return SegmentedReviewList.of(segments);
+    }
+
+    /**
+     * A page reached by the pager: the cursor it is fetched with, and its reviews while it is loaded.
+     */
+    private static final class Page {
+        @Nullable
+        final String cursor;
+        // Null while the page is dropped.
+        @Nullable
+        List<Review> reviews;
+        // Null for the last page.
+        @Nullable
+        String nextCursor;
+
+        Page(@Nullable String cursor) {
+            this.cursor = cursor;
+        }
+    }
+}
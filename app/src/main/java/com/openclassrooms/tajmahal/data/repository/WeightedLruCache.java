@@ -0,0 +1,129 @@
+package com.openclassrooms.tajmahal.data.repository;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Caches values by key within a total weight, evicting the least recently used values first.
+ * <p>
+ * The weight of a value is its size, for instance a number of reviews, so that a few large values
+ * and many small ones cost the same memory. Values are weighed again whenever the cache is
+ * trimmed: a value may grow while it is cached, as long as {@link #trim()} is called afterwards.
+ * </p>
+ * <p>
+ * Values that are not evictable, such as the data of a screen being displayed, are skipped by the
+ * eviction, and the most recently used value is always kept, however heavy it is. The cache may
+ * therefore exceed its maximum weight until those values become evictable.
+ * </p>
+ * <p>
+ * Every method synchronizes on the cache itself, so that callers may combine several calls
+ * atomically by synchronizing on it too.
+ * </p>
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the cached values.
+ */
+public class WeightedLruCache<K, V> {
+
+    // Values in access order: the eldest entry is the least recently used.
+    private final LinkedHashMap<K, V> values = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxWeight;
+    private final ToIntFunction<V> weigher;
+    private final Predicate<V> evictable;
+    private final BiConsumer<K, V> onEvicted;
+
+    /**
+     * Constructs a new {@link WeightedLruCache}.
+     *
+     * @param maxWeight The total weight above which values are evicted.
+     * @param weigher   Returns the current weight of a value; must be cheap and must not lock the cache.
+     * @param evictable Tells whether a value may currently be evicted.
+     */
+    public WeightedLruCache(int maxWeight, ToIntFunction<V> weigher, Predicate<V> evictable) {
+        this(maxWeight, weigher, evictable, (key, value) -> { });
+    }
+
+    /**
+     * Constructs a new {@link WeightedLruCache} notifying its evictions.
+     *
+     * @param onEvicted Receives each evicted key and value, while holding the lock of the cache.
+     */
+    public WeightedLruCache(int maxWeight, ToIntFunction<V> weigher, Predicate<V> evictable, BiConsumer<K, V> onEvicted) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight must be positive");
+        }
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.evictable = evictable;
+        this.onEvicted = onEvicted;
+    }
+
+    /**
+     * Returns the value cached for a key, creating and caching it if needed, and marks it as the
+     * most recently used one.
+     *
+     * @param key     The key of the value.
+     * @param factory Creates the value on a cache miss; called while holding the lock of the cache.
+     * @return The cached value.
+     */
+    public synchronized V get(K key, Function<? super K, ? extends V> factory) {
+        V value = values.get(key);
+        if (value == null) {
+            value = factory.apply(key);
+            values.put(key, value);
+            trim();
+        }
+        return value;
+    }
+
+    /**
+     * Tells whether a value is cached for a key, without changing its recency.
+     *
+     * @param key The key of the value.
+     * @return true if a value is cached for the key.
+     */
+    public synchronized boolean contains(K key) {
+        return values.containsKey(key);
+    }
+
+    /**
+     * Evicts the least recently used evictable values until the total weight fits the maximum,
+     * always keeping the most recently used value.
+     */
+    public synchronized void trim() {
+        int total = weight();
+        Iterator<Map.Entry<K, V>> eldestFirst = values.entrySet().iterator();
+        for (int remaining = values.size(); total > maxWeight && remaining > 1; remaining--) {
+            Map.Entry<K, V> entry = eldestFirst.next();
+            V value = entry.getValue();
+            if (evictable.test(value)) {
+                total -= weigher.applyAsInt(value);
+                eldestFirst.remove();
+                onEvicted.accept(entry.getKey(), value);
+            }
+        }
+    }
+
+    /**
+     * @return The current total weight of the cached values.
+     */
+    public synchronized int weight() {
+        int total = 0;
+        for (V value : values.values()) {
+            total += weigher.applyAsInt(value);
+        }
+        return total;
+    }
+
+    /**
+     * @return The number of cached values.
+     */
+    public synchronized int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,61 @@
+package com.openclassrooms.tajmahal.data.service;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * OkHttp interceptor compressing request bodies with gzip.
+ * <p>
+ * Response bodies need no interceptor: OkHttp already sends {@code Accept-Encoding: gzip} and
+ * transparently decompresses the responses, as long as the caller does not set that header itself.
+ * </p>
+ */
+public class GzipRequestInterceptor implements Interceptor {
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody body = request.body();
+        if (body == null || request.header("Content-Encoding") != null) {
+            return chain.proceed(request);
+        }
+        Request compressed = request.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(request.method(), gzip(body))
+                .build();
+        return chain.proceed(compressed);
+    }
+
+    private static RequestBody gzip(RequestBody body) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() {
+                // Unknown until compressed: the body is sent with chunked transfer encoding.
+                return -1;
+            }
+
+            @Override
+            public void writeTo(@NonNull BufferedSink sink) throws IOException {
+                try (BufferedSink gzipSink = Okio.buffer(new GzipSink(sink))) {
+                    body.writeTo(gzipSink);
+                }
+            }
+        };
+    }
+}
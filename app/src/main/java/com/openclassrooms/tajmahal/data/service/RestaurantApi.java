@@ -1,11 +1,15 @@
 package com.openclassrooms.tajmahal.data.service;
 
+import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
 
 import com.openclassrooms.tajmahal.domain.model.Restaurant;
 import com.openclassrooms.tajmahal.domain.model.Review;
+import com.openclassrooms.tajmahal.domain.model.ReviewPage;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Interface for fetching restaurant data.
@@ -24,11 +28,18 @@ import java.util.List;
  * <p>
  * Here, {@link RestaurantApi} provides a method to get details of a restaurant.
  * </p>
+ * <p>
+ * Every method takes the identifier of the restaurant it applies to, since the application
+ * covers several locations.
+ * </p>
  *
  * @see Restaurant
  */
 public interface RestaurantApi {
 
+    /** Identifier of the Taj Mahal, the restaurant shown when the application starts. */
+    long TAJ_MAHAL_ID = 1L;
+
     /**
      * Retrieves the details of a restaurant.
      * <p>
@@ -36,9 +47,11 @@ public interface RestaurantApi {
      * implementing class, fetching the required restaurant information.
      * </p>
      *
+     * @param restaurantId The identifier of the restaurant.
      * @return The {@link Restaurant} object containing all the details of the restaurant.
+     * @throws IllegalArgumentException if no restaurant has this identifier.
      */
-    Restaurant getRestaurant();
+    Restaurant getRestaurant(long restaurantId);
 
     /**
      * Retrieves all the reviews of the restaurant.
@@ -47,12 +60,74 @@ public interface RestaurantApi {
      * implementing class, fetching the list of the existing reviews.
      * </p>
      *
+     * @param restaurantId The identifier of the restaurant.
      * @return The {@link Restaurant} object containing all the details of the restaurant.
      */
-    List<Review> getReviews();
+    List<Review> getReviews(long restaurantId);
+
+    /**
+     * Retrieves all the reviews of the restaurant, newest first, handing them to the consumer in
+     * consecutive chunks, so that the first reviews can be displayed before the others are read.
+     * <p>
+     * Implementations reading a stream should pass {@code firstChunkSize} reviews first; by
+     * default, the result of {@link #getReviews(long)} is handed over as a single chunk.
+     * </p>
+     *
+     * @param restaurantId   The identifier of the restaurant.
+     * @param firstChunkSize The preferred number of reviews of the first chunk.
+     * @param onChunk        Receives each non-empty chunk, in order, on the calling thread.
+     */
+    default void streamReviews(long restaurantId, int firstChunkSize, Consumer<List<Review>> onChunk) {
+        List<Review> reviews = getReviews(restaurantId);
+        if (!reviews.isEmpty()) {
+            onChunk.accept(reviews);
+        }
+    }
+
+    /**
+     * Retrieves one page of the reviews of the restaurant, newest first.
+     * <p>
+     * The cursor is opaque to the caller: pass {@code null} to get the newest page, then the
+     * {@link ReviewPage#getNextCursor()} of the previous page to get the following one. A cursor
+     * stays valid when new reviews are added, so pages never overlap or skip reviews.
+     * </p>
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @param cursor       The cursor of the page to fetch, or {@code null} for the first page.
+     * @param pageSize     The maximum number of reviews to return.
+     * @return The requested {@link ReviewPage}.
+     * @throws IllegalArgumentException if the cursor was not produced by this API.
+     */
+    ReviewPage getReviews(long restaurantId, @Nullable String cursor, int pageSize);
 
     /**
-     * Adds a new review to the list of reviews.
+     * Adds a new review to the list of reviews of a restaurant.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @param review       The review to add.
+     */
+    void addReview(long restaurantId, Review review);
+
+    /**
+     * Adds several reviews at once, as if {@link #addReview(long, Review)} was called for each of
+     * them in iteration order, so that the last one becomes the newest.
+     * <p>
+     * The batch is applied atomically: readers see either none or all of the reviews.
+     * </p>
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @param reviews      The reviews to add.
+     * @throws IllegalArgumentException     if the reviews are rejected, and would be on every retry.
+     * @throws java.io.UncheckedIOException if the reviews could not be sent, and may be on a retry.
+     */
+    void addReviews(long restaurantId, Collection<Review> reviews);
+
+    /**
+     * Releases the data an implementation keeps for a restaurant, such as the last responses it
+     * revalidates, once the repository no longer caches the restaurant. Does nothing by default.
+     *
+     * @param restaurantId The identifier of the restaurant.
      */
-    void addReview(Review review);
+    default void evict(long restaurantId) {
+    }
 }
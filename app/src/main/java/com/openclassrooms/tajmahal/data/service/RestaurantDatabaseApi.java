@@ -0,0 +1,188 @@
+package com.openclassrooms.tajmahal.data.service;
+
+import com.openclassrooms.tajmahal.data.local.RestaurantEntity;
+import com.openclassrooms.tajmahal.data.local.ReviewDao;
+import com.openclassrooms.tajmahal.data.local.ReviewEntity;
+import com.openclassrooms.tajmahal.data.local.TajMahalDatabase;
+import com.openclassrooms.tajmahal.domain.model.Restaurant;
+import com.openclassrooms.tajmahal.domain.model.Review;
+import com.openclassrooms.tajmahal.domain.model.ReviewPage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An implementation of the {@link RestaurantApi} backed by the local {@link TajMahalDatabase}.
+ * <p>
+ * Reviews survive process death, and sorting, filtering and paging are performed by SQLite on
+ * indexed columns instead of in Java. On first use, the
+ * database is seeded with the data of the {@link RestaurantFakeApi}, stored under {@link #TAJ_MAHAL_ID}.
+ * </p>
+ * <p>
+ * Room forbids queries on the main thread: this class must only be called from a background
+ * thread, which the {@code RestaurantRepository} guarantees.
+ * </p>
+ *
+ * @see TajMahalDatabase
+ */
+public class RestaurantDatabaseApi implements RestaurantApi {
+
+    private final TajMahalDatabase database;
+    private final ReviewDao reviewDao;
+    private volatile boolean seeded;
+
+    /**
+     * Constructs a new {@link RestaurantDatabaseApi}.
+     *
+     * @param database The database storing the restaurants and their reviews.
+     */
+    public RestaurantDatabaseApi(TajMahalDatabase database) {
+        this.database = database;
+        this.reviewDao = database.reviewDao();
+    }
+
+    /**
+     * Retrieves a restaurant from the database.
+     *
+     * @return The stored {@link Restaurant}.
+     * @throws IllegalArgumentException if the restaurant is not stored.
+     */
+    @Override
+    public Restaurant getRestaurant(long restaurantId) {
+        ensureSeeded();
+        RestaurantEntity restaurant = database.restaurantDao().getRestaurant(restaurantId);
+        if (restaurant == null) {
+            throw new IllegalArgumentException("Unknown restaurant: " + restaurantId);
+        }
+        return restaurant.toRestaurant();
+    }
+
+    /**
+     * Retrieves all the reviews of a restaurant, newest first.
+     *
+     * @return The stored reviews.
+     */
+    @Override
+    public List<Review> getReviews(long restaurantId) {
+        ensureSeeded();
+        return toReviews(reviewDao.getReviews(restaurantId));
+    }
+
+    /**
+     * Retrieves one page of the reviews of a restaurant, newest first.
+     * <p>
+     * The cursor holds the creation time and identifier of the last review of the previous page,
+     * so that the next page is an index range scan starting right after it.
+     * </p>
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @param cursor       The cursor of the page to fetch, or {@code null} for the first page.
+     * @param pageSize     The maximum number of reviews to return.
+     * @return The requested {@link ReviewPage}.
+     */
+    @Override
+    public ReviewPage getReviews(long restaurantId, String cursor, int pageSize) {
+        ensureSeeded();
+        // One extra row tells whether another page follows, without a COUNT query.
+        List<ReviewEntity> rows;
+        if (cursor == null) {
+            rows = reviewDao.getNewestPage(restaurantId, pageSize + 1);
+        } else {
+            long[] key = parseCursor(cursor);
+            rows = reviewDao.getPageBefore(restaurantId, key[0], key[1], pageSize + 1);
+        }
+        boolean hasNext = rows.size() > pageSize;
+        if (hasNext) {
+            rows = rows.subList(0, pageSize);
+        }
+        String nextCursor = null;
+        if (hasNext) {
+            ReviewEntity last = rows.get(rows.size() - 1);
+            nextCursor = last.createdAt + ":" + last.id;
+        }
+        return new ReviewPage(toReviews(rows), nextCursor);
+    }
+
+    /**
+     * Stores a new review of a restaurant, dated now.
+     */
+    @Override
+    public void addReview(long restaurantId, Review review) {
+        ensureSeeded();
+        reviewDao.insert(ReviewEntity.fromReview(restaurantId, review, System.currentTimeMillis()));
+    }
+
+    /**
+     * Stores several reviews of a restaurant in a single transaction, all dated now. Their
+     * increasing identifiers keep them ordered: the last one of the batch is the newest.
+     */
+    @Override
+    public void addReviews(long restaurantId, Collection<Review> reviews) {
+        ensureSeeded();
+        long now = System.currentTimeMillis();
+        List<ReviewEntity> rows = new ArrayList<>(reviews.size());
+        for (Review review : reviews) {
+            rows.add(ReviewEntity.fromReview(restaurantId, review, now));
+        }
+        reviewDao.insertAll(rows);
+    }
+
+    /**
+     * Seeds an empty database with the data of the {@link RestaurantFakeApi}, in one transaction.
+     */
+    private void ensureSeeded() {
+        if (seeded) {
+            return;
+        }
+        synchronized (this) {
+            if (seeded) {
+                return;
+            }
+            database.runInTransaction(() -> {
+                if (database.restaurantDao().getRestaurant(TAJ_MAHAL_ID) != null) {
+                    return;
+                }
+                RestaurantFakeApi seed = new RestaurantFakeApi();
+                database.restaurantDao().insert(RestaurantEntity.fromRestaurant(TAJ_MAHAL_ID, seed.getRestaurant(TAJ_MAHAL_ID)));
+                List<Review> reviews = seed.getReviews(TAJ_MAHAL_ID);
+                List<ReviewEntity> rows = new ArrayList<>(reviews.size());
+                long now = System.currentTimeMillis();
+                // The seed list is newest first: undated reviews are dated one minute apart, in the same order.
+                for (int i = 0; i < reviews.size(); i++) {
+                    rows.add(ReviewEntity.fromReview(TAJ_MAHAL_ID, reviews.get(i), now - i * 60_000L));
+                }
+                reviewDao.insertAll(rows);
+            });
+            seeded = true;
+        }
+    }
+
+    private static List<Review> toReviews(List<ReviewEntity> rows) {
+        List<Review> reviews = new ArrayList<>(rows.size());
+        for (ReviewEntity row : rows) {
+            reviews.add(row.toReview());
+        }
+        return reviews;
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #getReviews(long, String, int)}.
+     *
+     * @return The creation time and identifier of the last review of the previous page.
+     */
+    private static long[] parseCursor(String cursor) {
+        int separator = cursor.indexOf(':');
+        try {
+            if (separator > 0) {
+                return new long[]{
+                        Long.parseLong(cursor.substring(0, separator)),
+                        Long.parseLong(cursor.substring(separator + 1))
+                };
+            }
+        } catch (NumberFormatException ignored) {
+            // Reported below.
+        }
+        throw new IllegalArgumentException("Invalid review cursor: " + cursor);
+    }
+}
@@ -1,11 +1,16 @@
 package com.openclassrooms.tajmahal.data.service;
 
+import com.openclassrooms.tajmahal.data.store.ReviewSnapshot;
+import com.openclassrooms.tajmahal.data.store.ReviewStore;
 import com.openclassrooms.tajmahal.domain.model.Restaurant;
 import com.openclassrooms.tajmahal.domain.model.Review;
+import com.openclassrooms.tajmahal.domain.model.ReviewPage;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A mock implementation of the {@link RestaurantApi} for testing and development purposes.
@@ -22,7 +27,8 @@ import java.util.List;
  * we are using hardcoded values.
  *
  * <p>
- * This class returns details of a specific restaurant, "Taj Mahal", with pre-defined attributes.
+ * This class returns details of a specific restaurant, "Taj Mahal", with pre-defined attributes,
+ * under the identifier {@link #TAJ_MAHAL_ID}. Any other identifier is rejected.
  * </p>
  *
  * @see Restaurant
@@ -30,13 +36,26 @@ import java.util.List;
  */
 public class RestaurantFakeApi implements RestaurantApi {
 
-    List<Review> reviews = new ArrayList<>(Arrays.asList(
-            new Review("Ranjit Singh", "https://xsgames.co/randomusers/assets/avatars/male/71.jpg", "Service très rapide et nourriture délicieuse, nous mangeons ici chaque week-end, c'est très rapide et savoureux. Continuez ainsi!", 5),
-            new Review("Martyna Siddeswara", "https://xsgames.co/randomusers/assets/avatars/female/31.jpg", "Un service excellent et des plats incroyablement savoureux. Nous sommes vraiment satisfaits de notre expérience au restaurant.", 4),
-            new Review("Komala Alanazi", "https://xsgames.co/randomusers/assets/avatars/male/46.jpg", "La cuisine est délicieuse et le service est également excellent. Le propriétaire est très sympathique et veille toujours à ce que votre repas soit satisfaisant. Cet endroit est un choix sûr!", 5),
-            new Review("David John", "https://xsgames.co/randomusers/assets/avatars/male/67.jpg", "Les currys manquaient de diversité de saveurs et semblaient tous à base de tomates. Malgré les évaluations élevées que nous avons vues et nos attentes, nous avons été déçus.", 2),
-            new Review("Emilie Hood", "https://xsgames.co/randomusers/assets/avatars/female/20.jpg", "Très bon restaurant Indien ! Je recommande.", 4)
-    ));
+    // Reviews of each restaurant, newest first; prepending is O(1) and readers get immutable snapshots.
+    private final Map<Long, ReviewStore> reviewsByRestaurant = new ConcurrentHashMap<>();
+
+    // Duration of a day, to date the hard-coded reviews relative to the creation of the API.
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Constructs a {@link RestaurantFakeApi} holding the hard-coded reviews of the "Taj Mahal",
+     * dated over the last weeks and identified in creation order.
+     */
+    public RestaurantFakeApi() {
+        long now = System.currentTimeMillis();
+        reviewsByRestaurant.put(TAJ_MAHAL_ID, new ReviewStore(Arrays.asList(
+                new Review(5, "Ranjit Singh", "https://xsgames.co/randomusers/assets/avatars/male/71.jpg", "Service très rapide et nourriture délicieuse, nous mangeons ici chaque week-end, c'est très rapide et savoureux. Continuez ainsi!", 5, now - 1 * DAY_MILLIS),
+                new Review(4, "Martyna Siddeswara", "https://xsgames.co/randomusers/assets/avatars/female/31.jpg", "Un service excellent et des plats incroyablement savoureux. Nous sommes vraiment satisfaits de notre expérience au restaurant.", 4, now - 3 * DAY_MILLIS),
+                new Review(3, "Komala Alanazi", "https://xsgames.co/randomusers/assets/avatars/male/46.jpg", "La cuisine est délicieuse et le service est également excellent. Le propriétaire est très sympathique et veille toujours à ce que votre repas soit satisfaisant. Cet endroit est un choix sûr!", 5, now - 9 * DAY_MILLIS),
+                new Review(2, "David John", "https://xsgames.co/randomusers/assets/avatars/male/67.jpg", "Les currys manquaient de diversité de saveurs et semblaient tous à base de tomates. Malgré les évaluations élevées que nous avons vues et nos attentes, nous avons été déçus.", 2, now - 20 * DAY_MILLIS),
+                new Review(1, "Emilie Hood", "https://xsgames.co/randomusers/assets/avatars/female/20.jpg", "Très bon restaurant Indien ! Je recommande.", 4, now - 45 * DAY_MILLIS)
+        )));
+    }
 
 
     /**
@@ -50,7 +69,8 @@ public class RestaurantFakeApi implements RestaurantApi {
      * @return The hard-coded {@link Restaurant} object for the "Taj Mahal".
      */
     @Override
-    public Restaurant getRestaurant() {
+    public Restaurant getRestaurant(long restaurantId) {
+        storeOf(restaurantId);
         return new Restaurant("Taj Mahal", "Indien", "11h30 - 14h30・18h30 - 22h00",
                 "12 Avenue de la Brique - 75010 Paris", "http://www.tajmahal.fr", "06 12 34 56 78",
                 true, true);
@@ -61,22 +81,86 @@ public class RestaurantFakeApi implements RestaurantApi {
      * Retrieves a hard-coded {@link Review} object for the "Taj Mahal".
      * <p>
      * This method simulates an API call by immediately returning a Review list
-     * with pre-defined attributes.
+     * with pre-defined attributes. The list is an immutable snapshot: reviews added
+     * afterwards do not appear in it, and taking it does not copy anything.
      * </p>
      *
      * @return The hard-coded list {@link Review} for the "Taj Mahal".
      */
     @Override
-    public List<Review> getReviews() {
-        return reviews;
+    public List<Review> getReviews(long restaurantId) {
+        return storeOf(restaurantId).snapshot();
+    }
+
+    /**
+     * Retrieves one page of the hard-coded reviews, newest first.
+     * <p>
+     * The cursor is the number of reviews left after the previous page. Since new reviews are
+     * always inserted at the head of the list, counting from the tail keeps a cursor valid
+     * even when reviews are added between two page requests.
+     * </p>
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @param cursor       The cursor of the page to fetch, or {@code null} for the first page.
+     * @param pageSize     The maximum number of reviews to return.
+     * @return The requested {@link ReviewPage}.
+     */
+    @Override
+    public ReviewPage getReviews(long restaurantId, String cursor, int pageSize) {
+        ReviewSnapshot snapshot = storeOf(restaurantId).snapshot();
+        int size = snapshot.size();
+        int remaining = cursor == null ? size : parseCursor(cursor, size);
+        int from = size - remaining;
+        int to = Math.min(size, from + pageSize);
+        // The snapshot is immutable, so the page can be a view of it rather than a copy.
+        return new ReviewPage(snapshot.subList(from, to), to < size ? String.valueOf(size - to) : null);
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #getReviews(long, String, int)}.
+     *
+     * @param cursor The cursor to decode.
+     * @param size   The current number of reviews.
+     * @return The number of reviews remaining after the previous page.
+     */
+    private static int parseCursor(String cursor, int size) {
+        try {
+            int remaining = Integer.parseInt(cursor);
+            if (remaining >= 0 && remaining <= size) {
+                return remaining;
+            }
+        } catch (NumberFormatException ignored) {
+            // Reported below.
+        }
+        throw new IllegalArgumentException("Invalid review cursor: " + cursor);
     }
 
     /**
      * Adds a new review to the list of reviews.
      */
     @Override
-    public void addReview(Review review) {
-        reviews.add(0, review);
+    public void addReview(long restaurantId, Review review) {
+        storeOf(restaurantId).prepend(review);
+    }
+
+    /**
+     * Adds several reviews at once; they are published in a single snapshot.
+     */
+    @Override
+    public void addReviews(long restaurantId, Collection<Review> newReviews) {
+        storeOf(restaurantId).prependAll(newReviews);
+    }
+
+    /**
+     * @return The reviews of the restaurant.
+     * @throws IllegalArgumentException if the restaurant is unknown.
+     */
+    private ReviewStore storeOf(long restaurantId) {
+        ReviewStore store = reviewsByRestaurant.get(restaurantId);
+        if (store == null) {
+            throw new IllegalArgumentException("Unknown restaurant: " + restaurantId);
+        }
+        return store;
     }
 
 }
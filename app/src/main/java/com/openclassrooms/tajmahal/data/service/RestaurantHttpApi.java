@@ -0,0 +1,280 @@
+package com.openclassrooms.tajmahal.data.service;
+
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.openclassrooms.tajmahal.domain.model.Restaurant;
+import com.openclassrooms.tajmahal.domain.model.Review;
+import com.openclassrooms.tajmahal.domain.model.ReviewPage;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * An implementation of the {@link RestaurantApi} calling a REST backend over HTTP.
+ * <p>
+ * The endpoints, relative to the base URL, are:
+ * </p>
+ * <ul>
+ * <li>{@code GET restaurants/{id}}: the restaurant details;</li>
+ * <li>{@code GET restaurants/{id}/reviews}: all the reviews, newest first;</li>
+ * <li>{@code GET restaurants/{id}/reviews?cursor=...&limit=...}: one page of reviews, as
+ * {@code {"reviews": [...], "nextCursor": "..."}};</li>
+ * <li>{@code POST restaurants/{id}/reviews}: adds one review;</li>
+ * <li>{@code POST restaurants/{id}/reviews/batch}: adds an array of reviews atomically.</li>
+ * </ul>
+ * <p>
+ * The {@link OkHttpClient} is shared by the whole application, so that connections are pooled
+ * and reused across calls. Responses are gzip-compressed by OkHttp, and request bodies by the
+ * {@link GzipRequestInterceptor} of the client. The restaurant details and the full review list
+ * are requested with {@code If-None-Match} once fetched: when they did not change, the server
+ * answers {@code 304 Not Modified} with no body, and the last decoded value is returned. Those
+ * values are kept until the repository {@link #evict(long) evicts} the restaurant.
+ * </p>
+ * <p>
+ * Response bodies are decoded by the streaming {@link ReviewJsonDecoder} straight from the
+ * network stream, without buffering the body or building a JSON tree.
+ * </p>
+ * <p>
+ * Calls are blocking, so this class must only be called from a background thread. Network
+ * failures and server errors are thrown as {@link UncheckedIOException}. Requests the server
+ * rejects, with a client error status other than 408 or 429, are thrown as
+ * {@link IllegalArgumentException}, since sending them again would fail the same way.
+ * </p>
+ */
+public class RestaurantHttpApi implements RestaurantApi {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    // Only used to encode request bodies; responses are decoded by the ReviewJsonDecoder.
+    private static final Type REVIEW_LIST_TYPE = new TypeToken<List<Review>>() {}.getType();
+
+    private final OkHttpClient client;
+    private final HttpUrl baseUrl;
+    private final Gson gson = new Gson();
+
+    // Last validated responses of each restaurant, reused when the server answers 304.
+    private final Map<Long, AtomicReference<Validated<Restaurant>>> restaurants = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicReference<Validated<List<Review>>>> reviews = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@link RestaurantHttpApi}.
+     *
+     * @param client  The shared HTTP client.
+     * @param baseUrl The base URL of the backend, ending with a slash.
+     */
+    public RestaurantHttpApi(OkHttpClient client, String baseUrl) {
+        this.client = client;
+        this.baseUrl = HttpUrl.get(baseUrl);
+    }
+
+    /**
+     * Retrieves the details of the restaurant, revalidated with its ETag.
+     */
+    @Override
+    public Restaurant getRestaurant(long restaurantId) {
+        return getValidated(restaurantUrl(restaurantId).build(), validatedOf(restaurants, restaurantId),
+                ReviewJsonDecoder::readRestaurant);
+    }
+
+    /**
+     * Retrieves all the reviews of the restaurant, revalidated with their ETag.
+     *
+     * @return An unmodifiable list of the reviews, newest first.
+     */
+    @Override
+    public List<Review> getReviews(long restaurantId) {
+        return getValidated(reviewsUrl(restaurantId).build(), validatedOf(reviews, restaurantId),
+                ReviewJsonDecoder::readReviews);
+    }
+
+    /**
+     * Retrieves all the reviews of the restaurant, handing them over in chunks while the response
+     * is still downloading. When the reviews did not change, they are handed over in one chunk.
+     */
+    @Override
+    public void streamReviews(long restaurantId, int firstChunkSize, Consumer<List<Review>> onChunk) {
+        AtomicReference<Validated<List<Review>>> cache = validatedOf(reviews, restaurantId);
+        Validated<List<Review>> cached = cache.get();
+        try (Response response = client.newCall(conditionalRequest(reviewsUrl(restaurantId).build(), cached)).execute()) {
+            if (response.code() == 304 && cached != null) {
+                if (!cached.value.isEmpty()) {
+                    onChunk.accept(cached.value);
+                }
+                return;
+            }
+            List<Review> all = new ArrayList<>();
+            ReviewJsonDecoder.readReviews(successfulBody(response).charStream(), firstChunkSize, chunk -> {
+                all.addAll(chunk);
+                onChunk.accept(Collections.unmodifiableList(chunk));
+            });
+            cacheValidated(cache, response, Collections.unmodifiableList(all));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Retrieves one page of the reviews, newest first. The cursor is produced by the server.
+     */
+    @Override
+    public ReviewPage getReviews(long restaurantId, @Nullable String cursor, int pageSize) {
+        HttpUrl.Builder url = reviewsUrl(restaurantId)
+                .addQueryParameter("limit", String.valueOf(pageSize));
+        if (cursor != null) {
+            url.addQueryParameter("cursor", cursor);
+        }
+        return execute(new Request.Builder().url(url.build()).build(), ReviewJsonDecoder::readPage);
+    }
+
+    /**
+     * Sends a new review to the server.
+     */
+    @Override
+    public void addReview(long restaurantId, Review review) {
+        post(reviewsUrl(restaurantId).build(), gson.toJson(review));
+    }
+
+    /**
+     * Sends several reviews to the server in a single request.
+     */
+    @Override
+    public void addReviews(long restaurantId, Collection<Review> reviews) {
+        post(reviewsUrl(restaurantId).addPathSegment("batch").build(), gson.toJson(reviews, REVIEW_LIST_TYPE));
+    }
+
+    /**
+     * Forgets the last validated responses of the restaurant, so that an evicted restaurant does
+     * not stay in memory; its next requests are sent without ETag.
+     */
+    @Override
+    public void evict(long restaurantId) {
+        restaurants.remove(restaurantId);
+        reviews.remove(restaurantId);
+    }
+
+    private HttpUrl.Builder restaurantUrl(long restaurantId) {
+        return baseUrl.newBuilder()
+                .addPathSegment("restaurants")
+                .addPathSegment(String.valueOf(restaurantId));
+    }
+
+    private HttpUrl.Builder reviewsUrl(long restaurantId) {
+        return restaurantUrl(restaurantId).addPathSegment("reviews");
+    }
+
+    /**
+     * @return The last validated value of a resource of the restaurant, created empty on first use.
+     */
+    private static <T> AtomicReference<Validated<T>> validatedOf(Map<Long, AtomicReference<Validated<T>>> caches,
+                                                                 long restaurantId) {
+        return caches.computeIfAbsent(restaurantId, id -> new AtomicReference<>());
+    }
+
+    private void post(HttpUrl url, String json) {
+        Request request = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(json, JSON))
+                .build();
+        execute(request, (BodyDecoder<Void>) null);
+    }
+
+    /**
+     * Fetches a resource, sending the ETag of the cached value if any.
+     *
+     * @param url     The URL of the resource.
+     * @param cache   The last validated value of the resource, updated by this call.
+     * @param decoder The decoder of the response body.
+     * @return The current value of the resource.
+     */
+    private <T> T getValidated(HttpUrl url, AtomicReference<Validated<T>> cache, BodyDecoder<T> decoder) {
+        Validated<T> cached = cache.get();
+        try (Response response = client.newCall(conditionalRequest(url, cached)).execute()) {
+            if (response.code() == 304 && cached != null) {
+                return cached.value;
+            }
+            T value = decoder.decode(successfulBody(response).charStream());
+            cacheValidated(cache, response, value);
+            return value;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Request conditionalRequest(HttpUrl url, @Nullable Validated<?> cached) {
+        Request.Builder request = new Request.Builder().url(url);
+        if (cached != null) {
+            request.header("If-None-Match", cached.etag);
+        }
+        return request.build();
+    }
+
+    private static <T> void cacheValidated(AtomicReference<Validated<T>> cache, Response response, T value) {
+        String etag = response.header("ETag");
+        cache.set(etag == null ? null : new Validated<>(etag, value));
+    }
+
+    /**
+     * Executes a request and decodes its body.
+     *
+     * @param decoder The decoder of the response body, or null to ignore the body.
+     */
+    private <T> T execute(Request request, @Nullable BodyDecoder<T> decoder) {
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = successfulBody(response);
+            return decoder == null ? null : decoder.decode(body.charStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ResponseBody successfulBody(Response response) throws IOException {
+        ResponseBody body = response.body();
+        int code = response.code();
+        if (code >= 400 && code < 500 && code != 408 && code != 429) {
+            throw new IllegalArgumentException("HTTP " + code + " for " + response.request().url());
+        }
+        if (!response.isSuccessful() || body == null) {
+            throw new IOException("HTTP " + response.code() + " for " + response.request().url());
+        }
+        return body;
+    }
+
+    /**
+     * Decodes a response body.
+     */
+    private interface BodyDecoder<T> {
+        T decode(Reader body) throws IOException;
+    }
+
+    /**
+     * A decoded response body and the ETag it was served with.
+     */
+    private static final class Validated<T> {
+        final String etag;
+        final T value;
+
+        Validated(String etag, T value) {
+            this.etag = etag;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.openclassrooms.tajmahal.data.service;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.openclassrooms.tajmahal.data.store.ReviewFactory;
+import com.openclassrooms.tajmahal.domain.model.Restaurant;
+import com.openclassrooms.tajmahal.domain.model.Review;
+import com.openclassrooms.tajmahal.domain.model.ReviewPage;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streaming decoder of the JSON payloads of the backend.
+ * <p>
+ * The payloads are read token by token with a {@link JsonReader}, and each {@link Review} is
+ * constructed as soon as its object has been read: no intermediate tree of the document is
+ * built, so peak memory is the decoded reviews plus the reader buffer, and a review array can
+ * be handed to the caller in chunks while the rest of the body is still downloading. Reviews are
+ * created by the {@link ReviewFactory}, so the strings they repeat are only retained once.
+ * </p>
+ * <p>
+ * Unknown fields are skipped, so that the backend may add fields without breaking older clients,
+ * and {@code null} values leave the field at its default. A payload of the wrong shape throws
+ * the {@link IllegalStateException} of the {@link JsonReader}.
+ * </p>
+ */
+public final class ReviewJsonDecoder {
+
+    private ReviewJsonDecoder() {
+    }
+
+    /**
+     * Decodes an array of reviews.
+     *
+     * @param json The JSON array.
+     * @return An unmodifiable list of the reviews, in document order.
+     * @throws IOException           if the payload cannot be read or is malformed.
+     * @throws IllegalStateException if the payload is not a review array.
+     */
+    public static List<Review> readReviews(Reader json) throws IOException {
+        List<Review> reviews = new ArrayList<>();
+        readReviews(json, Integer.MAX_VALUE, chunk -> reviews.addAll(chunk));
+        return Collections.unmodifiableList(reviews);
+    }
+
+    /**
+     * Decodes an array of reviews, handing them to the consumer in chunks as they are read.
+     * <p>
+     * The first chunk holds {@code firstChunkSize} reviews, so that a first page can be displayed
+     * early; the following chunks double in size, so that a consumer copying everything it received
+     * so far on each chunk still does linear work overall.
+     * </p>
+     *
+     * @param json           The JSON array.
+     * @param firstChunkSize The number of reviews of the first chunk.
+     * @param onChunk        Receives each chunk, in document order; chunks are never empty.
+     * @return The total number of reviews decoded.
+     * @throws IOException           if the payload cannot be read or is malformed.
+     * @throws IllegalStateException if the payload is not a review array.
+     */
+    public static int readReviews(Reader json, int firstChunkSize, Consumer<List<Review>> onChunk) throws IOException {
+        try (JsonReader reader = new JsonReader(json)) {
+            int count = readReviewArray(reader, firstChunkSize, onChunk);
+            expectEnd(reader);
+            return count;
+        }
+    }
+
+    /**
+     * Decodes a page of reviews: {@code {"reviews": [...], "nextCursor": "..."}}.
+     *
+     * @param json The JSON object.
+     * @return The decoded {@link ReviewPage}.
+     * @throws IOException           if the payload cannot be read or is malformed.
+     * @throws IllegalStateException if the payload is not a review page.
+     */
+    public static ReviewPage readPage(Reader json) throws IOException {
+        try (JsonReader reader = new JsonReader(json)) {
+            List<Review> reviews = new ArrayList<>();
+            String nextCursor = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "reviews":
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                        } else {
+                            readReviewArray(reader, Integer.MAX_VALUE, reviews::addAll);
+                        }
+                        break;
+                    case "nextCursor":
+                        nextCursor = nextStringOrNull(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            expectEnd(reader);
+            return new ReviewPage(reviews, nextCursor);
+        }
+    }
+
+    /**
+     * Decodes the details of a restaurant.
+     *
+     * @param json The JSON object.
+     * @return The decoded {@link Restaurant}.
+     * @throws IOException           if the payload cannot be read or is malformed.
+     * @throws IllegalStateException if the payload is not a restaurant.
+     */
+    public static Restaurant readRestaurant(Reader json) throws IOException {
+        try (JsonReader reader = new JsonReader(json)) {
+            String name = null;
+            String type = null;
+            String hours = null;
+            String address = null;
+            String website = null;
+            String phoneNumber = null;
+            boolean dineIn = false;
+            boolean takeAway = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "name":
+                        name = nextStringOrNull(reader);
+                        break;
+                    case "type":
+                        type = nextStringOrNull(reader);
+                        break;
+                    case "hours":
+                        hours = nextStringOrNull(reader);
+                        break;
+                    case "address":
+                        address = nextStringOrNull(reader);
+                        break;
+                    case "website":
+                        website = nextStringOrNull(reader);
+                        break;
+                    case "phoneNumber":
+                        phoneNumber = nextStringOrNull(reader);
+                        break;
+                    case "dineIn":
+                        dineIn = nextBooleanOrFalse(reader);
+                        break;
+                    case "takeAway":
+                        takeAway = nextBooleanOrFalse(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            expectEnd(reader);
+            return new Restaurant(name, type, hours, address, website, phoneNumber, dineIn, takeAway);
+        }
+    }
+
+    private static int readReviewArray(JsonReader reader, int firstChunkSize, Consumer<List<Review>> onChunk) throws IOException {
+        int chunkSize = Math.max(1, firstChunkSize);
+        int count = 0;
+        List<Review> chunk = new ArrayList<>(Math.min(chunkSize, 256));
+        reader.beginArray();
+        while (reader.hasNext()) {
+            chunk.add(readReview(reader));
+            if (chunk.size() == chunkSize) {
+                count += chunk.size();
+                onChunk.accept(chunk);
+                chunkSize = chunkSize > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : chunkSize * 2;
+                chunk = new ArrayList<>(Math.min(chunkSize, 256));
+            }
+        }
+        reader.endArray();
+        if (!chunk.isEmpty()) {
+            count += chunk.size();
+            onChunk.accept(chunk);
+        }
+        return count;
+    }
+
+    private static Review readReview(JsonReader reader) throws IOException {
+        long id = 0L;
+        String username = null;
+        String picture = null;
+        String comment = null;
+        int rate = 0;
+        long createdAt = 0L;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else {
+                        id = reader.nextLong();
+                    }
+                    break;
+                case "username":
+                    username = nextStringOrNull(reader);
+                    break;
+                case "picture":
+                    picture = nextStringOrNull(reader);
+                    break;
+                case "comment":
+                    comment = nextStringOrNull(reader);
+                    break;
+                case "rate":
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else {
+                        rate = reader.nextInt();
+                    }
+                    break;
+                case "createdAt":
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else {
+                        createdAt = reader.nextLong();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return ReviewFactory.newReview(id, username, picture, comment, rate, createdAt);
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static boolean nextBooleanOrFalse(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return false;
+        }
+        return reader.nextBoolean();
+    }
+
+    private static void expectEnd(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw new IOException("Unexpected content after the JSON payload: " + reader.peek());
+        }
+    }
+}
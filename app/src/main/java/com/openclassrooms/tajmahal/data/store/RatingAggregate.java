@@ -0,0 +1,250 @@
+package com.openclassrooms.tajmahal.data.store;
+
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collector;
+
+/**
+ * The running totals of the ratings of a review list: the number of reviews, the sum of their
+ * ratings and a histogram of the star counts, updated as reviews are added or removed so that the
+ * statistics never require going over the reviews again.
+ * <p>
+ * The same totals are also kept per day for the last {@value #TREND_DAYS} days, in a ring buffer
+ * of day buckets, so that the rolling averages and percentiles of any window up to that length
+ * cost one pass over the buckets, whatever the number of reviews. Days are UTC days. Reviews of
+ * unknown date only count in the all-time totals, and reviews older than the ring are dropped
+ * from it once newer days take their buckets.
+ * </p>
+ * <p>
+ * Aggregates are mergeable: the aggregate of a review set can be computed as the {@link #merge}
+ * of the aggregates of its parts, in any order, which lets the {@link #collector()} split large
+ * review sets between the threads of a parallel stream.
+ * </p>
+ * <p>
+ * Ratings outside 1 to {@value #MAX_STARS} are summed as they are but counted in the histograms
+ * as the nearest star count.
+ * </p>
+ * <p>
+ * This class is not thread-safe: the repository updates it under its own lock and publishes
+ * immutable {@link #snapshot(long) snapshots}.
+ * </p>
+ */
+public class RatingAggregate implements ReviewIndex {
+
+    /** Highest star count of the histogram. */
+    public static final int MAX_STARS = 5;
+    /** Number of days kept by the ring buffer: the longest window of the trends. */
+    public static final int TREND_DAYS = 30;
+    /** Duration of a day bucket. */
+    public static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    // Marks a bucket holding no day.
+    private static final long NO_DAY = Long.MIN_VALUE;
+
+    private int count;
+    private long ratingSum;
+    // Number of reviews rated i + 1 stars.
+    private final int[] starCounts = new int[MAX_STARS];
+
+    // Day bucket b holds the day d such that d mod TREND_DAYS == b, or NO_DAY.
+    private final long[] bucketDays = new long[TREND_DAYS];
+    private final int[] bucketCounts = new int[TREND_DAYS];
+    private final long[] bucketSums = new long[TREND_DAYS];
+    // Number of reviews of bucket b rated s + 1 stars, at b * MAX_STARS + s.
+    private final int[] bucketStarCounts = new int[TREND_DAYS * MAX_STARS];
+    // Newest day counted in the buckets.
+    private long newestDay = NO_DAY;
+
+    /**
+     * Constructs an empty {@link RatingAggregate}.
+     */
+    public RatingAggregate() {
+        clear();
+    }
+
+    /**
+     * Counts a review.
+     *
+     * @param review The added review.
+     */
+    public void add(Review review) {
+        add(review.getRate(), review.getCreatedAt());
+    }
+
+    /**
+     * Counts a review from its rating and creation time only, for sources that can read them
+     * without creating the review.
+     *
+     * @param rate      The rating of the added review.
+     * @param createdAt The creation time of the added review, in milliseconds since the epoch, or 0 if it is unknown.
+     */
+    public void add(int rate, long createdAt) {
+        count++;
+        ratingSum += rate;
+        starCounts[starIndex(rate)]++;
+        if (createdAt != 0) {
+            int bucket = dayBucket(Math.floorDiv(createdAt, DAY_MILLIS));
+            if (bucket >= 0) {
+                bucketCounts[bucket]++;
+                bucketSums[bucket] += rate;
+                bucketStarCounts[bucket * MAX_STARS + starIndex(rate)]++;
+            }
+        }
+    }
+
+    /**
+     * Stops counting a review previously added.
+     *
+     * @param review The removed review.
+     */
+    public void remove(Review review) {
+        if (count == 0) {
+            throw new IllegalStateException("No review to remove");
+        }
+        count--;
+        ratingSum -= review.getRate();
+        starCounts[starIndex(review.getRate())]--;
+        if (review.getCreatedAt() != 0) {
+            long day = Math.floorDiv(review.getCreatedAt(), DAY_MILLIS);
+            int bucket = bucketOf(day);
+            // Only the reviews of a day still held by its bucket were counted there.
+            if (bucketDays[bucket] == day) {
+                bucketCounts[bucket]--;
+                bucketSums[bucket] -= review.getRate();
+                bucketStarCounts[bucket * MAX_STARS + starIndex(review.getRate())]--;
+            }
+        }
+    }
+
+    /**
+     * Adds the totals of another aggregate to this one, as if its reviews had been added here.
+     *
+     * @param other The aggregate to merge; it is not modified.
+     */
+    public void merge(RatingAggregate other) {
+        count += other.count;
+        ratingSum += other.ratingSum;
+        for (int s = 0; s < MAX_STARS; s++) {
+            starCounts[s] += other.starCounts[s];
+        }
+        for (int otherBucket = 0; otherBucket < TREND_DAYS; otherBucket++) {
+            long day = other.bucketDays[otherBucket];
+            int bucket = day == NO_DAY ? -1 : dayBucket(day);
+            if (bucket < 0) {
+                continue;
+            }
+            bucketCounts[bucket] += other.bucketCounts[otherBucket];
+            bucketSums[bucket] += other.bucketSums[otherBucket];
+            for (int s = 0; s < MAX_STARS; s++) {
+                bucketStarCounts[bucket * MAX_STARS + s] += other.bucketStarCounts[otherBucket * MAX_STARS + s];
+            }
+        }
+    }
+
+    /**
+     * Returns a collector aggregating a stream of reviews; a parallel stream aggregates each part
+     * on its own thread and merges the partial aggregates.
+     *
+     * @return A collector producing the {@link RatingAggregate} of the reviews.
+     */
+    public static Collector<Review, RatingAggregate, RatingAggregate> collector() {
+        return Collector.of(RatingAggregate::new, RatingAggregate::add, (left, right) -> {
+            left.merge(right);
+            return left;
+        });
+    }
+
+    @Override
+    public void addNewest(List<Review> newestFirst) {
+        for (int i = 0; i < newestFirst.size(); i++) {
+            add(newestFirst.get(i));
+        }
+    }
+
+    @Override
+    public void addOldest(List<Review> newestFirst) {
+        addNewest(newestFirst);
+    }
+
+    @Override
+    public void clear() {
+        count = 0;
+        ratingSum = 0L;
+        Arrays.fill(starCounts, 0);
+        Arrays.fill(bucketDays, NO_DAY);
+        Arrays.fill(bucketCounts, 0);
+        Arrays.fill(bucketSums, 0L);
+        Arrays.fill(bucketStarCounts, 0);
+        newestDay = NO_DAY;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Copies the current totals, with the day buckets aligned on the given day, in time
+     * proportional to the number of buckets.
+     *
+     * @param nowMillis The current time, in milliseconds since the epoch, ending the trend windows.
+     * @return An immutable copy of the current totals.
+     */
+    public RatingStats snapshot(long nowMillis) {
+        if (count == 0) {
+            return RatingStats.EMPTY;
+        }
+        long today = Math.floorDiv(nowMillis, DAY_MILLIS);
+        // Days ago of each copied day: 0 is today, and future days count as today.
+        int[] dayCounts = new int[TREND_DAYS];
+        long[] daySums = new long[TREND_DAYS];
+        int[] dayStarCounts = new int[TREND_DAYS * MAX_STARS];
+        for (int bucket = 0; bucket < TREND_DAYS; bucket++) {
+            long day = bucketDays[bucket];
+            if (day == NO_DAY || day <= today - TREND_DAYS) {
+                continue;
+            }
+            int age = (int) Math.max(0, today - day);
+            dayCounts[age] += bucketCounts[bucket];
+            daySums[age] += bucketSums[bucket];
+            for (int s = 0; s < MAX_STARS; s++) {
+                dayStarCounts[age * MAX_STARS + s] += bucketStarCounts[bucket * MAX_STARS + s];
+            }
+        }
+        return new RatingStats(count, ratingSum, starCounts.clone(), dayCounts, daySums, dayStarCounts);
+    }
+
+    /**
+     * Returns the bucket of a day, emptied first if it held an older day; a day newer than every
+     * counted day takes over the bucket of the day it pushes out of the ring.
+     *
+     * @return The bucket of the day, or -1 if the day is older than the ring.
+     */
+    private int dayBucket(long day) {
+        if (newestDay != NO_DAY && day <= newestDay - TREND_DAYS) {
+            return -1;
+        }
+        int bucket = bucketOf(day);
+        if (bucketDays[bucket] != day) {
+            // The bucket holds an older day, since any newer day of this bucket would be a ring ahead.
+            bucketDays[bucket] = day;
+            bucketCounts[bucket] = 0;
+            bucketSums[bucket] = 0L;
+            Arrays.fill(bucketStarCounts, bucket * MAX_STARS, (bucket + 1) * MAX_STARS, 0);
+        }
+        if (newestDay == NO_DAY || day > newestDay) {
+            newestDay = day;
+        }
+        return bucket;
+    }
+
+    private static int bucketOf(long day) {
+        return (int) Math.floorMod(day, (long) TREND_DAYS);
+    }
+
+    private static int starIndex(int rate) {
+        return Math.max(1, Math.min(MAX_STARS, rate)) - 1;
+    }
+}
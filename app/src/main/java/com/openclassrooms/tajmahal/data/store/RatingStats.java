@@ -0,0 +1,175 @@
+package com.openclassrooms.tajmahal.data.store;
+
+/**
+ * An immutable snapshot of the ratings of a restaurant, published by a {@link RatingAggregate}:
+ * the number of reviews, the sum of their ratings and the number of reviews per star count, all
+ * time and for each of the last {@value RatingAggregate#TREND_DAYS} days.
+ * <p>
+ * All-time queries run in constant time; window queries run in time proportional to the number
+ * of days of the window. None of them allocates.
+ * </p>
+ * <p>
+ * Ratings are whole stars, so the per-star histograms are an exact summary of the distribution:
+ * percentiles are read from them exactly, without keeping the reviews or an approximate sketch.
+ * </p>
+ */
+public final class RatingStats {
+
+    /** The statistics of a restaurant without reviews. */
+    public static final RatingStats EMPTY = new RatingStats(0, 0L, new int[RatingAggregate.MAX_STARS],
+            new int[RatingAggregate.TREND_DAYS], new long[RatingAggregate.TREND_DAYS],
+            new int[RatingAggregate.TREND_DAYS * RatingAggregate.MAX_STARS]);
+
+    private static final int MAX_STARS = RatingAggregate.MAX_STARS;
+
+    private final int count;
+    private final long ratingSum;
+    // Number of reviews rated i + 1 stars; never modified.
+    private final int[] starCounts;
+    // Totals of the reviews created d days ago, at index d; never modified.
+    private final int[] dayCounts;
+    private final long[] daySums;
+    // Number of reviews created d days ago rated s + 1 stars, at d * MAX_STARS + s; never modified.
+    private final int[] dayStarCounts;
+
+    RatingStats(int count, long ratingSum, int[] starCounts, int[] dayCounts, long[] daySums, int[] dayStarCounts) {
+        this.count = count;
+        this.ratingSum = ratingSum;
+        this.starCounts = starCounts;
+        this.dayCounts = dayCounts;
+        this.daySums = daySums;
+        this.dayStarCounts = dayStarCounts;
+    }
+
+    /**
+     * @return The number of reviews.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return The sum of the ratings of the reviews.
+     */
+    public long getRatingSum() {
+        return ratingSum;
+    }
+
+    /**
+     * @return The average rating, or 0 if there are no reviews.
+     */
+    public float getAverageRating() {
+        return count == 0 ? 0f : ratingSum / (float) count;
+    }
+
+    /**
+     * @param stars The star count, from 1 to {@link RatingAggregate#MAX_STARS}.
+     * @return The number of reviews with that star count, or 0 for any other star count.
+     */
+    public int getCountForStar(int stars) {
+        return stars < 1 || stars > MAX_STARS ? 0 : starCounts[stars - 1];
+    }
+
+    /**
+     * @param stars The star count, from 1 to {@link RatingAggregate#MAX_STARS}.
+     * @return The percentage of the reviews with that star count, rounded down.
+     */
+    public int getPercentageForStar(int stars) {
+        return count == 0 ? 0 : (int) (getCountForStar(stars) * 100L / count);
+    }
+
+    /**
+     * Returns a percentile of the ratings, such as the median for 0.5.
+     *
+     * @param fraction The fraction of the reviews rated at most the returned rating, from 0 to 1.
+     * @return The lowest star count reached by that fraction of the reviews, or 0 if there are no reviews.
+     */
+    public int getPercentile(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        int rank = rankOf(count, fraction);
+        int seen = 0;
+        for (int s = 0; s < MAX_STARS; s++) {
+            seen += starCounts[s];
+            if (seen >= rank) {
+                return s + 1;
+            }
+        }
+        return MAX_STARS;
+    }
+
+    /**
+     * Counts the reviews created during the last days, today included.
+     *
+     * @param days The length of the window, from 1 to {@link RatingAggregate#TREND_DAYS}.
+     * @return The number of reviews created in the window.
+     */
+    public int getCount(int days) {
+        checkDays(days);
+        int total = 0;
+        for (int d = 0; d < days; d++) {
+            total += dayCounts[d];
+        }
+        return total;
+    }
+
+    /**
+     * Computes the rolling average rating of the last days, today included.
+     *
+     * @param days The length of the window, from 1 to {@link RatingAggregate#TREND_DAYS}.
+     * @return The average rating of the reviews created in the window, or 0 if there are none.
+     */
+    public float getAverageRating(int days) {
+        checkDays(days);
+        int total = 0;
+        long sum = 0L;
+        for (int d = 0; d < days; d++) {
+            total += dayCounts[d];
+            sum += daySums[d];
+        }
+        return total == 0 ? 0f : sum / (float) total;
+    }
+
+    /**
+     * Returns a percentile of the ratings of the last days, today included.
+     *
+     * @param days     The length of the window, from 1 to {@link RatingAggregate#TREND_DAYS}.
+     * @param fraction The fraction of the reviews rated at most the returned rating, from 0 to 1.
+     * @return The lowest star count reached by that fraction of the reviews of the window, or 0 if there are none.
+     */
+    public int getPercentile(int days, double fraction) {
+        int total = getCount(days);
+        if (total == 0) {
+            return 0;
+        }
+        int rank = rankOf(total, fraction);
+        int seen = 0;
+        for (int s = 0; s < MAX_STARS; s++) {
+            for (int d = 0; d < days; d++) {
+                seen += dayStarCounts[d * MAX_STARS + s];
+            }
+            if (seen >= rank) {
+                return s + 1;
+            }
+        }
+        return MAX_STARS;
+    }
+
+    /**
+     * @return The 1-based rank of the review at the given fraction of {@code total} reviews ordered
+     * by rating, as the nearest-rank percentile.
+     */
+    private static int rankOf(int total, double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("Invalid fraction: " + fraction);
+        }
+        return Math.max(1, (int) Math.ceil(fraction * total));
+    }
+
+    private static void checkDays(int days) {
+        if (days < 1 || days > RatingAggregate.TREND_DAYS) {
+            throw new IllegalArgumentException("Invalid window: " + days + " days");
+        }
+    }
+}
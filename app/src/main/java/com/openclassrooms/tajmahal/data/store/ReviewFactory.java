@@ -0,0 +1,100 @@
+package com.openclassrooms.tajmahal.data.store;
+
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates the {@link Review} objects decoded by the data sources, sharing their repeated strings.
+ * <p>
+ * The same users review repeatedly, so usernames and avatar URLs repeat across a large review set:
+ * every review of a user references one username and one avatar URL instance, and an avatar URL,
+ * the longest of these strings, is stored once per user rather than once per review. Short comments
+ * such as "Très bon !" repeat too and are shared; longer comments are almost always unique and are
+ * kept as they are, since pooling them would only add a map entry per review.
+ * </p>
+ * <p>
+ * Every parser and data source building reviews from raw data should go through this class.
+ * </p>
+ */
+public final class ReviewFactory {
+
+    /** Maximum length of a comment that is shared between reviews. */
+    static final int MAX_SHARED_COMMENT_LENGTH = 32;
+
+    // Bounds the pools to a few megabytes even if every value is unique.
+    private static final int MAX_POOLED_STRINGS = 50_000;
+
+    private static final StringPool USERNAMES = new StringPool(MAX_POOLED_STRINGS);
+    private static final StringPool PICTURES = new StringPool(MAX_POOLED_STRINGS);
+    private static final StringPool COMMENTS = new StringPool(MAX_POOLED_STRINGS);
+
+    // Local identifiers available per millisecond elapsed since the epoch, see newLocalId().
+    private static final long LOCAL_IDS_PER_MILLI = 1000;
+    // Last local identifier handed out, counting down from the start time of the process.
+    private static final AtomicLong LOCAL_IDS = new AtomicLong(-System.currentTimeMillis() * LOCAL_IDS_PER_MILLI);
+
+    private ReviewFactory() {
+    }
+
+    /**
+     * Returns a new identifier for a review the user submits, used until the API assigns its own.
+     * <p>
+     * Local identifiers are negative, so they never collide with the identifiers of the sources,
+     * and far below the negated row identifiers of the outbox. They count down from the start time
+     * of the process, so they stay unique across restarts unless more than a thousand reviews per
+     * millisecond were submitted.
+     * </p>
+     *
+     * @return A local identifier never returned before.
+     */
+    public static long newLocalId() {
+        return LOCAL_IDS.decrementAndGet();
+    }
+
+    /**
+     * Creates a review whose repeated strings are shared with the reviews created before it.
+     *
+     * @param username the name of the user leaving the review
+     * @param picture  the profile picture URL or path of the user
+     * @param comment  the feedback or comment from the user
+     * @param rate     the rating given by the user
+     * @return The new {@link Review}.
+     */
+    public static Review newReview(String username, String picture, String comment, int rate) {
+        return newReview(username, picture, comment, rate, 0L);
+    }
+
+    /**
+     * Creates a review whose repeated strings are shared with the reviews created before it.
+     *
+     * @param username  the name of the user leaving the review
+     * @param picture   the profile picture URL or path of the user
+     * @param comment   the feedback or comment from the user
+     * @param rate      the rating given by the user
+     * @param createdAt the creation time of the review, in milliseconds since the epoch, or 0 if it is unknown
+     * @return The new {@link Review}.
+     */
+    public static Review newReview(String username, String picture, String comment, int rate, long createdAt) {
+        return newReview(0L, username, picture, comment, rate, createdAt);
+    }
+
+    /**
+     * Creates a review identified by its source, whose repeated strings are shared with the reviews
+     * created before it.
+     *
+     * @param id        the identifier of the review assigned by its source, or 0 if it has none
+     * @param username  the name of the user leaving the review
+     * @param picture   the profile picture URL or path of the user
+     * @param comment   the feedback or comment from the user
+     * @param rate      the rating given by the user
+     * @param createdAt the creation time of the review, in milliseconds since the epoch, or 0 if it is unknown
+     * @return The new {@link Review}.
+     */
+    public static Review newReview(long id, String username, String picture, String comment, int rate, long createdAt) {
+        if (comment != null && comment.length() <= MAX_SHARED_COMMENT_LENGTH) {
+            comment = COMMENTS.intern(comment);
+        }
+        return new Review(id, USERNAMES.intern(username), PICTURES.intern(picture), comment, rate, createdAt);
+    }
+}
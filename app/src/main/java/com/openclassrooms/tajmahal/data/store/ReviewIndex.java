@@ -0,0 +1,40 @@
+package com.openclassrooms.tajmahal.data.store;
+
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import java.util.List;
+
+/**
+ * A secondary index over a newest-first list of reviews, kept up to date as reviews are added at
+ * either end of the list instead of being rebuilt.
+ * <p>
+ * The repository adds submitted reviews at the head of the list and the chunks of a reload at its
+ * tail, and clears the index when the whole list is replaced.
+ * </p>
+ */
+public interface ReviewIndex {
+
+    /**
+     * Indexes reviews inserted at the head of the list, that is newer than every indexed review.
+     *
+     * @param newestFirst The inserted reviews, newest first.
+     */
+    void addNewest(List<Review> newestFirst);
+
+    /**
+     * Indexes reviews appended at the tail of the list, that is older than every indexed review.
+     *
+     * @param newestFirst The appended reviews, newest first.
+     */
+    void addOldest(List<Review> newestFirst);
+
+    /**
+     * Removes every review from the index.
+     */
+    void clear();
+
+    /**
+     * @return The number of indexed reviews.
+     */
+    int size();
+}
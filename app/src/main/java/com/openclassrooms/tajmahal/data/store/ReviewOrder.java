@@ -0,0 +1,16 @@
+package com.openclassrooms.tajmahal.data.store;
+
+/**
+ * The orders in which the review list can be displayed. Reviews with the same rating are
+ * displayed newest first.
+ */
+public enum ReviewOrder {
+    /** Most recent reviews first, the order in which reviews are published. */
+    NEWEST_FIRST,
+    /** Least recent reviews first. */
+    OLDEST_FIRST,
+    /** Five-star reviews first. */
+    HIGHEST_RATED,
+    /** One-star reviews first. */
+    LOWEST_RATED
+}
@@ -0,0 +1,217 @@
+package com.openclassrooms.tajmahal.data.store;
+
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/**
+ * An inverted index of the words of review comments, answering full-text queries without
+ * scanning the comments.
+ * <p>
+ * Comments and queries are normalized the same way: lower-cased, stripped of their accents and
+ * with the French ligatures expanded, so that "delicieuse" finds "Délicieuse" and "oeuf" finds
+ * "œuf". Words shorter than {@value #MIN_TOKEN_LENGTH} characters, such as the elided "l'" or
+ * "d'", are not indexed.
+ * </p>
+ * <p>
+ * A query matches the reviews containing, for each of its words, a word starting with it, so that
+ * "curr" finds "currys" while the user is typing. The words of the index are kept sorted, so each
+ * query word costs a range lookup plus the postings it matches, whatever the number of reviews.
+ * </p>
+ * <p>
+ * The index is updated incrementally: reviews are added at either end of a newest-first list,
+ * as the repository does for submitted reviews and for the chunks of a reload, and each addition
+ * only indexes the added comments. Every review gets a document number that grows towards the
+ * newest end and decreases towards the oldest end, so document order is list order.
+ * </p>
+ * <p>
+ * This class is not thread-safe: the repository updates and queries it under its own lock.
+ * </p>
+ */
+public class ReviewSearchIndex implements ReviewIndex {
+
+    /** Minimum length of an indexed word. */
+    public static final int MIN_TOKEN_LENGTH = 2;
+
+    // Reviews added at the newest end, oldest first: document number i.
+    private final List<Review> newer = new ArrayList<>();
+    // Reviews added at the oldest end, newest first: document number -1 - j.
+    private final List<Review> older = new ArrayList<>();
+    // Document numbers of the reviews containing each normalized word.
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+
+    @Override
+    public void addNewest(List<Review> newestFirst) {
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            Review review = newestFirst.get(i);
+            index(review, newer.size());
+            newer.add(review);
+        }
+    }
+
+    @Override
+    public void addOldest(List<Review> newestFirst) {
+        for (Review review : newestFirst) {
+            index(review, -1 - older.size());
+            older.add(review);
+        }
+    }
+
+    @Override
+    public void clear() {
+        newer.clear();
+        older.clear();
+        postings.clear();
+    }
+
+    @Override
+    public int size() {
+        return newer.size() + older.size();
+    }
+
+    /**
+     * Finds the reviews whose comment contains a word starting with each word of the query.
+     *
+     * @param query The words to look for, in any case and with or without accents.
+     * @return The matching reviews, newest first; empty if the query has no indexable word.
+     */
+    public List<Review> search(String query) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // Bit b stands for document b - offset, so bits increase from the oldest review to the newest.
+        int offset = older.size();
+        int count = offset + newer.size();
+        BitSet matches = null;
+        for (String term : terms) {
+            BitSet termMatches = new BitSet(count);
+            for (Postings words : postings.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+                words.addTo(termMatches, offset);
+            }
+            if (matches == null) {
+                matches = termMatches;
+            } else {
+                matches.and(termMatches);
+            }
+            if (matches.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        List<Review> results = new ArrayList<>(matches.cardinality());
+        for (int bit = matches.previousSetBit(count - 1); bit >= 0; bit = matches.previousSetBit(bit - 1)) {
+            int document = bit - offset;
+            results.add(document >= 0 ? newer.get(document) : older.get(-1 - document));
+        }
+        return results;
+    }
+
+    private void index(Review review, int document) {
+        if (review.getComment() == null) {
+            return;
+        }
+        for (String token : tokenize(review.getComment())) {
+            Postings words = postings.get(token);
+            if (words == null) {
+                words = new Postings();
+                postings.put(token, words);
+            }
+            words.add(document);
+        }
+    }
+
+    /**
+     * Splits a text into normalized words of at least {@value #MIN_TOKEN_LENGTH} characters.
+     *
+     * @param text The text to split.
+     * @return The words, in text order, possibly repeated.
+     */
+    public static List<String> tokenize(String text) {
+        String normalized = normalize(text);
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean inWord = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                if (i - start >= MIN_TOKEN_LENGTH) {
+                    tokens.add(normalized.substring(start, i));
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Lower-cases a text, strips its accents and expands the ligatures.
+     *
+     * @param text The text to normalize.
+     * @return The normalized text.
+     */
+    public static String normalize(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        if (isAscii(lower)) {
+            return lower;
+        }
+        // NFD splits "é" into "e" and a combining accent, which is then dropped.
+        String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (c == 'œ') {
+                normalized.append("oe");
+            } else if (c == 'æ') {
+                normalized.append("ae");
+            } else {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The document numbers of the reviews containing a word, in indexing order.
+     */
+    private static final class Postings {
+        private int[] documents = new int[2];
+        private int size;
+
+        void add(int document) {
+            // The words of a comment are indexed together, so a repeated word repeats the last document.
+            if (size > 0 && documents[size - 1] == document) {
+                return;
+            }
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+            }
+            documents[size++] = document;
+        }
+
+        void addTo(BitSet bits, int offset) {
+            for (int i = 0; i < size; i++) {
+                bits.set(documents[i] + offset);
+            }
+        }
+    }
+}
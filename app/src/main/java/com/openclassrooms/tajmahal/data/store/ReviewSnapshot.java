@@ -0,0 +1,56 @@
+package com.openclassrooms.tajmahal.data.store;
+
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable view of a {@link ReviewStore} at a given instant, newest first.
+ * <p>
+ * A snapshot shares its storage with the store it was taken from and is never copied; any
+ * attempt to modify it throws {@link UnsupportedOperationException}.
+ * </p>
+ */
+public final class ReviewSnapshot extends AbstractList<Review> implements RandomAccess {
+
+    private final AtomicReferenceArray<Review>[] chunks;
+    private final int size;
+
+    ReviewSnapshot(AtomicReferenceArray<Review>[] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    /**
+     * Returns the review at the given position, the newest review being at position 0.
+     */
+    @Override
+    public Review get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        int insertionIndex = size - 1 - index;
+        return chunks[ReviewStore.chunkOf(insertionIndex)].get(ReviewStore.offsetOf(insertionIndex));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a review by insertion index, the oldest review being at index 0. Unlike positions,
+     * insertion indices do not change when newer reviews are added to the store.
+     *
+     * @param insertionIndex The insertion index of the review.
+     * @return The review.
+     */
+    public Review getByInsertionIndex(int insertionIndex) {
+        if (insertionIndex < 0 || insertionIndex >= size) {
+            throw new IndexOutOfBoundsException("Insertion index: " + insertionIndex + ", size: " + size);
+        }
+        return chunks[ReviewStore.chunkOf(insertionIndex)].get(ReviewStore.offsetOf(insertionIndex));
+    }
+}
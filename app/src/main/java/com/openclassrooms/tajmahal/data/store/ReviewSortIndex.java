@@ -0,0 +1,181 @@
+package com.openclassrooms.tajmahal.data.store;
+
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the reviews in every {@link ReviewOrder}, optionally filtered by star count, so that any
+ * page of any order is read in time proportional to the page size, without sorting.
+ * <p>
+ * The reviews are split into one bucket per star count, each in list order, newest first. A
+ * filtered order is a single bucket, read forwards or backwards; an order by rating is the
+ * concatenation of the five buckets, so locating a position costs at most five size lookups.
+ * Adding a review appends it to the end of its bucket in constant time.
+ * </p>
+ * <p>
+ * This class is not thread-safe: the repository updates and queries it under its own lock.
+ * </p>
+ */
+public class ReviewSortIndex implements ReviewIndex {
+
+    /** Star filter keeping every review. */
+    public static final int ALL_STARS = 0;
+    /** Highest star count; ratings outside 1 to this value are counted as the nearest star. */
+    public static final int MAX_STARS = RatingAggregate.MAX_STARS;
+
+    // Every review, newest first.
+    private final Bucket all = new Bucket();
+    // The reviews rated i + 1 stars, newest first.
+    private final Bucket[] byStars = new Bucket[MAX_STARS];
+
+    /**
+     * Constructs an empty {@link ReviewSortIndex}.
+     */
+    public ReviewSortIndex() {
+        for (int i = 0; i < byStars.length; i++) {
+            byStars[i] = new Bucket();
+        }
+    }
+
+    @Override
+    public void addNewest(List<Review> newestFirst) {
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            Review review = newestFirst.get(i);
+            all.addNewest(review);
+            bucketOf(review).addNewest(review);
+        }
+    }
+
+    @Override
+    public void addOldest(List<Review> newestFirst) {
+        for (Review review : newestFirst) {
+            all.addOldest(review);
+            bucketOf(review).addOldest(review);
+        }
+    }
+
+    @Override
+    public void clear() {
+        all.clear();
+        for (Bucket bucket : byStars) {
+            bucket.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        return all.size();
+    }
+
+    /**
+     * Counts the reviews kept by a star filter.
+     *
+     * @param stars The star count of the reviews to count, or {@link #ALL_STARS}.
+     * @return The number of matching reviews.
+     */
+    public int size(int stars) {
+        return stars == ALL_STARS ? all.size() : byStars[checkStars(stars) - 1].size();
+    }
+
+    /**
+     * Copies a page of the reviews in the given order, keeping only the given star count.
+     *
+     * @param order The order of the reviews.
+     * @param stars The star count of the reviews to keep, or {@link #ALL_STARS}.
+     * @param from  The position of the first review of the page.
+     * @param count The maximum number of reviews of the page.
+     * @return The reviews of the page, shorter than {@code count} if the end was reached.
+     */
+    public List<Review> page(ReviewOrder order, int stars, int from, int count) {
+        if (from < 0 || count < 0) {
+            throw new IllegalArgumentException("Invalid page: from " + from + ", count " + count);
+        }
+        int to = Math.min(size(stars), from + count);
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+        List<Review> page = new ArrayList<>(to - from);
+        if (stars != ALL_STARS || order == ReviewOrder.NEWEST_FIRST || order == ReviewOrder.OLDEST_FIRST) {
+            Bucket bucket = stars == ALL_STARS ? all : byStars[stars - 1];
+            // Within a single star count, the orders by rating are the order by recency.
+            if (order == ReviewOrder.OLDEST_FIRST) {
+                bucket.copyBackwards(page, bucket.size() - 1 - from, to - from);
+            } else {
+                bucket.copyForwards(page, from, to - from);
+            }
+            return page;
+        }
+        // The order by rating reads the buckets one after the other, skipping those before the page.
+        boolean highestFirst = order == ReviewOrder.HIGHEST_RATED;
+        int position = 0;
+        for (int i = 0; i < MAX_STARS && position < to; i++) {
+            Bucket bucket = byStars[highestFirst ? MAX_STARS - 1 - i : i];
+            int start = Math.max(from, position);
+            int end = Math.min(to, position + bucket.size());
+            if (start < end) {
+                bucket.copyForwards(page, start - position, end - start);
+            }
+            position += bucket.size();
+        }
+        return page;
+    }
+
+    private Bucket bucketOf(Review review) {
+        int stars = Math.max(1, Math.min(MAX_STARS, review.getRate()));
+        return byStars[stars - 1];
+    }
+
+    private static int checkStars(int stars) {
+        if (stars < 1 || stars > MAX_STARS) {
+            throw new IllegalArgumentException("Invalid star filter: " + stars);
+        }
+        return stars;
+    }
+
+    /**
+     * Reviews in newest-first order, growable at both ends with constant-time access by position.
+     */
+    private static final class Bucket {
+        // Reviews added at the head, oldest first, so that adding one is an append.
+        private final ArrayList<Review> newer = new ArrayList<>();
+        // Reviews added at the tail, newest first.
+        private final ArrayList<Review> older = new ArrayList<>();
+
+        void addNewest(Review review) {
+            newer.add(review);
+        }
+
+        void addOldest(Review review) {
+            older.add(review);
+        }
+
+        void clear() {
+            newer.clear();
+            older.clear();
+        }
+
+        int size() {
+            return newer.size() + older.size();
+        }
+
+        Review get(int position) {
+            int head = newer.size();
+            return position < head ? newer.get(head - 1 - position) : older.get(position - head);
+        }
+
+        void copyForwards(List<Review> page, int from, int count) {
+            for (int i = from; i < from + count; i++) {
+                page.add(get(i));
+            }
+        }
+
+        void copyBackwards(List<Review> page, int from, int count) {
+            for (int i = from; i > from - count; i--) {
+                page.add(get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.openclassrooms.tajmahal.data.store;
+
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An in-memory collection of reviews, newest first, with O(1) prepend and free immutable snapshots.
+ * <p>
+ * Reviews are stored in insertion order: prepending a review to the collection appends it to the
+ * storage. The storage is a fixed directory of lazily allocated chunks whose sizes double from
+ * one chunk to the next, so it grows without ever moving a review or replacing the directory.
+ * Slots are written once, so a {@link ReviewSnapshot} can share the chunks with the store: it only
+ * records how many reviews existed when it was taken, and later insertions go to slots it never reads.
+ * </p>
+ * <p>
+ * The store is lock-free and safe for any number of concurrent writers and readers:
+ * </p>
+ * <ol>
+ * <li>a writer reserves a range of slots with a single compare-and-set, so writers never
+ * contend on the slots themselves;</li>
+ * <li>a missing chunk is installed with a compare-and-set, the losers of the race dropping their copy;</li>
+ * <li>readers only see the longest prefix of written slots. After writing its range, a writer
+ * advances that prefix over every written slot, including the ranges of other writers; a writer
+ * whose earlier range is still being written simply returns, and the late writer publishes both
+ * ranges when it completes. No writer ever waits for another one.</li>
+ * </ol>
+ * <p>
+ * A batch is written from its last slot to its first, so the prefix can only cross it once it is
+ * complete. A review is visible as soon as {@link #prepend(Review)} returns, unless another
+ * writer reserved an earlier slot and has not written it yet.
+ * </p>
+ */
+public class ReviewStore {
+
+    // Log2 of the size of the first chunk; chunk k holds 64 << k slots.
+    static final int FIRST_CHUNK_SHIFT = 6;
+    // 25 chunks hold 64 * (2^25 - 1) = 2^31 - 64 slots, the largest count an int size allows.
+    static final int CHUNK_COUNT = 25;
+    private static final int MAX_SIZE = ((1 << CHUNK_COUNT) - 1) << FIRST_CHUNK_SHIFT;
+
+    // Chunks of reviews, oldest first. The directory is never replaced; each chunk is installed once.
+    private final AtomicReferenceArray<AtomicReferenceArray<Review>> chunks = new AtomicReferenceArray<>(CHUNK_COUNT);
+    // Number of slots reserved by writers, written or not.
+    private final AtomicInteger reserved = new AtomicInteger();
+    // Length of the prefix of written slots published to readers. Only advanced over written slots.
+    private final AtomicInteger published = new AtomicInteger();
+
+    /**
+     * Constructs an empty {@link ReviewStore}.
+     */
+    public ReviewStore() {
+    }
+
+    /**
+     * Constructs a {@link ReviewStore} holding the given reviews.
+     *
+     * @param newestFirst The initial reviews, newest first.
+     */
+    public ReviewStore(List<Review> newestFirst) {
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            prepend(newestFirst.get(i));
+        }
+    }
+
+    /**
+     * Inserts a review at the head of the collection, in constant time.
+     *
+     * @param review The review to insert.
+     */
+    public void prepend(Review review) {
+        if (review == null) {
+            throw new NullPointerException("review");
+        }
+        int index = reserve(1);
+        chunkFor(index).set(offsetOf(index), review);
+        advancePublished();
+    }
+
+    /**
+     * Inserts several reviews at the head of the collection, in iteration order, so that the last
+     * one becomes the newest. The reviews are published together: a snapshot contains either
+     * none or all of them. Reviews inserted concurrently by other threads never interleave with the batch.
+     *
+     * @param reviews The reviews to insert.
+     */
+    public void prependAll(Collection<Review> reviews) {
+        Review[] batch = reviews.toArray(new Review[0]);
+        if (batch.length == 0) {
+            return;
+        }
+        for (Review review : batch) {
+            if (review == null) {
+                throw new NullPointerException("review");
+            }
+        }
+        int start = reserve(batch.length);
+        // Last slot first: the published prefix stops at the first slot until the whole batch is written.
+        for (int i = batch.length - 1; i >= 0; i--) {
+            int index = start + i;
+            chunkFor(index).set(offsetOf(index), batch[i]);
+        }
+        advancePublished();
+    }
+
+    /**
+     * Takes an immutable snapshot of the collection, without copying any review.
+     *
+     * @return The reviews held by the store at this instant, newest first.
+     */
+    public ReviewSnapshot snapshot() {
+        int count = published.get();
+        // Chunks are read after the size, so every chunk holding one of the first `count` reviews is installed.
+        AtomicReferenceArray<Review>[] view = newChunkArray(chunkOf(Math.max(0, count - 1)) + 1);
+        for (int i = 0; i < view.length; i++) {
+            view[i] = chunks.get(i);
+        }
+        return new ReviewSnapshot(view, count);
+    }
+
+    /**
+     * Creates an array of chunks; generic arrays can only be created unchecked.
+     */
+    @SuppressWarnings("unchecked")
+    private static AtomicReferenceArray<Review>[] newChunkArray(int length) {
+        return (AtomicReferenceArray<Review>[]) new AtomicReferenceArray<?>[length];
+    }
+
+    /**
+     * @return The number of reviews published in the store.
+     */
+    public int size() {
+        return published.get();
+    }
+
+    /**
+     * Reserves a range of slots for the calling writer.
+     *
+     * @param count The number of slots to reserve.
+     * @return The index of the first reserved slot.
+     */
+    private int reserve(int count) {
+        while (true) {
+            int start = reserved.get();
+            if (start > MAX_SIZE - count) {
+                throw new IllegalStateException("ReviewStore is full");
+            }
+            if (reserved.compareAndSet(start, start + count)) {
+                return start;
+            }
+        }
+    }
+
+    /**
+     * Advances the published prefix over every written slot. A writer calls it after writing its
+     * slots: either it publishes them, or an earlier slot is still unwritten and its writer will
+     * publish them when it calls this method in turn.
+     */
+    private void advancePublished() {
+        while (true) {
+            int start = published.get();
+            int limit = reserved.get();
+            int end = start;
+            while (end < limit && isWritten(end)) {
+                end++;
+            }
+            if (end == start) {
+                return;
+            }
+            // On failure, another writer advanced the prefix concurrently; rescan from its position.
+            published.compareAndSet(start, end);
+        }
+    }
+
+    private boolean isWritten(int index) {
+        AtomicReferenceArray<Review> chunk = chunks.get(chunkOf(index));
+        return chunk != null && chunk.get(offsetOf(index)) != null;
+    }
+
+    /**
+     * Returns the chunk holding the given insertion index, installing it if needed.
+     */
+    private AtomicReferenceArray<Review> chunkFor(int index) {
+        int chunkIndex = chunkOf(index);
+        AtomicReferenceArray<Review> chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            AtomicReferenceArray<Review> created = new AtomicReferenceArray<>(1 << (chunkIndex + FIRST_CHUNK_SHIFT));
+            chunk = chunks.compareAndSet(chunkIndex, null, created) ? created : chunks.get(chunkIndex);
+        }
+        return chunk;
+    }
+
+    /**
+     * @return The chunk holding the given insertion index.
+     */
+    static int chunkOf(int index) {
+        return 31 - Integer.numberOfLeadingZeros((index >>> FIRST_CHUNK_SHIFT) + 1);
+    }
+
+    /**
+     * @return The offset of the given insertion index in its chunk.
+     */
+    static int offsetOf(int index) {
+        return index - (((1 << chunkOf(index)) - 1) << FIRST_CHUNK_SHIFT);
+    }
+}
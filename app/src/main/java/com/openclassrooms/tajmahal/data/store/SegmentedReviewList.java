@@ -0,0 +1,120 @@
+package com.openclassrooms.tajmahal.data.store;
+
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list of reviews made of other lists, its segments, which it shares instead of
+ * copying them.
+ * <p>
+ * Adding a segment at either end creates a new list referencing the same segments, in time
+ * proportional to the number of segments rather than to the number of reviews, and reading a
+ * review finds its segment by binary search. The segments must never be modified: they are
+ * typically {@link ReviewSnapshot}s, or the pages and chunks read from a data source.
+ * </p>
+ */
+public final class SegmentedReviewList extends AbstractList<Review> implements RandomAccess {
+
+    private static final SegmentedReviewList EMPTY = new SegmentedReviewList(newArray(0));
+
+    // Non-empty segments, in list order.
+    private final List<Review>[] segments;
+    // Position of the first review of each segment, followed by the size of the list.
+    private final int[] starts;
+
+    private SegmentedReviewList(List<Review>[] segments) {
+        this.segments = segments;
+        this.starts = new int[segments.length + 1];
+        for (int i = 0; i < segments.length; i++) {
+            starts[i + 1] = starts[i] + segments[i].size();
+        }
+    }
+
+    /**
+     * @return The empty list.
+     */
+    public static SegmentedReviewList empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a list made of the given segments, in order.
+     *
+     * @param segments The segments, which must not be modified afterwards.
+     * @return The concatenation of the segments.
+     */
+    public static SegmentedReviewList of(List<? extends List<Review>> segments) {
+        int count = 0;
+        for (List<Review> segment : segments) {
+            if (!segment.isEmpty()) {
+                count++;
+            }
+        }
+        List<Review>[] array = newArray(count);
+        int i = 0;
+        for (List<Review> segment : segments) {
+            if (!segment.isEmpty()) {
+                array[i++] = segment;
+            }
+        }
+        return new SegmentedReviewList(array);
+    }
+
+    /**
+     * Creates a list starting with the given segment, followed by the reviews of this list.
+     *
+     * @param segment The reviews to insert at the head, which must not be modified afterwards.
+     * @return The new list; this list is unchanged.
+     */
+    public SegmentedReviewList withFirst(List<Review> segment) {
+        if (segment.isEmpty()) {
+            return this;
+        }
+        List<Review>[] array = newArray(segments.length + 1);
+        array[0] = segment;
+        System.arraycopy(segments, 0, array, 1, segments.length);
+        return new SegmentedReviewList(array);
+    }
+
+    /**
+     * Creates a list made of the reviews of this list, followed by the given segment.
+     *
+     * @param segment The reviews to append, which must not be modified afterwards.
+     * @return The new list; this list is unchanged.
+     */
+    public SegmentedReviewList withLast(List<Review> segment) {
+        if (segment.isEmpty()) {
+            return this;
+        }
+        List<Review>[] array = Arrays.copyOf(segments, segments.length + 1);
+        array[segments.length] = segment;
+        return new SegmentedReviewList(array);
+    }
+
+    @Override
+    public Review get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        int segment = Arrays.binarySearch(starts, 0, segments.length, index);
+        if (segment < 0) {
+            // Not the first review of a segment: it belongs to the segment starting before it.
+            segment = -segment - 2;
+        }
+        return segments[segment].get(index - starts[segment]);
+    }
+
+    @Override
+    public int size() {
+        return starts[segments.length];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Review>[] newArray(int length) {
+        return (List<Review>[]) new List<?>[length];
+    }
+}
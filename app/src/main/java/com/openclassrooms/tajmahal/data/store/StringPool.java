@@ -0,0 +1,55 @@
+package com.openclassrooms.tajmahal.data.store;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe pool of canonical strings, so that equal strings decoded from different payloads
+ * share a single instance instead of each holding its own copy of the characters.
+ * <p>
+ * Unlike {@link String#intern()}, the pool is private to the application data and bounded: once it
+ * holds {@code maxSize} strings, new strings are returned as they are, so that a stream of unique
+ * values cannot grow it forever. Strings already pooled keep being shared.
+ * </p>
+ */
+public final class StringPool {
+
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    /**
+     * Constructs an empty {@link StringPool}.
+     *
+     * @param maxSize The maximum number of strings held by the pool.
+     */
+    public StringPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the canonical instance of a string, pooling it if it is new and the pool is not full.
+     *
+     * @param value The string to deduplicate; may be null.
+     * @return The pooled string equal to {@code value}, or {@code value} itself.
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = strings.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (strings.size() >= maxSize) {
+            return value;
+        }
+        pooled = strings.putIfAbsent(value, value);
+        return pooled == null ? value : pooled;
+    }
+
+    /**
+     * @return The number of strings held by the pool.
+     */
+    public int size() {
+        return strings.size();
+    }
+}
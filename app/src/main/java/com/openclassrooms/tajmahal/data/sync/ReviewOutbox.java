@@ -0,0 +1,335 @@
+package com.openclassrooms.tajmahal.data.sync;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.openclassrooms.tajmahal.data.local.PendingReviewDao;
+import com.openclassrooms.tajmahal.data.local.PendingReviewEntity;
+import com.openclassrooms.tajmahal.data.service.RestaurantApi;
+import com.openclassrooms.tajmahal.domain.model.Review;
+import com.openclassrooms.tajmahal.domain.model.ReviewPage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Durable queue of the reviews submitted by the user and not uploaded to the {@link RestaurantApi} yet.
+ * <p>
+ * Submitting a review only writes it to the {@code pending_reviews} table, which survives process
+ * death, and schedules the {@link ReviewUploadWorker}. The worker drains the outbox oldest first,
+ * uploading up to {@link #UPLOAD_BATCH_SIZE} reviews of the same restaurant per API call, and is
+ * retried with an exponential backoff as long as uploads fail.
+ * </p>
+ * <p>
+ * A batch the API rejects for good, for instance because its restaurant is unknown, would fail
+ * the same way on every retry: it is dropped from the outbox, so that it does not hold back the
+ * reviews submitted after it, and reported to the {@link RejectionListener}.
+ * </p>
+ * <p>
+ * A batch is removed from the outbox once the API accepted it. If the process dies in between,
+ * the batch is uploaded again: delivery is at least once, since the API has no idempotency key.
+ * </p>
+ * <p>
+ * No lock is held across an API call, so that a slow upload never delays the reads. A read lists
+ * the pending reviews before calling the API, so that a review uploaded meanwhile is either still
+ * pending or already returned by the API; when it is both, the copy returned by the API, which
+ * has the same content, is left out.
+ * </p>
+ */
+public class ReviewOutbox {
+
+    /** Maximum number of reviews uploaded in a single API call. */
+    public static final int UPLOAD_BATCH_SIZE = 50;
+
+    private final PendingReviewDao pendingReviewDao;
+    private final RestaurantApi restaurantApi;
+    private final ReviewUploadScheduler scheduler;
+    // Serializes the calls to flush(), so that a batch is not uploaded twice; never taken by the reads.
+    private final Object flushLock = new Object();
+    // Told about the batches the API rejected, so that the screens stop listing them.
+    @Nullable
+    private volatile RejectionListener rejectionListener;
+
+    /**
+     * Constructs a new {@link ReviewOutbox}.
+     *
+     * @param pendingReviewDao The table storing the pending reviews.
+     * @param restaurantApi    The API the reviews are uploaded to.
+     * @param scheduler        Schedules the upload of the pending reviews.
+     */
+    public ReviewOutbox(PendingReviewDao pendingReviewDao, RestaurantApi restaurantApi, ReviewUploadScheduler scheduler) {
+        this.pendingReviewDao = pendingReviewDao;
+        this.restaurantApi = restaurantApi;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Sets the listener told about the batches the API rejects.
+     *
+     * @param listener The listener, or null to remove it.
+     */
+    public void setRejectionListener(@Nullable RejectionListener listener) {
+        rejectionListener = listener;
+    }
+
+    /**
+     * Writes reviews to the outbox and schedules their upload.
+     *
+     * @param restaurantId The restaurant the reviews belong to.
+     * @param reviews      The submitted reviews; the last one is the newest.
+     */
+    @WorkerThread
+    public void enqueue(long restaurantId, List<Review> reviews) {
+        long now = System.currentTimeMillis();
+        List<PendingReviewEntity> rows = new ArrayList<>(reviews.size());
+        for (Review review : reviews) {
+            rows.add(PendingReviewEntity.fromReview(restaurantId, review, now));
+        }
+        pendingReviewDao.insertAll(rows);
+        scheduler.scheduleUpload();
+    }
+
+    /**
+     * Uploads every pending review, in batches of at most {@link #UPLOAD_BATCH_SIZE}, oldest first.
+     * A batch only holds consecutive reviews of one restaurant, so that the reviews of every
+     * restaurant keep their submission order.
+     * A failure stops the upload; the batches uploaded before it are not uploaded again. A batch
+     * the API rejects is dropped and reported to the {@link RejectionListener}, and the upload
+     * goes on with the next one.
+     *
+     * @return The number of reviews uploaded.
+     * @throws java.io.UncheckedIOException if a batch could not be sent, and may be on a retry.
+     * @throws RuntimeException             if the upload failed for another reason.
+     */
+    @WorkerThread
+    public int flush() {
+        synchronized (flushLock) {
+            int uploaded = 0;
+            while (true) {
+                List<PendingReviewEntity> rows = pendingReviewDao.getOldest(UPLOAD_BATCH_SIZE);
+                if (rows.isEmpty()) {
+                    return uploaded;
+                }
+                long restaurantId = rows.get(0).restaurantId;
+                int end = 1;
+                while (end < rows.size() && rows.get(end).restaurantId == restaurantId) {
+                    end++;
+                }
+                rows = rows.subList(0, end);
+                List<Review> batch = new ArrayList<>(rows.size());
+                for (PendingReviewEntity row : rows) {
+                    batch.add(row.toUpload());
+                }
+                try {
+                    restaurantApi.addReviews(restaurantId, batch);
+                } catch (IllegalArgumentException e) {
+                    // Every retry would be rejected the same way.
+                    pendingReviewDao.delete(rows);
+                    onRejected(restaurantId, rows, e);
+                    continue;
+                }
+                // Only once accepted, so that a read listing the pending reviews never misses the batch.
+                pendingReviewDao.delete(rows);
+                uploaded += rows.size();
+            }
+        }
+    }
+
+    private void onRejected(long restaurantId, List<PendingReviewEntity> rows, RuntimeException error) {
+        RejectionListener listener = rejectionListener;
+        if (listener == null) {
+            return;
+        }
+        List<Review> reviews = new ArrayList<>(rows.size());
+        for (PendingReviewEntity row : rows) {
+            reviews.add(row.toReview());
+        }
+        listener.onRejected(restaurantId, reviews, error);
+    }
+
+    /**
+     * Retrieves the reviews of a restaurant from the API, preceded by its reviews still waiting in
+     * the outbox, so that a reload never hides a review the user has submitted. A review being
+     * uploaded concurrently appears exactly once.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @return The pending and uploaded reviews, newest first.
+     */
+    @WorkerThread
+    public List<Review> getReviews(long restaurantId) {
+        PendingReviews pending = readPending(restaurantId);
+        List<Review> uploaded = restaurantApi.getReviews(restaurantId);
+        if (pending.uploads.isEmpty()) {
+            return uploaded;
+        }
+        List<Review> reviews = new ArrayList<>(pending.reviews.size() + uploaded.size());
+        reviews.addAll(pending.reviews);
+        pending.addUploaded(uploaded, reviews);
+        return reviews;
+    }
+
+    /**
+     * Same as {@link #getReviews(long)}, limited to the first page of the API: the pending reviews
+     * of the restaurant, followed by its newest uploaded reviews.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @param pageSize     The number of uploaded reviews requested.
+     * @return The pending reviews and the first page of the API, whose cursor leads to the second page.
+     */
+    @WorkerThread
+    public ReviewPage getFirstPage(long restaurantId, int pageSize) {
+        return getFirstPage(readPending(restaurantId), pageSize);
+    }
+
+    /**
+     * Same as {@link #getFirstPage(long, int)}, with pending reviews read beforehand.
+     *
+     * @param pending  The pending reviews of the restaurant, as returned by {@link #readPending(long)}.
+     * @param pageSize The number of uploaded reviews requested.
+     * @return The pending reviews and the first page of the API, whose cursor leads to the second page.
+     */
+    @WorkerThread
+    public ReviewPage getFirstPage(PendingReviews pending, int pageSize) {
+        ReviewPage uploaded = restaurantApi.getReviews(pending.restaurantId, null, pageSize);
+        if (pending.uploads.isEmpty()) {
+            return uploaded;
+        }
+        List<Review> reviews = new ArrayList<>(pending.reviews.size() + uploaded.getReviews().size());
+        reviews.addAll(pending.reviews);
+        pending.addUploaded(uploaded.getReviews(), reviews);
+        return new ReviewPage(reviews, uploaded.getNextCursor());
+    }
+
+    /**
+     * Same as {@link #getReviews(long)}, but hands the reviews over in chunks as they are read: the
+     * pending reviews first, then the reviews of the API as streamed by
+     * {@link RestaurantApi#streamReviews(long, int, Consumer)}.
+     *
+     * @param restaurantId   The identifier of the restaurant.
+     * @param firstChunkSize The preferred number of reviews of the first chunk of the API.
+     * @param onChunk        Receives each non-empty chunk, newest reviews first.
+     */
+    @WorkerThread
+    public void streamReviews(long restaurantId, int firstChunkSize, Consumer<List<Review>> onChunk) {
+        streamReviews(readPending(restaurantId), firstChunkSize, onChunk);
+    }
+
+    /**
+     * Same as {@link #streamReviews(long, int, Consumer)}, with pending reviews read beforehand.
+     *
+     * @param pending        The pending reviews of the restaurant, as returned by {@link #readPending(long)}.
+     * @param firstChunkSize The preferred number of reviews of the first chunk of the API.
+     * @param onChunk        Receives each non-empty chunk, newest reviews first.
+     */
+    @WorkerThread
+    public void streamReviews(PendingReviews pending, int firstChunkSize, Consumer<List<Review>> onChunk) {
+        if (pending.uploads.isEmpty()) {
+            restaurantApi.streamReviews(pending.restaurantId, firstChunkSize, onChunk);
+            return;
+        }
+        if (!pending.reviews.isEmpty()) {
+            onChunk.accept(pending.reviews);
+        }
+        restaurantApi.streamReviews(pending.restaurantId, firstChunkSize, chunk -> {
+            List<Review> reviews = new ArrayList<>(chunk.size());
+            pending.addUploaded(chunk, reviews);
+            if (!reviews.isEmpty()) {
+                onChunk.accept(reviews);
+            }
+        });
+    }
+
+    /**
+     * Reads the pending reviews of a restaurant, the first step of the reads of this outbox, which
+     * only touches the local table. A caller keeping reviews of its own, such as reviews not
+     * written to the outbox yet, can read them at the same time under a lock of its own, without
+     * holding it while the API is called.
+     *
+     * @param restaurantId The identifier of the restaurant.
+     * @return The pending reviews, to pass to {@link #getFirstPage(PendingReviews, int)} or
+     * {@link #streamReviews(PendingReviews, int, Consumer)}.
+     */
+    @WorkerThread
+    public PendingReviews readPending(long restaurantId) {
+        List<PendingReviewEntity> rows = pendingReviewDao.getAllNewestFirst(restaurantId);
+        PendingReviews pending = new PendingReviews(restaurantId, new ArrayList<>(rows.size()));
+        for (PendingReviewEntity row : rows) {
+            pending.reviews.add(row.toReview());
+            pending.expectUpload(row.toUpload());
+        }
+        return pending;
+    }
+
+    /**
+     * Listener of the batches the API rejected, dropped from the outbox.
+     */
+    public interface RejectionListener {
+
+        /**
+         * Called on the thread of {@link #flush()} once the batch is dropped.
+         *
+         * @param restaurantId The restaurant the reviews belong to.
+         * @param reviews      The dropped reviews, as they were listed while pending.
+         * @param error        The rejection of the API.
+         */
+        void onRejected(long restaurantId, List<Review> reviews, RuntimeException error);
+    }
+
+    /**
+     * The pending reviews of a restaurant listed by a read, with the reviews their upload sends,
+     * which identify the copies the API returns if they are uploaded during the read.
+     */
+    public static final class PendingReviews {
+        private final long restaurantId;
+        private final List<Review> reviews;
+        // Number of pending reviews per uploaded content, since two pending reviews may be identical.
+        private final Map<Review, Integer> uploads = new HashMap<>();
+
+        PendingReviews(long restaurantId, List<Review> reviews) {
+            this.restaurantId = restaurantId;
+            this.reviews = reviews;
+        }
+
+        /**
+         * Declares reviews the caller lists itself, not written to the outbox when it was read:
+         * if they are written and uploaded during the read, their copies returned by the API are
+         * left out as well. A review without creation time is dated when written, so its copy cannot
+         * be recognized.
+         *
+         * @param batch The reviews, as passed to {@link #enqueue(long, List)}.
+         */
+        public void expectUploads(List<Review> batch) {
+            for (Review review : batch) {
+                expectUpload(PendingReviewEntity.fromReview(restaurantId, review, 0L).toUpload());
+            }
+        }
+
+        void expectUpload(Review upload) {
+            uploads.merge(upload, 1, Integer::sum);
+        }
+
+        /**
+         * Adds the reviews returned by the API to a list, except the copies of the pending reviews.
+         */
+        void addUploaded(List<Review> uploaded, List<Review> into) {
+            for (Review review : uploaded) {
+                if (uploads.isEmpty()) {
+                    into.add(review);
+                    continue;
+                }
+                Review upload = new Review(0L, review.getUsername(), review.getPicture(), review.getComment(),
+                        review.getRate(), review.getCreatedAt());
+                // Each pending review hides a single copy.
+                Integer count = uploads.remove(upload);
+                if (count == null) {
+                    into.add(review);
+                } else if (count > 1) {
+                    uploads.put(upload, count - 1);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.openclassrooms.tajmahal.data.sync;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * Schedules the upload of the reviews waiting in the {@link ReviewOutbox}.
+ */
+public interface ReviewUploadScheduler {
+
+    /**
+     * Requests an upload of the pending reviews. A request made while an upload waits to run is
+     * covered by that upload; one made while an upload is running schedules another after it.
+     * May block, so it is called from a background thread.
+     */
+    @WorkerThread
+    void scheduleUpload();
+}
@@ -0,0 +1,129 @@
+package com.openclassrooms.tajmahal.data.sync;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import dagger.hilt.EntryPoint;
+import dagger.hilt.InstallIn;
+import dagger.hilt.android.EntryPointAccessors;
+import dagger.hilt.components.SingletonComponent;
+
+/**
+ * Background job draining the {@link ReviewOutbox}.
+ * <p>
+ * When the reviews are uploaded over the network, the job only runs with a network connection.
+ * When an upload fails to reach the API, it is retried with an
+ * exponential backoff starting at {@link #INITIAL_BACKOFF_SECONDS}, which WorkManager caps at
+ * five hours; the pending reviews stay in the outbox meanwhile. Batches the API rejects are
+ * dropped by the outbox instead, and any other failure ends the job until the next submission.
+ * </p>
+ */
+public class ReviewUploadWorker extends Worker {
+
+    /** Name of the unique work uploading the outbox. */
+    public static final String UNIQUE_WORK_NAME = "review-upload";
+
+    // Delay before the first retry, doubled after each failed attempt.
+    private static final long INITIAL_BACKOFF_SECONDS = 30;
+
+    /**
+     * Gives the worker, which WorkManager instantiates, access to the singleton {@link ReviewOutbox}.
+     */
+    @EntryPoint
+    @InstallIn(SingletonComponent.class)
+    public interface ReviewOutboxEntryPoint {
+        ReviewOutbox reviewOutbox();
+    }
+
+    public ReviewUploadWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        ReviewOutbox outbox = EntryPointAccessors
+                .fromApplication(getApplicationContext(), ReviewOutboxEntryPoint.class)
+                .reviewOutbox();
+        try {
+            int uploaded = outbox.flush();
+            Log.d("ReviewUploadWorker", uploaded + " pending reviews uploaded.");
+            return Result.success();
+        } catch (UncheckedIOException e) {
+            Log.w("ReviewUploadWorker", "Upload failed, attempt " + (getRunAttemptCount() + 1), e);
+            return Result.retry();
+        } catch (RuntimeException e) {
+            // Not a transient failure: retrying would fail the same way.
+            Log.e("ReviewUploadWorker", "Upload failed", e);
+            return Result.failure();
+        }
+    }
+
+    /**
+     * Creates the {@link ReviewUploadScheduler} enqueuing this worker on the given {@link WorkManager}.
+     * <p>
+     * A request made while an upload waits to run, for instance for the network, is dropped, since
+     * that upload will read the whole outbox. Otherwise it is appended after the running upload, so
+     * that reviews written to the outbox after the running upload read it are uploaded too. Either
+     * way, at most one upload is waiting, however many reviews are submitted offline.
+     * </p>
+     *
+     * @param workManager     The WorkManager of the application.
+     * @param requiredNetwork The network the upload needs: {@link NetworkType#CONNECTED} for a remote
+     *                        API, {@link NetworkType#NOT_REQUIRED} for a local one, so that the reviews
+     *                        submitted offline are not held back until the device reconnects.
+     * @return The scheduler.
+     */
+    public static ReviewUploadScheduler scheduler(WorkManager workManager, NetworkType requiredNetwork) {
+        return () -> {
+            if (!isUploadWaiting(workManager)) {
+                workManager.enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE,
+                        newRequest(requiredNetwork));
+            }
+        };
+    }
+
+    /**
+     * @return true if an upload is enqueued and not started yet, including one waiting for a retry.
+     */
+    private static boolean isUploadWaiting(WorkManager workManager) {
+        try {
+            for (WorkInfo info : workManager.getWorkInfosForUniqueWork(UNIQUE_WORK_NAME).get()) {
+                if (info.getState() == WorkInfo.State.ENQUEUED || info.getState() == WorkInfo.State.BLOCKED) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static OneTimeWorkRequest newRequest(NetworkType requiredNetwork) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(requiredNetwork)
+                .build();
+        return new OneTimeWorkRequest.Builder(ReviewUploadWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, INITIAL_BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+}
@@ -1,14 +1,41 @@
 package com.openclassrooms.tajmahal.di;
 
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.work.NetworkType;
+import androidx.work.WorkManager;
+
+import com.openclassrooms.tajmahal.BuildConfig;
+import com.openclassrooms.tajmahal.data.local.RestaurantSnapshots;
+import com.openclassrooms.tajmahal.data.local.TajMahalDatabase;
+import com.openclassrooms.tajmahal.data.service.GzipRequestInterceptor;
 import com.openclassrooms.tajmahal.data.service.RestaurantApi;
+import com.openclassrooms.tajmahal.data.service.RestaurantDatabaseApi;
 import com.openclassrooms.tajmahal.data.service.RestaurantFakeApi;
+import com.openclassrooms.tajmahal.data.service.RestaurantHttpApi;
+import com.openclassrooms.tajmahal.data.sync.ReviewOutbox;
+import com.openclassrooms.tajmahal.data.sync.ReviewUploadWorker;
 
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import dagger.Module;
 import dagger.Provides;
 import dagger.hilt.InstallIn;
+import dagger.hilt.android.qualifiers.ApplicationContext;
 import dagger.hilt.components.SingletonComponent;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
 
 /**
  * AppModule is responsible for providing application-level dependencies
@@ -19,16 +46,148 @@ import dagger.hilt.components.SingletonComponent;
 @InstallIn(SingletonComponent.class)
 public class AppModule {
 
+    /** Qualifier of the executor running blocking I/O such as network or database calls. */
+    public static final String IO_EXECUTOR = "io";
+    /** Qualifier of the executor running CPU-bound work such as aggregations. */
+    public static final String COMPUTE_EXECUTOR = "compute";
+
+    // Upper bound of concurrent I/O calls; they mostly wait, so it can exceed the core count.
+    private static final int IO_POOL_SIZE = 4;
+    // Idle connections kept alive for reuse; one per I/O thread is enough.
+    private static final int HTTP_IDLE_CONNECTIONS = IO_POOL_SIZE;
+    private static final long HTTP_KEEP_ALIVE_MINUTES = 5;
+    private static final long HTTP_TIMEOUT_SECONDS = 15;
+
+    /** Value of {@code BuildConfig.RESTAURANT_API} selecting the {@link RestaurantDatabaseApi}. */
+    public static final String API_DATABASE = "database";
+    /** Value of {@code BuildConfig.RESTAURANT_API} selecting the {@link RestaurantFakeApi}. */
+    public static final String API_FAKE = "fake";
+    /** Value of {@code BuildConfig.RESTAURANT_API} selecting the {@link RestaurantHttpApi}. */
+    public static final String API_HTTP = "http";
+
+    /**
+     * Provides a singleton instance of the RestaurantApi, selected by the
+     * {@code RESTAURANT_API} build config field: the database-backed implementation,
+     * the HTTP implementation calling {@code RESTAURANT_API_URL}, or the in-memory fake
+     * implementation, which can be helpful during testing or mock scenarios.
+     *
+     * @param database   Provider of the database, only opened if the database implementation is selected.
+     * @param httpClient Provider of the HTTP client, only created if the HTTP implementation is selected.
+     * @return A singleton instance of the selected RestaurantApi.
+     */
+    @Provides
+    @Singleton
+    public RestaurantApi provideRestaurantApi(Provider<TajMahalDatabase> database, Provider<OkHttpClient> httpClient) {
+        switch (BuildConfig.RESTAURANT_API) {
+            case API_DATABASE:
+                return new RestaurantDatabaseApi(database.get());
+            case API_HTTP:
+                return new RestaurantHttpApi(httpClient.get(), BuildConfig.RESTAURANT_API_URL);
+            case API_FAKE:
+            default:
+                return new RestaurantFakeApi();
+        }
+    }
+
+    /**
+     * Provides the HTTP client shared by every network call, so that connections are pooled and
+     * reused instead of being opened, and TLS-negotiated, for each request.
+     *
+     * @return A singleton OkHttpClient compressing request bodies with gzip.
+     */
+    @Provides
+    @Singleton
+    public OkHttpClient provideHttpClient() {
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(HTTP_IDLE_CONNECTIONS, HTTP_KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .connectTimeout(HTTP_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(HTTP_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .addInterceptor(new GzipRequestInterceptor())
+                .build();
+    }
+
+    /**
+     * Provides the local database of the application.
+     *
+     * @param context The application context.
+     * @return A singleton instance of the TajMahalDatabase.
+     */
+    @Provides
+    @Singleton
+    public TajMahalDatabase provideDatabase(@ApplicationContext Context context) {
+        return Room.databaseBuilder(context, TajMahalDatabase.class, TajMahalDatabase.NAME)
+                .build();
+    }
+
     /**
-     * Provides a singleton instance of the RestaurantApi. In this example,
-     * a fake implementation of the API is being used, which can be helpful
-     * during testing or mock scenarios.
+     * Provides the snapshots from which the last loaded data of each restaurant is restored on cold start.
      *
-     * @return A singleton instance of the RestaurantFakeApi.
+     * @param context The application context.
+     * @return A singleton instance of the RestaurantSnapshots, in the application storage.
      */
     @Provides
     @Singleton
-    public RestaurantApi provideRestaurantApi() {
-        return new RestaurantFakeApi();
+    public RestaurantSnapshots provideSnapshots(@ApplicationContext Context context) {
+        return new RestaurantSnapshots(new File(context.getFilesDir(), RestaurantSnapshots.DIRECTORY_NAME));
+    }
+
+    /**
+     * Provides the outbox of the reviews submitted by the user, uploaded to the RestaurantApi
+     * by the {@link ReviewUploadWorker}. The upload waits for a network connection only when the
+     * HTTP implementation is selected; the other implementations are local.
+     *
+     * @param database      The database storing the pending reviews.
+     * @param restaurantApi The API the reviews are uploaded to.
+     * @param context       The application context.
+     * @return A singleton instance of the ReviewOutbox.
+     */
+    @Provides
+    @Singleton
+    public ReviewOutbox provideReviewOutbox(TajMahalDatabase database, RestaurantApi restaurantApi, @ApplicationContext Context context) {
+        return new ReviewOutbox(database.pendingReviewDao(), restaurantApi,
+                ReviewUploadWorker.scheduler(WorkManager.getInstance(context),
+                        API_HTTP.equals(BuildConfig.RESTAURANT_API) ? NetworkType.CONNECTED : NetworkType.NOT_REQUIRED));
+    }
+
+    /**
+     * Provides the executor on which the repositories perform their blocking calls,
+     * so that the main thread never waits on a data source.
+     *
+     * @return A singleton fixed pool of background threads.
+     */
+    @Provides
+    @Singleton
+    @Named(IO_EXECUTOR)
+    public ExecutorService provideIoExecutor() {
+        return Executors.newFixedThreadPool(IO_POOL_SIZE, newThreadFactory("tajmahal-io"));
+    }
+
+    /**
+     * Provides the executor for CPU-bound work, sized after the number of available cores.
+     * It can also delay work, for instance to coalesce bursts of updates before computing them.
+     *
+     * @return A singleton fixed pool of background threads.
+     */
+    @Provides
+    @Singleton
+    @Named(COMPUTE_EXECUTOR)
+    public ScheduledExecutorService provideComputeExecutor() {
+        int cores = Math.max(2, Runtime.getRuntime().availableProcessors());
+        return Executors.newScheduledThreadPool(cores, newThreadFactory("tajmahal-compute"));
+    }
+
+    /**
+     * Creates a factory of named daemon threads, so that pool threads are easy to spot in traces.
+     *
+     * @param prefix The prefix of the thread names.
+     * @return The thread factory.
+     */
+    private static ThreadFactory newThreadFactory(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 }
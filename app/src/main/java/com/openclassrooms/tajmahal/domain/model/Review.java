@@ -6,10 +6,17 @@ import java.util.Objects;
 /**
  * Represents a user review.
  * This class encapsulates all the details of a review, including the username of the reviewer,
- * their profile picture, the comment they left, and the rating they gave.
+ * their profile picture, the comment they left, the rating they gave, and when they left it.
+ * <p>
+ * A review is identified by the identifier its source assigns, when it has one, and otherwise by
+ * its content: see {@link #getStableId()}.
+ * </p>
  */
 public class Review {
 
+    /** The identifier of the review assigned by its source, or 0 if it has none. */
+    private long id;
+
     /** The name of the user who left the review. */
     private String username;
 
@@ -22,8 +29,11 @@ public class Review {
     /** The rating provided by the user. Typically out of 5 or 10. */
     private int rate;
 
+    /** The creation time of the review, in milliseconds since the epoch, or 0 if it is unknown. */
+    private long createdAt;
+
     /**
-     * Constructs a new Review instance.
+     * Constructs a new Review instance whose creation time is unknown.
      *
      * @param username the name of the user leaving the review
      * @param picture  the profile picture URL or path of the user
@@ -31,10 +41,86 @@ public class Review {
      * @param rate     the rating given by the user
      */
     public Review(String username, String picture, String comment, int rate) {
+        this(username, picture, comment, rate, 0L);
+    }
+
+    /**
+     * Constructs a new Review instance.
+     *
+     * @param username  the name of the user leaving the review
+     * @param picture   the profile picture URL or path of the user
+     * @param comment   the feedback or comment from the user
+     * @param rate      the rating given by the user
+     * @param createdAt the creation time of the review, in milliseconds since the epoch, or 0 if it is unknown
+     */
+    public Review(String username, String picture, String comment, int rate, long createdAt) {
+        this(0L, username, picture, comment, rate, createdAt);
+    }
+
+    /**
+     * Constructs a new Review instance identified by its source.
+     *
+     * @param id        the identifier of the review assigned by its source, or 0 if it has none
+     * @param username  the name of the user leaving the review
+     * @param picture   the profile picture URL or path of the user
+     * @param comment   the feedback or comment from the user
+     * @param rate      the rating given by the user
+     * @param createdAt the creation time of the review, in milliseconds since the epoch, or 0 if it is unknown
+     */
+    public Review(long id, String username, String picture, String comment, int rate, long createdAt) {
+        this.id = id;
         this.username = username;
         this.picture = picture;
         this.comment = comment;
         this.rate = rate;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Returns the identifier of the review assigned by its source.
+     *
+     * @return the identifier, or 0 if the source assigned none
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Sets or updates the identifier of the review assigned by its source.
+     *
+     * @param id the identifier, or 0 if the source assigned none
+     */
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns an identifier of the review that stays the same across reloads, such as the item ID
+     * of a list row: the identifier assigned by the source if there is one, otherwise a hash of the
+     * username, picture, comment, rating and creation time.
+     * <p>
+     * The reviews submitted by the user are given a unique local identifier by the repository, so
+     * the hash only identifies the reviews of older payloads and data sources, which have none.
+     * Hashed identifiers are negative, so they never collide with the positive identifiers of the
+     * sources, and never -1, which list views reserve for items without identifier. Two such reviews
+     * with the same content share the same identifier.
+     * </p>
+     *
+     * @return the stable identifier of the review
+     */
+    public long getStableId() {
+        if (id != 0) {
+            return id;
+        }
+        // 64-bit FNV-1a, which spreads the short strings of a review over the whole range.
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, username);
+        hash = hash(hash, picture);
+        hash = hash(hash, comment);
+        hash = (hash ^ rate) * 0x100000001b3L;
+        hash = (hash ^ createdAt) * 0x100000001b3L;
+        hash |= Long.MIN_VALUE;
+        return hash == -1L ? Long.MIN_VALUE : hash;
     }
 
     /**
@@ -109,6 +195,24 @@ public class Review {
         this.rate = rate;
     }
 
+    /**
+     * Returns the creation time of the review.
+     *
+     * @return the creation time in milliseconds since the epoch, or 0 if it is unknown
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Sets or updates the creation time of the review.
+     *
+     * @param createdAt the creation time in milliseconds since the epoch, or 0 if it is unknown
+     */
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
     /**
      * Compares this review with another object for equality.
      * Two reviews are considered equal if all their fields are identical.
@@ -121,7 +225,7 @@ public class Review {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Review review = (Review) o;
-        return rate == review.rate && Objects.equals(username, review.username) && Objects.equals(picture, review.picture) && Objects.equals(comment, review.comment);
+        return id == review.id && rate == review.rate && createdAt == review.createdAt && Objects.equals(username, review.username) && Objects.equals(picture, review.picture) && Objects.equals(comment, review.comment);
     }
 
     /**
@@ -131,6 +235,17 @@ public class Review {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(username, picture, comment, rate);
+        return Objects.hash(id, username, picture, comment, rate, createdAt);
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return (hash ^ 0xff) * 0x100000001b3L;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        // Separates consecutive strings, so that moving characters from one to the next changes the hash.
+        return (hash ^ 0xfe) * 0x100000001b3L;
     }
 }
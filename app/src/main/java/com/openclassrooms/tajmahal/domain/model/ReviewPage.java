@@ -0,0 +1,60 @@
+package com.openclassrooms.tajmahal.domain.model;
+
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents one page of reviews returned by a paged review query.
+ * A page holds the reviews it contains, newest first, and an opaque cursor
+ * that must be passed back to fetch the following (older) page.
+ */
+public class ReviewPage {
+
+    /** The reviews of this page, newest first. */
+    private final List<Review> reviews;
+
+    /** The cursor of the next page, or null if this is the last page. */
+    @Nullable
+    private final String nextCursor;
+
+    /**
+     * Constructs a new ReviewPage instance.
+     *
+     * @param reviews    the reviews contained in this page
+     * @param nextCursor the cursor of the next page, or null if there are no more reviews
+     */
+    public ReviewPage(List<Review> reviews, @Nullable String nextCursor) {
+        this.reviews = Collections.unmodifiableList(reviews);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the reviews contained in this page.
+     *
+     * @return an unmodifiable list of reviews, newest first
+     */
+    public List<Review> getReviews() {
+        return reviews;
+    }
+
+    /**
+     * Returns the cursor to pass back to fetch the next page.
+     *
+     * @return the next cursor, or null if this is the last page
+     */
+    @Nullable
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Indicates whether older reviews remain after this page.
+     *
+     * @return true if another page can be requested
+     */
+    public boolean hasNextPage() {
+        return nextCursor != null;
+    }
+}
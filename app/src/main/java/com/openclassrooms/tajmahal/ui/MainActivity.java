@@ -5,6 +5,7 @@ import android.os.Bundle;
 import android.view.View;
 
 import com.openclassrooms.tajmahal.R;
+import com.openclassrooms.tajmahal.data.service.RestaurantApi;
 import com.openclassrooms.tajmahal.databinding.ActivityMainBinding;
 import com.openclassrooms.tajmahal.ui.restaurant.DetailsFragment;
 
@@ -23,7 +24,7 @@ public class MainActivity extends AppCompatActivity {
         setContentView(view);
         if (savedInstanceState == null) {
             getSupportFragmentManager().beginTransaction()
-                    .replace(R.id.container, DetailsFragment.newInstance())
+                    .replace(R.id.container, DetailsFragment.newInstance(RestaurantApi.TAJ_MAHAL_ID))
                     .commitNow();
         }
     }
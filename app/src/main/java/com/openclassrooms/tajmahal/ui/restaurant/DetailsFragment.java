@@ -73,8 +73,8 @@ public class DetailsFragment extends Fragment {
         super.onViewCreated(view, savedInstanceState);
         setupUI(); // Sets up user interface components.
         setupViewModel(); // Prepares the ViewModel for the fragment.
-        detailsViewModel.getTajMahalRestaurant().observe(requireActivity(), this::updateUIWithRestaurant); // Observes changes in the restaurant data and updates the UI accordingly.
-        detailsViewModel.getReviewStats().observe(requireActivity(), this::updateUIWithReviews); // Observes changes in the reviews data and updates the UI accordingly.
+        detailsViewModel.getRestaurant().observe(getViewLifecycleOwner(), this::updateUIWithRestaurant); // Observes changes in the restaurant data and updates the UI accordingly.
+        detailsViewModel.getReviewStats().observe(getViewLifecycleOwner(), this::updateUIWithReviews); // Observes changes in the reviews data and updates the UI accordingly.
     }
 
     /**
@@ -141,28 +141,11 @@ public class DetailsFragment extends Fragment {
      * @see DetailsViewModel.ReviewStatsUIModel for more information about the data structure.
      */
     private void updateUIWithReviews(DetailsViewModel.ReviewStatsUIModel reviewStats) {
+        binding.ratingSummary.setStats(reviewStats);
         if (reviewStats == null) {
-            binding.tvRatingValue.setText("N/A");
-            binding.ratingBar.setRating(0);
-            binding.tvReviewCount.setText("(0)");
-            binding.progressBar5Stars.setProgress(0);
-            binding.progressBar4Stars.setProgress(0);
-            binding.progressBar3Stars.setProgress(0);
-            binding.progressBar2Stars.setProgress(0);
-            binding.progressBar1Stars.setProgress(0);
             return;
         }
 
-        binding.tvRatingValue.setText(format("%.1f", reviewStats.averageRating));
-        binding.ratingBar.setRating(reviewStats.averageRating);
-        binding.tvReviewCount.setText(format("(%d)", reviewStats.reviewListSize));
-
-        binding.progressBar5Stars.setProgress(reviewStats.getPercentageForStar(5));
-        binding.progressBar4Stars.setProgress(reviewStats.getPercentageForStar(4));
-        binding.progressBar3Stars.setProgress(reviewStats.getPercentageForStar(3));
-        binding.progressBar2Stars.setProgress(reviewStats.getPercentageForStar(2));
-        binding.progressBar1Stars.setProgress(reviewStats.getPercentageForStar(1));
-
         binding.leaveReview.setOnClickListener(v -> leaveReview());
     }
 
@@ -220,14 +203,24 @@ public class DetailsFragment extends Fragment {
     private void leaveReview() {
         FragmentManager fragmentManager = getParentFragmentManager();
         FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction();
-        ReviewsFragment reviewsFragment = ReviewsFragment.newInstance();
+        ReviewsFragment reviewsFragment = ReviewsFragment.newInstance(detailsViewModel.getRestaurantId());
         fragmentTransaction.replace(R.id.container, reviewsFragment);
         fragmentTransaction.addToBackStack(null);
         fragmentTransaction.commit();
     }
 
-    public static DetailsFragment newInstance() {
-        return new DetailsFragment();
+    /**
+     * Creates the details screen of a restaurant.
+     *
+     * @param restaurantId The identifier of the restaurant to display.
+     * @return The fragment, whose ViewModel reads the restaurant from its arguments.
+     */
+    public static DetailsFragment newInstance(long restaurantId) {
+        DetailsFragment fragment = new DetailsFragment();
+        Bundle arguments = new Bundle();
+        arguments.putLong(DetailsViewModel.ARG_RESTAURANT_ID, restaurantId);
+        fragment.setArguments(arguments);
+        return fragment;
     }
 
 }
\ No newline at end of file
@@ -4,19 +4,22 @@ import android.content.Context;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MediatorLiveData;
+import androidx.lifecycle.SavedStateHandle;
 import androidx.lifecycle.ViewModel;
 
 import com.openclassrooms.tajmahal.R;
+import com.openclassrooms.tajmahal.data.repository.DebouncedComputation;
 import com.openclassrooms.tajmahal.data.repository.RestaurantRepository;
+import com.openclassrooms.tajmahal.data.service.RestaurantApi;
+import com.openclassrooms.tajmahal.data.store.RatingStats;
+import com.openclassrooms.tajmahal.di.AppModule;
 import com.openclassrooms.tajmahal.domain.model.Restaurant;
-import com.openclassrooms.tajmahal.domain.model.Review;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import java.util.Calendar;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
 
 import dagger.hilt.android.lifecycle.HiltViewModel;
 
@@ -30,39 +33,89 @@ import dagger.hilt.android.lifecycle.HiltViewModel;
 @HiltViewModel
 public class DetailsViewModel extends ViewModel {
 
+    /**
+     * Fragment argument holding the identifier of the restaurant, read by the restaurant
+     * ViewModels through their {@link SavedStateHandle}.
+     */
+    public static final String ARG_RESTAURANT_ID = "restaurantId";
+    /**
+     * Default duration during which updates of the reviews are coalesced into a single update of
+     * the statistics: short enough to go unnoticed, long enough to absorb the chunks of a sync.
+     */
+    public static final long STATS_WINDOW_MILLIS = 100;
+
     private final RestaurantRepository restaurantRepository;
+    // Identifier of the displayed restaurant, from the arguments of the fragment.
+    private final long restaurantId;
     /**
      * LiveData object containing the review statistics.
      * This LiveData object is used to observe changes in the review statistics and update the UI accordingly.
      */
     private final MediatorLiveData<ReviewStatsUIModel> reviewStatsLiveData = new MediatorLiveData<>();
+    // Builds the statistics off the main thread, once per burst of updates of the reviews.
+    private final DebouncedComputation<RatingStats, ReviewStatsUIModel> statsPipeline;
 
     /**
      * Constructor that Hilt will use to create an instance of MainViewModel.
+     * The restaurant is the one passed to {@link DetailsFragment#newInstance(long)}, or the
+     * Taj Mahal by default; its data stays cached until this ViewModel is cleared.
      *
      * @param restaurantRepository The repository which will provide restaurant data.
+     * @param savedStateHandle     The arguments of the fragment.
+     * @param computeExecutor      The executor building the review statistics.
      */
     @Inject
-    public DetailsViewModel(RestaurantRepository restaurantRepository) {
+    public DetailsViewModel(RestaurantRepository restaurantRepository, SavedStateHandle savedStateHandle,
+                            @Named(AppModule.COMPUTE_EXECUTOR) ScheduledExecutorService computeExecutor) {
+        this(restaurantRepository, savedStateHandle, computeExecutor, STATS_WINDOW_MILLIS);
+    }
+
+    /**
+     * Constructs a DetailsViewModel coalescing the updates of the statistics over a custom window.
+     *
+     * @param restaurantRepository The repository which will provide restaurant data.
+     * @param savedStateHandle     The arguments of the fragment.
+     * @param computeExecutor      The executor building the review statistics.
+     * @param statsWindowMillis    The duration during which updates of the reviews are coalesced.
+     */
+    public DetailsViewModel(RestaurantRepository restaurantRepository, SavedStateHandle savedStateHandle,
+                            ScheduledExecutorService computeExecutor, long statsWindowMillis) {
         this.restaurantRepository = restaurantRepository;
+        Long restaurantId = savedStateHandle.get(ARG_RESTAURANT_ID);
+        this.restaurantId = restaurantId != null ? restaurantId : RestaurantApi.TAJ_MAHAL_ID;
+        restaurantRepository.retain(this.restaurantId);
+
+        // The main thread only hands each update over; a burst of updates is built and published once.
+        statsPipeline = new DebouncedComputation<>(computeExecutor, statsWindowMillis,
+                ReviewStatsUIModel::new, reviewStatsLiveData::postValue);
+        LiveData<RatingStats> statsSource = restaurantRepository.getRatingStats(this.restaurantId);
+        reviewStatsLiveData.addSource(statsSource, stats ->
+                statsPipeline.submit(stats != null ? stats : RatingStats.EMPTY));
+    }
+
+    /**
+     * Lets the repository evict the data of the restaurant once no other screen displays it.
+     */
+    @Override
+    protected void onCleared() {
+        statsPipeline.cancel();
+        restaurantRepository.release(restaurantId);
+    }
 
-        LiveData<List<Review>> reviewsSource = restaurantRepository.getReviews();
-        reviewStatsLiveData.addSource(reviewsSource, reviews -> {
-            if (reviews != null) {
-                reviewStatsLiveData.setValue(calculateReviewStats(reviews));
-            } else {
-                reviewStatsLiveData.setValue(new ReviewStatsUIModel(0f, 0, new HashMap<>(), 0));
-            }
-        });
+    /**
+     * @return The identifier of the displayed restaurant.
+     */
+    public long getRestaurantId() {
+        return restaurantId;
     }
 
     /**
-     * Fetches the details of the Taj Mahal restaurant.
+     * Fetches the details of the displayed restaurant.
      *
-     * @return LiveData object containing the details of the Taj Mahal restaurant.
+     * @return LiveData object containing the details of the restaurant.
      */
-    public LiveData<Restaurant> getTajMahalRestaurant() {
-        return restaurantRepository.getRestaurant();
+    public LiveData<Restaurant> getRestaurant() {
+        return restaurantRepository.getRestaurant(restaurantId);
     }
 
     /**
@@ -111,60 +164,47 @@ public class DetailsViewModel extends ViewModel {
         return dayString;
     }
 
-    /**
-     * Calculates the review statistics based on the provided list of reviews.
-     * @param reviews The list of reviews.
-     * @return The calculated review statistics.
-     */
-    private ReviewStatsUIModel calculateReviewStats(List<Review> reviews) {
-        if (reviews == null || reviews.isEmpty()) {
-            return new ReviewStatsUIModel(0f, 0, new HashMap<>(), 0);
-        }
-
-        float totalRatingSum = 0f;
-        int totalReviewsCount = reviews.size();
-        Map<Integer, Integer> ratingCounts = new HashMap<>();
-        for (int i = 1; i <= 5; i++) {
-            ratingCounts.put(i, 0);
-        }
-
-        for (Review review : reviews) {
-            totalRatingSum += review.getRate();
-            int roundedRate = Math.max(1, Math.min(5, Math.round(review.getRate())));
-            ratingCounts.put(roundedRate, ratingCounts.getOrDefault(roundedRate, 0) + 1);
-        }
-
-        float averageRating = (totalReviewsCount > 0) ? totalRatingSum / totalReviewsCount : 0f;
-
-        return new ReviewStatsUIModel(averageRating, totalReviewsCount, ratingCounts, totalReviewsCount);
-    }
-
-
     /**
      * UI model for review statistics.
      * Contains information about the average rating, total number of reviews,
-     * rating counts for each star, and the size of the review list.
+     * rating counts for each star, the size of the review list, and the recent rating trends.
      * This model is used to display review statistics in the UI.
      */
     public static class ReviewStatsUIModel {
         public final float averageRating;
         public final int totalReviews;
-        public final Map<Integer, Integer> ratingCounts;
         public final int reviewListSize;
+        /** Average rating of the reviews of the last 7 days, or 0 if there are none. */
+        public final float averageRating7Days;
+        /** Average rating of the reviews of the last 30 days, or 0 if there are none. */
+        public final float averageRating30Days;
+        /** Median rating of all the reviews, or 0 if there are none. */
+        public final int medianRating;
+        // Immutable rating totals published by the repository, shared rather than copied.
+        private final RatingStats stats;
 
 
         /**
-         * Constructor for ReviewStatsUIModel.
-         * @param averageRating The average rating of the reviews.
-         * @param totalReviews The total number of reviews.
-         * @param ratingCounts A map containing the count of reviews for each star rating.
-         * @param reviewListSize The size of the review list.
+         * Constructor for ReviewStatsUIModel, running in constant time whatever the number of reviews.
+         * @param stats The rating statistics of the reviews.
+         */
+        public ReviewStatsUIModel(RatingStats stats) {
+            this.averageRating = stats.getAverageRating();
+            this.totalReviews = stats.getCount();
+            this.reviewListSize = stats.getCount();
+            this.averageRating7Days = stats.getAverageRating(7);
+            this.averageRating30Days = stats.getAverageRating(30);
+            this.medianRating = stats.getPercentile(0.5);
+            this.stats = stats;
+        }
+
+        /**
+         * Returns the number of reviews for a given star rating.
+         * @param star The star rating, from 1 to 5.
+         * @return The number of reviews for the given star rating.
          */
-        public ReviewStatsUIModel(float averageRating, int totalReviews, Map<Integer, Integer> ratingCounts, int reviewListSize) {
-            this.averageRating = averageRating;
-            this.totalReviews = totalReviews;
-            this.ratingCounts = ratingCounts;
-            this.reviewListSize = reviewListSize;
+        public int getCountForStar(int star) {
+            return stats.getCountForStar(star);
         }
 
         /**
@@ -173,12 +213,7 @@ public class DetailsViewModel extends ViewModel {
          * @return The percentage of reviews for the given star rating.
          */
         public int getPercentageForStar(int star) {
-            if (totalReviews == 0 || !ratingCounts.containsKey(star) || ratingCounts.get(star) == null) {
-                return 0;
-            }
-            Integer count = ratingCounts.get(star);
-            if (count == null) return 0;
-            return (int) ((count / (float) totalReviews) * 100);
+            return stats.getPercentageForStar(star);
         }
     }
 
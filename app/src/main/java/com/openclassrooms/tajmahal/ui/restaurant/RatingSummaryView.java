@@ -0,0 +1,301 @@
+package com.openclassrooms.tajmahal.ui.restaurant;
+
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.animation.DecelerateInterpolator;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.res.ResourcesCompat;
+
+import com.openclassrooms.tajmahal.R;
+
+import java.text.DecimalFormatSymbols;
+
+/**
+ * Displays the rating summary of a restaurant: its average rating, as a number and as stars, its
+ * number of reviews, and the histogram of the reviews per star count.
+ * <p>
+ * The whole summary is a single view, measured and drawn in one pass, in place of the text views,
+ * rating bar and five progress bars it replaces. Nothing is allocated once the view is created:
+ * the texts are formatted into reused character buffers, and a new {@link #setStats(DetailsViewModel.ReviewStatsUIModel)
+ * summary} animates the average and the bars from the displayed values with a single reused animator.
+ * </p>
+ */
+public class RatingSummaryView extends View {
+
+    private static final int MAX_STARS = 5;
+    private static final long ANIMATION_MILLIS = 300L;
+    // Share of the width of the average, stars and count, the bars taking the rest.
+    private static final float SUMMARY_WEIGHT = 0.4f / 1.4f;
+    private static final int STAR_COLOR = 0xFFFFD800;
+    private static final int TRACK_COLOR = 0xFFE0E0E0;
+    private static final int VALUE_COLOR = 0xFF000000;
+    private static final int COUNT_COLOR = 0xFF666666;
+
+    private final Paint valuePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint countPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint starPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint trackPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint.FontMetrics fontMetrics = new Paint.FontMetrics();
+    private final Path starPath = new Path();
+    private final RectF bar = new RectF();
+
+    private final float starSize;
+    private final float starGap;
+    private final float barHeight;
+    private final float barGap;
+    private final float lineGap;
+    private final float valueAscent;
+    private final float valueHeight;
+    private final float countAscent;
+    private final float countHeight;
+    private final char decimalSeparator;
+
+    // "4.5" or "N/A", and "(257)".
+    private final char[] valueText = new char[16];
+    private int valueLength;
+    private final char[] countText = new char[16];
+    private int countLength;
+
+    private boolean hasStats;
+    // Displayed values, and the values the animation goes from and to; bar fractions at star - 1.
+    private float average;
+    private float fromAverage;
+    private float toAverage;
+    private final float[] fractions = new float[MAX_STARS];
+    private final float[] fromFractions = new float[MAX_STARS];
+    private final float[] toFractions = new float[MAX_STARS];
+    private final ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f);
+
+    public RatingSummaryView(Context context) {
+        this(context, null);
+    }
+
+    public RatingSummaryView(Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public RatingSummaryView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        starSize = dp(14);
+        starGap = dp(2);
+        barHeight = dp(4);
+        barGap = dp(6);
+        lineGap = dp(4);
+        decimalSeparator = DecimalFormatSymbols.getInstance().getDecimalSeparator();
+
+        valuePaint.setColor(VALUE_COLOR);
+        valuePaint.setTextAlign(Paint.Align.CENTER);
+        valuePaint.setTextSize(sp(24));
+        countPaint.setColor(COUNT_COLOR);
+        countPaint.setTextAlign(Paint.Align.CENTER);
+        countPaint.setTextSize(sp(12));
+        if (!isInEditMode()) {
+            valuePaint.setTypeface(ResourcesCompat.getFont(context, R.font.jakarta_bold));
+            countPaint.setTypeface(ResourcesCompat.getFont(context, R.font.jakarta_regular));
+        }
+        starPaint.setColor(STAR_COLOR);
+        trackPaint.setColor(TRACK_COLOR);
+
+        valuePaint.getFontMetrics(fontMetrics);
+        valueAscent = fontMetrics.ascent;
+        valueHeight = fontMetrics.descent - fontMetrics.ascent;
+        countPaint.getFontMetrics(fontMetrics);
+        countAscent = fontMetrics.ascent;
+        countHeight = fontMetrics.descent - fontMetrics.ascent;
+
+        buildStar(starPath, starSize);
+        animator.setDuration(ANIMATION_MILLIS);
+        animator.setInterpolator(new DecelerateInterpolator());
+        animator.addUpdateListener(animation -> {
+            float t = animation.getAnimatedFraction();
+            average = fromAverage + (toAverage - fromAverage) * t;
+            for (int s = 0; s < MAX_STARS; s++) {
+                fractions[s] = fromFractions[s] + (toFractions[s] - fromFractions[s]) * t;
+            }
+            formatValue();
+            invalidate();
+        });
+        formatValue();
+        formatCount(0);
+    }
+
+    /**
+     * Displays a rating summary, animating from the one displayed.
+     *
+     * @param stats The summary to display, or null if the reviews are not known.
+     */
+    public void setStats(@Nullable DetailsViewModel.ReviewStatsUIModel stats) {
+        animator.cancel();
+        hasStats = stats != null;
+        fromAverage = average;
+        toAverage = stats == null ? 0f : stats.averageRating;
+        for (int s = 0; s < MAX_STARS; s++) {
+            fromFractions[s] = fractions[s];
+            toFractions[s] = stats == null ? 0f : stats.getPercentageForStar(s + 1) / 100f;
+        }
+        formatCount(stats == null ? 0 : stats.reviewListSize);
+        if (isLaidOut()) {
+            animator.start();
+        } else {
+            // Not displayed yet: nothing to animate from.
+            animator.end();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        float height = Math.max(summaryHeight(), barsHeight());
+        setMeasuredDimension(
+                resolveSize(getSuggestedMinimumWidth() + getPaddingLeft() + getPaddingRight(), widthMeasureSpec),
+                resolveSize((int) Math.ceil(height) + getPaddingTop() + getPaddingBottom(), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        float contentWidth = getWidth() - getPaddingLeft() - getPaddingRight();
+        float contentHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+        float summaryWidth = contentWidth * SUMMARY_WEIGHT;
+        float centerX = getPaddingLeft() + summaryWidth / 2;
+
+        // Average, stars and count, centered in their column.
+        float y = getPaddingTop() + (contentHeight - summaryHeight()) / 2;
+        canvas.drawText(valueText, 0, valueLength, centerX, y - valueAscent, valuePaint);
+        y += valueHeight + lineGap;
+        float x = centerX - (MAX_STARS * starSize + (MAX_STARS - 1) * starGap) / 2;
+        for (int i = 0; i < MAX_STARS; i++) {
+            float fill = Math.max(0f, Math.min(1f, average - i));
+            canvas.save();
+            canvas.translate(x, y);
+            canvas.drawPath(starPath, trackPaint);
+            if (fill > 0f) {
+                canvas.clipRect(0f, 0f, starSize * fill, starSize);
+                canvas.drawPath(starPath, starPaint);
+            }
+            canvas.restore();
+            x += starSize + starGap;
+        }
+        y += starSize + lineGap;
+        canvas.drawText(countText, 0, countLength, centerX, y - countAscent, countPaint);
+
+        // Bars, from 5 stars down to 1 star.
+        float left = getPaddingLeft() + summaryWidth;
+        float right = getWidth() - getPaddingRight();
+        float radius = barHeight / 2;
+        y = getPaddingTop() + (contentHeight - barsHeight()) / 2;
+        for (int stars = MAX_STARS; stars >= 1; stars--) {
+            bar.set(left, y, right, y + barHeight);
+            canvas.drawRoundRect(bar, radius, radius, trackPaint);
+            float fraction = fractions[stars - 1];
+            if (fraction > 0f) {
+                bar.right = left + (right - left) * fraction;
+                canvas.drawRoundRect(bar, radius, radius, starPaint);
+            }
+            y += barHeight + barGap;
+        }
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        // Built only when an accessibility service asks for it.
+        info.setText(new StringBuilder().append(valueText, 0, valueLength)
+                .append(' ').append(countText, 0, countLength));
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        animator.end();
+        super.onDetachedFromWindow();
+    }
+
+    private float summaryHeight() {
+        return valueHeight + lineGap + starSize + lineGap + countHeight;
+    }
+
+    private float barsHeight() {
+        return MAX_STARS * barHeight + (MAX_STARS - 1) * barGap;
+    }
+
+    /**
+     * Writes the displayed average into {@link #valueText}, with one decimal, or "N/A" without reviews.
+     */
+    private void formatValue() {
+        if (!hasStats) {
+            valueText[0] = 'N';
+            valueText[1] = '/';
+            valueText[2] = 'A';
+            valueLength = 3;
+            return;
+        }
+        int tenths = Math.round(average * 10);
+        int length = writeInt(valueText, 0, tenths / 10);
+        valueText[length] = decimalSeparator;
+        valueText[length + 1] = (char) ('0' + tenths % 10);
+        valueLength = length + 2;
+    }
+
+    /**
+     * Writes a review count into {@link #countText}, between parentheses.
+     */
+    private void formatCount(int count) {
+        countText[0] = '(';
+        int length = writeInt(countText, 1, count);
+        countText[length] = ')';
+        countLength = length + 1;
+    }
+
+    /**
+     * Writes a non-negative integer at an offset of a buffer.
+     *
+     * @return The offset following the written digits.
+     */
+    private static int writeInt(char[] buffer, int offset, int value) {
+        int digits = 1;
+        for (int v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+
+    /**
+     * Builds a five-pointed star fitting a square of the given size, with its top left corner at the origin.
+     */
+    private static void buildStar(Path path, float size) {
+        float half = size / 2;
+        float inner = half * 0.4f;
+        path.reset();
+        for (int i = 0; i < 10; i++) {
+            double angle = Math.PI / 5 * i - Math.PI / 2;
+            float radius = i % 2 == 0 ? half : inner;
+            float px = half + (float) (radius * Math.cos(angle));
+            float py = half + (float) (radius * Math.sin(angle));
+            if (i == 0) {
+                path.moveTo(px, py);
+            } else {
+                path.lineTo(px, py);
+            }
+        }
+        path.close();
+    }
+
+    private float dp(float value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value, getResources().getDisplayMetrics());
+    }
+
+    private float sp(float value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, value, getResources().getDisplayMetrics());
+    }
+}
@@ -3,6 +3,8 @@ package com.openclassrooms.tajmahal.ui.restaurant;
 import android.graphics.Color;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -11,21 +13,36 @@ import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.Window;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.Toast;
 
 import com.bumptech.glide.Glide;
 import com.openclassrooms.tajmahal.R;
+import com.openclassrooms.tajmahal.data.repository.ReviewChangeSet;
+import com.openclassrooms.tajmahal.data.store.ReviewOrder;
+import com.openclassrooms.tajmahal.data.store.ReviewSortIndex;
 import com.openclassrooms.tajmahal.databinding.FragmentDetailsBinding;
 import com.openclassrooms.tajmahal.databinding.FragmentReviewsBinding;
+import com.openclassrooms.tajmahal.di.AppModule;
 import com.openclassrooms.tajmahal.domain.model.Review;
 import com.openclassrooms.tajmahal.ui.restaurant.adapter.ReviewAdapter;
+import com.openclassrooms.tajmahal.ui.restaurant.adapter.ReviewAvatarLoader;
+import com.openclassrooms.tajmahal.ui.restaurant.adapter.ReviewCommentLayouts;
+import com.openclassrooms.tajmahal.ui.restaurant.adapter.ReviewRowInflater;
 
 import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.inject.Inject;
+import javax.inject.Named;
 
 import dagger.hilt.android.AndroidEntryPoint;
 
@@ -36,12 +53,32 @@ import dagger.hilt.android.AndroidEntryPoint;
  */
 @AndroidEntryPoint
 public class ReviewsFragment extends Fragment {
+    /** Number of screens of review rows the recycled view pool keeps, so that a fling does not inflate rows. */
+    private static final int RECYCLED_SCREENS = 2;
+
     private FragmentReviewsBinding binding;
     private ReviewsViewModel reviewsViewModel;
     private ReviewAdapter reviewAdapter;
+    private ReviewRowInflater rowInflater;
     private String currentAvatarUrl;
-    public static ReviewsFragment newInstance() {
-        return new ReviewsFragment();
+
+    // Computes the differences between review lists and measures the comments for the adapter.
+    @Inject
+    @Named(AppModule.COMPUTE_EXECUTOR)
+    ScheduledExecutorService computeExecutor;
+
+    /**
+     * Creates the review screen of a restaurant.
+     *
+     * @param restaurantId The identifier of the restaurant whose reviews are displayed.
+     * @return The fragment, whose ViewModel reads the restaurant from its arguments.
+     */
+    public static ReviewsFragment newInstance(long restaurantId) {
+        ReviewsFragment fragment = new ReviewsFragment();
+        Bundle arguments = new Bundle();
+        arguments.putLong(DetailsViewModel.ARG_RESTAURANT_ID, restaurantId);
+        fragment.setArguments(arguments);
+        return fragment;
     }
 
     /**
@@ -52,7 +89,11 @@ public class ReviewsFragment extends Fragment {
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        reviewsViewModel = new ViewModelProvider(this).get(ReviewsViewModel.class);    }
+        reviewsViewModel = new ViewModelProvider(this).get(ReviewsViewModel.class);
+        // Inflates the first screen of rows while the fragment transaction runs.
+        rowInflater = new ReviewRowInflater(requireContext());
+        rowInflater.preinflate(rowsPerScreen());
+    }
 
     /**
      *
@@ -90,6 +131,17 @@ public class ReviewsFragment extends Fragment {
         setupImgSrcAvatar();
         setupBackButton();
         setupAddReviewButton();
+        setupSearch();
+        setupReviewOrder();
+    }
+
+    /**
+     * Drops the rows inflated ahead of time for the destroyed view, which are not needed anymore.
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        rowInflater.clear();
     }
 
     /**
@@ -103,9 +155,25 @@ public class ReviewsFragment extends Fragment {
      * Sets up the RecyclerView for displaying reviews.
      */
     private void setupRecyclerView() {
-        reviewAdapter = new ReviewAdapter(requireContext());
-        binding.recyclerViewReviews.setLayoutManager(new LinearLayoutManager(getContext()));
+        ReviewAvatarLoader avatarLoader = new ReviewAvatarLoader(Glide.with(this),
+                getResources().getDimensionPixelSize(R.dimen.review_avatar_size));
+        ReviewCommentLayouts commentLayouts = new ReviewCommentLayouts(computeExecutor,
+                ReviewCommentLayouts.DEFAULT_PREFETCH_ROWS);
+        reviewAdapter = new ReviewAdapter(requireContext(), computeExecutor, avatarLoader, commentLayouts, rowInflater);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        binding.recyclerViewReviews.setLayoutManager(layoutManager);
+        binding.recyclerViewReviews.getRecycledViewPool()
+                .setMaxRecycledViews(ReviewAdapter.VIEW_TYPE_REVIEW, RECYCLED_SCREENS * rowsPerScreen());
         binding.recyclerViewReviews.setAdapter(reviewAdapter);
+        binding.recyclerViewReviews.addOnScrollListener(
+                avatarLoader.newPreloader(reviewAdapter::getPicture, ReviewAvatarLoader.DEFAULT_PRELOAD_ROWS));
+        binding.recyclerViewReviews.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                reviewsViewModel.onReviewsScrolled(reviewAdapter.getVersion(),
+                        layoutManager.findFirstVisibleItemPosition(), layoutManager.findLastVisibleItemPosition());
+            }
+        });
 
         DividerItemDecoration itemDecoration = new DividerItemDecoration(
                 requireContext(),
@@ -120,15 +188,98 @@ public class ReviewsFragment extends Fragment {
         binding.recyclerViewReviews.addItemDecoration(itemDecoration);
     }
 
+    /**
+     * @return The number of review rows a screen can show at most: its height divided by the
+     * height of a row with a one-line comment.
+     */
+    private int rowsPerScreen() {
+        int rowHeight = getResources().getDimensionPixelSize(R.dimen.review_avatar_size)
+                + 2 * getResources().getDimensionPixelSize(R.dimen.review_row_padding);
+        return getResources().getDisplayMetrics().heightPixels / rowHeight + 1;
+    }
+
     /**
      * Observes changes in the ViewModel's LiveData and updates the RecyclerView accordingly.
      */
     private void observeViewModel() {
-        reviewsViewModel.getReviews().observe(getViewLifecycleOwner(), reviewList -> {
-            if (reviewList != null) {
-                reviewAdapter.updateReviews(reviewList);
+        reviewsViewModel.getPagedReviews().observe(getViewLifecycleOwner(), changeSet -> {
+            if (changeSet != null && !isFiltered()) {
+                reviewAdapter.applyChanges(changeSet);
             }
         });
+        reviewsViewModel.getFilteredReviews().observe(getViewLifecycleOwner(), reviews -> {
+            if (reviews != null) {
+                reviewAdapter.updateReviews(reviews);
+                return;
+            }
+            // Back to the paged reviews, the adapter diffing the two lists.
+            ReviewChangeSet changeSet = reviewsViewModel.getPagedReviews().getValue();
+            if (changeSet != null) {
+                reviewAdapter.applyChanges(changeSet);
+            }
+        });
+        reviewsViewModel.getLoadState().observe(getViewLifecycleOwner(), loadState -> {
+            if (reviewsViewModel.takeError(loadState)) {
+                Toast.makeText(requireContext(), R.string.reviews_error, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * @return true if the searched, sorted or filtered reviews are displayed rather than the paged reviews.
+     */
+    private boolean isFiltered() {
+        return reviewsViewModel.getFilteredReviews().getValue() != null;
+    }
+
+    /**
+     * Sets up the search field, searching the reviews as the user types.
+     */
+    private void setupSearch() {
+        binding.editTextSearchReviews.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                reviewsViewModel.setSearchQuery(s.toString());
+            }
+        });
+    }
+
+    /**
+     * Sets up the order and star filter selectors, showing the selection of the ViewModel.
+     * The star filter lists all stars first, then from five stars down to one.
+     */
+    private void setupReviewOrder() {
+        binding.spinnerReviewOrder.setAdapter(ArrayAdapter.createFromResource(requireContext(),
+                R.array.review_orders, android.R.layout.simple_spinner_dropdown_item));
+        binding.spinnerStarFilter.setAdapter(ArrayAdapter.createFromResource(requireContext(),
+                R.array.review_star_filters, android.R.layout.simple_spinner_dropdown_item));
+        int stars = reviewsViewModel.getStarFilter();
+        binding.spinnerReviewOrder.setSelection(reviewsViewModel.getReviewOrder().ordinal(), false);
+        binding.spinnerStarFilter.setSelection(
+                stars == ReviewSortIndex.ALL_STARS ? 0 : ReviewSortIndex.MAX_STARS + 1 - stars, false);
+        AdapterView.OnItemSelectedListener listener = new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                int starPosition = binding.spinnerStarFilter.getSelectedItemPosition();
+                reviewsViewModel.setReviewOrder(
+                        ReviewOrder.values()[binding.spinnerReviewOrder.getSelectedItemPosition()],
+                        starPosition == 0 ? ReviewSortIndex.ALL_STARS : ReviewSortIndex.MAX_STARS + 1 - starPosition);
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        };
+        binding.spinnerReviewOrder.setOnItemSelectedListener(listener);
+        binding.spinnerStarFilter.setOnItemSelectedListener(listener);
     }
 
     /**
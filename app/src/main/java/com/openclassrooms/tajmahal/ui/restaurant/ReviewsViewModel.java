@@ -2,15 +2,29 @@ package com.openclassrooms.tajmahal.ui.restaurant;
 
 import android.util.Log;
 
+import androidx.annotation.WorkerThread;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+import androidx.lifecycle.SavedStateHandle;
 import androidx.lifecycle.ViewModel;
 
+import com.openclassrooms.tajmahal.data.repository.DebouncedComputation;
+import com.openclassrooms.tajmahal.data.repository.LoadState;
 import com.openclassrooms.tajmahal.data.repository.RestaurantRepository;
+import com.openclassrooms.tajmahal.data.repository.ReviewChangeSet;
+import com.openclassrooms.tajmahal.data.repository.ReviewPager;
+import com.openclassrooms.tajmahal.data.service.RestaurantApi;
+import com.openclassrooms.tajmahal.data.store.ReviewOrder;
+import com.openclassrooms.tajmahal.data.store.ReviewSortIndex;
+import com.openclassrooms.tajmahal.di.AppModule;
 import com.openclassrooms.tajmahal.domain.model.Review;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import dagger.hilt.android.lifecycle.HiltViewModel;
 
@@ -21,25 +35,279 @@ import dagger.hilt.android.lifecycle.HiltViewModel;
 
 @HiltViewModel
 public class ReviewsViewModel extends ViewModel {
+
+    /**
+     * Default duration during which the keystrokes and the updates of the reviews are coalesced
+     * into a single search: short enough to go unnoticed, long enough to skip the words being typed.
+     */
+    public static final long SEARCH_WINDOW_MILLIS = 150;
+    /** Number of reviews added to the sorted or filtered reviews as the user scrolls near their end. */
+    public static final int FILTERED_PAGE_SIZE = ReviewPager.DEFAULT_PAGE_SIZE;
+
     private final RestaurantRepository restaurantRepository;
+    // Identifier of the reviewed restaurant, from the arguments of the fragment.
+    private final long restaurantId;
+    // Query, order and star filter selected by the user, and number of reviews read in that order.
+    private String searchQuery = "";
+    private ReviewOrder reviewOrder = ReviewOrder.NEWEST_FIRST;
+    private int starFilter = ReviewSortIndex.ALL_STARS;
+    private int filteredCount = FILTERED_PAGE_SIZE;
+    // Last error returned by takeError(), or the one already reported when the screen opened,
+    // so that each error is shown once even though the load state replays its last value.
+    private LoadState shownError;
+    // Reviews matching the query in the selected order and star filter, or null while the
+    // paged reviews are displayed: no query, newest first, all stars.
+    private final MediatorLiveData<List<Review>> filteredReviews = new MediatorLiveData<>();
+    // Reads them off the main thread, once per burst of keystrokes, selections or updates of the reviews.
+    private final DebouncedComputation<ReviewFilter, List<Review>> filterPipeline;
+    // Whether the updates of the reviews are read again in the selected order.
+    private boolean filteringChanges;
 
+    /**
+     * The restaurant is the one passed to {@link ReviewsFragment#newInstance(long)}, or the
+     * Taj Mahal by default; its data stays cached until this ViewModel is cleared.
+     *
+     * @param restaurantRepository The repository which will provide restaurant data.
+     * @param savedStateHandle     The arguments of the fragment.
+     * @param computeExecutor      The executor searching and sorting the reviews.
+     */
     @Inject
-    public ReviewsViewModel(RestaurantRepository restaurantRepository) {
+    public ReviewsViewModel(RestaurantRepository restaurantRepository, SavedStateHandle savedStateHandle,
+                            @Named(AppModule.COMPUTE_EXECUTOR) ScheduledExecutorService computeExecutor) {
+        this(restaurantRepository, savedStateHandle, computeExecutor, SEARCH_WINDOW_MILLIS);
+    }
+
+    /**
+     * Constructs a ReviewsViewModel coalescing the searches and selections over a custom window.
+     *
+     * @param restaurantRepository The repository which will provide restaurant data.
+     * @param savedStateHandle     The arguments of the fragment.
+     * @param computeExecutor      The executor searching and sorting the reviews.
+     * @param searchWindowMillis   The duration during which the keystrokes, selections and updates are coalesced.
+     */
+    public ReviewsViewModel(RestaurantRepository restaurantRepository, SavedStateHandle savedStateHandle,
+                            ScheduledExecutorService computeExecutor, long searchWindowMillis) {
         this.restaurantRepository = restaurantRepository;
+        Long restaurantId = savedStateHandle.get(DetailsViewModel.ARG_RESTAURANT_ID);
+        this.restaurantId = restaurantId != null ? restaurantId : RestaurantApi.TAJ_MAHAL_ID;
+        restaurantRepository.retain(this.restaurantId);
+        LiveData<LoadState> loadState = restaurantRepository.getLoadState(this.restaurantId);
+        shownError = loadState != null ? loadState.getValue() : null;
+        filterPipeline = new DebouncedComputation<>(computeExecutor, searchWindowMillis,
+                this::readFilteredReviews, filteredReviews::postValue);
     }
 
     /**
-     * Fetches the reviews of the Taj Mahal restaurant.
+     * Lets the repository evict the data of the restaurant once no other screen displays it.
+     */
+    @Override
+    protected void onCleared() {
+        filterPipeline.cancel();
+        restaurantRepository.release(restaurantId);
+    }
+
+    /**
+     * Fetches the reviews of the restaurant.
      *
-     * @return LiveData object containing the list of reviews of the Taj Mahal restaurant.
+     * @return LiveData object containing the list of reviews of the restaurant.
      *
      */
     public LiveData<List<Review>> getReviews() {
-        return restaurantRepository.getReviews();
+        return restaurantRepository.getReviews(restaurantId);
+    }
+
+    /**
+     * Returns the state of the review operations run in the background by the repository on the
+     * restaurant. Like any LiveData, it replays its last value to each new observer: errors to
+     * report to the user should go through {@link #takeError(LoadState)}.
+     *
+     * @return LiveData object containing the current {@link LoadState}.
+     */
+    public LiveData<LoadState> getLoadState() {
+        return restaurantRepository.getLoadState(restaurantId);
+    }
+
+    /**
+     * Tells whether a load state is an error not reported yet, and marks it as reported.
+     * An error replayed to a re-created view, or reported before this screen was opened, is
+     * not reported again.
+     *
+     * @param loadState A value observed on {@link #getLoadState()}.
+     * @return true if the load state is an error to report to the user.
+     */
+    public boolean takeError(LoadState loadState) {
+        if (loadState == null || loadState.getStatus() != LoadState.Status.ERROR || loadState == shownError) {
+            return false;
+        }
+        shownError = loadState;
+        return true;
+    }
+
+    /**
+     * Fetches the reviews of the restaurant page by page.
+     *
+     * @return LiveData object containing the reviews loaded so far, newest first, with the range inserted by the last update.
+     */
+    public LiveData<ReviewChangeSet> getPagedReviews() {
+        return restaurantRepository.getReviewPager(restaurantId).getReviews();
+    }
+
+    /**
+     * Notifies the pager of the scroll position so that the next or previous page is loaded
+     * before the user reaches an end of the loaded reviews, and the pages far from it are dropped;
+     * or, while the sorted or filtered reviews are displayed, reads more of them as the user
+     * nears their end.
+     *
+     * @param displayedVersion     The version of the displayed change set, which the positions refer to.
+     * @param firstVisiblePosition The position of the first review visible on screen.
+     * @param lastVisiblePosition  The position of the last review visible on screen.
+     */
+    public void onReviewsScrolled(long displayedVersion, int firstVisiblePosition, int lastVisiblePosition) {
+        List<Review> filtered = filteredReviews.getValue();
+        if (filtered != null) {
+            // A shorter list holds every matching review.
+            if (searchQuery.isEmpty() && filtered.size() == filteredCount
+                    && lastVisiblePosition >= filteredCount - ReviewPager.DEFAULT_PREFETCH_DISTANCE) {
+                filteredCount += FILTERED_PAGE_SIZE;
+                filterReviews();
+            }
+            return;
+        }
+        restaurantRepository.getReviewPager(restaurantId)
+                .loadAround(displayedVersion, firstVisiblePosition, lastVisiblePosition);
+    }
+
+    /**
+     * Selects the order and the star filter of the displayed reviews, published by
+     * {@link #getFilteredReviews()}, and of the pages returned by {@link #getReviewPage(int, int)}.
+     * The orders are maintained by the repository, so switching only costs reading the first page
+     * in the background. The first selection other than newest first and all stars loads the
+     * reviews of the restaurant, which are then read again as they are loaded and added.
+     *
+     * @param order The order of the reviews.
+     * @param stars The star count of the reviews to display, or {@link ReviewSortIndex#ALL_STARS}.
+     */
+    public void setReviewOrder(ReviewOrder order, int stars) {
+        if (stars < ReviewSortIndex.ALL_STARS || stars > ReviewSortIndex.MAX_STARS) {
+            throw new IllegalArgumentException("Invalid star filter: " + stars);
+        }
+        if (order == reviewOrder && stars == starFilter) {
+            return;
+        }
+        this.reviewOrder = order;
+        this.starFilter = stars;
+        filteredCount = FILTERED_PAGE_SIZE;
+        filterReviews();
+    }
+
+    /**
+     * @return The order selected by {@link #setReviewOrder(ReviewOrder, int)}, newest first by default.
+     */
+    public ReviewOrder getReviewOrder() {
+        return reviewOrder;
+    }
+
+    /**
+     * @return The star filter selected by {@link #setReviewOrder(ReviewOrder, int)}, all stars by default.
+     */
+    public int getStarFilter() {
+        return starFilter;
+    }
+
+    /**
+     * Reads a page of the reviews of the restaurant in the selected order and star filter.
+     * Screens use {@link #getFilteredReviews()}, which reads the pages in the background.
+     *
+     * @param from  The position of the first review of the page.
+     * @param count The maximum number of reviews of the page.
+     * @return The reviews of the page, shorter than {@code count} once the end is reached.
+     */
+    @WorkerThread
+    public List<Review> getReviewPage(int from, int count) {
+        return restaurantRepository.getReviewPage(restaurantId, reviewOrder, starFilter, from, count);
+    }
+
+    /**
+     * Searches the comments of the reviews of the restaurant for the typed query, for instance a
+     * dish, ignoring case and accents. The search runs in the background and may be called on each
+     * keystroke: the results are published by {@link #getFilteredReviews()}, in the selected order
+     * and star filter. The first query loads the reviews of the restaurant, which are then searched
+     * again as they are loaded and added.
+     *
+     * @param query The words to look for, each one matching the words starting with it; an empty
+     *              query ends the search.
+     */
+    public void setSearchQuery(String query) {
+        String trimmed = query != null ? query.trim() : "";
+        if (trimmed.equals(searchQuery)) {
+            return;
+        }
+        searchQuery = trimmed;
+        filterReviews();
+    }
+
+    /**
+     * Returns the reviews matching the query typed last, in the selected order and star filter,
+     * updated as the reviews change; null while no query is typed and the reviews are displayed
+     * newest first with all stars, when the paged reviews are displayed instead.
+     *
+     * @return LiveData object containing the displayed reviews, or null.
+     */
+    public LiveData<List<Review>> getFilteredReviews() {
+        return filteredReviews;
+    }
+
+    /**
+     * Reads the displayed reviews again in the background for the selected query, order and
+     * filter, and from then on each time the reviews change.
+     */
+    private void filterReviews() {
+        ReviewFilter filter = new ReviewFilter(searchQuery, reviewOrder, starFilter, filteredCount);
+        if (!filter.isDefault() && !filteringChanges) {
+            filteringChanges = true;
+            filteredReviews.addSource(restaurantRepository.getReviewChanges(restaurantId), changes ->
+                    filterPipeline.submit(new ReviewFilter(searchQuery, reviewOrder, starFilter, filteredCount)));
+        }
+        filterPipeline.submit(filter);
+    }
+
+    /**
+     * Reads the reviews selected by a filter: the matches of the query, sorted in memory since
+     * they are few, or else the first page of the sort index of the repository.
+     * Called on the compute executor.
+     *
+     * @return The displayed reviews, or null if the paged reviews are displayed instead.
+     */
+    @WorkerThread
+    private List<Review> readFilteredReviews(ReviewFilter filter) {
+        if (filter.query.isEmpty()) {
+            return filter.isDefault() ? null
+                    : restaurantRepository.getReviewPage(restaurantId, filter.order, filter.stars, 0, filter.count);
+        }
+        List<Review> matches = restaurantRepository.searchReviews(restaurantId, filter.query);
+        if (filter.order == ReviewOrder.NEWEST_FIRST && filter.stars == ReviewSortIndex.ALL_STARS) {
+            return matches;
+        }
+        ReviewSortIndex sortedMatches = new ReviewSortIndex();
+        sortedMatches.addOldest(matches);
+        return sortedMatches.page(filter.order, filter.stars, 0, sortedMatches.size(filter.stars));
+    }
+
+    /**
+     * Searches the comments of the reviews of the restaurant, ignoring case and accents.
+     * Screens use {@link #setSearchQuery(String)}, which runs this search in the background.
+     *
+     * @param query The words to look for; each one matches the words starting with it.
+     * @return The reviews matching every word of the query, newest first.
+     */
+    @WorkerThread
+    public List<Review> searchReviews(String query) {
+        return restaurantRepository.searchReviews(restaurantId, query);
     }
 
     /**
      * Adds a new review to the list of reviews.
+     * The review is saved in the background; a saving failure is reported through {@link #getLoadState()}.
      * @param username The username of the reviewer.
      * @param avatarUrl The URL of the reviewer's avatar.
      * @param rate The rating given by the reviewer.
@@ -55,9 +323,9 @@ public class ReviewsViewModel extends ViewModel {
             return false;
         }
 
-        Review newReview = new Review(username, avatarUrl, comment, rate);
+        Review newReview = new Review(username, avatarUrl, comment, rate, System.currentTimeMillis());
         try {
-            restaurantRepository.addReview(newReview);
+            restaurantRepository.addReview(restaurantId, newReview);
             Log.d("ReviewsViewModel", "Review added successfully for user: " + username);
             return true;
         } catch (Exception e) {
@@ -65,4 +333,51 @@ public class ReviewsViewModel extends ViewModel {
             return false;
         }
     }
+
+    /**
+     * Adds several reviews at once, for instance when importing or syncing reviews.
+     * The batch is rejected as a whole if any review lacks a comment or a rating.
+     * @param reviews The reviews to add; the last one becomes the newest.
+     * @return true if the batch was submitted, false if it was rejected.
+     */
+    public boolean addReviews(Collection<Review> reviews) {
+        for (Review review : reviews) {
+            if (review.getComment() == null || review.getComment().isEmpty() || review.getRate() == 0) {
+                Log.d("ReviewsViewModel", "Batch rejected: invalid review from user: " + review.getUsername());
+                return false;
+            }
+        }
+        try {
+            restaurantRepository.addReviews(restaurantId, reviews);
+            Log.d("ReviewsViewModel", "Batch of " + reviews.size() + " reviews added successfully.");
+            return true;
+        } catch (Exception e) {
+            Log.e("ReviewsViewModel", "Error adding a batch of reviews to repository.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Query, order, star filter and number of the displayed reviews, read by the compute executor.
+     */
+    private static final class ReviewFilter {
+        final String query;
+        final ReviewOrder order;
+        final int stars;
+        final int count;
+
+        ReviewFilter(String query, ReviewOrder order, int stars, int count) {
+            this.query = query;
+            this.order = order;
+            this.stars = stars;
+            this.count = count;
+        }
+
+        /**
+         * @return true if the filter keeps every review newest first, as the pager displays them.
+         */
+        boolean isDefault() {
+            return query.isEmpty() && order == ReviewOrder.NEWEST_FIRST && stars == ReviewSortIndex.ALL_STARS;
+        }
+    }
 }
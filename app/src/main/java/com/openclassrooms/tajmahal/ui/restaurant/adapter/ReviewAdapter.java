@@ -1,8 +1,6 @@
 package com.openclassrooms.tajmahal.ui.restaurant.adapter;
 
 import android.content.Context;
-import android.util.Log;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
@@ -10,45 +8,149 @@ import android.widget.RatingBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.RequestOptions;
 import com.openclassrooms.tajmahal.R;
+import com.openclassrooms.tajmahal.data.repository.ReviewChange;
+import com.openclassrooms.tajmahal.data.repository.ReviewChangeSet;
 import com.openclassrooms.tajmahal.domain.model.Review;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Adapter for displaying a list of reviews in a RecyclerView.
+ * <p>
+ * Rows are identified by the {@link Review#getStableId() stable identifier} of their review, and
+ * only the rows that changed are notified: the ranges of a change set when it follows the one last
+ * applied, and otherwise the differences between the displayed list and the new one, computed
+ * by {@link DiffUtil} on a background executor. The other rows are neither rebound nor reloaded.
+ * </p>
+ * <p>
+ * Every method must be called on the main thread.
+ * </p>
  */
 public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ReviewViewHolder> {
-    private final List<Review> reviewsList;
-    private final Context context;
+    /** View type of the review rows, the only rows of the list. */
+    public static final int VIEW_TYPE_REVIEW = 0;
+
+    // Immutable snapshot of the displayed reviews; replaced, never modified.
+    private List<Review> reviewsList;
+    // Version of the last change set applied to the adapter.
+    private long version = ReviewChangeSet.NO_VERSION;
+    // Number of lists submitted so far, and the number of the displayed one; they differ while a diff is running.
+    private long submitted;
+    private long displayed;
+    private final Executor diffExecutor;
+    private final Executor mainExecutor;
+    private final ReviewAvatarLoader avatarLoader;
+    private final ReviewCommentLayouts commentLayouts;
+    private final ReviewRowInflater rowInflater;
 
     /**
      * Constructs a new ReviewAdapter with the provided context.
      *
-     * @param context The context in which the adapter is used.
+     * @param context        The context in which the adapter is used.
+     * @param diffExecutor   The background executor computing the differences between two lists.
+     * @param avatarLoader   Loads the avatars of the reviewers.
+     * @param commentLayouts Measures the comments of the upcoming rows in the background.
+     * @param rowInflater    Provides the rows, inflated ahead of time when possible.
      */
-    public ReviewAdapter(Context context) {
-        this.context = context;
-        this.reviewsList = new ArrayList<>();
+    public ReviewAdapter(Context context, Executor diffExecutor, ReviewAvatarLoader avatarLoader,
+                         ReviewCommentLayouts commentLayouts, ReviewRowInflater rowInflater) {
+        this.diffExecutor = diffExecutor;
+        this.avatarLoader = avatarLoader;
+        this.commentLayouts = commentLayouts;
+        this.rowInflater = rowInflater;
+        this.mainExecutor = ContextCompat.getMainExecutor(context);
+        this.reviewsList = Collections.emptyList();
+        setHasStableIds(true);
     }
 
     /**
-     * Updates the list of reviews displayed by the adapter.
+     * Updates the list of reviews displayed by the adapter. The rows are updated once the
+     * differences with the displayed list are computed, unless a newer list is submitted meanwhile.
      *
-     * @param newReviewList The new list of reviews to be displayed.
+     * @param newReviewList The new list of reviews to be displayed, which must not be modified afterwards.
      *
      */
     public void updateReviews(List<Review> newReviewList) {
-        this.reviewsList.clear();
-        if (newReviewList != null) {
-            this.reviewsList.addAll(newReviewList);
+        submitList(newReviewList == null ? Collections.<Review>emptyList() : newReviewList, ReviewChangeSet.NO_VERSION);
+    }
+
+    /**
+     * Applies an update of the reviews. When the update follows the one last applied, only the
+     * changed ranges are notified, so that only those rows are bound and animated; otherwise
+     * the new list is diffed against the displayed one.
+     *
+     * @param changeSet The update to apply.
+     */
+    public void applyChanges(ReviewChangeSet changeSet) {
+        // While a diff is running, the displayed list is older than the list last submitted.
+        if (displayed != submitted || !changeSet.followsFrom(version)) {
+            submitList(changeSet.getReviews(), changeSet.getVersion());
+            return;
+        }
+        displayed = ++submitted;
+        reviewsList = changeSet.getReviews();
+        version = changeSet.getVersion();
+        for (ReviewChange change : changeSet.getChanges()) {
+            switch (change.getType()) {
+                case INSERTED:
+                    notifyItemRangeInserted(change.getPosition(), change.getCount());
+                    break;
+                case REMOVED:
+                    notifyItemRangeRemoved(change.getPosition(), change.getCount());
+                    break;
+                case CHANGED:
+                    notifyItemRangeChanged(change.getPosition(), change.getCount());
+                    break;
+            }
         }
-        notifyDataSetChanged();
+    }
+
+    /**
+     * Displays a new list, notifying the differences with the displayed one once they are computed
+     * in the background. A list submitted meanwhile makes the pending differences stale.
+     */
+    private void submitList(List<Review> newList, long newVersion) {
+        long generation = ++submitted;
+        List<Review> oldList = reviewsList;
+        if (oldList.isEmpty() || newList.isEmpty()) {
+            // Nothing to match: every row is inserted, or every row removed.
+            displayed = generation;
+            reviewsList = newList;
+            version = newVersion;
+            if (!oldList.isEmpty()) {
+                notifyItemRangeRemoved(0, oldList.size());
+            } else if (!newList.isEmpty()) {
+                notifyItemRangeInserted(0, newList.size());
+            }
+            return;
+        }
+        diffExecutor.execute(() -> {
+            DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new ReviewDiffCallback(oldList, newList));
+            mainExecutor.execute(() -> {
+                if (submitted != generation) {
+                    return;
+                }
+                displayed = generation;
+                reviewsList = newList;
+                version = newVersion;
+                diff.dispatchUpdatesTo(this);
+            });
+        });
+    }
+
+    /**
+     * @return The version of the displayed change set, or {@link ReviewChangeSet#NO_VERSION} if
+     * the displayed list was not published as a change set.
+     */
+    public long getVersion() {
+        return version;
     }
 
     /**
@@ -61,9 +163,10 @@ public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ReviewView
     @NonNull
     @Override
     public ReviewViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View itemView = LayoutInflater.from(parent.getContext())
-                .inflate(R.layout.item_review, parent, false);
-        return new ReviewViewHolder(itemView);
+        View itemView = rowInflater.inflate(parent);
+        ReviewViewHolder holder = new ReviewViewHolder(itemView);
+        commentLayouts.attach(holder.reviewerComment);
+        return holder;
     }
 
     /**
@@ -75,7 +178,34 @@ public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ReviewView
     @Override
     public void onBindViewHolder(@NonNull ReviewViewHolder holder, int position) {
         Review currentReview = reviewsList.get(position);
-        holder.bind(currentReview, context);
+        holder.bind(currentReview, avatarLoader, commentLayouts);
+        commentLayouts.prefetch(reviewsList, position);
+    }
+
+    /**
+     * @param position The position of the item within the adapter's data set.
+     * @return The stable identifier of the review at that position.
+     */
+    @Override
+    public long getItemId(int position) {
+        return reviewsList.get(position).getStableId();
+    }
+
+    /**
+     * @param position The position of the item within the adapter's data set.
+     * @return {@link #VIEW_TYPE_REVIEW}, the type of every row.
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return VIEW_TYPE_REVIEW;
+    }
+
+    /**
+     * @param position The position of an item, possibly out of the data set.
+     * @return The avatar URL of the review at that position, or null if there is none.
+     */
+    public String getPicture(int position) {
+        return position >= 0 && position < reviewsList.size() ? reviewsList.get(position).getPicture() : null;
     }
 
     /**
@@ -87,6 +217,39 @@ public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ReviewView
         return reviewsList == null ? 0 : reviewsList.size();
     }
 
+    /**
+     * Matches the reviews of two lists by stable identifier, and compares their content.
+     */
+    private static final class ReviewDiffCallback extends DiffUtil.Callback {
+        private final List<Review> oldList;
+        private final List<Review> newList;
+
+        ReviewDiffCallback(List<Review> oldList, List<Review> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.get(oldItemPosition).getStableId() == newList.get(newItemPosition).getStableId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.get(oldItemPosition).equals(newList.get(newItemPosition));
+        }
+    }
+
     /**
      * ViewHolder for displaying a single review item in the RecyclerView.
      */
@@ -114,27 +277,14 @@ public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ReviewView
          * Binds the review data to the ViewHolder's views.
          *
          * @param review The review data to be displayed.
-         * @param context The context in which the adapter is used.
+         * @param avatarLoader Loads the avatar of the reviewer.
+         * @param commentLayouts Provides the measured text of the comment.
          */
-        public void bind(Review review, Context context) {
+        public void bind(Review review, ReviewAvatarLoader avatarLoader, ReviewCommentLayouts commentLayouts) {
             reviewerName.setText(review.getUsername());
             reviewerRatingBar.setRating(review.getRate());
-            reviewerComment.setText(review.getComment());
-
-
-            String imageUrl = review.getPicture();
-            if (imageUrl != null && !imageUrl.isEmpty()) {
-                Log.d("ReviewAdapter", "Image Name: " + imageUrl);
-                Glide.with(context)
-                        .load(imageUrl)
-                        .apply(new RequestOptions()
-                                .placeholder(R.drawable.default_avatar)
-                                .error(R.drawable.default_avatar)
-                        )
-                        .into(reviewerProfileImage);
-            } else {
-                reviewerProfileImage.setImageResource(R.drawable.default_avatar);
-            }
+            commentLayouts.bind(review, reviewerComment);
+            avatarLoader.load(review.getPicture(), reviewerProfileImage);
         }
     }
 }
\ No newline at end of file
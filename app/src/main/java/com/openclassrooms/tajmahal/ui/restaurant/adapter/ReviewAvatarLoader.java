@@ -0,0 +1,110 @@
+package com.openclassrooms.tajmahal.ui.restaurant.adapter;
+
+import android.graphics.drawable.Drawable;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.util.FixedPreloadSizeProvider;
+import com.openclassrooms.tajmahal.R;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Loads the avatars of the review list through Glide.
+ * <p>
+ * Every avatar request shares the same {@link RequestOptions}, built once: avatars are decoded at
+ * the size of the row image rather than at the size of the downloaded file, in RGB_565 since
+ * the row image draws them in a circle of its own, and only these small decoded avatars are
+ * written to the disk cache. A bound row and a preloaded row therefore produce the same cache
+ * key, so that an avatar preloaded ahead of the scroll is found in memory when its row is bound.
+ * </p>
+ */
+public class ReviewAvatarLoader {
+
+    /** Default number of rows ahead of the scroll whose avatars are preloaded. */
+    public static final int DEFAULT_PRELOAD_ROWS = 10;
+
+    private final RequestManager requestManager;
+    private final RequestOptions options;
+    private final int size;
+
+    /**
+     * Constructs a new {@link ReviewAvatarLoader}.
+     *
+     * @param requestManager The Glide requests of the screen displaying the list, cancelled with it.
+     * @param size           The size of the row image, in pixels.
+     */
+    public ReviewAvatarLoader(RequestManager requestManager, int size) {
+        this.requestManager = requestManager;
+        this.size = size;
+        // Matches the CENTER_CROP scale type of the row image, which Glide would otherwise only
+        // apply to bound rows, giving preloaded avatars another cache key.
+        this.options = new RequestOptions()
+                .override(size, size)
+                .centerCrop()
+                .format(DecodeFormat.PREFER_RGB_565)
+                .diskCacheStrategy(DiskCacheStrategy.RESOURCE)
+                .placeholder(R.drawable.default_avatar)
+                .error(R.drawable.default_avatar)
+                .dontAnimate();
+    }
+
+    /**
+     * Displays an avatar in a row image, cancelling the avatar it was loading for a previous row.
+     *
+     * @param picture The URL of the avatar, or null or empty for the default avatar.
+     * @param target  The row image.
+     */
+    public void load(@Nullable String picture, ImageView target) {
+        if (picture == null || picture.isEmpty()) {
+            requestManager.clear(target);
+            target.setImageResource(R.drawable.default_avatar);
+        } else {
+            request(picture).into(target);
+        }
+    }
+
+    /**
+     * Creates a scroll listener preloading the avatars of the rows about to be displayed.
+     *
+     * @param pictureAt Returns the avatar URL of the row at a position, or null if it has none or
+     *                  the position is out of the list.
+     * @param rowsAhead The number of rows ahead of the scroll whose avatars are preloaded.
+     * @return The listener to add to the RecyclerView.
+     */
+    public RecyclerView.OnScrollListener newPreloader(IntFunction<String> pictureAt, int rowsAhead) {
+        ListPreloader.PreloadModelProvider<String> pictures = new ListPreloader.PreloadModelProvider<String>() {
+            @NonNull
+            @Override
+            public List<String> getPreloadItems(int position) {
+                String picture = pictureAt.apply(position);
+                return picture == null || picture.isEmpty()
+                        ? Collections.<String>emptyList() : Collections.singletonList(picture);
+            }
+
+            @Nullable
+            @Override
+            public RequestBuilder<?> getPreloadRequestBuilder(@NonNull String picture) {
+                return request(picture);
+            }
+        };
+        return new RecyclerViewPreloader<>(requestManager, pictures,
+                new FixedPreloadSizeProvider<String>(size, size), rowsAhead);
+    }
+
+    private RequestBuilder<Drawable> request(String picture) {
+        return requestManager.load(picture).apply(options);
+    }
+}
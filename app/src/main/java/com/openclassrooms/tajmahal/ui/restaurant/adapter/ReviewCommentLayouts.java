@@ -0,0 +1,131 @@
+package com.openclassrooms.tajmahal.ui.restaurant.adapter;
+
+import android.util.LruCache;
+import android.widget.TextView;
+
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Measures the comments of the review list on a background executor, so that binding a row
+ * attaches text whose measurement is already done instead of measuring it during a scroll frame.
+ * <p>
+ * When a row is bound, the comments of the rows around it are measured in the background with
+ * {@link PrecomputedTextCompat}, and kept by {@link Review#getStableId() review identifier} in a
+ * bounded cache. A row whose comment is not measured yet, such as the first rows of the list, gets
+ * its comment as plain text, measured on the main thread as before.
+ * </p>
+ * <p>
+ * Every method must be called on the main thread.
+ * </p>
+ */
+public class ReviewCommentLayouts {
+
+    /** Default number of rows on each side of a bound row whose comments are measured. */
+    public static final int DEFAULT_PREFETCH_ROWS = 10;
+
+    // A few screens of rows around the visible ones.
+    private static final int MAX_CACHED_COMMENTS = 300;
+
+    private final Executor executor;
+    private final int prefetchRows;
+    // Thread-safe: filled by the executor and read on the main thread.
+    private final LruCache<Long, Measured> cache = new LruCache<>(MAX_CACHED_COMMENTS);
+    // Reviews being measured, so that a comment is measured once however often its neighbours are bound.
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    // Style of the comment views; set once the first row is created.
+    private volatile PrecomputedTextCompat.Params params;
+
+    /**
+     * Constructs a new {@link ReviewCommentLayouts}.
+     *
+     * @param executor     The background executor measuring the comments.
+     * @param prefetchRows The number of rows on each side of a bound row whose comments are measured.
+     */
+    public ReviewCommentLayouts(Executor executor, int prefetchRows) {
+        this.executor = executor;
+        this.prefetchRows = prefetchRows;
+    }
+
+    /**
+     * Reads the text style of a comment view. The comment views of the list must all share this
+     * style, which is the one the comments are measured with.
+     *
+     * @param commentView The comment view of a newly created row.
+     */
+    public void attach(TextView commentView) {
+        if (params == null) {
+            params = TextViewCompat.getTextMetricsParams(commentView);
+        }
+    }
+
+    /**
+     * Displays the comment of a review, with its measured text if it is ready.
+     *
+     * @param review      The review of the row.
+     * @param commentView The comment view of the row.
+     */
+    public void bind(Review review, TextView commentView) {
+        String comment = review.getComment();
+        Measured measured = comment == null ? null : cache.get(review.getStableId());
+        if (measured != null && measured.comment.equals(comment)) {
+            TextViewCompat.setPrecomputedText(commentView, measured.text);
+        } else {
+            commentView.setText(comment);
+        }
+    }
+
+    /**
+     * Measures in the background the comments of the rows around a position that are not measured yet.
+     *
+     * @param reviews  The displayed reviews, which must not be modified afterwards.
+     * @param position The position of the bound row.
+     */
+    public void prefetch(List<Review> reviews, int position) {
+        PrecomputedTextCompat.Params style = params;
+        if (style == null) {
+            return;
+        }
+        int from = Math.max(0, position - prefetchRows);
+        int to = Math.min(reviews.size(), position + prefetchRows + 1);
+        for (int i = from; i < to; i++) {
+            Review review = reviews.get(i);
+            String comment = review.getComment();
+            long id = review.getStableId();
+            if (comment == null || comment.isEmpty()) {
+                continue;
+            }
+            Measured measured = cache.get(id);
+            if ((measured != null && measured.comment.equals(comment)) || !pending.add(id)) {
+                continue;
+            }
+            executor.execute(() -> {
+                try {
+                    cache.put(id, new Measured(comment, PrecomputedTextCompat.create(comment, style)));
+                } finally {
+                    pending.remove(id);
+                }
+            });
+        }
+    }
+
+    /**
+     * A comment together with its measured text.
+     */
+    private static final class Measured {
+        final String comment;
+        final PrecomputedTextCompat text;
+
+        Measured(String comment, PrecomputedTextCompat text) {
+            this.comment = comment;
+            this.text = text;
+        }
+    }
+}
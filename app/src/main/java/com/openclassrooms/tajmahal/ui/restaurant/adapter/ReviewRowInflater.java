@@ -0,0 +1,102 @@
+package com.openclassrooms.tajmahal.ui.restaurant.adapter;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+
+import com.openclassrooms.tajmahal.R;
+
+import java.util.ArrayDeque;
+
+/**
+ * Inflates the rows of the review list, most of them ahead of time on a background thread.
+ * <p>
+ * {@link #preinflate(int)} starts inflating rows with an {@link AsyncLayoutInflater} as soon as
+ * the screen is created, while its fragment transaction and view creation run; the inflated rows
+ * wait in a stash until the adapter creates its first view holders, which then take them instead
+ * of inflating their rows during the first layout. Once the stash is empty, rows are inflated on
+ * the main thread as usual. The stash never holds more rows than requested, and {@link #clear()}
+ * empties it once the view they were inflated for is destroyed.
+ * </p>
+ * <p>
+ * Every method must be called on the main thread.
+ * </p>
+ */
+public class ReviewRowInflater {
+
+    private final Context context;
+    // Stands for the RecyclerView, which does not exist yet, to read the layout params of the rows.
+    private final ViewGroup parent;
+    private final ArrayDeque<View> inflated = new ArrayDeque<>();
+    // Rows being inflated in the background, and the number of rows the stash may hold.
+    private int pending;
+    private int capacity;
+    // Incremented by clear(), so that the rows inflating meanwhile are dropped.
+    private int generation;
+
+    /**
+     * Constructs a new {@link ReviewRowInflater}.
+     *
+     * @param context The context of the screen, whose theme the rows are inflated with.
+     */
+    public ReviewRowInflater(Context context) {
+        this.context = context;
+        this.parent = new FrameLayout(context);
+    }
+
+    /**
+     * Starts inflating rows in the background, up to a stash of {@code rows} rows: rows already
+     * stashed or being inflated count, so calling it again does not grow the stash further.
+     *
+     * @param rows The number of rows to stash, such as the number of rows of a screen.
+     */
+    public void preinflate(int rows) {
+        capacity = rows;
+        int missing = rows - inflated.size() - pending;
+        if (missing <= 0) {
+            return;
+        }
+        AsyncLayoutInflater inflater = new AsyncLayoutInflater(context);
+        int started = generation;
+        pending += missing;
+        for (int i = 0; i < missing; i++) {
+            inflater.inflate(R.layout.item_review, parent, (view, resid, viewParent) -> {
+                if (started != generation) {
+                    return;
+                }
+                pending--;
+                if (inflated.size() < capacity) {
+                    inflated.add(view);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops the stashed rows and those being inflated, for instance once the view of the screen
+     * is destroyed, so that they do not outlive it. Later rows are inflated on the main thread,
+     * until {@link #preinflate(int)} is called again.
+     */
+    public void clear() {
+        generation++;
+        pending = 0;
+        capacity = 0;
+        inflated.clear();
+    }
+
+    /**
+     * Returns a row, inflated ahead of time if one is ready, otherwise inflated now.
+     *
+     * @param recyclerView The list the row is created for.
+     * @return A row not attached to any parent.
+     */
+    public View inflate(ViewGroup recyclerView) {
+        View row = inflated.poll();
+        return row != null ? row : LayoutInflater.from(recyclerView.getContext())
+                .inflate(R.layout.item_review, recyclerView, false);
+    }
+}
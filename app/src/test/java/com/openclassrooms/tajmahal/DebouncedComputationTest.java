@@ -0,0 +1,130 @@
+package com.openclassrooms.tajmahal;
+
+import com.openclassrooms.tajmahal.data.repository.DebouncedComputation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link DebouncedComputation} class, which builds the review statistics off
+ * the main thread. These tests verify that a burst of inputs is computed once, that stale results
+ * are never published, and that a cancelled computation publishes nothing.
+ */
+public class DebouncedComputationTest {
+
+    private ScheduledExecutorService executor;
+    private List<String> published;
+    private AtomicInteger computations;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newScheduledThreadPool(2);
+        published = new CopyOnWriteArrayList<>();
+        computations = new AtomicInteger();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that the inputs submitted within a window are coalesced into one computation of the latest.
+     */
+    @Test
+    public void submit_withBurst_shouldComputeLatestInputOnce() throws Exception {
+        // Arrange
+        DebouncedComputation<Integer, String> pipeline = new DebouncedComputation<>(executor, 50,
+                input -> {
+                    computations.incrementAndGet();
+                    return "stats " + input;
+                }, published::add);
+
+        // Act
+        for (int i = 1; i <= 500; i++) {
+            pipeline.submit(i);
+        }
+        awaitQuiet();
+
+        // Assert
+        assertEquals(1, computations.get());
+        assertEquals(1, published.size());
+        assertEquals("stats 500", published.get(0));
+    }
+
+    /**
+     * Tests that an input submitted while an older one is computed makes the older result stale,
+     * so that only the newer result is published.
+     */
+    @Test
+    public void submit_duringComputation_shouldDropStaleResult() throws Exception {
+        // Arrange
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        DebouncedComputation<Integer, String> pipeline = new DebouncedComputation<>(executor, 0,
+                input -> {
+                    if (input == 1) {
+                        computing.countDown();
+                        awaitQuietly(resume);
+                    }
+                    return "stats " + input;
+                }, published::add);
+
+        // Act
+        pipeline.submit(1);
+        assertTrue(computing.await(1, TimeUnit.SECONDS));
+        pipeline.submit(2);
+        awaitQuiet();
+        resume.countDown();
+        awaitQuiet();
+
+        // Assert
+        assertEquals(1, published.size());
+        assertEquals("stats 2", published.get(0));
+    }
+
+    /**
+     * Tests that cancelling drops the pending computation and ignores later inputs.
+     */
+    @Test
+    public void cancel_shouldPublishNothing() throws Exception {
+        // Arrange
+        DebouncedComputation<Integer, String> pipeline = new DebouncedComputation<>(executor, 50,
+                input -> "stats " + input, published::add);
+        pipeline.submit(1);
+
+        // Act
+        pipeline.cancel();
+        pipeline.submit(2);
+        awaitQuiet();
+
+        // Assert
+        assertTrue(published.isEmpty());
+    }
+
+    /**
+     * Waits for the windows and computations in progress to complete.
+     */
+    private static void awaitQuiet() throws InterruptedException {
+        Thread.sleep(200);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
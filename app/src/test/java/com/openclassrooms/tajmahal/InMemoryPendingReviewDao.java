@@ -0,0 +1,45 @@
+package com.openclassrooms.tajmahal;
+
+import com.openclassrooms.tajmahal.data.local.PendingReviewDao;
+import com.openclassrooms.tajmahal.data.local.PendingReviewEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory implementation of the outbox table, shared by the tests of the outbox and of the repository.
+ * Its methods are synchronized, like the queries of a database, for the tests using several threads.
+ */
+class InMemoryPendingReviewDao implements PendingReviewDao {
+    final List<PendingReviewEntity> rows = new ArrayList<>();
+    private long nextId = 1;
+
+    @Override
+    public synchronized List<PendingReviewEntity> getOldest(int limit) {
+        return new ArrayList<>(rows.subList(0, Math.min(limit, rows.size())));
+    }
+
+    @Override
+    public synchronized List<PendingReviewEntity> getAllNewestFirst(long restaurantId) {
+        List<PendingReviewEntity> newestFirst = new ArrayList<>();
+        for (PendingReviewEntity row : rows) {
+            if (row.restaurantId == restaurantId) {
+                newestFirst.add(0, row);
+            }
+        }
+        return newestFirst;
+    }
+
+    @Override
+    public synchronized void insertAll(List<PendingReviewEntity> reviews) {
+        for (PendingReviewEntity review : reviews) {
+            review.id = nextId++;
+            rows.add(review);
+        }
+    }
+
+    @Override
+    public synchronized void delete(List<PendingReviewEntity> reviews) {
+        rows.removeAll(reviews);
+    }
+}
@@ -0,0 +1,122 @@
+package com.openclassrooms.tajmahal;
+
+import com.openclassrooms.tajmahal.data.store.RatingAggregate;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aggregates the ratings of many restaurants at once, on the threads of a {@link ForkJoinPool}.
+ * <p>
+ * Every review set is split into ranges of at most {@link #DEFAULT_LEAF_SIZE} reviews, each
+ * aggregated on its own by a fork-join task; the partial {@link RatingAggregate}s are then merged
+ * up the task tree. Small restaurants cost a single task, and a restaurant with a large history
+ * is spread over every thread instead of bounding the whole computation.
+ * </p>
+ * <p>
+ * The app only displays one restaurant at a time, whose totals are kept up to date by
+ * {@link RatingAggregate}, so this class only serves the tests, which check that merging partial
+ * aggregates gives the totals of a sequential pass and measure how the merging scales.
+ * </p>
+ */
+public class ParallelRatingAggregator {
+
+    /** Number of reviews below which a range is aggregated without being split further. */
+    public static final int DEFAULT_LEAF_SIZE = 4096;
+
+    private final ForkJoinPool pool;
+    private final int leafSize;
+
+    /**
+     * Constructs a new {@link ParallelRatingAggregator}.
+     *
+     * @param pool     The pool running the aggregation; its parallelism bounds the number of threads used.
+     * @param leafSize The number of reviews below which a range is aggregated by a single task.
+     */
+    public ParallelRatingAggregator(ForkJoinPool pool, int leafSize) {
+        if (leafSize <= 0) {
+            throw new IllegalArgumentException("leafSize must be positive");
+        }
+        this.pool = pool;
+        this.leafSize = leafSize;
+    }
+
+    /**
+     * Aggregates the reviews of each restaurant. Blocks until every aggregate is computed.
+     *
+     * @param reviewsByRestaurant The reviews of each restaurant; the lists must not change meanwhile.
+     * @return The aggregate of each restaurant, in the iteration order of the map.
+     */
+    public <K> Map<K, RatingAggregate> aggregateEach(Map<K, ? extends List<Review>> reviewsByRestaurant) {
+        List<K> keys = new ArrayList<>(reviewsByRestaurant.keySet());
+        List<RangeTask> tasks = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            List<Review> reviews = reviewsByRestaurant.get(key);
+            tasks.add(new RangeTask(reviews, 0, reviews.size()));
+        }
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                invokeAll(tasks);
+                return null;
+            }
+        });
+        Map<K, RatingAggregate> aggregates = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            aggregates.put(keys.get(i), tasks.get(i).join());
+        }
+        return aggregates;
+    }
+
+    /**
+     * Aggregates the reviews of every restaurant together. Blocks until the aggregate is computed.
+     *
+     * @param reviewsByRestaurant The reviews of each restaurant; the lists must not change meanwhile.
+     * @return The aggregate of all the reviews.
+     */
+    public RatingAggregate aggregateAll(Map<?, ? extends List<Review>> reviewsByRestaurant) {
+        RatingAggregate total = new RatingAggregate();
+        for (RatingAggregate aggregate : aggregateEach(reviewsByRestaurant).values()) {
+            total.merge(aggregate);
+        }
+        return total;
+    }
+
+    /**
+     * Aggregates a range of a review list, splitting it in halves until they are small enough.
+     */
+    @SuppressWarnings("serial")
+    private final class RangeTask extends RecursiveTask<RatingAggregate> {
+        private final List<Review> reviews;
+        private final int from;
+        private final int to;
+
+        RangeTask(List<Review> reviews, int from, int to) {
+            this.reviews = reviews;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected RatingAggregate compute() {
+            if (to - from <= leafSize) {
+                RatingAggregate aggregate = new RatingAggregate();
+                for (int i = from; i < to; i++) {
+                    aggregate.add(reviews.get(i));
+                }
+                return aggregate;
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask left = new RangeTask(reviews, from, middle);
+            left.fork();
+            RatingAggregate aggregate = new RangeTask(reviews, middle, to).compute();
+            aggregate.merge(left.join());
+            return aggregate;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.openclassrooms.tajmahal;
+
+import com.openclassrooms.tajmahal.data.store.RatingAggregate;
+import com.openclassrooms.tajmahal.data.store.RatingStats;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Unit tests and scaling benchmark for the {@link ParallelRatingAggregator} class and the merging
+ * of {@link RatingAggregate}s. These tests verify that parallel aggregation gives the same totals
+ * and trends as a sequential loop, and report the speedup as threads are added.
+ */
+public class ParallelRatingAggregatorTest {
+
+    private static final long DAY = RatingAggregate.DAY_MILLIS;
+    private static final long NOW = 20_000 * DAY + DAY / 2;
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+
+    /**
+     * Builds the reviews of many restaurants of very different sizes, dated over the last 90 days.
+     */
+    private static Map<Long, List<Review>> restaurants(int restaurantCount, int maxReviews) {
+        Random random = new Random(7);
+        Map<Long, List<Review>> restaurants = new LinkedHashMap<>();
+        for (long id = 1; id <= restaurantCount; id++) {
+            int size = id == 1 ? maxReviews : random.nextInt(maxReviews / 10);
+            List<Review> reviews = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                reviews.add(new Review("User", null, "Comment", 1 + random.nextInt(5),
+                        NOW - (long) (random.nextDouble() * 90 * DAY)));
+            }
+            restaurants.put(id, reviews);
+        }
+        return restaurants;
+    }
+
+    private static RatingAggregate sequential(List<Review> reviews) {
+        RatingAggregate aggregate = new RatingAggregate();
+        for (Review review : reviews) {
+            aggregate.add(review);
+        }
+        return aggregate;
+    }
+
+    private static void assertSameStats(RatingAggregate expected, RatingAggregate actual) {
+        RatingStats expectedStats = expected.snapshot(NOW);
+        RatingStats actualStats = actual.snapshot(NOW);
+        assertEquals(expectedStats.getCount(), actualStats.getCount());
+        assertEquals(expectedStats.getRatingSum(), actualStats.getRatingSum());
+        for (int star = 1; star <= RatingAggregate.MAX_STARS; star++) {
+            assertEquals(expectedStats.getCountForStar(star), actualStats.getCountForStar(star));
+        }
+        for (int days : new int[]{1, 7, 30}) {
+            assertEquals(expectedStats.getCount(days), actualStats.getCount(days));
+            assertEquals(expectedStats.getAverageRating(days), actualStats.getAverageRating(days), 0.0001f);
+            assertEquals(expectedStats.getPercentile(days, 0.9), actualStats.getPercentile(days, 0.9));
+        }
+    }
+
+    /**
+     * Tests that the aggregate of each restaurant, and of all of them, matches a sequential loop.
+     */
+    @Test
+    public void aggregateEach_shouldMatchSequentialAggregation() {
+        // Arrange
+        Map<Long, List<Review>> restaurants = restaurants(50, 20_000);
+        ParallelRatingAggregator aggregator = new ParallelRatingAggregator(new ForkJoinPool(4), 512);
+
+        // Act
+        Map<Long, RatingAggregate> aggregates = aggregator.aggregateEach(restaurants);
+        RatingAggregate total = aggregator.aggregateAll(restaurants);
+
+        // Assert
+        assertEquals(restaurants.keySet(), aggregates.keySet());
+        List<Review> all = new ArrayList<>();
+        for (Map.Entry<Long, List<Review>> restaurant : restaurants.entrySet()) {
+            assertSameStats(sequential(restaurant.getValue()), aggregates.get(restaurant.getKey()));
+            all.addAll(restaurant.getValue());
+        }
+        assertSameStats(sequential(all), total);
+    }
+
+    /**
+     * Tests that a parallel stream collected into an aggregate matches a sequential loop.
+     */
+    @Test
+    public void collector_onParallelStream_shouldMatchSequentialAggregation() {
+        // Arrange
+        List<Review> reviews = restaurants(1, 100_000).get(1L);
+
+        // Act
+        RatingAggregate aggregate = reviews.parallelStream().collect(RatingAggregate.collector());
+
+        // Assert
+        assertSameStats(sequential(reviews), aggregate);
+    }
+
+    /**
+     * Measures the aggregation time of many restaurants as threads are added, next to a sequential
+     * loop. Speedups depend on the machine and its cores, so this only reports them.
+     * It only runs with {@code -Pbenchmarks}.
+     */
+    @Test
+    public void scalingBenchmark_shouldReportSpeedupPerThreadCount() {
+        assumeTrue("Benchmark, run with -Pbenchmarks", Boolean.getBoolean("benchmarks"));
+        // Arrange
+        Map<Long, List<Review>> restaurants = restaurants(200, 200_000);
+        int reviewCount = 0;
+        for (List<Review> reviews : restaurants.values()) {
+            reviewCount += reviews.size();
+        }
+        long sequentialNanos = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            for (List<Review> reviews : restaurants.values()) {
+                sequential(reviews);
+            }
+            sequentialNanos = Math.min(sequentialNanos, System.nanoTime() - start);
+        }
+
+        // Act & Assert
+        System.out.printf("%d reviews, %d restaurants, %d cores | sequential: %.1f ms%n",
+                reviewCount, restaurants.size(), Runtime.getRuntime().availableProcessors(), sequentialNanos / 1e6);
+        System.out.println("threads | fork-join (ms) | speedup");
+        for (int threads : THREAD_COUNTS) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelRatingAggregator aggregator = new ParallelRatingAggregator(pool, ParallelRatingAggregator.DEFAULT_LEAF_SIZE);
+            long parallelNanos = Long.MAX_VALUE;
+            RatingAggregate total = null;
+            for (int run = 0; run < 5; run++) {
+                long start = System.nanoTime();
+                total = aggregator.aggregateAll(restaurants);
+                parallelNanos = Math.min(parallelNanos, System.nanoTime() - start);
+            }
+            pool.shutdown();
+            assertEquals(reviewCount, total.size());
+            System.out.printf("%7d | %14.1f | %6.2fx%n", threads, parallelNanos / 1e6, sequentialNanos / (double) parallelNanos);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.openclassrooms.tajmahal;
+
+import com.openclassrooms.tajmahal.data.store.RatingAggregate;
+import com.openclassrooms.tajmahal.data.store.RatingStats;
+import com.openclassrooms.tajmahal.domain.model.Review;
+import com.openclassrooms.tajmahal.ui.restaurant.DetailsViewModel;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link RatingAggregate} class and the {@link RatingStats} it publishes.
+ * These tests verify the running totals as reviews are added and removed, that published
+ * statistics do not change afterwards, and the rolling averages and percentiles of the last days.
+ */
+public class RatingAggregateTest {
+
+    private static final long DAY = RatingAggregate.DAY_MILLIS;
+    // Noon of an arbitrary day, so that "n days ago" never crosses a day boundary.
+    private static final long NOW = 20_000 * DAY + DAY / 2;
+
+    private static Review review(int rate, int daysAgo) {
+        return new Review("User" + rate, null, "Comment", rate, NOW - daysAgo * DAY);
+    }
+
+    private static Review review(int rate) {
+        return new Review("User" + rate, null, "Comment", rate);
+    }
+
+    /**
+     * Tests the count, the average and the histogram after reviews are added at both ends.
+     */
+    @Test
+    public void snapshot_afterAdds_shouldReflectEveryReview() {
+        // Arrange
+        RatingAggregate aggregate = new RatingAggregate();
+
+        // Act
+        aggregate.addOldest(Arrays.asList(review(5), review(4), review(5)));
+        aggregate.addNewest(Arrays.asList(review(2)));
+        RatingStats stats = aggregate.snapshot(NOW);
+
+        // Assert
+        assertEquals(4, stats.getCount());
+        assertEquals(16L, stats.getRatingSum());
+        assertEquals(4f, stats.getAverageRating(), 0.001f);
+        assertEquals(2, stats.getCountForStar(5));
+        assertEquals(0, stats.getCountForStar(3));
+        assertEquals(50, stats.getPercentageForStar(5));
+        assertEquals(25, stats.getPercentageForStar(2));
+        assertEquals(0, stats.getPercentageForStar(6));
+    }
+
+    /**
+     * Tests that removing a review updates the totals, and that a snapshot taken before is unchanged.
+     */
+    @Test
+    public void remove_shouldUpdateTotalsWithoutChangingPublishedSnapshots() {
+        // Arrange
+        RatingAggregate aggregate = new RatingAggregate();
+        Review oneStar = review(1);
+        aggregate.addOldest(Arrays.asList(review(5), oneStar));
+        RatingStats before = aggregate.snapshot(NOW);
+
+        // Act
+        aggregate.remove(oneStar);
+        RatingStats after = aggregate.snapshot(NOW);
+
+        // Assert
+        assertEquals(2, before.getCount());
+        assertEquals(1, before.getCountForStar(1));
+        assertEquals(1, after.getCount());
+        assertEquals(0, after.getCountForStar(1));
+        assertEquals(5f, after.getAverageRating(), 0.001f);
+        assertEquals(100, after.getPercentageForStar(5));
+    }
+
+    /**
+     * Tests that clearing the aggregate publishes the empty statistics, and that the UI model
+     * reads them without failing.
+     */
+    @Test
+    public void clear_shouldPublishEmptyStats() {
+        // Arrange
+        RatingAggregate aggregate = new RatingAggregate();
+        aggregate.addOldest(Arrays.asList(review(3), review(4)));
+
+        // Act
+        aggregate.clear();
+        DetailsViewModel.ReviewStatsUIModel model = new DetailsViewModel.ReviewStatsUIModel(aggregate.snapshot(NOW));
+
+        // Assert
+        assertSame(RatingStats.EMPTY, aggregate.snapshot(NOW));
+        assertEquals(0, aggregate.size());
+        assertEquals(0f, model.averageRating, 0f);
+        assertEquals(0, model.reviewListSize);
+        assertEquals(0, model.getPercentageForStar(3));
+        assertThrows(IllegalStateException.class, () -> aggregate.remove(review(3)));
+    }
+
+    /**
+     * Tests the rolling averages and percentiles of the last 7 and 30 days, reviews of unknown
+     * date only counting all time.
+     */
+    @Test
+    public void snapshot_shouldComputeRollingWindows() {
+        // Arrange
+        RatingAggregate aggregate = new RatingAggregate();
+
+        // Act
+        aggregate.addOldest(Arrays.asList(review(5, 0), review(4, 6), review(2, 10), review(1, 29), review(1, 45), review(3)));
+        RatingStats stats = aggregate.snapshot(NOW);
+
+        // Assert
+        assertEquals(6, stats.getCount());
+        assertEquals(2, stats.getCount(7));
+        assertEquals(4.5f, stats.getAverageRating(7), 0.001f);
+        assertEquals(4, stats.getCount(30));
+        assertEquals(3f, stats.getAverageRating(30), 0.001f);
+        assertEquals(2, stats.getPercentile(30, 0.5));
+        assertEquals(5, stats.getPercentile(30, 1.0));
+        assertEquals(2, stats.getPercentile(0.5));
+        assertEquals(0f, aggregate.snapshot(NOW + 40 * DAY).getAverageRating(30), 0f);
+    }
+
+    /**
+     * Tests that the day buckets follow the newest reviews and that removing a dated review
+     * updates its day.
+     */
+    @Test
+    public void add_withNewerDays_shouldRecycleOldestBuckets() {
+        // Arrange
+        RatingAggregate aggregate = new RatingAggregate();
+        Review recent = review(2, 1);
+        aggregate.add(review(5, 35));
+
+        // Act
+        aggregate.add(recent);
+        aggregate.add(review(4, 5));
+        aggregate.remove(recent);
+        RatingStats stats = aggregate.snapshot(NOW);
+
+        // Assert
+        assertEquals(2, stats.getCount());
+        assertEquals(1, stats.getCount(30));
+        assertEquals(4f, stats.getAverageRating(7), 0.001f);
+        assertEquals(4.5f, stats.getAverageRating(), 0.001f);
+    }
+
+    /**
+     * Tests the windows against a scan of a year of random reviews added in random order.
+     */
+    @Test
+    public void snapshot_shouldMatchScanOfRandomReviews() {
+        // Arrange
+        Random random = new Random(42);
+        List<Review> reviews = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            reviews.add(new Review("User", null, "Comment", 1 + random.nextInt(5), NOW - (long) (random.nextDouble() * 365 * DAY)));
+        }
+        RatingAggregate aggregate = new RatingAggregate();
+
+        // Act
+        for (Review review : reviews) {
+            aggregate.add(review);
+        }
+        RatingStats stats = aggregate.snapshot(NOW);
+
+        // Assert
+        for (int days : new int[]{7, 30}) {
+            long sum = 0;
+            int count = 0;
+            for (Review review : reviews) {
+                if (review.getCreatedAt() / DAY > NOW / DAY - days) {
+                    sum += review.getRate();
+                    count++;
+                }
+            }
+            assertEquals(count, stats.getCount(days));
+            assertEquals(sum / (float) count, stats.getAverageRating(days), 0.0001f);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.openclassrooms.tajmahal;
+
+import com.google.gson.Gson;
+import com.openclassrooms.tajmahal.data.service.GzipRequestInterceptor;
+import com.openclassrooms.tajmahal.data.service.RestaurantHttpApi;
+import com.openclassrooms.tajmahal.domain.model.Review;
+import com.openclassrooms.tajmahal.domain.model.ReviewPage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+
+import static org.junit.Assert.*;
+
+/**
+ * End-to-end tests of the {@link RestaurantHttpApi} class against a local {@link MockWebServer}.
+ * These tests verify the conditional requests, the gzip compression of both directions, the
+ * reuse of the pooled connection, and the reporting of HTTP errors. No real network is used.
+ */
+public class RestaurantHttpApiTest {
+
+    private static final long RESTAURANT_ID = 7L;
+
+    private final Gson gson = new Gson();
+    private MockWebServer server;
+    private RestaurantHttpApi api;
+
+    private static final List<Review> REVIEWS = Arrays.asList(
+            new Review("Ranjit Singh", "avatar1.jpg", "Service très rapide", 5),
+            new Review("Emilie Hood", "avatar2.jpg", "Très bon restaurant Indien !", 4));
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new GzipRequestInterceptor())
+                .build();
+        api = new RestaurantHttpApi(client, server.url("/v1/").toString());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Tests that the reviews are revalidated with their ETag, that a 304 returns the cached reviews,
+     * and that both requests share the same connection.
+     */
+    @Test
+    public void getReviews_whenNotModified_shouldReuseCachedReviews() throws Exception {
+        // Arrange
+        server.enqueue(new MockResponse()
+                .addHeader("ETag", "\"v1\"")
+                .addHeader("Content-Encoding", "gzip")
+                .setBody(gzip(gson.toJson(REVIEWS))));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        // Act
+        List<Review> first = api.getReviews(RESTAURANT_ID);
+        List<Review> second = api.getReviews(RESTAURANT_ID);
+
+        // Assert
+        assertEquals(REVIEWS, first);
+        assertSame(first, second);
+        RecordedRequest firstRequest = server.takeRequest();
+        RecordedRequest secondRequest = server.takeRequest();
+        assertEquals("/v1/restaurants/7/reviews", firstRequest.getPath());
+        assertEquals("gzip", firstRequest.getHeader("Accept-Encoding"));
+        assertNull(firstRequest.getHeader("If-None-Match"));
+        assertEquals("\"v1\"", secondRequest.getHeader("If-None-Match"));
+        assertEquals("The second call should reuse the pooled connection", 1, secondRequest.getSequenceNumber());
+    }
+
+    /**
+     * Tests that a changed resource replaces the cached value and its ETag.
+     */
+    @Test
+    public void getReviews_whenModified_shouldReturnNewReviews() throws Exception {
+        // Arrange
+        server.enqueue(new MockResponse().addHeader("ETag", "\"v1\"").setBody(gson.toJson(REVIEWS.subList(0, 1))));
+        server.enqueue(new MockResponse().addHeader("ETag", "\"v2\"").setBody(gson.toJson(REVIEWS)));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        // Act
+        api.getReviews(RESTAURANT_ID);
+        List<Review> updated = api.getReviews(RESTAURANT_ID);
+        List<Review> cached = api.getReviews(RESTAURANT_ID);
+
+        // Assert
+        assertEquals(REVIEWS, updated);
+        assertEquals(REVIEWS, cached);
+        server.takeRequest();
+        server.takeRequest();
+        assertEquals("\"v2\"", server.takeRequest().getHeader("If-None-Match"));
+    }
+
+    /**
+     * Tests that each restaurant is revalidated with its own ETag.
+     */
+    @Test
+    public void getReviews_ofAnotherRestaurant_shouldNotSendCachedETag() throws Exception {
+        // Arrange
+        server.enqueue(new MockResponse().addHeader("ETag", "\"v1\"").setBody(gson.toJson(REVIEWS)));
+        server.enqueue(new MockResponse().addHeader("ETag", "\"v1\"").setBody(gson.toJson(REVIEWS.subList(0, 1))));
+
+        // Act
+        api.getReviews(RESTAURANT_ID);
+        List<Review> other = api.getReviews(RESTAURANT_ID + 1);
+
+        // Assert
+        assertEquals(REVIEWS.subList(0, 1), other);
+        server.takeRequest();
+        RecordedRequest otherRequest = server.takeRequest();
+        assertEquals("/v1/restaurants/8/reviews", otherRequest.getPath());
+        assertNull(otherRequest.getHeader("If-None-Match"));
+    }
+
+    /**
+     * Tests that evicting a restaurant forgets its cached reviews, so that they are fetched again without ETag.
+     */
+    @Test
+    public void evict_shouldForgetCachedReviews() throws Exception {
+        // Arrange
+        server.enqueue(new MockResponse().addHeader("ETag", "\"v1\"").setBody(gson.toJson(REVIEWS)));
+        server.enqueue(new MockResponse().addHeader("ETag", "\"v1\"").setBody(gson.toJson(REVIEWS)));
+        api.getReviews(RESTAURANT_ID);
+
+        // Act
+        api.evict(RESTAURANT_ID);
+        List<Review> reloaded = api.getReviews(RESTAURANT_ID);
+
+        // Assert
+        assertEquals(REVIEWS, reloaded);
+        server.takeRequest();
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+    }
+
+    /**
+     * Tests that the reviews are handed over in chunks while the body is read, and cached for revalidation.
+     */
+    @Test
+    public void streamReviews_shouldDeliverChunksAndCacheReviews() throws Exception {
+        // Arrange
+        server.enqueue(new MockResponse().addHeader("ETag", "\"v1\"").setBody(gson.toJson(REVIEWS)));
+        server.enqueue(new MockResponse().setResponseCode(304));
+        List<List<Review>> chunks = new ArrayList<>();
+
+        // Act
+        api.streamReviews(RESTAURANT_ID, 1, chunks::add);
+        List<Review> cached = api.getReviews(RESTAURANT_ID);
+
+        // Assert
+        assertEquals(Arrays.asList(REVIEWS.subList(0, 1), REVIEWS.subList(1, 2)), chunks);
+        assertEquals(REVIEWS, cached);
+        server.takeRequest();
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+    }
+
+    /**
+     * Tests that a page is requested with its cursor and limit, and decoded with its next cursor.
+     */
+    @Test
+    public void getReviewsPage_shouldSendCursorAndDecodeNextCursor() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"reviews\":" + gson.toJson(REVIEWS) + ",\"nextCursor\":\"c2\"}"));
+
+        ReviewPage page = api.getReviews(RESTAURANT_ID, "c1", 2);
+
+        assertEquals(REVIEWS, page.getReviews());
+        assertEquals("c2", page.getNextCursor());
+        assertEquals("/v1/restaurants/7/reviews?limit=2&cursor=c1", server.takeRequest().getPath());
+    }
+
+    /**
+     * Tests that a batch of reviews is posted in a single gzip-compressed request.
+     */
+    @Test
+    public void addReviews_shouldPostGzipCompressedBatch() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(201));
+
+        api.addReviews(RESTAURANT_ID, REVIEWS);
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("POST", request.getMethod());
+        assertEquals("/v1/restaurants/7/reviews/batch", request.getPath());
+        assertEquals("gzip", request.getHeader("Content-Encoding"));
+        String json = Okio.buffer(new GzipSource(request.getBody())).readUtf8();
+        assertEquals(REVIEWS, Arrays.asList(gson.fromJson(json, Review[].class)));
+    }
+
+    /**
+     * Tests that an error status is reported as an exception.
+     */
+    @Test(expected = UncheckedIOException.class)
+    public void getRestaurant_whenServerFails_shouldThrow() {
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        api.getRestaurant(RESTAURANT_ID);
+    }
+
+    /**
+     * Tests that a batch the server rejects is reported as an illegal argument, not to be retried.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void addReviews_whenServerRejectsBatch_shouldThrowIllegalArgument() {
+        server.enqueue(new MockResponse().setResponseCode(422));
+
+        api.addReviews(RESTAURANT_ID, REVIEWS);
+    }
+
+    private static Buffer gzip(String body) throws IOException {
+        Buffer buffer = new Buffer();
+        try (BufferedSink sink = Okio.buffer(new GzipSink(buffer))) {
+            sink.writeUtf8(body);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,464 @@
+package com.openclassrooms.tajmahal;
+
+import android.util.Log;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+
+import com.openclassrooms.tajmahal.data.local.RestaurantSnapshotFile;
+import com.openclassrooms.tajmahal.data.local.RestaurantSnapshots;
+import com.openclassrooms.tajmahal.data.repository.LoadState;
+import com.openclassrooms.tajmahal.data.repository.RestaurantRepository;
+import com.openclassrooms.tajmahal.data.repository.ReviewChange;
+import com.openclassrooms.tajmahal.data.repository.ReviewChangeSet;
+import com.openclassrooms.tajmahal.data.service.RestaurantFakeApi;
+import com.openclassrooms.tajmahal.data.store.ReviewOrder;
+import com.openclassrooms.tajmahal.data.sync.ReviewOutbox;
+import com.openclassrooms.tajmahal.domain.model.Restaurant;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link RestaurantRepository} class and the cached data of each restaurant.
+ * These tests verify that the reviews are only kept once their list is requested, that the
+ * first search or sorted page indexes them in the background, that the
+ * change sets published by submissions and reloads follow each other, that submitted reviews are told apart by local identifiers, that a reload keeps the
+ * submitted reviews not written to the outbox yet, that a corrupt snapshot does not abort the
+ * load, that each restaurant reports only its own failures, that a review the API rejects is
+ * dropped, and that only the restaurants no screen retains are evicted, from the repository and
+ * from the API.
+ */
+public class RestaurantRepositoryTest {
+
+    private static final long TAJ_MAHAL = RestaurantFakeApi.TAJ_MAHAL_ID;
+
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private RestaurantFakeApi api;
+    private InMemoryPendingReviewDao dao;
+    private ReviewOutbox outbox;
+    private RestaurantSnapshots snapshots;
+    // Background tasks, run on demand by the tests.
+    private List<Runnable> tasks;
+
+    private static Review review(int i) {
+        return new Review("User" + i, null, "Comment " + i, 1 + i % 5, 10_000L + i);
+    }
+
+    @Before
+    public void setUp() {
+        api = new RestaurantFakeApi();
+        dao = new InMemoryPendingReviewDao();
+        outbox = new ReviewOutbox(dao, api, () -> { });
+        snapshots = new RestaurantSnapshots(temporaryFolder.getRoot());
+        tasks = new ArrayList<>();
+    }
+
+    private RestaurantRepository newRepository(int maxCachedReviews) {
+        return new RestaurantRepository(api, outbox, snapshots, tasks::add, maxCachedReviews);
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    private static List<String> usernames(List<Review> reviews) {
+        List<String> usernames = new ArrayList<>(reviews.size());
+        for (Review review : reviews) {
+            usernames.add(review.getUsername());
+        }
+        return usernames;
+    }
+
+    private ReviewChangeSet changes(RestaurantRepository repository) {
+        return repository.getReviewChanges(TAJ_MAHAL).getValue();
+    }
+
+    /**
+     * Tests that the statistics alone are counted without keeping the reviews, which the pager
+     * of the screen loads instead, and that the list is only loaded once requested.
+     */
+    @Test
+    public void getRatingStats_withoutList_shouldNotKeepReviews() {
+        // Arrange: each restaurant weighs its details plus the reviews it keeps, and only fits alone.
+        MultiRestaurantApi api = new MultiRestaurantApi();
+        RestaurantRepository repository = new RestaurantRepository(api, new ReviewOutbox(dao, api, () -> { }),
+                snapshots, tasks::add, 3);
+
+        // Act
+        repository.getRatingStats(1L);
+        repository.getRestaurant(1L);
+        runTasks();
+        int statsCount = repository.getRatingStats(1L).getValue().getCount();
+        repository.getRatingStats(2L);
+        runTasks();
+        List<Long> evictedWithStats = new ArrayList<>(api.evicted);
+        repository.getReviews(2L);
+        runTasks();
+
+        // Assert
+        assertEquals(api.getReviews(1L).size(), statsCount);
+        assertTrue("Restaurants holding their statistics only fit in the cache", evictedWithStats.isEmpty());
+        assertEquals(api.getReviews(2L), repository.getReviews(2L).getValue());
+        assertEquals(Collections.singletonList(1L), api.evicted);
+    }
+
+    /**
+     * Tests that the first search does not read the reviews on the calling thread but loads them
+     * in the background, filling the index as they are published, and that added reviews are
+     * indexed as they are submitted.
+     */
+    @Test
+    public void searchReviews_beforeListIsLoaded_shouldIndexReviewsInBackground() {
+        // Arrange
+        RestaurantRepository repository = newRepository(RestaurantRepository.MAX_CACHED_REVIEWS);
+
+        // Act
+        List<Review> beforeLoad = repository.searchReviews(TAJ_MAHAL, "curry");
+        boolean loadQueued = !tasks.isEmpty();
+        runTasks();
+        List<Review> afterLoad = repository.searchReviews(TAJ_MAHAL, "curry");
+        repository.addReview(TAJ_MAHAL, new Review("Zoe", null, "Un curry délicieux", 5, 20_000L));
+        List<Review> afterSubmit = repository.searchReviews(TAJ_MAHAL, "CURRY");
+        runTasks();
+
+        // Assert
+        assertTrue(beforeLoad.isEmpty());
+        assertTrue("The first search should load the reviews in the background", loadQueued);
+        assertEquals(Collections.singletonList("David John"), usernames(afterLoad));
+        assertEquals(Arrays.asList("Zoe", "David John"), usernames(afterSubmit));
+    }
+
+    /**
+     * Tests that the first sorted page is read from an index filled in the background, and that
+     * added reviews are sorted as they are submitted.
+     */
+    @Test
+    public void getReviewPage_beforeListIsLoaded_shouldSortReviewsInBackground() {
+        // Arrange
+        RestaurantRepository repository = newRepository(RestaurantRepository.MAX_CACHED_REVIEWS);
+
+        // Act
+        List<Review> beforeLoad = repository.getReviewPage(TAJ_MAHAL, ReviewOrder.LOWEST_RATED, 4, 0, 10);
+        runTasks();
+        repository.addReview(TAJ_MAHAL, new Review("Zoe", null, "Bon", 4, 20_000L));
+        List<Review> afterSubmit = repository.getReviewPage(TAJ_MAHAL, ReviewOrder.LOWEST_RATED, 4, 0, 10);
+        runTasks();
+
+        // Assert
+        assertTrue(beforeLoad.isEmpty());
+        assertEquals(Arrays.asList("Zoe", "Martyna Siddeswara", "Emilie Hood"), usernames(afterSubmit));
+    }
+
+    /**
+     * Tests that a submission publishes a change set following the load, with the inserted range,
+     * and that a reload publishes a reset with a newer version, followed by the chunks it reads.
+     */
+    @Test
+    public void changeSets_acrossSubmitAndReload_shouldFollowEachOther() {
+        // Arrange
+        RestaurantRepository repository = newRepository(RestaurantRepository.MAX_CACHED_REVIEWS);
+        List<ReviewChangeSet> published = new ArrayList<>();
+        repository.getReviewChanges(TAJ_MAHAL).observeForever(published::add);
+        runTasks();
+        ReviewChangeSet loaded = changes(repository);
+
+        // Act
+        repository.addReviews(TAJ_MAHAL, Arrays.asList(review(1), review(2)));
+        ReviewChangeSet submitted = changes(repository);
+        runTasks();
+        published.clear();
+        repository.refreshReviews(TAJ_MAHAL);
+        runTasks();
+
+        // Assert
+        assertTrue(loaded.isReset());
+        assertEquals(api.getReviews(TAJ_MAHAL).size(), loaded.getReviews().size());
+        assertTrue(submitted.followsFrom(loaded.getVersion()));
+        assertEquals(loaded.getVersion() + 1, submitted.getVersion());
+        ReviewChange change = submitted.getChanges().get(0);
+        assertEquals(ReviewChange.Type.INSERTED, change.getType());
+        assertEquals(0, change.getPosition());
+        assertEquals(2, change.getCount());
+        assertEquals(Arrays.asList("User2", "User1"), usernames(submitted.getReviews().subList(0, 2)));
+        // The outbox chunk resets the list, then the chunk of the API is appended to it.
+        assertEquals(2, published.size());
+        assertTrue(published.get(0).isReset());
+        assertTrue(published.get(0).getVersion() > submitted.getVersion());
+        assertTrue(published.get(1).followsFrom(published.get(0).getVersion()));
+        List<Review> reloaded = published.get(1).getReviews();
+        assertEquals("The reloaded reviews keep their local identifiers", submitted.getReviews(), reloaded);
+        assertEquals(loaded.getReviews(), reloaded.subList(2, reloaded.size()));
+    }
+
+    /**
+     * Tests that a reload running before a submitted batch is written to the outbox keeps the
+     * batch at the head of the list, and that the batch is listed once after it is written.
+     */
+    @Test
+    public void refreshReviews_beforeBatchIsSaved_shouldKeepBatchOnce() {
+        // Arrange
+        RestaurantRepository repository = newRepository(RestaurantRepository.MAX_CACHED_REVIEWS);
+        repository.getReviews(TAJ_MAHAL);
+        runTasks();
+        int loadedCount = changes(repository).getReviews().size();
+        repository.addReview(TAJ_MAHAL, review(1));
+        Runnable saveBatch = tasks.remove(0);
+
+        // Act: the reload runs before the batch is written, then again after.
+        repository.refreshReviews(TAJ_MAHAL);
+        runTasks();
+        List<Review> beforeSave = changes(repository).getReviews();
+        saveBatch.run();
+        repository.refreshReviews(TAJ_MAHAL);
+        runTasks();
+        List<Review> afterSave = changes(repository).getReviews();
+
+        // Assert
+        assertEquals(loadedCount + 1, beforeSave.size());
+        assertEquals("User1", beforeSave.get(0).getUsername());
+        assertEquals(1, dao.rows.size());
+        assertEquals(loadedCount + 1, afterSave.size());
+        assertEquals(1, Collections.frequency(usernames(afterSave), "User1"));
+        assertEquals("The review is listed from the outbox with its local identifier",
+                beforeSave.get(0).getId(), afterSave.get(0).getId());
+    }
+
+    /**
+     * Tests that identical reviews without identifier are told apart by the local identifiers
+     * they are published with, and that the hash of their content is not used.
+     */
+    @Test
+    public void addReviews_withIdenticalReviews_shouldGiveThemDistinctLocalIds() {
+        // Arrange
+        RestaurantRepository repository = newRepository(RestaurantRepository.MAX_CACHED_REVIEWS);
+        repository.getReviews(TAJ_MAHAL);
+        runTasks();
+
+        // Act
+        repository.addReviews(TAJ_MAHAL, Arrays.asList(review(1), review(1)));
+        runTasks();
+
+        // Assert
+        List<Review> submitted = changes(repository).getReviews().subList(0, 2);
+        assertTrue(submitted.get(0).getId() < 0);
+        assertTrue(submitted.get(1).getId() < 0);
+        assertNotEquals(submitted.get(0).getStableId(), submitted.get(1).getStableId());
+        assertEquals(submitted.get(0).getId(), submitted.get(0).getStableId());
+        assertEquals(dao.rows.get(1).localId, submitted.get(0).getId());
+    }
+
+    /**
+     * Tests that a snapshot with a corrupt record does not abort the load: the reviews are loaded
+     * from the data source, and a new snapshot replaces the corrupt one.
+     */
+    @Test
+    public void getReviews_withCorruptSnapshot_shouldLoadFromDataSource() throws IOException {
+        try (MockedStatic<Log> ignored = Mockito.mockStatic(Log.class)) {
+            // Arrange: the username of the only review runs past the end of the file.
+            RestaurantSnapshotFile snapshotFile = snapshots.forRestaurant(TAJ_MAHAL);
+            snapshotFile.write(null, Collections.singletonList(review(1)));
+            File file = new File(temporaryFolder.getRoot(), "restaurant-" + TAJ_MAHAL + ".snapshot");
+            try (RandomAccessFile corrupt = new RandomAccessFile(file, "rw")) {
+                corrupt.seek(5 * 4 + 1 + 4 + 8 + 1 + 8);
+                corrupt.writeInt(Integer.MAX_VALUE);
+            }
+            RestaurantRepository repository = newRepository(RestaurantRepository.MAX_CACHED_REVIEWS);
+
+            // Act
+            repository.getReviews(TAJ_MAHAL);
+            runTasks();
+
+            // Assert
+            assertEquals(api.getReviews(TAJ_MAHAL), changes(repository).getReviews());
+            assertEquals(LoadState.Status.SUCCESS, repository.getLoadState(TAJ_MAHAL).getValue().getStatus());
+            assertEquals("A new snapshot replaces the corrupt one", api.getReviews(TAJ_MAHAL),
+                    snapshotFile.read().getReviews());
+        }
+    }
+
+    /**
+     * Tests that a retained restaurant is never evicted, that it becomes evictable once released,
+     * and that each evicted restaurant is evicted from the API too.
+     */
+    @Test
+    public void release_shouldMakeRestaurantEvictable() {
+        // Arrange: each restaurant weighs its 5 reviews plus 1, so only one fits besides the newest.
+        MultiRestaurantApi api = new MultiRestaurantApi();
+        RestaurantRepository repository = new RestaurantRepository(api, new ReviewOutbox(dao, api, () -> { }),
+                snapshots, tasks::add, 10);
+        repository.retain(1L);
+        repository.getReviews(1L);
+        runTasks();
+
+        // Act
+        repository.getReviews(2L);
+        runTasks();
+        repository.getReviews(3L);
+        runTasks();
+        List<Long> whileRetained = new ArrayList<>(api.evicted);
+        repository.release(1L);
+        repository.getReviews(4L);
+        runTasks();
+
+        // Assert
+        assertEquals(Collections.singletonList(2L), whileRetained);
+        assertEquals(Arrays.asList(2L, 3L, 1L), api.evicted);
+    }
+
+    /**
+     * Tests that a review submitted to a restaurant is written to the outbox while the reload of
+     * another restaurant waits on the API, instead of waiting for that reload to complete.
+     */
+    @Test
+    public void addReview_whileOtherRestaurantReloads_shouldNotWaitForIt() throws InterruptedException {
+        // Arrange: the reviews of restaurant 1 are only returned once released.
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MultiRestaurantApi api = new MultiRestaurantApi() {
+            @Override
+            public List<Review> getReviews(long restaurantId) {
+                if (restaurantId == 1L) {
+                    reading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.getReviews(restaurantId);
+            }
+        };
+        ExecutorService ioExecutor = Executors.newCachedThreadPool();
+        RestaurantRepository repository = new RestaurantRepository(api, new ReviewOutbox(dao, api, () -> { }),
+                snapshots, ioExecutor, RestaurantRepository.MAX_CACHED_REVIEWS);
+        try {
+            repository.getReviews(1L);
+            assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+            // Act
+            repository.addReview(2L, review(1));
+
+            // Assert
+            long deadline = System.currentTimeMillis() + 5_000L;
+            while (dao.getAllNewestFirst(2L).isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, dao.getAllNewestFirst(2L).size());
+        } finally {
+            release.countDown();
+            ioExecutor.shutdown();
+            assertTrue(ioExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Tests that the failed reload of a restaurant is only reported by the load state of that
+     * restaurant, not by the one of another restaurant.
+     */
+    @Test
+    public void getLoadState_whenOtherRestaurantFails_shouldOnlyReportItsOwnOperations() {
+        // Arrange: the reviews of restaurant 1 cannot be fetched.
+        MultiRestaurantApi api = new MultiRestaurantApi() {
+            @Override
+            public List<Review> getReviews(long restaurantId) {
+                if (restaurantId == 1L) {
+                    throw new IllegalStateException("Unreachable");
+                }
+                return super.getReviews(restaurantId);
+            }
+        };
+        RestaurantRepository repository = new RestaurantRepository(api, new ReviewOutbox(dao, api, () -> { }),
+                snapshots, tasks::add, RestaurantRepository.MAX_CACHED_REVIEWS);
+
+        // Act
+        repository.getReviews(2L);
+        repository.getReviews(1L);
+        runTasks();
+
+        // Assert
+        assertEquals(LoadState.Status.ERROR, repository.getLoadState(1L).getValue().getStatus());
+        assertEquals(LoadState.Status.SUCCESS, repository.getLoadState(2L).getValue().getStatus());
+    }
+
+    /**
+     * Tests that a review the API rejects is dropped from the published reviews, and that the
+     * rejection is reported by the load state of its restaurant.
+     */
+    @Test
+    public void addReview_whenApiRejectsIt_shouldDropItAndReportError() {
+        // Arrange
+        RestaurantFakeApi api = new RestaurantFakeApi() {
+            @Override
+            public void addReviews(long restaurantId, Collection<Review> reviews) {
+                throw new IllegalArgumentException("Rejected");
+            }
+        };
+        ReviewOutbox outbox = new ReviewOutbox(dao, api, () -> { });
+        RestaurantRepository repository = new RestaurantRepository(api, outbox, snapshots, tasks::add,
+                RestaurantRepository.MAX_CACHED_REVIEWS);
+        repository.getReviews(TAJ_MAHAL);
+        repository.addReview(TAJ_MAHAL, review(1));
+        runTasks();
+
+        // Act
+        outbox.flush();
+        LoadState afterRejection = repository.getLoadState(TAJ_MAHAL).getValue();
+        runTasks();
+
+        // Assert
+        assertEquals(LoadState.Status.ERROR, afterRejection.getStatus());
+        assertTrue(dao.rows.isEmpty());
+        List<Review> reviews = repository.getReviews(TAJ_MAHAL).getValue();
+        assertEquals(api.getReviews(TAJ_MAHAL), reviews);
+    }
+
+    /**
+     * A fake API serving the reviews of the Taj Mahal for every restaurant, and recording the
+     * evicted restaurants.
+     */
+    private static class MultiRestaurantApi extends RestaurantFakeApi {
+        final List<Long> evicted = new ArrayList<>();
+
+        @Override
+        public Restaurant getRestaurant(long restaurantId) {
+            return super.getRestaurant(TAJ_MAHAL);
+        }
+
+        @Override
+        public List<Review> getReviews(long restaurantId) {
+            return super.getReviews(TAJ_MAHAL);
+        }
+
+        @Override
+        public void evict(long restaurantId) {
+            evicted.add(restaurantId);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.openclassrooms.tajmahal;
+
+import com.openclassrooms.tajmahal.data.local.RestaurantSnapshotFile;
+import com.openclassrooms.tajmahal.data.store.RatingAggregate;
+import com.openclassrooms.tajmahal.data.store.RatingStats;
+import com.openclassrooms.tajmahal.domain.model.Restaurant;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link RestaurantSnapshotFile} class.
+ * These tests verify that a snapshot restores the restaurant and its reviews, that reviews are
+ * decoded lazily and only once, that ratings are counted without decoding the reviews, and that
+ * damaged snapshots are reported as absent or corrupt.
+ */
+public class RestaurantSnapshotFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private RestaurantSnapshotFile snapshotFile;
+
+    private static final Restaurant RESTAURANT = new Restaurant("Taj Mahal", "Indien", "11h30 - 14h30・18h30 - 22h00",
+            "12 Avenue de la Brique - 75010 Paris", "http://www.tajmahal.fr", "06 12 34 56 78", true, false);
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "restaurant-1.snapshot");
+        snapshotFile = new RestaurantSnapshotFile(file);
+    }
+
+    /**
+     * Tests that a written snapshot is read back identically, including non-ASCII text and null fields.
+     */
+    @Test
+    public void read_shouldRestoreWrittenRestaurantAndReviews() throws IOException {
+        // Arrange
+        List<Review> reviews = Arrays.asList(
+                new Review(71L, "Ranjit Singh", "https://example.com/71.jpg", "Service très rapide, continuez ainsi ! 👍", 5, 1_700_000_000_000L),
+                new Review("Emilie Hood", null, "", 4),
+                new Review(null, null, null, 1));
+
+        // Act
+        snapshotFile.write(RESTAURANT, reviews);
+        RestaurantSnapshotFile.Snapshot snapshot = snapshotFile.read();
+
+        // Assert
+        assertNotNull(snapshot);
+        assertEquals(RESTAURANT, snapshot.getRestaurant());
+        assertEquals(reviews, snapshot.getReviews());
+    }
+
+    /**
+     * Tests that each review is decoded once, then returned as the same instance.
+     */
+    @Test
+    public void getReviews_shouldDecodeEachReviewOnce() throws IOException {
+        // Arrange
+        List<Review> reviews = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            reviews.add(new Review("User" + i, "avatar" + i + ".jpg", "Comment " + i, 1 + i % 5));
+        }
+        snapshotFile.write(null, reviews);
+
+        // Act
+        RestaurantSnapshotFile.Snapshot snapshot = snapshotFile.read();
+
+        // Assert
+        assertNotNull(snapshot);
+        assertNull(snapshot.getRestaurant());
+        assertEquals(1000, snapshot.getReviews().size());
+        assertEquals(reviews.get(999), snapshot.getReviews().get(999));
+        assertSame(snapshot.getReviews().get(500), snapshot.getReviews().get(500));
+    }
+
+    /**
+     * Tests that the reviews of a read snapshot stay readable once the file is closed and replaced,
+     * the mapping outliving the file it was read from.
+     */
+    @Test
+    public void getReviews_afterFileReplaced_shouldReadMappedReviews() throws IOException {
+        // Arrange
+        List<Review> reviews = Arrays.asList(new Review("A", null, "First", 5), new Review("B", null, "Second", 2));
+        snapshotFile.write(RESTAURANT, reviews);
+        RestaurantSnapshotFile.Snapshot snapshot = snapshotFile.read();
+        assertNotNull(snapshot);
+
+        // Act
+        snapshotFile.write(null, Collections.singletonList(new Review("C", null, "Third", 1)));
+        RestaurantSnapshotFile.Snapshot replaced = snapshotFile.read();
+
+        // Assert
+        assertEquals(reviews, snapshot.getReviews());
+        assertNotNull(replaced);
+        assertNull(replaced.getRestaurant());
+        assertEquals("Third", replaced.getReviews().get(0).getComment());
+    }
+
+    /**
+     * Tests that writing a snapshot replaces the previous one.
+     */
+    @Test
+    public void write_shouldReplacePreviousSnapshot() throws IOException {
+        snapshotFile.write(RESTAURANT, Collections.singletonList(new Review("A", null, "Old", 2)));
+
+        snapshotFile.write(RESTAURANT, Collections.<Review>emptyList());
+
+        RestaurantSnapshotFile.Snapshot snapshot = snapshotFile.read();
+        assertNotNull(snapshot);
+        assertTrue(snapshot.getReviews().isEmpty());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    /**
+     * Tests that a missing or truncated snapshot is reported as absent.
+     */
+    @Test
+    public void read_withMissingOrTruncatedFile_shouldReturnNull() throws IOException {
+        assertNull(snapshotFile.read());
+
+        snapshotFile.write(RESTAURANT, Collections.singletonList(new Review("A", null, "Comment", 3)));
+        try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+            truncated.setLength(truncated.length() - 1);
+        }
+
+        assertNull(snapshotFile.read());
+    }
+
+    /**
+     * Tests that the ratings are counted from the records without decoding any review.
+     */
+    @Test
+    public void countRatings_shouldMatchReviewsWithoutDecodingThem() throws IOException {
+        // Arrange
+        long now = System.currentTimeMillis();
+        List<Review> reviews = new ArrayList<>();
+        RatingAggregate expected = new RatingAggregate();
+        for (int i = 0; i < 100; i++) {
+            Review review = new Review("User" + i, null, "Comment " + i, 1 + i % 5, now - i * RatingAggregate.DAY_MILLIS / 2);
+            reviews.add(review);
+            expected.add(review);
+        }
+        snapshotFile.write(null, reviews);
+        RestaurantSnapshotFile.Snapshot snapshot = snapshotFile.read();
+
+        // Act
+        RatingStats stats = snapshot.countRatings().snapshot(now);
+
+        // Assert
+        RatingStats expectedStats = expected.snapshot(now);
+        assertEquals(expectedStats.getCount(), stats.getCount());
+        assertEquals(expectedStats.getRatingSum(), stats.getRatingSum());
+        for (int stars = 1; stars <= RatingAggregate.MAX_STARS; stars++) {
+            assertEquals(expectedStats.getCountForStar(stars), stats.getCountForStar(stars));
+        }
+        assertEquals(expectedStats.getCount(7), stats.getCount(7));
+    }
+
+    /**
+     * Tests that a record whose string runs past the end of the file is reported as corrupt.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void countRatings_withCorruptRecord_shouldThrow() throws IOException {
+        // Arrange: without restaurant, the record starts after the header, the restaurant flag and
+        // the index, and its username length follows the identifier, rate and creation time.
+        snapshotFile.write(null, Collections.singletonList(new Review("A", null, "Comment", 3)));
+        try (RandomAccessFile corrupt = new RandomAccessFile(file, "rw")) {
+            corrupt.seek(5 * 4 + 1 + 4 + 8 + 1 + 8);
+            corrupt.writeInt(Integer.MAX_VALUE);
+        }
+        RestaurantSnapshotFile.Snapshot snapshot = snapshotFile.read();
+        assertNotNull(snapshot);
+
+        // Act
+        snapshot.countRatings();
+    }
+}
@@ -0,0 +1,188 @@
+package com.openclassrooms.tajmahal;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+
+import com.openclassrooms.tajmahal.data.repository.RevalidatingCache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link RevalidatingCache} class.
+ * These tests verify that a fresh value is served without fetching, that a stale or seeded value
+ * is served while it is revalidated in the background, and that concurrent fetches are collapsed.
+ */
+public class RevalidatingCacheTest {
+
+    private static final long ONE_HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+    // Background tasks, run on demand by the tests.
+    private List<Runnable> tasks;
+    private List<Throwable> errors;
+    private int fetches;
+    private RuntimeException failure;
+
+    @Before
+    public void setUp() {
+        tasks = new ArrayList<>();
+        errors = new ArrayList<>();
+        fetches = 0;
+        failure = null;
+    }
+
+    private RevalidatingCache<String> newCache(long ttlMillis) {
+        return new RevalidatingCache<>(() -> {
+            fetches++;
+            if (failure != null) {
+                throw failure;
+            }
+            return "value " + fetches;
+        }, tasks::add, ttlMillis, errors::add);
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    /**
+     * Tests that the first call fetches the value in the background and that a fresh value is
+     * then served without fetching again.
+     */
+    @Test
+    public void get_whileFresh_shouldFetchOnce() {
+        // Arrange
+        RevalidatingCache<String> cache = newCache(ONE_HOUR);
+
+        // Act
+        String beforeFetch = cache.get().getValue();
+        runTasks();
+        String afterFetch = cache.get().getValue();
+        runTasks();
+
+        // Assert
+        assertNull(beforeFetch);
+        assertEquals("value 1", afterFetch);
+        assertEquals(1, fetches);
+        assertFalse(cache.isStale());
+    }
+
+    /**
+     * Tests that a value older than the time-to-live is still served while a new one is fetched.
+     */
+    @Test
+    public void get_afterExpiry_shouldServeStaleValueWhileRevalidating() throws InterruptedException {
+        // Arrange
+        RevalidatingCache<String> cache = newCache(1);
+        cache.get();
+        runTasks();
+        Thread.sleep(5);
+
+        // Act
+        boolean stale = cache.isStale();
+        String whileRevalidating = cache.get().getValue();
+        runTasks();
+
+        // Assert
+        assertTrue(stale);
+        assertEquals("value 1", whileRevalidating);
+        assertEquals("value 2", cache.get().getValue());
+        assertEquals(2, fetches);
+    }
+
+    /**
+     * Tests that concurrent requests for a stale value start a single fetch.
+     */
+    @Test
+    public void refresh_whileInFlight_shouldCollapseFetches() {
+        // Arrange
+        RevalidatingCache<String> cache = newCache(ONE_HOUR);
+
+        // Act
+        cache.get();
+        cache.get();
+        cache.refresh();
+        int inFlight = tasks.size();
+        runTasks();
+
+        // Assert
+        assertEquals(1, inFlight);
+        assertEquals(1, fetches);
+    }
+
+    /**
+     * Tests that a seeded value is served until the first fetch, and is revalidated.
+     */
+    @Test
+    public void seed_withoutValue_shouldServeSeedUntilFetched() {
+        // Arrange
+        RevalidatingCache<String> cache = newCache(ONE_HOUR);
+
+        // Act
+        cache.seed("restored");
+        String seeded = cache.get().getValue();
+        boolean staleAfterSeed = cache.isStale();
+        runTasks();
+
+        // Assert
+        assertEquals("restored", seeded);
+        assertTrue(staleAfterSeed);
+        assertEquals("value 1", cache.get().getValue());
+    }
+
+    /**
+     * Tests that a seed arriving after a fetch does not replace the fetched value.
+     */
+    @Test
+    public void seed_afterFetch_shouldBeIgnored() {
+        // Arrange
+        RevalidatingCache<String> cache = newCache(ONE_HOUR);
+        cache.get();
+        runTasks();
+
+        // Act
+        cache.seed("restored");
+
+        // Assert
+        assertEquals("value 1", cache.get().getValue());
+        assertFalse(cache.isStale());
+    }
+
+    /**
+     * Tests that a failed fetch is reported, keeps the cached value, and does not block the next fetch.
+     */
+    @Test
+    public void refresh_onFailure_shouldKeepValueAndReportError() {
+        // Arrange
+        RevalidatingCache<String> cache = newCache(ONE_HOUR);
+        cache.get();
+        runTasks();
+        failure = new IllegalStateException("Network unavailable");
+
+        // Act
+        cache.refresh();
+        runTasks();
+        String afterFailure = cache.get().getValue();
+        failure = null;
+        cache.invalidate();
+        cache.get();
+        runTasks();
+
+        // Assert
+        assertEquals(1, errors.size());
+        assertEquals("value 1", afterFailure);
+        assertEquals("value 3", cache.get().getValue());
+        assertEquals(3, fetches);
+    }
+}
@@ -0,0 +1,130 @@
+package com.openclassrooms.tajmahal;
+
+import com.openclassrooms.tajmahal.data.store.ReviewFactory;
+import com.openclassrooms.tajmahal.data.store.StringPool;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Unit tests for the {@link ReviewFactory} and {@link StringPool} classes.
+ * These tests verify that repeated strings are shared, that the pool stays bounded, and measure
+ * the heap footprint saved on a realistic set of 100,000 reviews.
+ */
+public class ReviewFactoryTest {
+
+    private static final int REVIEW_COUNT = 100_000;
+    private static final int USER_COUNT = 2_000;
+    private static final String AVATAR_PREFIX = "https://xsgames.co/randomusers/assets/avatars/";
+
+    /**
+     * Tests that reviews decoded separately share their username and avatar URL, and their short comments.
+     */
+    @Test
+    public void newReview_shouldShareRepeatedStrings() {
+        // new String() stands for two strings decoded from two different payloads.
+        Review first = ReviewFactory.newReview(new String("Emilie Hood"), new String(AVATAR_PREFIX + "female/20.jpg"),
+                new String("Très bon !"), 4);
+        Review second = ReviewFactory.newReview(new String("Emilie Hood"), new String(AVATAR_PREFIX + "female/20.jpg"),
+                new String("Très bon !"), 5);
+
+        assertSame(first.getUsername(), second.getUsername());
+        assertSame(first.getPicture(), second.getPicture());
+        assertSame(first.getComment(), second.getComment());
+    }
+
+    /**
+     * Tests that a review keeps the identifier of its source, and that a review without one is
+     * identified by its content, with a negative identifier that changes with the content.
+     */
+    @Test
+    public void getStableId_shouldUseSourceIdOrContent() {
+        // Arrange
+        Review identified = ReviewFactory.newReview(42L, "Emilie Hood", null, "Très bon !", 4, 1_700_000_000_000L);
+        Review first = ReviewFactory.newReview("Emilie Hood", null, "Très bon !", 4, 1_700_000_000_000L);
+        Review reloaded = ReviewFactory.newReview(new String("Emilie Hood"), null, new String("Très bon !"), 4, 1_700_000_000_000L);
+        Review later = ReviewFactory.newReview("Emilie Hood", null, "Très bon !", 4, 1_700_000_000_001L);
+        Review shifted = ReviewFactory.newReview("Emilie Hoo", null, "dTrès bon !", 4, 1_700_000_000_000L);
+
+        // Act & Assert
+        assertEquals(42L, identified.getStableId());
+        assertTrue(first.getStableId() < 0);
+        assertNotEquals(-1L, first.getStableId());
+        assertEquals(first.getStableId(), reloaded.getStableId());
+        assertNotEquals(first.getStableId(), later.getStableId());
+        assertNotEquals(first.getStableId(), shifted.getStableId());
+    }
+
+    /**
+     * Tests that a full pool returns new strings unchanged while still sharing the pooled ones.
+     */
+    @Test
+    public void intern_whenPoolIsFull_shouldNotGrow() {
+        StringPool pool = new StringPool(2);
+        String a = pool.intern(new String("a"));
+        pool.intern(new String("b"));
+
+        String c = new String("c");
+
+        assertSame(c, pool.intern(c));
+        assertSame(a, pool.intern(new String("a")));
+        assertEquals(2, pool.size());
+        assertNull(pool.intern(null));
+    }
+
+    /**
+     * Measures the heap retained by 100,000 reviews from 2,000 users, each holding freshly decoded
+     * strings, then created through the {@link ReviewFactory}. Heap measurements are approximate,
+     * so this only checks that sharing saves memory and reports both footprints.
+     * It only runs with {@code -Pbenchmarks}.
+     */
+    @Test
+    public void heapFootprint_at100kReviews_shouldBeSmallerWithSharedStrings() {
+        assumeTrue("Benchmark, run with -Pbenchmarks", Boolean.getBoolean("benchmarks"));
+        long plain = retainedBytes(false);
+        long shared = retainedBytes(true);
+
+        System.out.printf("%d reviews | plain strings: %d KiB | shared strings: %d KiB | saved: %.0f%%%n",
+                REVIEW_COUNT, plain / 1024, shared / 1024, 100.0 * (plain - shared) / plain);
+        assertTrue("Sharing strings should reduce the footprint", shared < plain);
+    }
+
+    /**
+     * Creates the review set and returns the heap it retains.
+     */
+    private static long retainedBytes(boolean shared) {
+        long before = usedHeap();
+        List<Review> reviews = new ArrayList<>(REVIEW_COUNT);
+        for (int i = 0; i < REVIEW_COUNT; i++) {
+            int user = i % USER_COUNT;
+            // Fresh strings, as a parser produces for every review it decodes.
+            String username = new StringBuilder("User ").append(user).toString();
+            String picture = new StringBuilder(AVATAR_PREFIX).append(user % 2 == 0 ? "male/" : "female/")
+                    .append(user).append(".jpg").toString();
+            String comment = i % 10 == 0
+                    ? new StringBuilder("Très bon restaurant !").toString()
+                    : new StringBuilder("Review ").append(i).append(": les currys étaient savoureux et le service rapide.").toString();
+            int rate = 1 + i % 5;
+            reviews.add(shared
+                    ? ReviewFactory.newReview(username, picture, comment, rate)
+                    : new Review(username, picture, comment, rate));
+        }
+        long after = usedHeap();
+        assertEquals(REVIEW_COUNT, reviews.size());
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,184 @@
+package com.openclassrooms.tajmahal;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.openclassrooms.tajmahal.data.service.ReviewJsonDecoder;
+import com.openclassrooms.tajmahal.domain.model.Restaurant;
+import com.openclassrooms.tajmahal.domain.model.Review;
+import com.openclassrooms.tajmahal.domain.model.ReviewPage;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Unit tests and benchmark for the {@link ReviewJsonDecoder} class.
+ * These tests verify the decoding of the review, page and restaurant payloads, the chunked
+ * delivery of review arrays, and compare the streaming decoder with a tree-based decoding.
+ */
+public class ReviewJsonDecoderTest {
+
+    private static final int BENCHMARK_REVIEWS = 50_000;
+    private static final int BENCHMARK_RUNS = 5;
+
+    private final Gson gson = new Gson();
+
+    private static Review review(int i) {
+        return new Review("User" + i, "https://example.com/avatars/" + i + ".jpg", "Comment number " + i + ", très bon !", 1 + i % 5);
+    }
+
+    private static List<Review> reviews(int count) {
+        List<Review> reviews = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            reviews.add(review(i));
+        }
+        return reviews;
+    }
+
+    /**
+     * Tests that reviews are decoded with their fields, skipping unknown fields and null values.
+     */
+    @Test
+    public void readReviews_shouldDecodeFieldsAndSkipUnknownOnes() throws IOException {
+        String json = "[{\"id\":42,\"username\":\"Emilie Hood\",\"picture\":null,\"comment\":\"Très bon !\",\"rate\":4,\"createdAt\":1700000000000,"
+                + "\"extra\":{\"nested\":[1,2]}},{\"username\":\"David John\",\"rate\":null}]";
+
+        List<Review> reviews = ReviewJsonDecoder.readReviews(new StringReader(json));
+
+        assertEquals(Arrays.asList(
+                new Review(42L, "Emilie Hood", null, "Très bon !", 4, 1_700_000_000_000L),
+                new Review("David John", null, null, 0)), reviews);
+    }
+
+    /**
+     * Tests that a review array is handed over in chunks whose size doubles, in document order.
+     */
+    @Test
+    public void readReviews_withChunks_shouldDeliverGrowingChunksInOrder() throws IOException {
+        // Arrange
+        List<Review> expected = reviews(100);
+        List<Integer> chunkSizes = new ArrayList<>();
+        List<Review> received = new ArrayList<>();
+
+        // Act
+        int count = ReviewJsonDecoder.readReviews(new StringReader(gson.toJson(expected)), 10, chunk -> {
+            chunkSizes.add(chunk.size());
+            received.addAll(chunk);
+        });
+
+        // Assert
+        assertEquals(100, count);
+        assertEquals(Arrays.asList(10, 20, 40, 30), chunkSizes);
+        assertEquals(expected, received);
+    }
+
+    /**
+     * Tests that a page is decoded with its reviews and next cursor.
+     */
+    @Test
+    public void readPage_shouldDecodeReviewsAndCursor() throws IOException {
+        String json = "{\"nextCursor\":\"42\",\"reviews\":" + gson.toJson(reviews(3)) + "}";
+
+        ReviewPage page = ReviewJsonDecoder.readPage(new StringReader(json));
+
+        assertEquals(reviews(3), page.getReviews());
+        assertEquals("42", page.getNextCursor());
+    }
+
+    /**
+     * Tests that the restaurant details are decoded.
+     */
+    @Test
+    public void readRestaurant_shouldDecodeAllFields() throws IOException {
+        Restaurant expected = new Restaurant("Taj Mahal", "Indien", "11h30 - 14h30", "12 Avenue de la Brique",
+                "http://www.tajmahal.fr", "06 12 34 56 78", true, false);
+
+        Restaurant restaurant = ReviewJsonDecoder.readRestaurant(new StringReader(gson.toJson(expected)));
+
+        assertEquals(expected, restaurant);
+    }
+
+    /**
+     * Tests that a payload followed by garbage is rejected.
+     */
+    @Test(expected = IOException.class)
+    public void readReviews_withTrailingContent_shouldThrow() throws IOException {
+        ReviewJsonDecoder.readReviews(new StringReader("[] []"));
+    }
+
+    /**
+     * Compares the streaming decoder with a decoding that parses the whole document into a
+     * {@link JsonElement} tree before mapping it to reviews. Timings and allocations depend on
+     * the machine, so this only checks that both produce the same reviews and reports them.
+     * It only runs with {@code -Pbenchmarks}.
+     */
+    @Test
+    public void decodingBenchmark_shouldReportStreamingAgainstTree() throws IOException {
+        assumeTrue("Benchmark, run with -Pbenchmarks", Boolean.getBoolean("benchmarks"));
+        String json = gson.toJson(reviews(BENCHMARK_REVIEWS));
+        // Warm up both decoders so that the measured runs are compiled.
+        for (int i = 0; i < BENCHMARK_RUNS; i++) {
+            assertEquals(ReviewJsonDecoder.readReviews(new StringReader(json)), decodeTree(new StringReader(json)));
+        }
+
+        long streamingNanos = Long.MAX_VALUE;
+        long treeNanos = Long.MAX_VALUE;
+        long streamingBytes = Long.MAX_VALUE;
+        long treeBytes = Long.MAX_VALUE;
+        for (int i = 0; i < BENCHMARK_RUNS; i++) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            ReviewJsonDecoder.readReviews(new StringReader(json));
+            streamingNanos = Math.min(streamingNanos, System.nanoTime() - start);
+            streamingBytes = Math.min(streamingBytes, allocatedBytes() - bytes);
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            decodeTree(new StringReader(json));
+            treeNanos = Math.min(treeNanos, System.nanoTime() - start);
+            treeBytes = Math.min(treeBytes, allocatedBytes() - bytes);
+        }
+        System.out.printf("%d reviews | streaming: %.1f ms, %d KiB allocated | tree: %.1f ms, %d KiB allocated%n",
+                BENCHMARK_REVIEWS, streamingNanos / 1e6, streamingBytes / 1024, treeNanos / 1e6, treeBytes / 1024);
+    }
+
+    /**
+     * Decodes a review array through an intermediate JSON tree, the approach the streaming decoder replaces.
+     */
+    private static List<Review> decodeTree(Reader json) {
+        JsonArray array = JsonParser.parseReader(json).getAsJsonArray();
+        List<Review> reviews = new ArrayList<>(array.size());
+        for (JsonElement element : array) {
+            JsonObject object = element.getAsJsonObject();
+            reviews.add(new Review(
+                    object.get("username").getAsString(),
+                    object.get("picture").getAsString(),
+                    object.get("comment").getAsString(),
+                    object.get("rate").getAsInt()));
+        }
+        return reviews;
+    }
+
+    /**
+     * @return The bytes allocated so far by the current thread, or 0 if the JVM does not report them.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
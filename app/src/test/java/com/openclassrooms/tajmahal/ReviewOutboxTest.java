@@ -0,0 +1,267 @@
+package com.openclassrooms.tajmahal;
+
+import com.openclassrooms.tajmahal.data.service.RestaurantFakeApi;
+import com.openclassrooms.tajmahal.data.sync.ReviewOutbox;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link ReviewOutbox} class.
+ * These tests verify that submitted reviews are stored and scheduled for upload, uploaded in
+ * batches in submission order, kept in the outbox when an upload fails, dropped when the API
+ * rejects them, and listed exactly once
+ * by the reads running while they are uploaded, which no upload delays.
+ */
+public class ReviewOutboxTest {
+
+    private static final long TAJ_MAHAL = RestaurantFakeApi.TAJ_MAHAL_ID;
+    private static final long OTHER_RESTAURANT = 2L;
+
+    private InMemoryPendingReviewDao dao;
+    private RecordingApi api;
+    private int scheduledUploads;
+    private ReviewOutbox outbox;
+
+    private static Review review(int i) {
+        return new Review("User" + i, null, "Comment " + i, 1 + i % 5, 1_000L + i);
+    }
+
+    /**
+     * @return The review listed for the outbox row of {@code review(i)}.
+     */
+    private static Review pending(int i, long rowId) {
+        Review review = review(i);
+        return new Review(-rowId, review.getUsername(), review.getPicture(), review.getComment(),
+                review.getRate(), review.getCreatedAt());
+    }
+
+    @Before
+    public void setUp() {
+        dao = new InMemoryPendingReviewDao();
+        api = new RecordingApi();
+        scheduledUploads = 0;
+        outbox = new ReviewOutbox(dao, api, () -> scheduledUploads++);
+    }
+
+    /**
+     * Tests that enqueued reviews are stored and that an upload is scheduled.
+     */
+    @Test
+    public void enqueue_shouldStoreReviewsAndScheduleUpload() {
+        outbox.enqueue(TAJ_MAHAL, Arrays.asList(review(1), review(2)));
+
+        assertEquals(2, dao.rows.size());
+        assertEquals(1, scheduledUploads);
+        assertTrue(api.batches.isEmpty());
+    }
+
+    /**
+     * Tests that the outbox is drained oldest first, in batches of at most UPLOAD_BATCH_SIZE reviews.
+     */
+    @Test
+    public void flush_shouldUploadInBatchesOldestFirst() {
+        // Arrange
+        List<Review> submitted = new ArrayList<>();
+        for (int i = 0; i < ReviewOutbox.UPLOAD_BATCH_SIZE + 10; i++) {
+            submitted.add(review(i));
+        }
+        outbox.enqueue(TAJ_MAHAL, submitted);
+
+        // Act
+        int uploaded = outbox.flush();
+
+        // Assert
+        assertEquals(submitted.size(), uploaded);
+        assertEquals(2, api.batches.size());
+        assertEquals(ReviewOutbox.UPLOAD_BATCH_SIZE, api.batches.get(0).size());
+        assertEquals(review(0), api.batches.get(0).get(0));
+        assertEquals(10, api.batches.get(1).size());
+        assertTrue(dao.rows.isEmpty());
+        assertEquals(review(submitted.size() - 1), api.getReviews(TAJ_MAHAL).get(0));
+    }
+
+    /**
+     * Tests that a failed upload leaves the reviews in the outbox, still listed before the uploaded ones.
+     */
+    @Test
+    public void flush_whenUploadFails_shouldKeepReviewsPending() {
+        // Arrange
+        outbox.enqueue(TAJ_MAHAL, Collections.singletonList(review(1)));
+        api.failing = true;
+
+        // Act
+        try {
+            outbox.flush();
+            fail("The upload failure should be reported");
+        } catch (UncheckedIOException expected) {
+            // The worker retries with a backoff.
+        }
+
+        // Assert
+        assertEquals(1, dao.rows.size());
+        List<Review> reviews = outbox.getReviews(TAJ_MAHAL);
+        assertEquals(pending(1, dao.rows.get(0).id), reviews.get(0));
+        assertEquals(api.getReviews(TAJ_MAHAL).size() + 1, reviews.size());
+    }
+
+    /**
+     * Tests that a batch the API rejects is dropped and reported, and does not hold back the
+     * batches submitted after it.
+     */
+    @Test
+    public void flush_whenBatchRejected_shouldDropItAndUploadLaterBatches() {
+        // Arrange
+        List<Review> rejected = new ArrayList<>();
+        List<RuntimeException> errors = new ArrayList<>();
+        outbox.setRejectionListener((restaurantId, reviews, error) -> {
+            assertEquals(OTHER_RESTAURANT, restaurantId);
+            rejected.addAll(reviews);
+            errors.add(error);
+        });
+        outbox.enqueue(OTHER_RESTAURANT, Collections.singletonList(review(1)));
+        outbox.enqueue(TAJ_MAHAL, Collections.singletonList(review(2)));
+        api.rejectedRestaurantId = OTHER_RESTAURANT;
+
+        // Act
+        int uploaded = outbox.flush();
+
+        // Assert
+        assertEquals(1, uploaded);
+        assertTrue(dao.rows.isEmpty());
+        assertEquals(Collections.singletonList(pending(1, 1)), rejected);
+        assertEquals(1, errors.size());
+        assertEquals(Collections.singletonList(Collections.singletonList(review(2))), api.batches);
+    }
+
+    /**
+     * Tests that each batch holds consecutive reviews of a single restaurant, uploaded to that
+     * restaurant, and that the pending reviews of a restaurant are only listed with its own reviews.
+     */
+    @Test
+    public void flush_withSeveralRestaurants_shouldUploadEachRunToItsRestaurant() {
+        // Arrange
+        outbox.enqueue(TAJ_MAHAL, Arrays.asList(review(1), review(2)));
+        outbox.enqueue(OTHER_RESTAURANT, Collections.singletonList(review(3)));
+        outbox.enqueue(TAJ_MAHAL, Collections.singletonList(review(4)));
+        List<Review> pending = outbox.getReviews(TAJ_MAHAL);
+
+        // Act
+        int uploaded = outbox.flush();
+
+        // Assert
+        assertEquals(Arrays.asList(pending(4, 4), pending(2, 2), pending(1, 1)), pending.subList(0, 3));
+        assertFalse(pending.contains(pending(3, 3)));
+        assertEquals(4, uploaded);
+        assertEquals(Arrays.asList(TAJ_MAHAL, OTHER_RESTAURANT, TAJ_MAHAL), api.restaurantIds);
+        assertEquals(Arrays.asList(review(1), review(2)), api.batches.get(0));
+        assertEquals(Collections.singletonList(review(3)), api.batches.get(1));
+    }
+
+    /**
+     * Tests that a review uploaded while the reviews are read is listed once, as a pending review.
+     */
+    @Test
+    public void getReviews_whenUploadedDuringRead_shouldListReviewOnce() {
+        // Arrange
+        outbox.enqueue(TAJ_MAHAL, Collections.singletonList(review(1)));
+        Review pending = pending(1, dao.rows.get(0).id);
+        api.beforeRead = () -> outbox.flush();
+
+        // Act
+        List<Review> reviews = outbox.getReviews(TAJ_MAHAL);
+
+        // Assert
+        assertTrue(dao.rows.isEmpty());
+        assertEquals(pending, reviews.get(0));
+        assertEquals(api.getReviews(TAJ_MAHAL).size(), reviews.size());
+    }
+
+    /**
+     * Tests that the reviews are read while an upload is in progress, instead of waiting for it.
+     */
+    @Test
+    public void getReviews_duringSlowUpload_shouldNotWaitForIt() throws InterruptedException {
+        // Arrange
+        outbox.enqueue(TAJ_MAHAL, Collections.singletonList(review(1)));
+        CountDownLatch uploading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        api.onUpload = () -> {
+            uploading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        Thread worker = new Thread(outbox::flush);
+        worker.start();
+        assertTrue(uploading.await(5, TimeUnit.SECONDS));
+
+        try {
+            // Act
+            List<Review> reviews = outbox.getReviews(TAJ_MAHAL);
+
+            // Assert
+            assertEquals(pending(1, 1), reviews.get(0));
+        } finally {
+            release.countDown();
+            worker.join();
+        }
+    }
+
+    /**
+     * Fake API recording the uploaded batches and their restaurant, and failing on demand.
+     */
+    private static class RecordingApi extends RestaurantFakeApi {
+        final List<Long> restaurantIds = new ArrayList<>();
+        final List<List<Review>> batches = new ArrayList<>();
+        boolean failing;
+        long rejectedRestaurantId;
+        // Run when the reviews are read or uploaded, to act in the middle of the call.
+        Runnable beforeRead;
+        Runnable onUpload;
+
+        @Override
+        public List<Review> getReviews(long restaurantId) {
+            Runnable hook = beforeRead;
+            beforeRead = null;
+            if (hook != null) {
+                hook.run();
+            }
+            return super.getReviews(restaurantId);
+        }
+
+        @Override
+        public void addReviews(long restaurantId, Collection<Review> reviews) {
+            if (onUpload != null) {
+                onUpload.run();
+            }
+            if (failing) {
+                throw new UncheckedIOException(new IOException("Network unreachable"));
+            }
+            if (restaurantId == rejectedRestaurantId) {
+                throw new IllegalArgumentException("Unknown restaurant: " + restaurantId);
+            }
+            restaurantIds.add(restaurantId);
+            batches.add(new ArrayList<>(reviews));
+            // The fake API only knows the Taj Mahal.
+            if (restaurantId == TAJ_MAHAL) {
+                super.addReviews(restaurantId, reviews);
+            }
+        }
+    }
+}
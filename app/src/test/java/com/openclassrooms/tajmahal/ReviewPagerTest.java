@@ -0,0 +1,448 @@
+package com.openclassrooms.tajmahal;
+
+import android.util.Log;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+
+import com.openclassrooms.tajmahal.data.repository.ReviewChange;
+import com.openclassrooms.tajmahal.data.repository.ReviewChangeSet;
+import com.openclassrooms.tajmahal.data.repository.ReviewPager;
+import com.openclassrooms.tajmahal.data.service.RestaurantFakeApi;
+import com.openclassrooms.tajmahal.data.sync.ReviewOutbox;
+import com.openclassrooms.tajmahal.domain.model.Review;
+import com.openclassrooms.tajmahal.domain.model.ReviewPage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link ReviewPager} class.
+ * These tests verify that pages are fetched along the cursor chain as the scroll comes near the
+ * end of the loaded reviews, that the pages far from the visible reviews are dropped and fetched
+ * again with their cursor, that a failed page, the first one included, is requested again, and
+ * that the submitted reviews head the first page exactly once, whether they are listed from the
+ * outbox or not.
+ */
+public class ReviewPagerTest {
+
+    private static final long TAJ_MAHAL = RestaurantFakeApi.TAJ_MAHAL_ID;
+    private static final int PAGE_SIZE = 10;
+    private static final int PREFETCH_DISTANCE = 5;
+
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+    private PagedApi api;
+    private InMemoryPendingReviewDao dao;
+    private ReviewOutbox outbox;
+    private final Object outboxLock = new Object();
+    private ReviewPager pager;
+
+    @Before
+    public void setUp() {
+        api = new PagedApi();
+        // The fake API holds 5 reviews: 95 more make 10 pages.
+        List<Review> reviews = new ArrayList<>();
+        for (int i = 0; i < 95; i++) {
+            reviews.add(new Review("User" + i, null, "Comment " + i, 1 + i % 5, 1_000L + i));
+        }
+        api.addReviews(TAJ_MAHAL, reviews);
+        dao = new InMemoryPendingReviewDao();
+        outbox = new ReviewOutbox(dao, api, () -> { });
+        pager = newPager(Runnable::run);
+    }
+
+    private ReviewPager newPager(Executor ioExecutor) {
+        return new ReviewPager(api, outbox, outboxLock, TAJ_MAHAL, ioExecutor, PAGE_SIZE, PREFETCH_DISTANCE);
+    }
+
+    private ReviewChangeSet current() {
+        return pager.getReviews().getValue();
+    }
+
+    /**
+     * Reports the visible positions of the last published window, as the reviews screen does.
+     */
+    private void scrollTo(int firstVisiblePosition, int lastVisiblePosition) {
+        pager.loadAround(current().getVersion(), firstVisiblePosition, lastVisiblePosition);
+    }
+
+    /**
+     * @return The reviews of the API from one position to another, newest first.
+     */
+    private List<Review> apiReviews(int from, int to) {
+        return api.getReviews(TAJ_MAHAL).subList(from, to);
+    }
+
+    /**
+     * Tests that the first call fetches the newest page, without cursor.
+     */
+    @Test
+    public void getReviews_shouldLoadFirstPage() {
+        // Act
+        ReviewChangeSet changeSet = current();
+
+        // Assert
+        assertTrue(changeSet.isReset());
+        assertEquals(apiReviews(0, 10), changeSet.getReviews());
+        assertEquals(Collections.singletonList(null), api.cursors);
+    }
+
+    /**
+     * Tests that scrolling within the prefetch distance of the end fetches the following pages,
+     * each with the cursor returned by the previous one, until the last page.
+     */
+    @Test
+    public void loadAround_nearEnd_shouldFollowCursorChain() {
+        // Arrange
+        current();
+
+        // Act
+        scrollTo(0, 4);
+        int requestsBeforePrefetch = api.cursors.size();
+        scrollTo(2, 5);
+        ReviewChangeSet secondPage = current();
+
+        // Assert
+        assertEquals(1, requestsBeforePrefetch);
+        assertEquals(Arrays.asList(null, "90"), api.cursors);
+        assertEquals(apiReviews(0, 20), secondPage.getReviews());
+        ReviewChange change = secondPage.getChanges().get(0);
+        assertEquals(ReviewChange.Type.INSERTED, change.getType());
+        assertEquals(10, change.getPosition());
+        assertEquals(10, change.getCount());
+        assertFalse(pager.isEndReached());
+    }
+
+    /**
+     * Tests that scrolling down drops the pages far above the visible reviews, and that scrolling
+     * back up fetches them again with their own cursor, except the first page, kept in memory.
+     */
+    @Test
+    public void loadAround_shouldDropFarPagesAndFetchThemAgain() {
+        // Arrange: pages 0 to 3 are loaded.
+        current();
+        scrollTo(5, 9);
+        scrollTo(12, 16);
+        scrollTo(14, 26);
+        assertEquals(apiReviews(0, 40), current().getReviews());
+
+        // Act: pages 0 and 1 end more than 5 reviews above the visible ones.
+        scrollTo(26, 30);
+        List<Review> scrolledDown = current().getReviews();
+        int keptInMemory = pager.size();
+        // Back up: page 1 is fetched again, then pages 2 and 3 are dropped and page 0 restored.
+        scrollTo(2, 6);
+        List<Review> scrolledBackUp = current().getReviews();
+        scrollTo(0, 3);
+
+        // Assert
+        assertEquals(apiReviews(20, 40), scrolledDown);
+        assertEquals(30, keptInMemory);
+        assertEquals(apiReviews(10, 40), scrolledBackUp);
+        assertEquals(Arrays.asList(null, "90", "80", "70", "90"), api.cursors.subList(0, 5));
+        assertEquals(apiReviews(0, 20), current().getReviews());
+        assertEquals("The first page is restored from memory", 5, api.cursors.size());
+        assertEquals(20, pager.size());
+    }
+
+    /**
+     * Tests that positions reported for an outdated window neither load nor drop pages.
+     */
+    @Test
+    public void loadAround_withOutdatedVersion_shouldBeIgnored() {
+        // Arrange
+        long firstVersion = current().getVersion();
+        scrollTo(5, 9);
+
+        // Act
+        pager.loadAround(firstVersion, 8, 9);
+
+        // Assert
+        assertEquals(2, api.cursors.size());
+        assertEquals(20, current().getReviews().size());
+    }
+
+    /**
+     * Tests that a failed page is not published, and is requested again with the same cursor on
+     * the next scroll event.
+     */
+    @Test
+    public void loadAround_afterFailure_shouldRequestPageAgain() {
+        try (MockedStatic<Log> ignored = Mockito.mockStatic(Log.class)) {
+            // Arrange
+            current();
+            api.failures = 1;
+
+            // Act
+            scrollTo(5, 9);
+            List<Review> afterFailure = current().getReviews();
+            scrollTo(5, 9);
+
+            // Assert
+            assertEquals(apiReviews(0, 10), afterFailure);
+            assertEquals(Arrays.asList(null, "90", "90"), api.cursors);
+            assertEquals(apiReviews(0, 20), current().getReviews());
+        }
+    }
+
+    /**
+     * Tests that a failed first page leaves no window, and is requested again by the next call,
+     * whether the screen observes the reviews again or reports a scroll.
+     */
+    @Test
+    public void getReviews_afterFirstPageFailure_shouldRequestItAgain() {
+        try (MockedStatic<Log> ignored = Mockito.mockStatic(Log.class)) {
+            // Arrange
+            api.failures = 2;
+
+            // Act
+            ReviewChangeSet afterFailure = current();
+            pager.loadAround(ReviewChangeSet.NO_VERSION, 0, 0);
+            ReviewChangeSet retried = current();
+
+            // Assert
+            assertNull(afterFailure);
+            assertEquals(Arrays.asList(null, null, null), api.cursors);
+            assertTrue(retried.isReset());
+            assertEquals(apiReviews(0, 10), retried.getReviews());
+        }
+    }
+
+    /**
+     * Tests that the cursor chain stops at the last page.
+     */
+    @Test
+    public void loadAround_atLastPage_shouldReachEnd() {
+        // Arrange
+        current();
+
+        // Act
+        for (int page = 0; page < 10; page++) {
+            int last = current().getReviews().size() - 1;
+            scrollTo(Math.max(0, last - 3), last);
+        }
+
+        // Assert
+        assertTrue(pager.isEndReached());
+        assertEquals(10, api.cursors.size());
+        assertEquals("10", api.cursors.get(9));
+    }
+
+    /**
+     * Tests that added reviews are inserted at the head of the first page, newest first.
+     */
+    @Test
+    public void onReviewsAdded_shouldInsertAtHead() {
+        // Arrange
+        current();
+        Review first = new Review("Alice", null, "Délicieux", 5, 5_000L);
+        Review second = new Review("Bob", null, "Bon", 4, 5_001L);
+
+        // Act
+        pager.onReviewsAdded(Arrays.asList(first, second));
+
+        // Assert
+        ReviewChangeSet changeSet = current();
+        assertEquals(12, changeSet.getReviews().size());
+        assertEquals(second, changeSet.getReviews().get(0));
+        assertEquals(first, changeSet.getReviews().get(1));
+        assertEquals(ReviewChange.Type.INSERTED, changeSet.getChanges().get(0).getType());
+        assertEquals(0, changeSet.getChanges().get(0).getPosition());
+        assertEquals(2, changeSet.getChanges().get(0).getCount());
+    }
+
+    /**
+     * Tests that reviews added before the first page is fetched are not lost, and head the first
+     * page when it arrives.
+     */
+    @Test
+    public void onReviewsAdded_beforeFirstPage_shouldMergeIntoFirstPage() {
+        // Arrange: the first page is fetched only when the executor runs.
+        List<Runnable> tasks = new ArrayList<>();
+        pager = newPager(tasks::add);
+        Review review = new Review("Alice", null, "Délicieux", 5, 5_000L);
+        current();
+
+        // Act
+        pager.onReviewsAdded(Collections.singletonList(review));
+        ReviewChangeSet beforeFirstPage = current();
+        tasks.remove(0).run();
+
+        // Assert
+        assertNull(beforeFirstPage);
+        ReviewChangeSet changeSet = current();
+        assertTrue(changeSet.isReset());
+        assertEquals(11, changeSet.getReviews().size());
+        assertEquals(review, changeSet.getReviews().get(0));
+        assertEquals(apiReviews(0, 10), changeSet.getReviews().subList(1, 11));
+    }
+
+    /**
+     * Tests that the reviews waiting in the outbox head the first page, and that the cursor of the
+     * following page is still the cursor of the API.
+     */
+    @Test
+    public void getReviews_withPendingReviews_shouldListThemFirst() {
+        // Arrange
+        outbox.enqueue(TAJ_MAHAL, Arrays.asList(
+                new Review("Alice", null, "Délicieux", 5, 5_000L),
+                new Review("Bob", null, "Bon", 4, 5_001L)));
+
+        // Act
+        List<Review> firstPage = current().getReviews();
+        scrollTo(5, 11);
+
+        // Assert
+        assertEquals(12, firstPage.size());
+        assertEquals("Bob", firstPage.get(0).getUsername());
+        assertEquals("Alice", firstPage.get(1).getUsername());
+        assertEquals(apiReviews(0, 10), firstPage.subList(2, 12));
+        assertEquals(Arrays.asList(null, "90"), api.cursors);
+    }
+
+    /**
+     * Tests that a batch written to the outbox before the first page is fetched is listed once,
+     * from the outbox, while a batch not written yet stays at the head of the page.
+     */
+    @Test
+    public void onReviewsSaved_beforeFirstPage_shouldListBatchOnce() {
+        // Arrange
+        List<Runnable> tasks = new ArrayList<>();
+        pager = newPager(tasks::add);
+        List<Review> saved = Collections.singletonList(new Review("Alice", null, "Délicieux", 5, 5_000L));
+        List<Review> unsaved = Collections.singletonList(new Review("Bob", null, "Bon", 4, 5_001L));
+        current();
+
+        // Act
+        pager.onReviewsAdded(saved);
+        outbox.enqueue(TAJ_MAHAL, saved);
+        pager.onReviewsSaved(saved);
+        pager.onReviewsAdded(unsaved);
+        tasks.remove(0).run();
+
+        // Assert
+        List<Review> firstPage = current().getReviews();
+        assertEquals(12, firstPage.size());
+        assertEquals(unsaved.get(0), firstPage.get(0));
+        assertEquals("Alice", firstPage.get(1).getUsername());
+        assertEquals(apiReviews(0, 10), firstPage.subList(2, 12));
+    }
+
+    /**
+     * Tests that a batch written to the outbox while the first page is requested, after the outbox
+     * was read, stays among the added reviews instead of being dropped from the page.
+     */
+    @Test
+    public void onReviewsSaved_duringFirstPageRequest_shouldKeepBatch() {
+        // Arrange
+        List<Review> batch = Collections.singletonList(new Review("Alice", null, "Délicieux", 5, 5_000L));
+        api.beforeFirstPage = () -> {
+            outbox.enqueue(TAJ_MAHAL, batch);
+            pager.onReviewsSaved(batch);
+        };
+        List<Runnable> tasks = new ArrayList<>();
+        pager = newPager(tasks::add);
+        current();
+        pager.onReviewsAdded(batch);
+
+        // Act
+        tasks.remove(0).run();
+
+        // Assert
+        List<Review> firstPage = current().getReviews();
+        assertEquals(11, firstPage.size());
+        assertEquals(batch.get(0), firstPage.get(0));
+        assertEquals(apiReviews(0, 10), firstPage.subList(1, 11));
+    }
+
+    /**
+     * Tests that a batch that could not be written to the outbox is removed from the first page.
+     */
+    @Test
+    public void onReviewsRemoved_shouldRemoveBatchFromFirstPage() {
+        // Arrange
+        current();
+        List<Review> kept = Collections.singletonList(new Review("Alice", null, "Délicieux", 5, 5_000L));
+        List<Review> failed = Arrays.asList(new Review("Bob", null, "Bon", 4, 5_001L),
+                new Review("Carol", null, "Correct", 3, 5_002L));
+        pager.onReviewsAdded(kept);
+        pager.onReviewsAdded(failed);
+
+        // Act
+        pager.onReviewsRemoved(failed);
+
+        // Assert
+        ReviewChangeSet changeSet = current();
+        assertEquals(11, changeSet.getReviews().size());
+        assertEquals(kept.get(0), changeSet.getReviews().get(0));
+        ReviewChange change = changeSet.getChanges().get(0);
+        assertEquals(ReviewChange.Type.REMOVED, change.getType());
+        assertEquals(0, change.getPosition());
+        assertEquals(2, change.getCount());
+        assertEquals(11, pager.size());
+    }
+
+    /**
+     * Tests that pending reviews the API rejected are removed from the first page.
+     */
+    @Test
+    public void onReviewsRejected_shouldRemovePendingReviewsFromFirstPage() {
+        // Arrange
+        outbox.enqueue(TAJ_MAHAL, Arrays.asList(
+                new Review("Alice", null, "Délicieux", 5, 5_000L),
+                new Review("Bob", null, "Bon", 4, 5_001L)));
+        List<Review> firstPage = current().getReviews();
+        Review rejected = firstPage.get(1);
+
+        // Act
+        pager.onReviewsRejected(Collections.singletonList(rejected));
+
+        // Assert
+        ReviewChangeSet changeSet = current();
+        assertEquals(11, changeSet.getReviews().size());
+        assertEquals("Bob", changeSet.getReviews().get(0).getUsername());
+        assertFalse(changeSet.getReviews().contains(rejected));
+        ReviewChange change = changeSet.getChanges().get(0);
+        assertEquals(ReviewChange.Type.REMOVED, change.getType());
+        assertEquals(1, change.getPosition());
+        assertEquals(1, change.getCount());
+        assertEquals(11, pager.size());
+    }
+
+    /**
+     * A fake API recording the requested cursors, which can fail the next page requests.
+     */
+    private static class PagedApi extends RestaurantFakeApi {
+        final List<String> cursors = new ArrayList<>();
+        int failures;
+        // Run once when the first page is requested, to act in the middle of the request.
+        Runnable beforeFirstPage;
+
+        @Override
+        public ReviewPage getReviews(long restaurantId, String cursor, int pageSize) {
+            cursors.add(cursor);
+            Runnable hook = beforeFirstPage;
+            if (cursor == null && hook != null) {
+                beforeFirstPage = null;
+                hook.run();
+            }
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("Network unavailable");
+            }
+            return super.getReviews(restaurantId, cursor, pageSize);
+        }
+    }
+}
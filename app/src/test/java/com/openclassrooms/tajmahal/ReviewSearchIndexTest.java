@@ -0,0 +1,168 @@
+package com.openclassrooms.tajmahal;
+
+import com.openclassrooms.tajmahal.data.store.ReviewSearchIndex;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Unit tests and query benchmark for the {@link ReviewSearchIndex} class.
+ * These tests verify the accent-insensitive and prefix matching of French comments, the
+ * intersection of the query words, and the newest-first order of the results as reviews are
+ * added at both ends of the list.
+ */
+public class ReviewSearchIndexTest {
+
+    private static final String[] DISHES = {"curry", "naan", "biryani", "samosa", "tandoori", "lassi", "dal", "korma"};
+    private static final String[] ADJECTIVES = {"délicieux", "épicé", "fade", "généreux", "froid", "parfait", "copieux"};
+
+    private static Review review(String username, String comment) {
+        return new Review(username, null, comment, 4);
+    }
+
+    /**
+     * Tests that queries match comments whatever their case, accents and ligatures.
+     */
+    @Test
+    public void search_shouldIgnoreCaseAndAccents() {
+        // Arrange
+        ReviewSearchIndex index = new ReviewSearchIndex();
+        Review delicious = review("Ranjit", "Une cuisine DÉLICIEUSE, servie avec le cœur.");
+        Review cold = review("Léa", "Le naan était froid.");
+        index.addOldest(Arrays.asList(delicious, cold));
+
+        // Act & Assert
+        assertEquals(Collections.singletonList(delicious), index.search("delicieuse"));
+        assertEquals(Collections.singletonList(delicious), index.search("Délicieuse"));
+        assertEquals(Collections.singletonList(delicious), index.search("coeur"));
+        assertEquals(Collections.singletonList(cold), index.search("etait"));
+    }
+
+    /**
+     * Tests that each query word matches the words starting with it, and that every word of the
+     * query must be found in a matching comment.
+     */
+    @Test
+    public void search_shouldMatchPrefixesOfEveryQueryWord() {
+        // Arrange
+        ReviewSearchIndex index = new ReviewSearchIndex();
+        Review curries = review("Ranjit", "Des currys épicés à souhait.");
+        Review mildCurry = review("Léa", "Un curry doux, parfait pour les enfants.");
+        Review naan = review("Martin", "Le naan au fromage est épicé aussi.");
+        index.addOldest(Arrays.asList(curries, mildCurry, naan));
+
+        // Act
+        List<Review> curr = index.search("curr");
+        List<Review> spicyCurry = index.search("curry epice");
+        List<Review> none = index.search("curry fromage");
+
+        // Assert
+        assertEquals(Arrays.asList(curries, mildCurry), curr);
+        assertEquals(Collections.singletonList(curries), spicyCurry);
+        assertTrue(none.isEmpty());
+        assertTrue(index.search("l'").isEmpty());
+    }
+
+    /**
+     * Tests that reviews added at the head and at the tail are returned in list order, newest first,
+     * and that clearing the index forgets them.
+     */
+    @Test
+    public void search_afterAddsAtBothEnds_shouldReturnNewestFirst() {
+        // Arrange
+        ReviewSearchIndex index = new ReviewSearchIndex();
+        Review middle = review("B", "Bon curry");
+        Review oldest = review("C", "Curry correct");
+        Review newest = review("A", "Curry excellent");
+        Review newer = review("A2", "Curry encore meilleur");
+
+        // Act
+        index.addOldest(Collections.singletonList(middle));
+        index.addOldest(Collections.singletonList(oldest));
+        index.addNewest(Arrays.asList(newer, newest));
+        List<Review> results = index.search("curry");
+
+        // Assert
+        assertEquals(Arrays.asList(newer, newest, middle, oldest), results);
+        assertEquals(4, index.size());
+        index.clear();
+        assertTrue(index.search("curry").isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    /**
+     * Measures the query time over tens of thousands of reviews, next to a scan of the normalized
+     * comments. Timings depend on the machine, so this only reports them.
+     * It only runs with {@code -Pbenchmarks}.
+     */
+    @Test
+    public void searchBenchmark_shouldReportQueryTime() {
+        assumeTrue("Benchmark, run with -Pbenchmarks", Boolean.getBoolean("benchmarks"));
+        // Arrange
+        int count = 50_000;
+        List<Review> reviews = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String comment = "Le " + DISHES[i % DISHES.length] + " était " + ADJECTIVES[i % ADJECTIVES.length]
+                    + ", table " + i + ", service " + ADJECTIVES[(i / 3) % ADJECTIVES.length] + ".";
+            reviews.add(review("User" + i, comment));
+        }
+        ReviewSearchIndex index = new ReviewSearchIndex();
+        index.addOldest(reviews);
+        String query = "biryani genereux";
+
+        // Act
+        long indexNanos = Long.MAX_VALUE;
+        long scanNanos = Long.MAX_VALUE;
+        int indexMatches = 0;
+        int scanMatches = 0;
+        for (int run = 0; run < 20; run++) {
+            long start = System.nanoTime();
+            indexMatches = index.search(query).size();
+            indexNanos = Math.min(indexNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            scanMatches = scan(reviews, query).size();
+            scanNanos = Math.min(scanNanos, System.nanoTime() - start);
+        }
+
+        // Assert
+        assertEquals(scanMatches, indexMatches);
+        assertTrue(indexMatches > 0);
+        System.out.printf("%d reviews, %d matches | index: %.3f ms | scan: %.3f ms%n",
+                count, indexMatches, indexNanos / 1e6, scanNanos / 1e6);
+    }
+
+    /**
+     * Finds the reviews containing every query word as a word prefix, by normalizing every comment.
+     */
+    private static List<Review> scan(List<Review> reviews, String query) {
+        List<String> terms = ReviewSearchIndex.tokenize(query);
+        List<Review> results = new ArrayList<>();
+        for (Review review : reviews) {
+            List<String> words = ReviewSearchIndex.tokenize(review.getComment());
+            boolean matches = true;
+            for (String term : terms) {
+                boolean found = false;
+                for (String word : words) {
+                    if (word.startsWith(term)) {
+                        found = true;
+                        break;
+                    }
+                }
+                matches &= found;
+            }
+            if (matches) {
+                results.add(review);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,109 @@
+package com.openclassrooms.tajmahal;
+
+import com.openclassrooms.tajmahal.data.store.ReviewOrder;
+import com.openclassrooms.tajmahal.data.store.ReviewSortIndex;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link ReviewSortIndex} class, which keeps the review list in every order.
+ * These tests verify each order and star filter, the paging across star buckets, and that reviews
+ * added at both ends of the list keep their place in every order.
+ */
+public class ReviewSortIndexTest {
+
+    private Review fiveNew;
+    private Review threeNew;
+    private Review fiveOld;
+    private Review oneOld;
+    private Review threeOld;
+    private ReviewSortIndex index;
+
+    @Before
+    public void setUp() {
+        fiveNew = new Review("A", null, "Parfait", 5);
+        threeNew = new Review("B", null, "Correct", 3);
+        fiveOld = new Review("C", null, "Excellent", 5);
+        oneOld = new Review("D", null, "Froid", 1);
+        threeOld = new Review("E", null, "Moyen", 3);
+        index = new ReviewSortIndex();
+        // The list is fiveNew, threeNew, fiveOld, oneOld, threeOld, built as a reload then a submission.
+        index.addOldest(Arrays.asList(fiveOld, oneOld));
+        index.addOldest(Collections.singletonList(threeOld));
+        index.addNewest(Arrays.asList(fiveNew, threeNew));
+    }
+
+    /**
+     * Tests the orders by recency, which follow the list.
+     */
+    @Test
+    public void page_byRecency_shouldFollowListOrder() {
+        // Act
+        List<Review> newest = index.page(ReviewOrder.NEWEST_FIRST, ReviewSortIndex.ALL_STARS, 0, 10);
+        List<Review> oldest = index.page(ReviewOrder.OLDEST_FIRST, ReviewSortIndex.ALL_STARS, 0, 10);
+
+        // Assert
+        assertEquals(Arrays.asList(fiveNew, threeNew, fiveOld, oneOld, threeOld), newest);
+        assertEquals(Arrays.asList(threeOld, oneOld, fiveOld, threeNew, fiveNew), oldest);
+        assertEquals(5, index.size());
+    }
+
+    /**
+     * Tests the orders by rating, ties being newest first, including pages spanning several star counts.
+     */
+    @Test
+    public void page_byRating_shouldOrderByStarsThenRecency() {
+        // Act
+        List<Review> highest = index.page(ReviewOrder.HIGHEST_RATED, ReviewSortIndex.ALL_STARS, 0, 10);
+        List<Review> lowest = index.page(ReviewOrder.LOWEST_RATED, ReviewSortIndex.ALL_STARS, 0, 10);
+        List<Review> middlePage = index.page(ReviewOrder.HIGHEST_RATED, ReviewSortIndex.ALL_STARS, 1, 3);
+        List<Review> lastPage = index.page(ReviewOrder.HIGHEST_RATED, ReviewSortIndex.ALL_STARS, 4, 3);
+
+        // Assert
+        assertEquals(Arrays.asList(fiveNew, fiveOld, threeNew, threeOld, oneOld), highest);
+        assertEquals(Arrays.asList(oneOld, threeNew, threeOld, fiveNew, fiveOld), lowest);
+        assertEquals(Arrays.asList(fiveOld, threeNew, threeOld), middlePage);
+        assertEquals(Collections.singletonList(oneOld), lastPage);
+        assertTrue(index.page(ReviewOrder.HIGHEST_RATED, ReviewSortIndex.ALL_STARS, 5, 3).isEmpty());
+    }
+
+    /**
+     * Tests that a star filter keeps only the reviews with that star count, in the selected order.
+     */
+    @Test
+    public void page_withStarFilter_shouldKeepOnlyThatStarCount() {
+        // Act
+        List<Review> threeStars = index.page(ReviewOrder.NEWEST_FIRST, 3, 0, 10);
+        List<Review> threeStarsOldestFirst = index.page(ReviewOrder.OLDEST_FIRST, 3, 0, 10);
+        List<Review> twoStars = index.page(ReviewOrder.HIGHEST_RATED, 2, 0, 10);
+
+        // Assert
+        assertEquals(Arrays.asList(threeNew, threeOld), threeStars);
+        assertEquals(Arrays.asList(threeOld, threeNew), threeStarsOldestFirst);
+        assertTrue(twoStars.isEmpty());
+        assertEquals(2, index.size(3));
+    }
+
+    /**
+     * Tests that clearing the index forgets every review, and that an invalid filter is rejected.
+     */
+    @Test
+    public void clear_shouldEmptyEveryOrder() {
+        // Act
+        index.clear();
+
+        // Assert
+        assertEquals(0, index.size());
+        assertEquals(0, index.size(5));
+        assertTrue(index.page(ReviewOrder.LOWEST_RATED, ReviewSortIndex.ALL_STARS, 0, 10).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> index.page(ReviewOrder.NEWEST_FIRST, 6, 0, 10));
+    }
+}
@@ -0,0 +1,184 @@
+package com.openclassrooms.tajmahal;
+
+import com.openclassrooms.tajmahal.data.store.ReviewSnapshot;
+import com.openclassrooms.tajmahal.data.store.ReviewStore;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Concurrency tests and contention benchmark for the {@link ReviewStore} class.
+ * These tests verify that concurrent writers never lose or duplicate a review, that readers
+ * always see a complete prefix of the insertions, and report the insertion throughput as
+ * writer threads are added.
+ */
+public class ReviewStoreContentionTest {
+
+    private static final int[] WRITER_COUNTS = {1, 2, 4, 8};
+    private static final int INSERTIONS_PER_RUN = 400_000;
+    // Allocated once, so that the benchmark measures the insertions rather than the allocations.
+    private static final Review[] REVIEWS = new Review[INSERTIONS_PER_RUN];
+
+    static {
+        for (int i = 0; i < REVIEWS.length; i++) {
+            REVIEWS[i] = review(0, i);
+        }
+    }
+
+    /**
+     * Tests that reviews prepended concurrently, one by one and in batches, are all present exactly
+     * once, while a reader takes snapshots that never contain an unwritten slot.
+     */
+    @Test
+    public void concurrentWriters_shouldNotLoseReviewsAndReadersShouldSeeCompleteSnapshots() throws Exception {
+        // Arrange
+        ReviewStore store = new ReviewStore();
+        int writers = 8;
+        int perWriter = 20_000;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < perWriter; i += 4) {
+                    if (i % 8 == 0) {
+                        store.prependAll(Arrays.asList(review(writer, i), review(writer, i + 1), review(writer, i + 2), review(writer, i + 3)));
+                    } else {
+                        for (int j = 0; j < 4; j++) {
+                            store.prepend(review(writer, i + j));
+                        }
+                    }
+                }
+            }));
+        }
+        Thread reader = new Thread(() -> {
+            awaitQuietly(start);
+            try {
+                while (writing.get()) {
+                    ReviewSnapshot snapshot = store.snapshot();
+                    for (int i = 0; i < snapshot.size(); i++) {
+                        assertNotNull("A published slot must be written", snapshot.get(i));
+                    }
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+
+        // Act
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        reader.start();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        writing.set(false);
+        reader.join();
+
+        // Assert
+        assertNull("Reader failed: " + failure.get(), failure.get());
+        ReviewSnapshot snapshot = store.snapshot();
+        assertEquals(writers * perWriter, snapshot.size());
+        Map<Review, Boolean> seen = new IdentityHashMap<>();
+        for (Review review : snapshot) {
+            assertNull("Each review must be stored once", seen.put(review, Boolean.TRUE));
+        }
+    }
+
+    /**
+     * Measures the insertion throughput of the store as writer threads are added, next to a list
+     * guarded by a single global lock. Throughput depends on the machine, so this only reports it,
+     * and only runs with {@code -Pbenchmarks}.
+     */
+    @Test
+    public void contentionBenchmark_shouldReportThroughputPerWriterCount() throws Exception {
+        assumeTrue("Benchmark, run with -Pbenchmarks", Boolean.getBoolean("benchmarks"));
+        // Warm up both implementations so that the measured runs are compiled.
+        for (int writers : WRITER_COUNTS) {
+            runLockFree(writers);
+            runGlobalLock(writers);
+        }
+        System.out.println("writers | ReviewStore (ops/ms) | synchronized list (ops/ms)");
+        for (int writers : WRITER_COUNTS) {
+            double lockFree = INSERTIONS_PER_RUN / (runLockFree(writers) / 1e6);
+            double globalLock = INSERTIONS_PER_RUN / (runGlobalLock(writers) / 1e6);
+            System.out.printf("%7d | %20.0f | %26.0f%n", writers, lockFree, globalLock);
+        }
+    }
+
+    private static long runLockFree(int writers) throws InterruptedException {
+        ReviewStore store = new ReviewStore();
+        long elapsed = runWriters(writers, i -> store.prepend(REVIEWS[i]));
+        assertEquals(INSERTIONS_PER_RUN, store.size());
+        return elapsed;
+    }
+
+    private static long runGlobalLock(int writers) throws InterruptedException {
+        List<Review> list = Collections.synchronizedList(new ArrayList<>());
+        long elapsed = runWriters(writers, i -> list.add(REVIEWS[i]));
+        assertEquals(INSERTIONS_PER_RUN, list.size());
+        return elapsed;
+    }
+
+    /**
+     * Runs the given insertion from several threads, splitting {@link #INSERTIONS_PER_RUN} between them.
+     *
+     * @return The elapsed time, in nanoseconds.
+     */
+    private static long runWriters(int writers, Insertion insertion) throws InterruptedException {
+        int perWriter = INSERTIONS_PER_RUN / writers;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            Thread thread = new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = writer * perWriter; i < (writer + 1) * perWriter; i++) {
+                    insertion.insert(i);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return System.nanoTime() - startNanos;
+    }
+
+    private interface Insertion {
+        void insert(int i);
+    }
+
+    private static Review review(int writer, int i) {
+        return new Review("Writer" + writer, null, "Comment " + i, 1 + i % 5);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
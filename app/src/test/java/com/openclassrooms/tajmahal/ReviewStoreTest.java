@@ -0,0 +1,103 @@
+package com.openclassrooms.tajmahal;
+
+import com.openclassrooms.tajmahal.data.store.ReviewSnapshot;
+import com.openclassrooms.tajmahal.data.store.ReviewStore;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link ReviewStore} class and the snapshots it publishes.
+ * These tests verify the newest-first ordering, the isolation of snapshots from later
+ * insertions, and the immutability of snapshots.
+ */
+public class ReviewStoreTest {
+
+    private static Review review(int i) {
+        return new Review("User" + i, "avatar" + i + ".jpg", "Comment " + i, 1 + i % 5);
+    }
+
+    /**
+     * Tests that the initial reviews keep their order and that prepended reviews come first.
+     */
+    @Test
+    public void prepend_shouldInsertNewestFirst() {
+        // Arrange
+        ReviewStore store = new ReviewStore(Arrays.asList(review(1), review(0)));
+
+        // Act
+        store.prepend(review(2));
+        ReviewSnapshot snapshot = store.snapshot();
+
+        // Assert
+        assertEquals(3, snapshot.size());
+        assertEquals(review(2), snapshot.get(0));
+        assertEquals(review(1), snapshot.get(1));
+        assertEquals(review(0), snapshot.get(2));
+    }
+
+    /**
+     * Tests that a snapshot does not see reviews prepended after it was taken,
+     * including when the insertions allocate new chunks.
+     */
+    @Test
+    public void snapshot_shouldNotSeeLaterInsertions() {
+        // Arrange
+        ReviewStore store = new ReviewStore();
+        for (int i = 0; i < 100; i++) {
+            store.prepend(review(i));
+        }
+
+        // Act
+        ReviewSnapshot before = store.snapshot();
+        for (int i = 100; i < 1000; i++) {
+            store.prepend(review(i));
+        }
+        ReviewSnapshot after = store.snapshot();
+
+        // Assert
+        assertEquals(100, before.size());
+        assertEquals(review(99), before.get(0));
+        assertEquals(review(0), before.get(99));
+        assertEquals(1000, after.size());
+        assertEquals(review(999), after.get(0));
+        assertEquals(review(0), after.get(999));
+        assertEquals(review(0), after.getByInsertionIndex(0));
+    }
+
+    /**
+     * Tests that a batch is inserted in iteration order, the last review becoming the newest,
+     * and that a snapshot taken before the batch sees none of it.
+     */
+    @Test
+    public void prependAll_shouldPublishWholeBatchAtOnce() {
+        // Arrange
+        ReviewStore store = new ReviewStore(Arrays.asList(review(0)));
+        ReviewSnapshot before = store.snapshot();
+
+        // Act
+        store.prependAll(Arrays.asList(review(1), review(2), review(3)));
+        ReviewSnapshot after = store.snapshot();
+
+        // Assert
+        assertEquals(1, before.size());
+        assertEquals(4, after.size());
+        assertEquals(review(3), after.get(0));
+        assertEquals(review(0), after.get(3));
+    }
+
+    /**
+     * Tests that a snapshot cannot be modified.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshot_shouldBeImmutable() {
+        ReviewStore store = new ReviewStore();
+        store.prepend(review(0));
+
+        store.snapshot().add(review(1));
+    }
+}
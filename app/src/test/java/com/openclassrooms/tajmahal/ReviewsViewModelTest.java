@@ -2,12 +2,23 @@ package com.openclassrooms.tajmahal;
 
 import android.util.Log;
 
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.SavedStateHandle;
+
+import com.openclassrooms.tajmahal.data.repository.LoadState;
 import com.openclassrooms.tajmahal.data.repository.RestaurantRepository;
+import com.openclassrooms.tajmahal.data.repository.ReviewChangeSet;
+import com.openclassrooms.tajmahal.data.service.RestaurantApi;
+import com.openclassrooms.tajmahal.data.store.ReviewOrder;
+import com.openclassrooms.tajmahal.data.store.ReviewSortIndex;
 import com.openclassrooms.tajmahal.domain.model.Review;
+import com.openclassrooms.tajmahal.ui.restaurant.DetailsViewModel;
 import com.openclassrooms.tajmahal.ui.restaurant.ReviewsViewModel;
 
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -16,6 +27,13 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -27,6 +45,9 @@ import static org.mockito.Mockito.*;
 // @RunWith(MockitoJUnitRunner.class) // Alternative way to initialize mocks
 public class ReviewsViewModelTest {
 
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
     @Mock
     private RestaurantRepository mockRestaurantRepository;
 
@@ -38,6 +59,9 @@ public class ReviewsViewModelTest {
     // To mock static calls to android.util.Log
     private MockedStatic<Log> mockedLog;
 
+    // Runs the searches of the ViewModels.
+    private ScheduledExecutorService computeExecutor;
+
     /**
      * Sets up the test environment before each test.
      * Initializes mocks, creates the ViewModel instance, and sets up static mocking for Log.
@@ -49,8 +73,9 @@ public class ReviewsViewModelTest {
         // Initialize static mock for Log. This is necessary to verify Log calls.
         mockedLog = Mockito.mockStatic(Log.class);
 
-        // Create an instance of the ViewModel with the mocked repository
-        reviewsViewModel = new ReviewsViewModel(mockRestaurantRepository);
+        // Create an instance of the ViewModel with the mocked repository, for the default restaurant
+        computeExecutor = Executors.newSingleThreadScheduledExecutor();
+        reviewsViewModel = new ReviewsViewModel(mockRestaurantRepository, new SavedStateHandle(), computeExecutor);
     }
 
     /**
@@ -63,6 +88,7 @@ public class ReviewsViewModelTest {
         if (mockedLog != null) {
             mockedLog.close();
         }
+        computeExecutor.shutdownNow();
     }
 
     /**
@@ -86,7 +112,7 @@ public class ReviewsViewModelTest {
         assertTrue("addReview should return true for valid input", result);
 
         // Verify that restaurantRepository.addReview was called exactly once and capture the argument
-        verify(mockRestaurantRepository, times(1)).addReview(reviewArgumentCaptor.capture());
+        verify(mockRestaurantRepository, times(1)).addReview(eq(RestaurantApi.TAJ_MAHAL_ID), reviewArgumentCaptor.capture());
 
         // Check the content of the captured Review object
         Review capturedReview = reviewArgumentCaptor.getValue();
@@ -94,6 +120,7 @@ public class ReviewsViewModelTest {
         assertEquals("Avatar URL should match", avatarUrl, capturedReview.getPicture());
         assertEquals("Comment should match", comment, capturedReview.getComment());
         assertEquals("Rate should match", rate, capturedReview.getRate());
+        assertTrue("Creation time should be set", capturedReview.getCreatedAt() > 0);
 
         // Verify that the success log was made
         mockedLog.verify(() -> Log.d("ReviewsViewModel", "Review added successfully for user: " + username));
@@ -126,7 +153,7 @@ public class ReviewsViewModelTest {
         assertFalse("addReview should return false for empty comment", result);
 
         // Verify that restaurantRepository.addReview was never called
-        verify(mockRestaurantRepository, never()).addReview(any(Review.class));
+        verify(mockRestaurantRepository, never()).addReview(anyLong(), any(Review.class));
 
         // Verify that the "empty comment" log was made
         mockedLog.verify(() -> Log.d("ReviewsViewModel", "Comment cannot be empty."));
@@ -157,7 +184,7 @@ public class ReviewsViewModelTest {
         assertFalse("addReview should return false for null comment", result);
 
         // Verify that restaurantRepository.addReview was never called
-        verify(mockRestaurantRepository, never()).addReview(any(Review.class));
+        verify(mockRestaurantRepository, never()).addReview(anyLong(), any(Review.class));
 
         // Verify that the "empty comment" log was made (current SUT logic handles null and empty the same way for logging)
         mockedLog.verify(() -> Log.d("ReviewsViewModel", "Comment cannot be empty."));
@@ -184,7 +211,7 @@ public class ReviewsViewModelTest {
         assertFalse("addReview should return false for zero rate", result);
 
         // Verify that restaurantRepository.addReview was never called
-        verify(mockRestaurantRepository, never()).addReview(any(Review.class));
+        verify(mockRestaurantRepository, never()).addReview(anyLong(), any(Review.class));
 
         // Verify that the "zero rating" log was made
         mockedLog.verify(() -> Log.d("ReviewsViewModel", "Rating cannot be 0."));
@@ -210,7 +237,7 @@ public class ReviewsViewModelTest {
         RuntimeException repositoryException = new RuntimeException("Database connection failed");
 
         // Configure the mock repository to throw an exception when addReview is called
-        doThrow(repositoryException).when(mockRestaurantRepository).addReview(any(Review.class));
+        doThrow(repositoryException).when(mockRestaurantRepository).addReview(anyLong(), any(Review.class));
 
         // Act
         boolean result = reviewsViewModel.addReview(username, avatarUrl, rate, comment);
@@ -219,7 +246,7 @@ public class ReviewsViewModelTest {
         assertFalse("addReview should return false when repository throws an exception", result);
 
         // Verify that restaurantRepository.addReview was called (even though it threw an exception)
-        verify(mockRestaurantRepository, times(1)).addReview(any(Review.class));
+        verify(mockRestaurantRepository, times(1)).addReview(anyLong(), any(Review.class));
 
         // Verify that the error log was made with the correct message and exception
         mockedLog.verify(() -> Log.e("ReviewsViewModel", "Error adding review to repository for user: " + username, repositoryException));
@@ -227,4 +254,188 @@ public class ReviewsViewModelTest {
         // Ensure the success log was not made
         mockedLog.verify(() -> Log.d(eq("ReviewsViewModel"), startsWith("Review added successfully")), never());
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that the ViewModel works on the restaurant passed in the arguments of its fragment:
+     * it retains the restaurant in the repository and adds the reviews to it.
+     */
+    @Test
+    public void addReview_forRestaurantFromArguments_shouldAddReviewToThatRestaurant() {
+        // Arrange
+        SavedStateHandle arguments = new SavedStateHandle(
+                Collections.<String, Object>singletonMap(DetailsViewModel.ARG_RESTAURANT_ID, 42L));
+        ReviewsViewModel viewModel = new ReviewsViewModel(mockRestaurantRepository, arguments, computeExecutor);
+
+        // Act
+        boolean result = viewModel.addReview("JohnDoe", "avatar.jpg", 4, "Great food!");
+
+        // Assert
+        assertTrue(result);
+        verify(mockRestaurantRepository).retain(42L);
+        verify(mockRestaurantRepository).addReview(eq(42L), any(Review.class));
+    }
+
+    /**
+     * Tests the {@link ReviewsViewModel#addReviews(java.util.Collection)} method with valid reviews.
+     * Verifies that the whole batch is handed to the repository in a single call.
+     */
+    @Test
+    public void addReviews_withValidBatch_shouldCallRepositoryOnceAndReturnTrue() {
+        // Arrange
+        List<Review> batch = Arrays.asList(
+                new Review("UserA", "a.jpg", "Great curry", 5),
+                new Review("UserB", "b.jpg", "Nice naan", 4));
+
+        // Act
+        boolean result = reviewsViewModel.addReviews(batch);
+
+        // Assert
+        assertTrue("addReviews should return true for a valid batch", result);
+        verify(mockRestaurantRepository, times(1)).addReviews(RestaurantApi.TAJ_MAHAL_ID, batch);
+        verify(mockRestaurantRepository, never()).addReview(anyLong(), any(Review.class));
+    }
+
+    /**
+     * Tests the {@link ReviewsViewModel#addReviews(java.util.Collection)} method with a batch
+     * containing an invalid review.
+     * Verifies that the batch is rejected as a whole and the repository is never called.
+     */
+    @Test
+    public void addReviews_withInvalidReview_shouldRejectWholeBatch() {
+        // Arrange
+        List<Review> batch = Arrays.asList(
+                new Review("UserA", "a.jpg", "Great curry", 5),
+                new Review("UserB", "b.jpg", "", 4));
+
+        // Act
+        boolean result = reviewsViewModel.addReviews(batch);
+
+        // Assert
+        assertFalse("addReviews should return false when a review is invalid", result);
+        verify(mockRestaurantRepository, never()).addReviews(anyLong(), anyCollection());
+    }
+
+    /**
+     * Tests that {@link ReviewsViewModel#getReviewPage(int, int)} reads the page in the order and
+     * star filter selected last.
+     */
+    @Test
+    public void getReviewPage_shouldUseSelectedOrderAndFilter() {
+        // Arrange
+        when(mockRestaurantRepository.getReviewChanges(RestaurantApi.TAJ_MAHAL_ID)).thenReturn(new MutableLiveData<>());
+        List<Review> page = Collections.singletonList(new Review("UserA", "a.jpg", "Great curry", 5));
+        when(mockRestaurantRepository.getReviewPage(RestaurantApi.TAJ_MAHAL_ID, ReviewOrder.HIGHEST_RATED, 5, 0, 20))
+                .thenReturn(page);
+
+        // Act
+        reviewsViewModel.setReviewOrder(ReviewOrder.HIGHEST_RATED, 5);
+        List<Review> result = reviewsViewModel.getReviewPage(0, 20);
+
+        // Assert
+        assertSame(page, result);
+        assertEquals(ReviewOrder.HIGHEST_RATED, reviewsViewModel.getReviewOrder());
+        assertEquals(5, reviewsViewModel.getStarFilter());
+    }
+
+    /**
+     * Tests that {@link ReviewsViewModel#setSearchQuery(String)} searches the repository in the
+     * background, publishes the results, searches again when the reviews change, and publishes
+     * null once the query is cleared.
+     */
+    @Test
+    public void setSearchQuery_shouldPublishResultsInBackgroundUntilCleared() throws Exception {
+        // Arrange
+        List<Review> firstMatches = Collections.singletonList(new Review("UserA", "a.jpg", "Great curry", 5));
+        List<Review> laterMatches = Arrays.asList(
+                new Review("UserB", "b.jpg", "Spicy curry", 4), firstMatches.get(0));
+        MutableLiveData<ReviewChangeSet> changes = new MutableLiveData<>();
+        when(mockRestaurantRepository.getReviewChanges(RestaurantApi.TAJ_MAHAL_ID)).thenReturn(changes);
+        when(mockRestaurantRepository.searchReviews(RestaurantApi.TAJ_MAHAL_ID, "curry"))
+                .thenReturn(firstMatches, laterMatches);
+        ReviewsViewModel viewModel = new ReviewsViewModel(mockRestaurantRepository, new SavedStateHandle(),
+                computeExecutor, 0);
+        List<List<Review>> published = new ArrayList<>();
+        viewModel.getFilteredReviews().observeForever(published::add);
+
+        // Act: each step waits for the search it scheduled, queued before the empty task.
+        viewModel.setSearchQuery(" curry ");
+        computeExecutor.submit(() -> { }).get();
+        changes.setValue(ReviewChangeSet.reset(laterMatches, 1));
+        computeExecutor.submit(() -> { }).get();
+        viewModel.setSearchQuery("");
+        computeExecutor.submit(() -> { }).get();
+
+        // Assert
+        assertEquals(Arrays.asList(firstMatches, laterMatches, null), published);
+    }
+
+    /**
+     * Tests that {@link ReviewsViewModel#setReviewOrder(ReviewOrder, int)} publishes the first page
+     * in the selected order in the background, that scrolling near its end reads a longer one, and
+     * that selecting newest first with all stars again goes back to the paged reviews.
+     */
+    @Test
+    public void setReviewOrder_shouldPublishPagesInBackgroundAsUserScrolls() throws Exception {
+        // Arrange
+        int pageSize = ReviewsViewModel.FILTERED_PAGE_SIZE;
+        List<Review> firstPage = Collections.nCopies(pageSize, new Review("UserA", "a.jpg", "Great curry", 5));
+        List<Review> longerPage = Collections.nCopies(pageSize + 3, new Review("UserA", "a.jpg", "Great curry", 5));
+        when(mockRestaurantRepository.getReviewChanges(RestaurantApi.TAJ_MAHAL_ID)).thenReturn(new MutableLiveData<>());
+        when(mockRestaurantRepository.getReviewPage(RestaurantApi.TAJ_MAHAL_ID, ReviewOrder.LOWEST_RATED, 5, 0, pageSize))
+                .thenReturn(firstPage);
+        when(mockRestaurantRepository.getReviewPage(RestaurantApi.TAJ_MAHAL_ID, ReviewOrder.LOWEST_RATED, 5, 0, 2 * pageSize))
+                .thenReturn(longerPage);
+        ReviewsViewModel viewModel = new ReviewsViewModel(mockRestaurantRepository, new SavedStateHandle(),
+                computeExecutor, 0);
+        List<List<Review>> published = new ArrayList<>();
+        viewModel.getFilteredReviews().observeForever(published::add);
+
+        // Act: each step waits for the read it scheduled, queued before the empty task.
+        viewModel.setReviewOrder(ReviewOrder.LOWEST_RATED, 5);
+        computeExecutor.submit(() -> { }).get();
+        viewModel.onReviewsScrolled(ReviewChangeSet.NO_VERSION, 0, pageSize - 1);
+        computeExecutor.submit(() -> { }).get();
+        viewModel.onReviewsScrolled(ReviewChangeSet.NO_VERSION, 0, pageSize + 2);
+        computeExecutor.submit(() -> { }).get();
+        viewModel.setReviewOrder(ReviewOrder.NEWEST_FIRST, ReviewSortIndex.ALL_STARS);
+        computeExecutor.submit(() -> { }).get();
+
+        // Assert: the longer page holds every review, so the last scroll reads nothing.
+        assertEquals(Arrays.asList(firstPage, longerPage, null), published);
+        verify(mockRestaurantRepository, never()).getReviewPager(anyLong());
+    }
+
+    /**
+     * Tests that {@link ReviewsViewModel#takeError(LoadState)} reports each error once, so that an
+     * error replayed to a re-created view is not shown again.
+     */
+    @Test
+    public void takeError_shouldReportEachErrorOnce() {
+        // Arrange
+        LoadState first = LoadState.error(new IllegalStateException("First"));
+        LoadState second = LoadState.error(new IllegalStateException("Second"));
+
+        // Act & Assert
+        assertFalse(reviewsViewModel.takeError(LoadState.loading()));
+        assertTrue(reviewsViewModel.takeError(first));
+        assertFalse("A replayed error should not be reported again", reviewsViewModel.takeError(first));
+        assertFalse(reviewsViewModel.takeError(LoadState.success()));
+        assertTrue(reviewsViewModel.takeError(second));
+    }
+
+    /**
+     * Tests that the error the restaurant was in when the screen opened is not reported by it.
+     */
+    @Test
+    public void takeError_withErrorBeforeScreenOpened_shouldIgnoreIt() {
+        // Arrange
+        LoadState previous = LoadState.error(new IllegalStateException("Previous"));
+        when(mockRestaurantRepository.getLoadState(RestaurantApi.TAJ_MAHAL_ID)).thenReturn(new MutableLiveData<>(previous));
+
+        // Act
+        ReviewsViewModel viewModel = new ReviewsViewModel(mockRestaurantRepository, new SavedStateHandle(), computeExecutor);
+
+        // Assert
+        assertFalse(viewModel.takeError(previous));
+    }
+}
@@ -0,0 +1,81 @@
+package com.openclassrooms.tajmahal;
+
+import com.openclassrooms.tajmahal.data.store.SegmentedReviewList;
+import com.openclassrooms.tajmahal.domain.model.Review;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link SegmentedReviewList} class.
+ * These tests verify that the list reads its reviews across its segments in order, skipping the
+ * empty ones, and that adding a segment leaves the original list unchanged.
+ */
+public class SegmentedReviewListTest {
+
+    private static Review review(int i) {
+        return new Review("User" + i, "avatar" + i + ".jpg", "Comment " + i, 1 + i % 5);
+    }
+
+    /**
+     * Tests that the reviews of all segments are read in order, whatever the empty segments.
+     */
+    @Test
+    public void of_shouldConcatenateSegments() {
+        // Arrange
+        List<List<Review>> segments = Arrays.asList(
+                Collections.emptyList(),
+                Arrays.asList(review(0), review(1)),
+                Collections.emptyList(),
+                Collections.singletonList(review(2)),
+                Arrays.asList(review(3), review(4), review(5)));
+
+        // Act
+        SegmentedReviewList list = SegmentedReviewList.of(segments);
+
+        // Assert
+        List<Review> expected = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            expected.add(review(i));
+        }
+        assertEquals(6, list.size());
+        assertEquals(expected, list);
+        assertEquals(review(3), list.get(3));
+    }
+
+    /**
+     * Tests that adding a segment at either end creates a new list and keeps the original one.
+     */
+    @Test
+    public void withFirstAndWithLast_shouldLeaveListUnchanged() {
+        // Arrange
+        SegmentedReviewList list = SegmentedReviewList.empty().withLast(Arrays.asList(review(1), review(2)));
+
+        // Act
+        SegmentedReviewList extended = list.withFirst(Collections.singletonList(review(0)))
+                .withLast(Collections.singletonList(review(3)));
+
+        // Assert
+        assertEquals(Arrays.asList(review(1), review(2)), list);
+        assertEquals(Arrays.asList(review(0), review(1), review(2), review(3)), extended);
+        assertSame(list, list.withFirst(Collections.emptyList()));
+    }
+
+    /**
+     * Tests that reading past the last review fails.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_outOfBounds_shouldThrow() {
+        // Arrange
+        SegmentedReviewList list = SegmentedReviewList.of(Collections.singletonList(Collections.singletonList(review(0))));
+
+        // Act
+        list.get(1);
+    }
+}
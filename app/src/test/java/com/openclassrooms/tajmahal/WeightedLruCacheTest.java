@@ -0,0 +1,95 @@
+package com.openclassrooms.tajmahal;
+
+import com.openclassrooms.tajmahal.data.repository.WeightedLruCache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link WeightedLruCache} class, which keeps the data of the recently viewed
+ * restaurants. These tests verify that values are evicted by weight, least recently used first,
+ * and that retained values and the most recently used one are never evicted.
+ */
+public class WeightedLruCacheTest {
+
+    private Set<String> retained;
+    private int created;
+    private WeightedLruCache<Long, StringBuilder> cache;
+
+    @Before
+    public void setUp() {
+        retained = new HashSet<>();
+        created = 0;
+        // The weight of a value is its length, standing for the number of reviews of a restaurant.
+        cache = new WeightedLruCache<>(10, StringBuilder::length, value -> !retained.contains(value.toString()));
+    }
+
+    private StringBuilder get(long key, String value) {
+        return cache.get(key, k -> {
+            created++;
+            return new StringBuilder(value);
+        });
+    }
+
+    /**
+     * Tests that switching back to a cached value is a cache hit.
+     */
+    @Test
+    public void get_whenCached_shouldNotCreateValueAgain() {
+        StringBuilder first = get(1L, "aaaa");
+        get(2L, "bbbb");
+
+        StringBuilder again = get(1L, "aaaa");
+
+        assertSame(first, again);
+        assertEquals(2, created);
+    }
+
+    /**
+     * Tests that the least recently used values are evicted once the total weight exceeds the maximum.
+     */
+    @Test
+    public void get_whenOverweight_shouldEvictLeastRecentlyUsed() {
+        // Arrange
+        get(1L, "aaaa");
+        get(2L, "bbbb");
+        get(1L, "aaaa");
+
+        // Act
+        get(3L, "cccc");
+
+        // Assert
+        assertTrue(cache.contains(1L));
+        assertFalse(cache.contains(2L));
+        assertTrue(cache.contains(3L));
+        assertEquals(8, cache.weight());
+    }
+
+    /**
+     * Tests that values which are not evictable are skipped, and that the most recently used
+     * value is kept even when it exceeds the maximum weight alone.
+     */
+    @Test
+    public void trim_shouldSkipRetainedValuesAndKeepMostRecent() {
+        // Arrange
+        retained.add("aaaa");
+        get(1L, "aaaa");
+        get(2L, "bbbb");
+        StringBuilder growing = get(3L, "c");
+
+        // Act
+        growing.append("cccccccccccc");
+        cache.trim();
+
+        // Assert
+        assertTrue(cache.contains(1L));
+        assertFalse(cache.contains(2L));
+        assertTrue(cache.contains(3L));
+        assertEquals(2, cache.size());
+    }
+}